@@ -16,24 +16,31 @@
 
 package org.i18nchecker;
 
-import com.sun.org.apache.xerces.internal.util.XMLCatalogResolver;
 import java.io.File;
-import java.io.FileInputStream;
 import java.io.IOException;
-import java.io.InputStream;
 import java.text.MessageFormat;
 import java.util.ArrayList;
 import java.util.Arrays;
 import java.util.LinkedList;
 import java.util.List;
+import java.util.Locale;
 import java.util.Map;
 import java.util.Stack;
-import java.util.jar.Attributes;
-import java.util.jar.Manifest;
 import org.apache.tools.ant.BuildException;
+import org.apache.tools.ant.Project;
 import org.apache.tools.ant.Task;
+import org.i18nchecker.impl.Baseline;
+import org.i18nchecker.impl.CatalogEntityResolver;
+import org.i18nchecker.impl.ExecutionMode;
 import org.i18nchecker.impl.I18NUtils;
+import org.i18nchecker.impl.ModuleHistory;
+import org.i18nchecker.impl.ModuleModel;
+import org.i18nchecker.impl.ModuleResults;
 import org.i18nchecker.impl.ModuleScanner;
+import org.i18nchecker.impl.ModuleScheduler;
+import org.i18nchecker.impl.RepositorySnapshot;
+import org.i18nchecker.impl.ScanProfile;
+import org.i18nchecker.impl.ShardResults;
 import org.i18nchecker.impl.TranslatedData;
 import org.xml.sax.EntityResolver;
 
@@ -54,6 +61,11 @@ import org.xml.sax.EntityResolver;
  * <li>Mode 4 - Run as unit test verifying that there are no regressions in I18N.
  *     runAsTest method should be called and it takes all required parameters.</li>
  * </ul>
+ * Mode 1 can be split among more processes: each process scans one shard of modules
+ * (shardIndex, shardCount and shardResult properties) and the last one merges results
+ * of all shards (mergeResults property) and prints them as if all modules were scanned at once.
+ * Modes 1 - 3 can run off a snapshot of the scanned repository (snapshot property) as long as
+ * no scanned file changed since the snapshot was written.
  *
  * @author Petr Hamernik
  */
@@ -69,10 +81,32 @@ public final class I18nChecker extends Task {
     private File exportToFile;
     private File importFromFile;
 
-    private EntityResolver resolver;
+    private File xmlCatalog;
+    private boolean loadDtd = true;
 
     private String moduleFilter;
 
+    /** 0 until set, 1 thread or {@link ModuleScheduler#DEFAULT_VIRTUAL_FILES} files in virtual mode */
+    private int threads;
+    private ExecutionMode executionMode;
+    private boolean checkTranslations;
+    private long prefetchWindow;
+    private List<File> classes;
+
+    private File baseline;
+    private boolean updateBaseline;
+
+    private File history;
+    private boolean streaming;
+    private File snapshot;
+    private File profile;
+    private int profileTop = 10;
+
+    private int shardIndex;
+    private int shardCount = 1;
+    private File shardResult;
+    private List<File> mergeResults;
+
     /** Mandatory property - root of repository */
     public void setSrcDir(File f) {
         repoRoot = f;
@@ -109,52 +143,301 @@ public final class I18nChecker extends Task {
         this.moduleFilter = moduleFilter;
     }
 
+    /**
+     * Number of modules scanned in parallel. Default is 1.
+     * Modules are always discovered in parallel and reported in the same order.
+     * In virtual mode the number of files parsed at the same time instead.
+     */
+    public void setThreads(int threads) {
+        this.threads = threads;
+    }
+
+    /**
+     * How modules are scanned and files parsed: "serial", "platform" or "virtual".
+     * Default is serial for one thread and platform otherwise. In virtual mode every file
+     * is parsed in its own virtual thread and {@link #setThreads} limits the number of files
+     * parsed at the same time, 64 by default. Virtual mode suits slow network file systems
+     * and needs Java 21, the build fails on older JVMs.
+     */
+    public void setExecutionMode(String mode) {
+        try {
+            this.executionMode = ExecutionMode.valueOf(mode.trim().toUpperCase(Locale.ENGLISH));
+        } catch (IllegalArgumentException ex) {
+            throw new BuildException("Unknown execution mode: " + mode);
+        }
+    }
+
+    /**
+     * Verify translated bundles too? False by default. Reports translated keys which are
+     * not in the primary bundle and translations with different MessageFormat arguments.
+     */
+    public void setCheckTranslations(boolean checkTranslations) {
+        this.checkTranslations = checkTranslations;
+    }
+
+    /**
+     * Number of bytes of files read ahead of parsers, 0 (default) reads each file when it is parsed.
+     * Helps when the scan waits for a slow or cold file system, e.g. 16777216.
+     */
+    public void setPrefetchWindow(long prefetchWindow) {
+        this.prefetchWindow = prefetchWindow;
+    }
+
+    /**
+     * Comma separated directories with compiled classes or jars, directories are searched for jars too.
+     * String constants of a class mark keys of the bundle in the same package as used, so keys used
+     * only by modules available as jars are not reported as unused. Classes inside of a module
+     * directory mark keys of that module only. Checks of NOI18N comments still use Java sources.
+     */
+    public void setClasses(String files) {
+        classes = new ArrayList<File>();
+        for (String file : files.split(",")) {
+            classes.add(getProject().resolveFile(file.trim()));
+        }
+    }
+
+    /**
+     * File with known problems. When set, the build fails if there is a problem which is not in the file.
+     * Problems are identified by file, type and message, not by line number.
+     */
+    public void setBaseline(File baseline) {
+        this.baseline = baseline;
+    }
+
+    /** Store all current problems into the baseline file instead of comparing with it */
+    public void setUpdateBaseline(boolean updateBaseline) {
+        this.updateBaseline = updateBaseline;
+    }
+
+    /**
+     * File with durations of module scans from previous runs, updated by each run.
+     * The most expensive modules are scanned first, so parallel scan does not wait for a big module
+     * which started last. Modules not scanned yet are ordered by the size of their files.
+     */
+    public void setHistory(File history) {
+        this.history = history;
+    }
+
+    /**
+     * Release models of each module as soon as it is printed, exported or translated? False by default.
+     * Memory is then proportional to the largest modules rather than to the whole repository.
+     * Can't be used with shards.
+     */
+    public void setStreaming(boolean streaming) {
+        this.streaming = streaming;
+    }
+
+    /**
+     * Snapshot of scanned modules. When the snapshot is up to date (written by a scan of the same
+     * directories with the same options and no scanned file or directory changed since), modules
+     * are read from it instead of being scanned. Otherwise the snapshot is written after the scan.
+     * Can't be used with shards, streaming or classes.
+     */
+    public void setSnapshot(File snapshot) {
+        this.snapshot = snapshot;
+    }
+
+    /**
+     * JSON file for the profile of the scan. When set, time, size and number of strings of every
+     * parsed file are recorded, and the slowest files, the largest bundles and the packages
+     * with the most findings are printed and stored to the file.
+     */
+    public void setProfile(File profile) {
+        this.profile = profile;
+    }
+
+    /** Number of entries in each list of the profile, 10 by default */
+    public void setProfileTop(int profileTop) {
+        this.profileTop = profileTop;
+    }
+
+    /** Shard scanned by this task, from 0 to shardCount - 1 */
+    public void setShardIndex(int shardIndex) {
+        this.shardIndex = shardIndex;
+    }
+
+    /**
+     * Number of shards. Modules are assigned to shards by their size, the same way in every process.
+     * Results of the shard are stored into shardResult file instead of being printed.
+     */
+    public void setShardCount(int shardCount) {
+        this.shardCount = shardCount;
+    }
+
+    /** File for results of the shard */
+    public void setShardResult(File shardResult) {
+        this.shardResult = shardResult;
+    }
+
+    /**
+     * Comma separated result files of all shards. Nothing is scanned, results are merged and printed
+     * (and compared with the baseline) the same way as results of a scan of all modules.
+     */
+    public void setMergeResults(String files) {
+        mergeResults = new ArrayList<File>();
+        for (String file : files.split(",")) {
+            mergeResults.add(getProject().resolveFile(file.trim()));
+        }
+    }
+
+    /**
+     * OASIS XML catalog used to resolve DTDs of module layers. DTDs bundled with this tool
+     * are used when not set. Nothing is ever downloaded from the network.
+     */
     public void setXmlCatalog(File xmlCatalog) {
-        String [] catalogs = { xmlCatalog.toURI().toString() };
-        XMLCatalogResolver xmlR = new XMLCatalogResolver();
-        xmlR.setPreferPublic(true);
-        xmlR.setCatalogList(catalogs);
-        resolver = xmlR;
+        this.xmlCatalog = xmlCatalog;
+    }
+
+    /**
+     * Load external DTDs when parsing module layers? True by default.
+     * Layers can be checked without their DTDs, so false skips all DTD resolution.
+     */
+    public void setLoadDtd(boolean loadDtd) {
+        this.loadDtd = loadDtd;
     }
 
     @Override
     public void execute() throws BuildException {
         try {
+            if (mergeResults != null) {
+                ShardResults merged = ShardResults.read(repoRoot, mergeResults);
+                log("Merged results of " + merged.getModules().size() + " modules from " + mergeResults.size() + " shards.");
+                ErrorPrinter printer = new ErrorPrinter();
+                for (ModuleResults module : merged.getModules()) {
+                    printer.print(module);
+                }
+                printer.finish();
+                if (baseline != null) {
+                    checkBaseline(merged.createBaseline(repoRoot));
+                }
+                return;
+            }
+            if (shardCount > 1 && (shardResult == null || language != null || streaming)) {
+                throw new BuildException("Sharded scan requires 'shardResult', can only check modules and can't be streamed.");
+            }
+            if (language != null && repoRoot == null) {
+                throw new BuildException("No 'repoRoot' specified.");
+            }
+            if (snapshot != null && (shardCount > 1 || streaming || classes != null)) {
+                throw new BuildException("Snapshot can't be used with shards, streaming or classes.");
+            }
+            if (snapshot != null && snapshot.isFile()) {
+                RepositorySnapshot loaded = RepositorySnapshot.open(snapshot);
+                if (loaded.isFresh(repoRoot, topDirsToScan, moduleFilter, checkTranslations)) {
+                    log("Using snapshot " + snapshot + " of " + loaded.getModules().size() + " modules.");
+                    Mode mode = createMode();
+                    for (RepositorySnapshot.Module module : loaded.getModules()) {
+                        mode.accept(module);
+                    }
+                    mode.finish();
+                    if (language == null && baseline != null) {
+                        checkBaseline(loaded.createBaseline(repoRoot));
+                    }
+                    return;
+                }
+                log("Snapshot " + snapshot + " is out of date.");
+            }
             log("Scanning modules...");
 
-            List<ModuleScanner> scanners = new ArrayList<ModuleScanner>();
-            collectScanners(scanners, repoRoot, topDirsToScan, moduleFilter, resolver);
-
-            log("Collected " + scanners.size() + " scanners.");
+            EntityResolver resolver = xmlCatalog != null
+                    ? new CatalogEntityResolver(xmlCatalog.toURI().toURL(), loadDtd)
+                    : new CatalogEntityResolver(loadDtd);
+
+            ModuleScheduler scheduler = getScheduler();
+            ModuleHistory moduleHistory = history != null ? ModuleHistory.read(repoRoot, history) : null;
+            scheduler.setHistory(moduleHistory);
+            ScanProfile scanProfile = profile != null ? new ScanProfile() : null;
+            scheduler.setProfile(scanProfile);
+            Mode mode = createMode();
+            List<ModuleScanner> scanners;
+            if (streaming) {
+                try {
+                    scanners = scheduler.scanStreaming(repoRoot, topDirsToScan, moduleFilter, resolver, mode);
+                } finally {
+                    scheduler.shutdown();
+                }
+            } else {
+                scanners = scanModules(repoRoot, topDirsToScan, moduleFilter, resolver, scheduler);
+            }
+            if (moduleHistory != null) {
+                moduleHistory.write(history);
+            }
 
-            for (ModuleScanner s : scanners) {
-                log("Scanning " + s.getRoot().getCanonicalPath());
-                s.scan();
+            log("Scanned " + scanners.size() + " modules.");
+            if (snapshot != null) {
+                RepositorySnapshot.write(snapshot, repoRoot, topDirsToScan, moduleFilter, checkTranslations, scheduler, scanners);
+                log("Snapshot stored to " + snapshot);
             }
 
-            if (language == null) {
-                printErrors(scanners);
+            if (shardCount > 1) {
+                ShardResults.write(shardResult, repoRoot, scheduler.getShardPlan(), scanners);
+                log("Results of shard " + shardIndex + " of " + shardCount + " stored to " + shardResult);
             } else {
-                if (repoRoot == null) {
-                    throw new BuildException("No 'repoRoot' specified.");
+                if (!streaming) {
+                    for (ModuleScanner moduleScanner : scanners) {
+                        mode.moduleScanned(moduleScanner);
+                    }
                 }
-                if (exportToFile != null) {
-                    exportToFile(scanners, language, exportToFile);
-                } else if (importFromFile != null) {
-                    applyTranslation(scanners, language, importFromFile);
+                mode.finish();
+                if (language == null && baseline != null) {
+                    checkBaseline(Baseline.create(repoRoot, scanners));
                 }
             }
+            if (scanProfile != null) {
+                log(scanProfile.format(scanners, profileTop));
+                scanProfile.writeJson(profile, scanners, profileTop);
+                log("Profile of " + scanProfile.getRecordedFiles() + " files stored to " + profile);
+            }
+            log(scheduler.getMetrics().toString(), Project.MSG_VERBOSE);
             log("Scanning modules finished successfully!");
         } catch (IOException exc) {
             throw new BuildException(exc);
         }
     }
 
+    /** What is done with scanned modules, one by one in order of discovery */
+    private abstract class Mode implements ModuleScheduler.ModuleConsumer {
+        public void moduleScanned(ModuleScanner scanner) throws IOException {
+            accept(scanner);
+        }
+
+        /** Called for each module, scanned or read from a snapshot */
+        abstract void accept(ModuleModel module) throws IOException;
+
+        /** Called after all modules are consumed */
+        abstract void finish() throws IOException;
+    }
+
+    /** Mode of this task, null for sharded scan which only stores results */
+    private Mode createMode() throws IOException {
+        if (shardCount > 1) {
+            return null;
+        } else if (language == null) {
+            return new ErrorPrinter();
+        } else if (exportToFile != null) {
+            return new Exporter();
+        } else if (importFromFile != null) {
+            return new TranslationApplier();
+        }
+        return new Mode() {
+            void accept(ModuleModel module) {
+            }
+
+            void finish() {
+            }
+        };
+    }
+
     /** Mode 1 - print all I18N errors to console */
-    private void printErrors(List<? extends ModuleScanner> scanners) throws IOException {
-        StringBuilder summary = new StringBuilder();
-        int total = 0;
-        for (ModuleScanner moduleScanner: scanners) {
+    private final class ErrorPrinter extends Mode {
+        private final StringBuilder summary = new StringBuilder();
+        private int total;
+
+        void accept(ModuleModel module) throws IOException {
+            print(module);
+        }
+
+        void print(ModuleResults moduleScanner) throws IOException {
             moduleScanner.printResults(true);
             int problemsCount = moduleScanner.getProblemsCount();
             total += problemsCount;
@@ -166,42 +449,73 @@ public final class I18nChecker extends Task {
                     .append("\n");
             }
         }
-        log("\n\nSummary:\n");
-        log(summary.toString());
-        log("total=" + total);
+
+        void finish() {
+            log("\n\nSummary:\n");
+            log(summary.toString());
+            log("total=" + total);
+        }
+    }
+
+    /** Compare current problems with the baseline file or update it */
+    private void checkBaseline(Baseline current) throws IOException {
+        if (updateBaseline) {
+            current.write(baseline);
+            log("Baseline " + baseline + " updated, " + current.size() + " known problems.");
+            return;
+        }
+        Baseline known = Baseline.read(baseline);
+        List<String> newProblems = current.findNew(known);
+        log("Baseline " + baseline + ": " + known.size() + " known problems, "
+                + current.countFixed(known) + " of them fixed, " + newProblems.size() + " new.");
+        if (!newProblems.isEmpty()) {
+            for (String problem : newProblems) {
+                log(problem, Project.MSG_ERR);
+            }
+            throw new BuildException(newProblems.size() + " new I18N problems not in baseline " + baseline);
+        }
     }
 
     /** Mode 2 - prepare CSV for translation */
-    private void exportToFile(
-            List<? extends ModuleScanner> scanners, String language, File exportToFile
-    ) throws IOException {
-        List<String> exportedStrings = new LinkedList<String>();
-        exportedStrings.add(TranslatedData.getCSVFileHeader());
+    private final class Exporter extends Mode {
+        private final List<String> exportedStrings = new LinkedList<String>();
 
-        for (ModuleScanner moduleScanner : scanners) {
+        Exporter() {
+            exportedStrings.add(TranslatedData.getCSVFileHeader());
+        }
+
+        void accept(ModuleModel moduleScanner) throws IOException {
             moduleScanner.printResults(false);
             String relativePath = relativePath(repoRoot, moduleScanner.getRoot());
             moduleScanner.bundle2csv(language, exportedStrings, relativePath);
         }
 
-        log("Exporting to: " + exportToFile);
-        I18NUtils.storeToFile(exportToFile, exportedStrings);
+        void finish() throws IOException {
+            log("Exporting to: " + exportToFile);
+            I18NUtils.storeToFile(exportToFile, exportedStrings);
+        }
     }
 
     /** Mode 3 - use translation from CSV and apply it into appropriate resource bundle files */
-    private void applyTranslation(
-            List<? extends ModuleScanner> scanners, String language, File importFromFile
-    ) throws IOException {
-        TranslatedData translatedData = new TranslatedData(importFromFile);
-        List<String> header = I18NUtils.createTranslationFilesHeader(getClass().getName(), repoRoot, importFromFile);
+    private final class TranslationApplier extends Mode {
+        private final TranslatedData translatedData;
+        private final List<String> header;
+
+        TranslationApplier() throws IOException {
+            translatedData = new TranslatedData(importFromFile);
+            header = I18NUtils.createTranslationFilesHeader(I18nChecker.class.getName(), repoRoot, importFromFile);
+        }
 
-        for (ModuleScanner moduleScanner : scanners) {
+        void accept(ModuleModel moduleScanner) throws IOException {
             String relativePath = relativePath(repoRoot, moduleScanner.getRoot());
             Map<String, Map<String, String>> translatedModule = translatedData.getTranslationsForModule(relativePath);
             if (translatedModule != null) {
                 moduleScanner.csv2bundle(language, header, translatedModule);
             }
         }
+
+        void finish() {
+        }
     }
 
 
@@ -222,12 +536,52 @@ public final class I18nChecker extends Task {
             File repoRoot, String topDirs, Map<String, Integer> unfinishedModules, EntityResolver resolver
     ) throws IOException {
 
-        List<ModuleScanner> scanners = new ArrayList<ModuleScanner>();
-        collectScanners(scanners, repoRoot, Arrays.asList(topDirs.split(",")), null, resolver);
+        List<ModuleScanner> scanners = scanModules(
+                repoRoot, Arrays.asList(topDirs.split(",")), null, resolver, new ModuleScheduler(1));
+        return verify(repoRoot, scanners, unfinishedModules);
+    }
+
+    /**
+     * Mode 4 sharded - scan one shard of modules and store its results.
+     * {@link #runAsTest(File, List, Map)} then verifies results of all shards.
+     *
+     * @param repoRoot The root of the source code repository.
+     * @param topDirs A list of folder to scan for NetBeans or Maven projects.
+     * @param shardIndex shard scanned by this call, from 0 to shardCount - 1
+     * @param shardCount number of shards
+     * @param shardResult file for results of the shard
+     * @throws IOException If an I/O error occurs while scanning.
+     */
+    public static void runShard(
+            File repoRoot, String topDirs, int shardIndex, int shardCount, File shardResult, EntityResolver resolver
+    ) throws IOException {
+        ModuleScheduler scheduler = new ModuleScheduler(1);
+        scheduler.setShard(shardIndex, shardCount);
+        List<ModuleScanner> scanners = scanModules(repoRoot, Arrays.asList(topDirs.split(",")), null, resolver, scheduler);
+        ShardResults.write(shardResult, repoRoot, scheduler.getShardPlan(), scanners);
+    }
+
+    /**
+     * Mode 4 merged - like {@link #runAsTest(File, String, Map, EntityResolver)}, but modules are not scanned,
+     * results stored by {@link #runShard} for all shards are verified instead.
+     *
+     * @param repoRoot The root of the source code repository.
+     * @param shardResults results of all shards
+     * @param unfinishedModules The map with relative paths and expected maximum error counts.
+     * @return A list of errors.
+     * @throws IOException If results can't be read or some shard is missing.
+     */
+    public static String runAsTest(
+            File repoRoot, List<File> shardResults, Map<String, Integer> unfinishedModules
+    ) throws IOException {
+        return verify(repoRoot, ShardResults.read(repoRoot, shardResults).getModules(), unfinishedModules);
+    }
 
+    private static String verify(
+            File repoRoot, List<? extends ModuleResults> scanners, Map<String, Integer> unfinishedModules
+    ) throws IOException {
         StringBuilder result = new StringBuilder();
-        for (ModuleScanner moduleScanner: scanners) {
-            moduleScanner.scan();
+        for (ModuleResults moduleScanner: scanners) {
             String relativePath = relativePath(repoRoot, moduleScanner.getRoot());
             int expectedMaximumProblems = unfinishedModules.containsKey(relativePath)
                     ? unfinishedModules.get(relativePath)
@@ -244,36 +598,121 @@ public final class I18nChecker extends Task {
         return result.toString();
     }
 
-    private static void collectScanners(
-            List<ModuleScanner> scanners, File repoRoot, Iterable<String> topDirsToScan, String moduleFilter, EntityResolver resolver
+    /**
+     * Mode 4 with fail-fast - like {@link #runAsTest(File, String, Map, EntityResolver)}, but scanning stops
+     * at the first module with more problems than expected and its results are not printed.
+     * Modules are scanned in parallel, the ones which failed in recent runs first.
+     *
+     * @param repoRoot The root of the source code repository.
+     * @param topDirs A list of folder to scan for NetBeans or Maven projects.
+     * @param unfinishedModules The map with relative paths and expected maximum error counts.
+     * @param historyFile results of previous runs, updated by this run, may be null
+     * @return An error of the first failed module or empty string.
+     * @throws IOException If an I/O error occurs while scanning.
+     */
+    public static String runAsTest(
+            final File repoRoot, String topDirs, final Map<String, Integer> unfinishedModules,
+            EntityResolver resolver, File historyFile
     ) throws IOException {
-        for (String topDirToScan : topDirsToScan) {
-            File topDir = new File(repoRoot, topDirToScan);
-            if (!topDir.exists() || !topDir.isDirectory()
-                || (moduleFilter != null && moduleFilter.length() > 0 && !topDirToScan.contains(moduleFilter))
-            ) {
-                return;
+        ModuleHistory history = historyFile != null
+                ? ModuleHistory.read(repoRoot, historyFile)
+                : new ModuleHistory(repoRoot);
+        ModuleScheduler scheduler = new ModuleScheduler(Runtime.getRuntime().availableProcessors());
+        scheduler.setHistory(history);
+        scheduler.setFailFast(new ModuleScheduler.FailFast() {
+            public boolean isFailed(ModuleScanner scanner, int minimumProblems) throws IOException {
+                return minimumProblems > expectedProblems(repoRoot, scanner, unfinishedModules);
             }
+        });
+        List<ModuleScanner> scanners = scanModules(repoRoot, Arrays.asList(topDirs.split(",")), null, resolver, scheduler);
 
-            for (File f : topDir.listFiles()) {
-                if (moduleFilter != null && moduleFilter.length() > 0 && !f.getName().contains(moduleFilter)) {
-                    System.out.println("Filtered out: " + f.getCanonicalPath());
-                    continue;
-                }
-                if (f.isFile()) {
-                    continue;
-                }
-                if (isNbmManifest(new File(f, "manifest.mf"))) {
-                    scanners.add(new ModuleScanner(f, true, resolver));
-                } else if (isMavenProject(new File(f, "pom.xml"))) {
-                    scanners.add(new ModuleScanner(new File(f, "/src/main/java"), false, resolver));
-                } else if (new File(f, "src").exists()) {
-                    scanners.add(new ModuleScanner(new File(f, "src"), false, resolver));
-                } else {
-                    System.out.println("Can't auto-detect sources, ignoring: " + f.getCanonicalPath());
-                }
+        StringBuilder result = new StringBuilder();
+        for (ModuleScanner moduleScanner: scanners) {
+            int expectedMaximumProblems = expectedProblems(repoRoot, moduleScanner, unfinishedModules);
+            int actualProblems = moduleScanner.getProblemsCount();
+            history.recordResult(moduleScanner, actualProblems > expectedMaximumProblems);
+            if (actualProblems > expectedMaximumProblems) {
+                result.append(TEST_ERROR.format(new Object[] {
+                    relativePath(repoRoot, moduleScanner.getRoot()), actualProblems, expectedMaximumProblems
+                }));
+            }
+        }
+        if (historyFile != null) {
+            history.write(historyFile);
+        }
+        return result.toString();
+    }
+
+    private static int expectedProblems(
+            File repoRoot, ModuleResults scanner, Map<String, Integer> unfinishedModules
+    ) throws IOException {
+        Integer expected = unfinishedModules.get(relativePath(repoRoot, scanner.getRoot()));
+        return expected != null ? expected : 0;
+    }
+
+    /**
+     * Mode 4 with baseline - like {@link #runAsTest(File, String, Map, EntityResolver)}, but only problems
+     * which are not in the baseline file are errors.
+     *
+     * @param repoRoot The root of the source code repository.
+     * @param topDirs A list of folder to scan for NetBeans or Maven projects.
+     * @param baseline baseline file, missing file is an empty baseline
+     * @param update store current problems into the baseline instead of comparing
+     * @return new problems, one per line, empty if there is none
+     * @throws IOException If an I/O error occurs while scanning.
+     */
+    public static String runAsTest(
+            File repoRoot, String topDirs, File baseline, boolean update, EntityResolver resolver
+    ) throws IOException {
+        List<ModuleScanner> scanners = scanModules(
+                repoRoot, Arrays.asList(topDirs.split(",")), null, resolver, new ModuleScheduler(1));
+        Baseline current = Baseline.create(repoRoot, scanners);
+        if (update) {
+            current.write(baseline);
+            return "";
+        }
+        StringBuilder result = new StringBuilder();
+        for (String problem : current.findNew(Baseline.read(baseline))) {
+            result.append(problem).append('\n');
+        }
+        return result.toString();
+    }
+
+    private ModuleScheduler getScheduler() {
+        ModuleScheduler scheduler;
+        try {
+            scheduler = executionMode != null
+                    ? new ModuleScheduler(executionMode, threads)
+                    : new ModuleScheduler(threads);
+        } catch (UnsupportedOperationException ex) {
+            throw new BuildException(ex.getMessage());
+        }
+        scheduler.setCheckTranslations(checkTranslations);
+        scheduler.setRecordStamps(snapshot != null);
+        scheduler.setPrefetchWindow(prefetchWindow);
+        scheduler.setLog(new ModuleScheduler.Log() {
+            public void log(String message) {
+                I18nChecker.this.log(message);
+            }
+        });
+        scheduler.setClassRoots(classes);
+        if (shardCount > 1) {
+            try {
+                scheduler.setShard(shardIndex, shardCount);
+            } catch (IllegalArgumentException ex) {
+                throw new BuildException(ex.getMessage());
             }
         }
+        return scheduler;
+    }
+
+    private static List<ModuleScanner> scanModules(File repoRoot, Iterable<String> topDirsToScan,
+            String moduleFilter, EntityResolver resolver, ModuleScheduler scheduler) throws IOException {
+        try {
+            return scheduler.scan(repoRoot, topDirsToScan, moduleFilter, resolver);
+        } finally {
+            scheduler.shutdown();
+        }
     }
 
     private static String relativePath(File ancestor, File file) throws IOException {
@@ -301,21 +740,4 @@ public final class I18nChecker extends Task {
             return sb.toString();
         }
     }
-
-    private static boolean isNbmManifest(File manifest) throws IOException {
-        if (manifest.exists() && manifest.isFile()) {
-            InputStream is = new FileInputStream(manifest);
-            try {
-                Manifest m = new Manifest(is);
-                return m.getMainAttributes().containsKey(new Attributes.Name("OpenIDE-Module"));
-            } finally {
-                is.close();
-            }
-        }
-        return false;
-    }
-
-    private static boolean isMavenProject(File pom) throws IOException {
-        return pom.exists() && pom.isFile();
-    }
 }
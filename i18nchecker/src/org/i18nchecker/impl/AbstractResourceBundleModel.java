@@ -17,11 +17,10 @@
 package org.i18nchecker.impl;
 
 import java.io.BufferedReader;
-import java.io.FileInputStream;
-import java.io.FileReader;
 import java.io.IOException;
 import java.io.InputStreamReader;
 import java.text.MessageFormat;
+import java.util.HashMap;
 import java.util.Map;
 import java.util.TreeMap;
 
@@ -30,10 +29,11 @@ import java.util.TreeMap;
  *
  * @author Petr Hamernik
  */
-abstract class AbstractResourceBundleModel<T extends AbstractRBInfo> {
+abstract class AbstractResourceBundleModel<T extends AbstractRBInfo> implements FileModel {
     private static final String YESI18N = "YESI18N";
 
     private String fileName;
+    /** Keys are pooled strings, so lookups by pooled keys end at identity check in equals */
     protected Map<String, T> keys;
 
     public AbstractResourceBundleModel(String fileName) {
@@ -45,18 +45,18 @@ abstract class AbstractResourceBundleModel<T extends AbstractRBInfo> {
     }
 
     /** Parse resource bundle file and fill keys */
-    public void parse() throws IOException {
-        keys = new TreeMap<String, T>();
+    public void parse(ScanContext context) throws IOException {
+        long start = System.nanoTime();
+        Map<String, T> parsed = new HashMap<String, T>();
+        StringPool pool = context.getStringPool();
 
-        FileInputStream fis = new FileInputStream(fileName);
-        InputStreamReader in = new InputStreamReader(fis, "UTF-8"); // NOI18N
-
-        FileReader fr = new FileReader(fileName);
+        InputStreamReader in = new InputStreamReader(context.getFileSource().open(fileName), "UTF-8"); // NOI18N
         try {
             BufferedReader br = new BufferedReader(in);
 
             T lastInfo = null;
             int lineCount = 0;
+            int chars = 0;
             boolean insideMultiLineKey = false;
             boolean yesI18N = false;
             for (;;) {
@@ -65,6 +65,7 @@ abstract class AbstractResourceBundleModel<T extends AbstractRBInfo> {
                     break;
                 }
                 lineCount++;
+                chars += line.length() + 1;
                 if (insideMultiLineKey) {
                     if (!line.trim().endsWith("\\")) {
                         insideMultiLineKey = false;
@@ -90,10 +91,14 @@ abstract class AbstractResourceBundleModel<T extends AbstractRBInfo> {
                                 new Object[] { fileName, lineCount, line } );
                         System.out.println(msg);
                     } else {
-                        String key = line.substring(0, indexOfEqual).trim();
-                        String value = line.substring(indexOfEqual + 1);
+                        int keyEnd = indexOfEqual;
+                        while (line.charAt(keyEnd - 1) <= ' ') {
+                            keyEnd--;
+                        }
+                        String key = pool.intern(line, 0, keyEnd);
+                        String value = pool.intern(line, indexOfEqual + 1, line.length());
                         lastInfo = createInfo(value, lineCount, yesI18N);
-                        keys.put(key, lastInfo);
+                        parsed.put(key, lastInfo);
                     }
                 }
 
@@ -104,11 +109,25 @@ abstract class AbstractResourceBundleModel<T extends AbstractRBInfo> {
                     lastInfo = null;
                 }
             }
+            keys = parsed;
+            context.getMetrics().fileParsed(getFileType(), start);
+            ScanProfile profile = context.getProfile();
+            if (profile != null) {
+                profile.fileParsed(getFileType(), fileName, start, chars, parsed.size());
+            }
         } finally {
-            fr.close();
+            in.close();
         }
     }
 
+    /** Type of this bundle */
+    abstract FileType getFileType();
+
+    /** Keys in alphabetical order for reports and exports */
+    protected Map<String, T> sortedKeys() {
+        return new TreeMap<String, T>(keys);
+    }
+
     /** Create a own specific instance of Info object. One info object represents
      * one value in resource bundles.
      *
@@ -0,0 +1,214 @@
+/**
+*   Copyright 2010-2011 Petr Hamernik
+*
+*   Licensed under the Apache License, Version 2.0 (the "License");
+*   you may not use this file except in compliance with the License.
+*   You may obtain a copy of the License at
+*
+*       http://www.apache.org/licenses/LICENSE-2.0
+*
+*   Unless required by applicable law or agreed to in writing, software
+*   distributed under the License is distributed on an "AS IS" BASIS,
+*   WITHOUT WARRANTIES OR CONDITIONS OF ANY KIND, either express or implied.
+*   See the License for the specific language governing permissions and
+*   limitations under the License.
+*/
+package org.i18nchecker.impl;
+
+import java.io.BufferedInputStream;
+import java.io.BufferedOutputStream;
+import java.io.DataInputStream;
+import java.io.DataOutputStream;
+import java.io.File;
+import java.io.FileInputStream;
+import java.io.FileNotFoundException;
+import java.io.FileOutputStream;
+import java.io.IOException;
+import java.util.ArrayList;
+import java.util.Arrays;
+import java.util.Comparator;
+import java.util.HashMap;
+import java.util.List;
+import java.util.Map;
+
+/**
+ * Set of known findings stored as sorted 64-bit fingerprints. A fingerprint is computed
+ * from the type of the finding, its file relative to the repository root, its message and
+ * the order among findings with the same type, file and message. Line numbers are not used,
+ * so editing other parts of a file does not make its known findings new.
+ *
+ * @author agent
+ */
+public final class Baseline {
+
+    private static final int MAGIC = 0x49313842; // "I18B"
+    private static final int VERSION = 1;
+
+    /** FNV-1a 64-bit parameters */
+    private static final long OFFSET = 0xcbf29ce484222325L;
+    private static final long PRIME = 0x100000001b3L;
+
+    /** Sorted fingerprints */
+    private final long[] fingerprints;
+    /** Findings in the order of fingerprints, null for baselines read from file */
+    private final Finding[] findings;
+
+    private Baseline(long[] fingerprints, Finding[] findings) {
+        this.fingerprints = fingerprints;
+        this.findings = findings;
+    }
+
+    /**
+     * Baseline of current findings of scanned modules.
+     *
+     * @param repoRoot file names are stored relative to this directory
+     */
+    public static Baseline create(File repoRoot, List<ModuleScanner> scanners) throws IOException {
+        List<Finding> all = new ArrayList<Finding>();
+        for (ModuleScanner scanner : scanners) {
+            for (List<Finding> ofType : scanner.getFindings().values()) {
+                all.addAll(ofType);
+            }
+        }
+        return fromFindings(repoRoot, all);
+    }
+
+    static Baseline fromFindings(File repoRoot, List<Finding> list) throws IOException {
+        String[] prefixes = {
+            repoRoot.getAbsolutePath() + File.separator,
+            repoRoot.getCanonicalPath() + File.separator
+        };
+        Map<Long, Integer> ordinals = new HashMap<Long, Integer>();
+        final long[] unsorted = new long[list.size()];
+        Integer[] order = new Integer[list.size()];
+        for (int i = 0; i < unsorted.length; i++) {
+            Finding finding = list.get(i);
+            long hash = hash(OFFSET, finding.getType().name());
+            hash = hash(hash, relativize(finding.getFileName(), prefixes));
+            hash = hash(hash, finding.getMessage());
+            Integer ordinal = ordinals.get(hash);
+            ordinal = ordinal == null ? 0 : ordinal + 1;
+            ordinals.put(hash, ordinal);
+            unsorted[i] = mix(hash ^ ordinal);
+            order[i] = i;
+        }
+        Arrays.sort(order, new Comparator<Integer>() {
+            public int compare(Integer a, Integer b) {
+                long x = unsorted[a];
+                long y = unsorted[b];
+                return x < y ? -1 : (x == y ? 0 : 1);
+            }
+        });
+        long[] fingerprints = new long[order.length];
+        Finding[] findings = new Finding[order.length];
+        for (int i = 0; i < order.length; i++) {
+            fingerprints[i] = unsorted[order[i]];
+            findings[i] = list.get(order[i]);
+        }
+        return new Baseline(fingerprints, findings);
+    }
+
+    /**
+     * Read the baseline file.
+     *
+     * @return the baseline, empty if the file does not exist
+     */
+    public static Baseline read(File file) throws IOException {
+        DataInputStream in;
+        try {
+            in = new DataInputStream(new BufferedInputStream(new FileInputStream(file)));
+        } catch (FileNotFoundException ex) {
+            return new Baseline(new long[0], null);
+        }
+        try {
+            if (in.readInt() != MAGIC || in.readInt() != VERSION) {
+                throw new IOException("Not a baseline file: " + file);
+            }
+            long[] fingerprints = new long[in.readInt()];
+            for (int i = 0; i < fingerprints.length; i++) {
+                fingerprints[i] = in.readLong();
+            }
+            return new Baseline(fingerprints, null);
+        } finally {
+            in.close();
+        }
+    }
+
+    /** Store the baseline, 8 bytes per finding */
+    public void write(File file) throws IOException {
+        DataOutputStream out = new DataOutputStream(new BufferedOutputStream(new FileOutputStream(file)));
+        try {
+            out.writeInt(MAGIC);
+            out.writeInt(VERSION);
+            out.writeInt(fingerprints.length);
+            for (long fingerprint : fingerprints) {
+                out.writeLong(fingerprint);
+            }
+        } finally {
+            out.close();
+        }
+    }
+
+    /** Number of findings */
+    public int size() {
+        return fingerprints.length;
+    }
+
+    /**
+     * Findings of this baseline which are not in the older one.
+     * Both sorted fingerprint arrays are walked once.
+     *
+     * @param older e.g. baseline read from file
+     * @return new findings formatted as "file:line: message"
+     */
+    public List<String> findNew(Baseline older) {
+        List<String> result = new ArrayList<String>();
+        long[] known = older.fingerprints;
+        int j = 0;
+        for (int i = 0; i < fingerprints.length; i++) {
+            while (j < known.length && known[j] < fingerprints[i]) {
+                j++;
+            }
+            if (j < known.length && known[j] == fingerprints[i]) {
+                j++;
+            } else {
+                result.add(findings != null ? findings[i].toString() : Long.toHexString(fingerprints[i]));
+            }
+        }
+        return result;
+    }
+
+    /** Number of findings of the older baseline which are not in this one anymore */
+    public int countFixed(Baseline older) {
+        return older.size() - (size() - findNew(older).size());
+    }
+
+    private static String relativize(String fileName, String[] prefixes) {
+        for (String prefix : prefixes) {
+            if (fileName.startsWith(prefix)) {
+                return fileName.substring(prefix.length()).replace(File.separatorChar, '/');
+            }
+        }
+        return fileName.replace(File.separatorChar, '/');
+    }
+
+    /** FNV-1a of the string followed by a separator */
+    private static long hash(long hash, String str) {
+        for (int i = 0; i < str.length(); i++) {
+            char c = str.charAt(i);
+            hash = (hash ^ (c & 0xff)) * PRIME;
+            hash = (hash ^ (c >>> 8)) * PRIME;
+        }
+        return (hash ^ 0xff) * PRIME;
+    }
+
+    /** Final avalanche of MurmurHash3 */
+    private static long mix(long hash) {
+        hash ^= hash >>> 33;
+        hash *= 0xff51afd7ed558ccdL;
+        hash ^= hash >>> 33;
+        hash *= 0xc4ceb9fe1a85ec53L;
+        hash ^= hash >>> 33;
+        return hash;
+    }
+}
@@ -0,0 +1,81 @@
+/**
+*   Copyright 2010-2011 Petr Hamernik
+*
+*   Licensed under the Apache License, Version 2.0 (the "License");
+*   you may not use this file except in compliance with the License.
+*   You may obtain a copy of the License at
+*
+*       http://www.apache.org/licenses/LICENSE-2.0
+*
+*   Unless required by applicable law or agreed to in writing, software
+*   distributed under the License is distributed on an "AS IS" BASIS,
+*   WITHOUT WARRANTIES OR CONDITIONS OF ANY KIND, either express or implied.
+*   See the License for the specific language governing permissions and
+*   limitations under the License.
+*/
+package org.i18nchecker.impl;
+
+import java.util.ArrayList;
+import java.util.Collections;
+import java.util.HashMap;
+import java.util.List;
+import java.util.Map;
+import org.i18nchecker.impl.LayerParser.LayerData;
+
+/**
+ * Primary resource bundles of all scanned modules by package path, used to resolve
+ * references to bundles of other modules.
+ *
+ * @author agent
+ */
+final class BundleIndex {
+
+    /** Package path (e.g. "org/foo/bar" with system separators) to bundles, usually just one */
+    private final Map<String, List<PrimaryResourceBundleModel>> bundles =
+            new HashMap<String, List<PrimaryResourceBundleModel>>();
+
+    void add(String packagePath, PrimaryResourceBundleModel bundle) {
+        List<PrimaryResourceBundleModel> list = bundles.get(packagePath);
+        if (list == null) {
+            list = new ArrayList<PrimaryResourceBundleModel>(1);
+            bundles.put(packagePath, list);
+        }
+        list.add(bundle);
+    }
+
+    /**
+     * Bundles of the package. More modules can contain the same package.
+     *
+     * @param packagePath package path with system separators
+     * @return bundles in order of modules, empty if no scanned module has a bundle in the package
+     */
+    List<PrimaryResourceBundleModel> get(String packagePath) {
+        List<PrimaryResourceBundleModel> list = bundles.get(packagePath);
+        return list != null ? list : Collections.<PrimaryResourceBundleModel>emptyList();
+    }
+
+    /**
+     * Mark the key used by a layer entry. The bundle of the module with the layer is searched first,
+     * then bundles of the package in order of modules.
+     *
+     * @param layerEntry entry of a module layer
+     * @param own bundle of the package in the module with the layer, may be null
+     * @return false if some scanned module has a bundle in the package, but none of the bundles has the key
+     */
+    boolean markAsUsed(LayerData layerEntry, PrimaryResourceBundleModel own) {
+        List<PrimaryResourceBundleModel> list = get(layerEntry.bundlePath);
+        if (list.isEmpty()) {
+            // bundles which are not part of any scanned module can be provided by the platform
+            return true;
+        }
+        if (own != null && own.markAsUsed(layerEntry.bundleKey)) {
+            return true;
+        }
+        for (PrimaryResourceBundleModel bundle : list) {
+            if (bundle.markAsUsed(layerEntry.bundleKey)) {
+                return true;
+            }
+        }
+        return false;
+    }
+}
@@ -0,0 +1,197 @@
+/**
+*   Copyright 2010-2011 Petr Hamernik
+*
+*   Licensed under the Apache License, Version 2.0 (the "License");
+*   you may not use this file except in compliance with the License.
+*   You may obtain a copy of the License at
+*
+*       http://www.apache.org/licenses/LICENSE-2.0
+*
+*   Unless required by applicable law or agreed to in writing, software
+*   distributed under the License is distributed on an "AS IS" BASIS,
+*   WITHOUT WARRANTIES OR CONDITIONS OF ANY KIND, either express or implied.
+*   See the License for the specific language governing permissions and
+*   limitations under the License.
+*/
+
+package org.i18nchecker.impl;
+
+import java.io.ByteArrayInputStream;
+import java.io.ByteArrayOutputStream;
+import java.io.IOException;
+import java.io.InputStream;
+import java.net.URL;
+import java.util.HashMap;
+import java.util.Map;
+import java.util.concurrent.ConcurrentHashMap;
+import java.util.concurrent.ConcurrentMap;
+import javax.xml.stream.XMLInputFactory;
+import javax.xml.stream.XMLStreamConstants;
+import javax.xml.stream.XMLStreamException;
+import javax.xml.stream.XMLStreamReader;
+import org.xml.sax.EntityResolver;
+import org.xml.sax.InputSource;
+
+/**
+ * Offline entity resolver for XML layers. Entities are looked up in an optional
+ * OASIS XML catalog (only <code>public</code>, <code>system</code> and
+ * <code>nextCatalog</code> entries are supported) and then in DTD copies bundled
+ * with this tool. Resolved DTDs are read once and kept in memory shared by all threads.
+ * Remote URLs are never opened - unknown entities resolve to an empty document.
+ *
+ * @author agent
+ */
+public final class CatalogEntityResolver implements EntityResolver {
+
+    /** DTDs bundled with the tool: public ID -> resource name */
+    private static final String[][] BUNDLED_DTDS = {
+        { "-//NetBeans//DTD Filesystem 1.2//EN", "filesystem-1_2.dtd" },
+    };
+
+    /** Content of resolved DTDs: URL -> bytes */
+    private static final ConcurrentMap<String, byte[]> CACHE = new ConcurrentHashMap<String, byte[]>();
+
+    private static final byte[] EMPTY = new byte[0];
+
+    private static final CatalogEntityResolver DEFAULT = new CatalogEntityResolver(true);
+
+    private final Map<String, URL> publicIds = new HashMap<String, URL>();
+    private final Map<String, URL> systemIds = new HashMap<String, URL>();
+    private final boolean loadDtd;
+
+    /**
+     * Resolver which uses only bundled DTDs.
+     *
+     * @param loadDtd false if parsers should skip loading of external DTDs completely
+     */
+    public CatalogEntityResolver(boolean loadDtd) {
+        this.loadDtd = loadDtd;
+        for (String[] bundled : BUNDLED_DTDS) {
+            publicIds.put(bundled[0], CatalogEntityResolver.class.getResource(bundled[1]));
+        }
+    }
+
+    /**
+     * Resolver which uses the XML catalog and then bundled DTDs.
+     *
+     * @param catalog URL of OASIS XML catalog file
+     * @param loadDtd false if parsers should skip loading of external DTDs completely
+     */
+    public CatalogEntityResolver(URL catalog, boolean loadDtd) throws IOException {
+        this(loadDtd);
+        Map<String, URL> catalogPublicIds = new HashMap<String, URL>();
+        readCatalog(catalog, catalogPublicIds, systemIds);
+        // catalog entries take precedence over bundled DTDs
+        publicIds.putAll(catalogPublicIds);
+    }
+
+    /** Shared resolver with bundled DTDs only. */
+    public static CatalogEntityResolver getDefault() {
+        return DEFAULT;
+    }
+
+    /** Should parsers load external DTDs at all? */
+    public boolean isLoadDtd() {
+        return loadDtd;
+    }
+
+    public InputSource resolveEntity(String publicId, String systemId) throws IOException {
+        URL url = null;
+        if (publicId != null) {
+            url = publicIds.get(publicId);
+        }
+        if (url == null && systemId != null) {
+            url = systemIds.get(systemId);
+            if (url == null && isLocal(systemId)) {
+                url = new URL(systemId);
+            }
+        }
+        byte[] content = EMPTY;
+        if (loadDtd && url != null) {
+            content = load(url);
+        }
+        InputSource source = new InputSource(new ByteArrayInputStream(content));
+        source.setPublicId(publicId);
+        source.setSystemId(url != null ? url.toExternalForm() : systemId);
+        return source;
+    }
+
+    private static byte[] load(URL url) throws IOException {
+        String key = url.toExternalForm();
+        byte[] content = CACHE.get(key);
+        if (content == null) {
+            content = isLocal(key) ? readFully(url) : EMPTY;
+            byte[] previous = CACHE.putIfAbsent(key, content);
+            if (previous != null) {
+                content = previous;
+            }
+        }
+        return content;
+    }
+
+    /** Only file: and jar: URLs are read, nothing goes to the network. */
+    private static boolean isLocal(String url) {
+        return url.startsWith("file:") || url.startsWith("jar:file:");
+    }
+
+    private static byte[] readFully(URL url) throws IOException {
+        InputStream is = url.openStream();
+        try {
+            ByteArrayOutputStream out = new ByteArrayOutputStream();
+            byte[] buf = new byte[8192];
+            for (;;) {
+                int len = is.read(buf);
+                if (len < 0) {
+                    break;
+                }
+                out.write(buf, 0, len);
+            }
+            return out.toByteArray();
+        } finally {
+            is.close();
+        }
+    }
+
+    private static void readCatalog(URL catalog, Map<String, URL> publicIds, Map<String, URL> systemIds) throws IOException {
+        XMLInputFactory factory = XMLInputFactory.newInstance();
+        // catalog DTD is never needed (and it is on the network)
+        factory.setProperty(XMLInputFactory.SUPPORT_DTD, Boolean.FALSE);
+        factory.setProperty(XMLInputFactory.IS_NAMESPACE_AWARE, Boolean.FALSE);
+        InputStream is = catalog.openStream();
+        try {
+            XMLStreamReader reader = factory.createXMLStreamReader(is);
+            try {
+                while (reader.hasNext()) {
+                    if (reader.next() != XMLStreamConstants.START_ELEMENT) {
+                        continue;
+                    }
+                    String element = reader.getLocalName();
+                    if ("public".equals(element)) {
+                        putEntry(publicIds, catalog, reader.getAttributeValue(null, "publicId"), reader.getAttributeValue(null, "uri"));
+                    } else if ("system".equals(element)) {
+                        putEntry(systemIds, catalog, reader.getAttributeValue(null, "systemId"), reader.getAttributeValue(null, "uri"));
+                    } else if ("nextCatalog".equals(element)) {
+                        String next = reader.getAttributeValue(null, "catalog");
+                        if (next != null) {
+                            readCatalog(new URL(catalog, next), publicIds, systemIds);
+                        }
+                    }
+                }
+            } finally {
+                reader.close();
+            }
+        } catch (XMLStreamException ex) {
+            IOException ioe = new IOException("Cannot read XML catalog " + catalog);
+            ioe.initCause(ex);
+            throw ioe;
+        } finally {
+            is.close();
+        }
+    }
+
+    private static void putEntry(Map<String, URL> entries, URL catalog, String id, String uri) throws IOException {
+        if (id != null && uri != null && !entries.containsKey(id)) {
+            entries.put(id, new URL(catalog, uri));
+        }
+    }
+}
@@ -0,0 +1,250 @@
+/**
+*   Copyright 2010-2011 Petr Hamernik
+*
+*   Licensed under the Apache License, Version 2.0 (the "License");
+*   you may not use this file except in compliance with the License.
+*   You may obtain a copy of the License at
+*
+*       http://www.apache.org/licenses/LICENSE-2.0
+*
+*   Unless required by applicable law or agreed to in writing, software
+*   distributed under the License is distributed on an "AS IS" BASIS,
+*   WITHOUT WARRANTIES OR CONDITIONS OF ANY KIND, either express or implied.
+*   See the License for the specific language governing permissions and
+*   limitations under the License.
+*/
+package org.i18nchecker.impl;
+
+import java.io.File;
+import java.io.FileInputStream;
+import java.io.IOException;
+import java.io.InputStream;
+import java.nio.file.FileVisitResult;
+import java.nio.file.Files;
+import java.nio.file.Path;
+import java.nio.file.SimpleFileVisitor;
+import java.nio.file.attribute.BasicFileAttributes;
+import java.util.ArrayList;
+import java.util.Collections;
+import java.util.Enumeration;
+import java.util.HashMap;
+import java.util.HashSet;
+import java.util.List;
+import java.util.Map;
+import java.util.Set;
+import java.util.concurrent.Callable;
+import java.util.concurrent.ExecutorService;
+import java.util.concurrent.Future;
+import java.util.zip.ZipEntry;
+import java.util.zip.ZipFile;
+
+/**
+ * String constants of compiled classes by package. Keys of the package bundle which are
+ * constants of some class of the package are used, even if the class has no scanned source,
+ * e.g. it is part of a module available only as a jar. Classes are read from class directories
+ * and jars in the background while modules are scanned.
+ * <p>
+ * A class root inside of a module directory (e.g. module/build/classes) belongs to that module
+ * and marks keys of that module only, so a class of another module in the same package does not
+ * hide unused keys. Roots outside of all modules (e.g. jars of modules without sources) mark keys
+ * of all modules.
+ *
+ * @author agent
+ */
+final class ClassUsage {
+
+    private static final String CLASS_EXT = ".class";
+    private static final String JAR_EXT = ".jar";
+
+    private final List<File> roots;
+    private final List<Future<Map<String, Set<String>>>> reads;
+    /** Module directories of the roots, null for roots outside of modules */
+    private List<File> owners;
+    /**
+     * Module directory (null for roots outside of modules) to package path (with system separators)
+     * to string constants of its classes, null until all reads finish
+     */
+    private Map<File, Map<String, Set<String>>> strings;
+
+    private ClassUsage(List<File> roots, List<Future<Map<String, Set<String>>>> reads) {
+        this.roots = roots;
+        this.reads = reads;
+    }
+
+    /**
+     * Start reading classes.
+     *
+     * @param roots directories with classes and jars (directories are searched for jars too) and jars
+     * @param executor executor which reads each root in its own task
+     * @param metrics receives the number of read classes
+     */
+    static ClassUsage start(List<File> roots, ExecutorService executor, final ScanMetrics metrics) {
+        List<Future<Map<String, Set<String>>>> reads = new ArrayList<Future<Map<String, Set<String>>>>();
+        for (final File root : roots) {
+            reads.add(executor.submit(new Callable<Map<String, Set<String>>>() {
+                public Map<String, Set<String>> call() throws IOException {
+                    return new RootReader(metrics).read(root);
+                }
+            }));
+        }
+        return new ClassUsage(new ArrayList<File>(roots), reads);
+    }
+
+    /**
+     * Assign roots to the modules whose directories contain them. Call before {@link #getStrings},
+     * all roots are outside of modules otherwise.
+     *
+     * @param moduleDirs directories of all scanned modules
+     */
+    synchronized void setModules(List<File> moduleDirs) throws IOException {
+        owners = new ArrayList<File>();
+        for (File root : roots) {
+            String rootPath = root.getCanonicalPath() + File.separator;
+            File owner = null;
+            int ownerLength = 0;
+            for (File moduleDir : moduleDirs) {
+                String modulePath = moduleDir.getCanonicalPath() + File.separator;
+                // the deepest module, module directories can be nested
+                if (rootPath.startsWith(modulePath) && modulePath.length() > ownerLength) {
+                    owner = moduleDir;
+                    ownerLength = modulePath.length();
+                }
+            }
+            owners.add(owner);
+        }
+    }
+
+    /**
+     * String constants of classes in the package which can use keys of the module,
+     * waits until all classes are read.
+     *
+     * @param moduleDir directory of the module as passed to {@link #setModules}, null for constants of roots
+     *   outside of modules only
+     * @param packagePath package path with system separators
+     */
+    Set<String> getStrings(File moduleDir, String packagePath) throws IOException {
+        Map<File, Map<String, Set<String>>> all = getStrings();
+        Set<String> shared = get(all.get(null), packagePath);
+        Set<String> own = moduleDir != null ? get(all.get(moduleDir), packagePath) : Collections.<String>emptySet();
+        if (own.isEmpty()) {
+            return shared;
+        } else if (shared.isEmpty()) {
+            return own;
+        }
+        Set<String> both = new HashSet<String>(shared);
+        both.addAll(own);
+        return both;
+    }
+
+    private static Set<String> get(Map<String, Set<String>> byPackage, String packagePath) {
+        Set<String> set = byPackage != null ? byPackage.get(packagePath) : null;
+        return set != null ? set : Collections.<String>emptySet();
+    }
+
+    private synchronized Map<File, Map<String, Set<String>>> getStrings() throws IOException {
+        if (strings == null) {
+            Map<File, Map<String, Set<String>>> all = new HashMap<File, Map<String, Set<String>>>();
+            for (int i = 0; i < reads.size(); i++) {
+                File owner = owners != null ? owners.get(i) : null;
+                Map<String, Set<String>> byPackage = all.get(owner);
+                if (byPackage == null) {
+                    byPackage = new HashMap<String, Set<String>>();
+                    all.put(owner, byPackage);
+                }
+                for (Map.Entry<String, Set<String>> entry : I18NUtils.waitFor(reads.get(i)).entrySet()) {
+                    Set<String> set = byPackage.get(entry.getKey());
+                    if (set == null) {
+                        byPackage.put(entry.getKey(), entry.getValue());
+                    } else {
+                        set.addAll(entry.getValue());
+                    }
+                }
+            }
+            strings = all;
+        }
+        return strings;
+    }
+
+    /** Reads classes of one root */
+    private static final class RootReader {
+        private final ScanMetrics metrics;
+        private final ConstantPoolReader reader = new ConstantPoolReader();
+        private final Map<String, Set<String>> strings = new HashMap<String, Set<String>>();
+        private final List<String> constants = new ArrayList<String>();
+        private int classes;
+
+        RootReader(ScanMetrics metrics) {
+            this.metrics = metrics;
+        }
+
+        Map<String, Set<String>> read(File root) throws IOException {
+            long start = System.nanoTime();
+            if (root.isDirectory()) {
+                Files.walkFileTree(root.toPath(), new SimpleFileVisitor<Path>() {
+                    @Override
+                    public FileVisitResult visitFile(Path file, BasicFileAttributes attrs) throws IOException {
+                        String name = file.getFileName().toString();
+                        if (name.endsWith(CLASS_EXT)) {
+                            InputStream in = new FileInputStream(file.toFile());
+                            try {
+                                add(in, file.toString());
+                            } finally {
+                                in.close();
+                            }
+                        } else if (name.endsWith(JAR_EXT)) {
+                            readJar(file.toFile());
+                        }
+                        return FileVisitResult.CONTINUE;
+                    }
+                });
+            } else if (root.isFile()) {
+                readJar(root);
+            } else {
+                throw new IOException("Classes not found: " + root);
+            }
+            metrics.classesRead(classes, start);
+            return strings;
+        }
+
+        private void readJar(File jar) throws IOException {
+            ZipFile zip = new ZipFile(jar);
+            try {
+                for (Enumeration<? extends ZipEntry> entries = zip.entries(); entries.hasMoreElements(); ) {
+                    ZipEntry entry = entries.nextElement();
+                    if (!entry.isDirectory() && entry.getName().endsWith(CLASS_EXT)) {
+                        InputStream in = zip.getInputStream(entry);
+                        try {
+                            add(in, jar + "!/" + entry.getName());
+                        } finally {
+                            in.close();
+                        }
+                    }
+                }
+            } finally {
+                zip.close();
+            }
+        }
+
+        private void add(InputStream in, String location) throws IOException {
+            constants.clear();
+            String className;
+            try {
+                className = reader.read(in, constants);
+            } catch (IOException ex) {
+                throw new IOException(location + ": " + ex.getMessage(), ex);
+            }
+            classes++;
+            if (constants.isEmpty()) {
+                return;
+            }
+            int slash = className.lastIndexOf('/');
+            String packagePath = slash < 0 ? "" : className.substring(0, slash).replace('/', File.separatorChar);
+            Set<String> set = strings.get(packagePath);
+            if (set == null) {
+                set = new HashSet<String>();
+                strings.put(packagePath, set);
+            }
+            set.addAll(constants);
+        }
+    }
+}
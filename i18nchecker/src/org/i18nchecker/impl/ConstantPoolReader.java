@@ -0,0 +1,220 @@
+/**
+*   Copyright 2010-2011 Petr Hamernik
+*
+*   Licensed under the Apache License, Version 2.0 (the "License");
+*   you may not use this file except in compliance with the License.
+*   You may obtain a copy of the License at
+*
+*       http://www.apache.org/licenses/LICENSE-2.0
+*
+*   Unless required by applicable law or agreed to in writing, software
+*   distributed under the License is distributed on an "AS IS" BASIS,
+*   WITHOUT WARRANTIES OR CONDITIONS OF ANY KIND, either express or implied.
+*   See the License for the specific language governing permissions and
+*   limitations under the License.
+*/
+package org.i18nchecker.impl;
+
+import java.io.EOFException;
+import java.io.IOException;
+import java.io.InputStream;
+import java.util.Arrays;
+import java.util.Collection;
+
+/**
+ * Reads string constants of a class file. Only the constant pool and the name of the class
+ * are read, the rest of the file is skipped. Buffers are reused, so one reader should be used
+ * by one thread for many classes.
+ *
+ * @author agent
+ */
+final class ConstantPoolReader {
+
+    private static final int MAGIC = 0xCAFEBABE;
+
+    private static final int UTF8 = 1;
+    private static final int INTEGER = 3;
+    private static final int FLOAT = 4;
+    private static final int LONG = 5;
+    private static final int DOUBLE = 6;
+    private static final int CLASS = 7;
+    private static final int STRING = 8;
+    private static final int FIELD_REF = 9;
+    private static final int METHOD_REF = 10;
+    private static final int INTERFACE_METHOD_REF = 11;
+    private static final int NAME_AND_TYPE = 12;
+    private static final int METHOD_HANDLE = 15;
+    private static final int METHOD_TYPE = 16;
+    private static final int DYNAMIC = 17;
+    private static final int INVOKE_DYNAMIC = 18;
+    private static final int MODULE = 19;
+    private static final int PACKAGE = 20;
+
+    private byte[] buffer = new byte[8192];
+    private int position;
+    private int limit;
+    private InputStream in;
+
+    /** Bytes of all UTF8 constants of the class */
+    private byte[] utf8 = new byte[8192];
+    /** By constant index - start of the UTF8 constant in utf8, index of the UTF8 constant of a class or string */
+    private int[] starts = new int[256];
+    /** By constant index - end of the UTF8 constant in utf8 */
+    private int[] ends = new int[256];
+    /** By constant index - tag of the constant */
+    private byte[] tags = new byte[256];
+    private char[] chars = new char[256];
+
+    /**
+     * Read the class.
+     *
+     * @param stream content of the class file, not closed
+     * @param strings receives all string constants of the class
+     * @return internal name of the class, e.g. "org/foo/Bar$1"
+     */
+    String read(InputStream stream, Collection<String> strings) throws IOException {
+        in = stream;
+        position = 0;
+        limit = 0;
+        try {
+            if (readInt() != MAGIC) {
+                throw new IOException("Not a class file");
+            }
+            readInt(); // version
+            int count = readShort();
+            if (tags.length < count) {
+                int capacity = Math.max(count, tags.length * 2);
+                starts = new int[capacity];
+                ends = new int[capacity];
+                tags = new byte[capacity];
+            }
+            Arrays.fill(tags, 0, count, (byte) 0);
+            int used = 0;
+            for (int i = 1; i < count; i++) {
+                int tag = readByte();
+                tags[i] = (byte) tag;
+                switch (tag) {
+                    case UTF8:
+                        int length = readShort();
+                        if (utf8.length < used + length) {
+                            utf8 = Arrays.copyOf(utf8, Math.max(used + length, utf8.length * 2));
+                        }
+                        readFully(utf8, used, length);
+                        starts[i] = used;
+                        used += length;
+                        ends[i] = used;
+                        break;
+                    case CLASS:
+                    case STRING:
+                        starts[i] = readShort();
+                        break;
+                    case METHOD_TYPE:
+                    case MODULE:
+                    case PACKAGE:
+                        skip(2);
+                        break;
+                    case METHOD_HANDLE:
+                        skip(3);
+                        break;
+                    case INTEGER:
+                    case FLOAT:
+                    case FIELD_REF:
+                    case METHOD_REF:
+                    case INTERFACE_METHOD_REF:
+                    case NAME_AND_TYPE:
+                    case DYNAMIC:
+                    case INVOKE_DYNAMIC:
+                        skip(4);
+                        break;
+                    case LONG:
+                    case DOUBLE:
+                        // takes two entries
+                        skip(8);
+                        i++;
+                        break;
+                    default:
+                        throw new IOException("Unknown constant pool tag " + tag + " at index " + i);
+                }
+            }
+            readShort(); // access flags
+            int thisClass = readShort();
+            if (thisClass <= 0 || thisClass >= count || tags[thisClass] != CLASS) {
+                throw new IOException("Invalid class index " + thisClass);
+            }
+            for (int i = 1; i < count; i++) {
+                if (tags[i] == STRING) {
+                    strings.add(utf8(starts[i], count));
+                }
+            }
+            return utf8(starts[thisClass], count);
+        } finally {
+            in = null;
+        }
+    }
+
+    /** Decode UTF8 constant, class files use modified UTF-8 which never has 4 byte sequences */
+    private String utf8(int index, int count) throws IOException {
+        if (index <= 0 || index >= count || tags[index] != UTF8) {
+            throw new IOException("Invalid UTF8 constant index " + index);
+        }
+        int end = ends[index];
+        if (chars.length < end - starts[index]) {
+            chars = new char[end - starts[index]];
+        }
+        int n = 0;
+        for (int i = starts[index]; i < end; ) {
+            int b = utf8[i++] & 0xff;
+            if (b < 0x80) {
+                chars[n++] = (char) b;
+            } else if (b < 0xe0) {
+                chars[n++] = (char) (((b & 0x1f) << 6) | (utf8[i++] & 0x3f));
+            } else {
+                chars[n++] = (char) (((b & 0x0f) << 12) | ((utf8[i++] & 0x3f) << 6) | (utf8[i++] & 0x3f));
+            }
+        }
+        return new String(chars, 0, n);
+    }
+
+    private int readByte() throws IOException {
+        if (position == limit) {
+            fill();
+        }
+        return buffer[position++] & 0xff;
+    }
+
+    private int readShort() throws IOException {
+        return (readByte() << 8) | readByte();
+    }
+
+    private int readInt() throws IOException {
+        return (readShort() << 16) | readShort();
+    }
+
+    private void skip(int n) throws IOException {
+        for (int i = 0; i < n; i++) {
+            readByte();
+        }
+    }
+
+    private void readFully(byte[] target, int offset, int length) throws IOException {
+        while (length > 0) {
+            if (position == limit) {
+                fill();
+            }
+            int n = Math.min(length, limit - position);
+            System.arraycopy(buffer, position, target, offset, n);
+            position += n;
+            offset += n;
+            length -= n;
+        }
+    }
+
+    private void fill() throws IOException {
+        int n = in.read(buffer, 0, buffer.length);
+        if (n <= 0) {
+            throw new EOFException("Truncated class file");
+        }
+        position = 0;
+        limit = n;
+    }
+}
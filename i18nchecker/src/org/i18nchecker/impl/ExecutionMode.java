@@ -0,0 +1,34 @@
+/**
+*   Copyright 2010-2011 Petr Hamernik
+*
+*   Licensed under the Apache License, Version 2.0 (the "License");
+*   you may not use this file except in compliance with the License.
+*   You may obtain a copy of the License at
+*
+*       http://www.apache.org/licenses/LICENSE-2.0
+*
+*   Unless required by applicable law or agreed to in writing, software
+*   distributed under the License is distributed on an "AS IS" BASIS,
+*   WITHOUT WARRANTIES OR CONDITIONS OF ANY KIND, either express or implied.
+*   See the License for the specific language governing permissions and
+*   limitations under the License.
+*/
+package org.i18nchecker.impl;
+
+/**
+ * How modules are scanned and files parsed.
+ *
+ * @author agent
+ */
+public enum ExecutionMode {
+    /** Modules are scanned one by one, files are parsed by the thread which scans the module */
+    SERIAL,
+    /** Modules are scanned and files are parsed in pools of platform threads */
+    PLATFORM,
+    /**
+     * Each file is parsed in its own virtual thread and a few modules are scanned at once
+     * in order of priority, suitable for slow network file systems. Needs Java 21,
+     * the scan fails on older JVMs.
+     */
+    VIRTUAL
+}
@@ -0,0 +1,36 @@
+/**
+*   Copyright 2010-2011 Petr Hamernik
+*
+*   Licensed under the Apache License, Version 2.0 (the "License");
+*   you may not use this file except in compliance with the License.
+*   You may obtain a copy of the License at
+*
+*       http://www.apache.org/licenses/LICENSE-2.0
+*
+*   Unless required by applicable law or agreed to in writing, software
+*   distributed under the License is distributed on an "AS IS" BASIS,
+*   WITHOUT WARRANTIES OR CONDITIONS OF ANY KIND, either express or implied.
+*   See the License for the specific language governing permissions and
+*   limitations under the License.
+*/
+package org.i18nchecker.impl;
+
+import java.io.IOException;
+
+/**
+ * Model of a single scanned file (Java source or resource bundle).
+ *
+ * @author agent
+ */
+interface FileModel {
+
+    /** Full path of the file */
+    String getFileName();
+
+    /**
+     * Parse the file and load strings from it.
+     *
+     * @param context provides access to the file
+     */
+    void parse(ScanContext context) throws IOException;
+}
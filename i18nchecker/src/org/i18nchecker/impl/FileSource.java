@@ -0,0 +1,44 @@
+/**
+*   Copyright 2010-2011 Petr Hamernik
+*
+*   Licensed under the Apache License, Version 2.0 (the "License");
+*   you may not use this file except in compliance with the License.
+*   You may obtain a copy of the License at
+*
+*       http://www.apache.org/licenses/LICENSE-2.0
+*
+*   Unless required by applicable law or agreed to in writing, software
+*   distributed under the License is distributed on an "AS IS" BASIS,
+*   WITHOUT WARRANTIES OR CONDITIONS OF ANY KIND, either express or implied.
+*   See the License for the specific language governing permissions and
+*   limitations under the License.
+*/
+package org.i18nchecker.impl;
+
+import java.io.FileInputStream;
+import java.io.IOException;
+import java.io.InputStream;
+
+/**
+ * Opens scanned files. The default implementation reads the file system directly,
+ * other implementations can serve already loaded content or simulate a slow file system.
+ *
+ * @author agent
+ */
+interface FileSource {
+
+    /** Reads files directly from the file system */
+    FileSource DEFAULT = new FileSource() {
+        public InputStream open(String fileName) throws IOException {
+            return new FileInputStream(fileName);
+        }
+    };
+
+    /**
+     * Open the file for reading.
+     *
+     * @param fileName full path of the file
+     * @return stream which has to be closed by caller
+     */
+    InputStream open(String fileName) throws IOException;
+}
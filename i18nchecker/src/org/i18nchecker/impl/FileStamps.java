@@ -0,0 +1,131 @@
+/**
+*   Copyright 2010-2011 Petr Hamernik
+*
+*   Licensed under the Apache License, Version 2.0 (the "License");
+*   you may not use this file except in compliance with the License.
+*   You may obtain a copy of the License at
+*
+*       http://www.apache.org/licenses/LICENSE-2.0
+*
+*   Unless required by applicable law or agreed to in writing, software
+*   distributed under the License is distributed on an "AS IS" BASIS,
+*   WITHOUT WARRANTIES OR CONDITIONS OF ANY KIND, either express or implied.
+*   See the License for the specific language governing permissions and
+*   limitations under the License.
+*/
+package org.i18nchecker.impl;
+
+import java.io.File;
+import java.io.IOException;
+import java.nio.file.Files;
+import java.nio.file.NoSuchFileException;
+import java.nio.file.Path;
+import java.nio.file.attribute.BasicFileAttributes;
+import java.util.ArrayList;
+import java.util.Arrays;
+import java.util.List;
+
+/**
+ * Modification times and sizes of files and directories read by a scan. A directory gets
+ * a new time when a file is added to it or removed from it, so the stamps of all walked
+ * directories and read files tell whether results of the scan are still up to date.
+ * Times have a coarse granularity on some file systems, so a file modified shortly before
+ * it was stamped can change again and keep its time. Such a file is never current.
+ *
+ * @author agent
+ */
+final class FileStamps {
+
+    /** Time of a file which did not exist */
+    static final long MISSING = -1;
+    /** Size of a directory */
+    static final long DIRECTORY = -1;
+    /** Time of a file modified too shortly before it was stamped */
+    static final long RECENT = -2;
+    /** Coarsest granularity of modification times, 2 seconds on FAT, 1 second on ext3 or HFS+ */
+    static final long GRANULARITY = 2000;
+
+    private final List<String> paths = new ArrayList<String>();
+    private long[] modified = new long[16];
+    private long[] sizes = new long[16];
+
+    /** Record the file or directory found by a walk */
+    void add(Path path, BasicFileAttributes attrs) {
+        long time = attrs.lastModifiedTime().toMillis();
+        if (System.currentTimeMillis() - time < GRANULARITY) {
+            time = RECENT;
+        }
+        add(path.toAbsolutePath().toString(), time, attrs.isDirectory() ? DIRECTORY : attrs.size());
+    }
+
+    /** Record the current state of a file which is read outside of a walk, it does not have to exist */
+    void add(File file) throws IOException {
+        BasicFileAttributes attrs = readAttributes(file.toPath());
+        if (attrs != null) {
+            add(file.toPath(), attrs);
+        } else {
+            add(file.getAbsolutePath(), MISSING, DIRECTORY);
+        }
+    }
+
+    /** Append all stamps of the other stamps */
+    void addAll(FileStamps other) {
+        for (int i = 0; i < other.size(); i++) {
+            add(other.paths.get(i), other.modified[i], other.sizes[i]);
+        }
+    }
+
+    private void add(String path, long time, long size) {
+        int count = paths.size();
+        if (count == modified.length) {
+            modified = Arrays.copyOf(modified, count * 2);
+            sizes = Arrays.copyOf(sizes, count * 2);
+        }
+        paths.add(path);
+        modified[count] = time;
+        sizes[count] = size;
+    }
+
+    int size() {
+        return paths.size();
+    }
+
+    String getPath(int index) {
+        return paths.get(index);
+    }
+
+    long getModified(int index) {
+        return modified[index];
+    }
+
+    long getSize(int index) {
+        return sizes[index];
+    }
+
+    /**
+     * Is the file or directory still in the recorded state?
+     *
+     * @param path absolute path
+     * @param time recorded time, {@link #MISSING} or {@link #RECENT}
+     * @param size recorded size or {@link #DIRECTORY}
+     */
+    static boolean isCurrent(String path, long time, long size) throws IOException {
+        if (time == RECENT) {
+            return false;
+        }
+        BasicFileAttributes attrs = readAttributes(new File(path).toPath());
+        if (attrs == null) {
+            return time == MISSING;
+        }
+        return attrs.lastModifiedTime().toMillis() == time
+                && (attrs.isDirectory() ? DIRECTORY : attrs.size()) == size;
+    }
+
+    private static BasicFileAttributes readAttributes(Path path) throws IOException {
+        try {
+            return Files.readAttributes(path, BasicFileAttributes.class);
+        } catch (NoSuchFileException ex) {
+            return null;
+        }
+    }
+}
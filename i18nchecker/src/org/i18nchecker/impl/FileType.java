@@ -21,18 +21,30 @@ package org.i18nchecker.impl;
  *
  * @author Petr Hamernik
  */
-enum FileType {
-    PRIMARY_BUNDLE("**\\Bundle.properties"),
-    TRANSLATED_BUNDLE("**\\Bundle_*.properties"),
-    JAVA("**\\*.java");
+public enum FileType {
+    PRIMARY_BUNDLE,
+    TRANSLATED_BUNDLE,
+    JAVA;
 
-    private String filter;
+    private static final String PRIMARY_BUNDLE_NAME = "Bundle.properties";
+    private static final String TRANSLATED_BUNDLE_PREFIX = "Bundle_";
+    private static final String BUNDLE_EXT = ".properties";
+    private static final String JAVA_EXT = ".java";
 
-    private FileType(String filter) {
-        this.filter = filter;
-    }
-
-    public String[] getFilter() {
-        return new String[] { filter };
+    /**
+     * Type of file with the given name.
+     *
+     * @param name file name without path
+     * @return file type or null if such files are not scanned
+     */
+    static FileType forFileName(String name) {
+        if (name.equals(PRIMARY_BUNDLE_NAME)) {
+            return PRIMARY_BUNDLE;
+        } else if (name.startsWith(TRANSLATED_BUNDLE_PREFIX) && name.endsWith(BUNDLE_EXT)) {
+            return TRANSLATED_BUNDLE;
+        } else if (name.endsWith(JAVA_EXT)) {
+            return JAVA;
+        }
+        return null;
     }
 }
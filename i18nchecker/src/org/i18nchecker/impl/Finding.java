@@ -0,0 +1,61 @@
+/**
+*   Copyright 2010-2011 Petr Hamernik
+*
+*   Licensed under the Apache License, Version 2.0 (the "License");
+*   you may not use this file except in compliance with the License.
+*   You may obtain a copy of the License at
+*
+*       http://www.apache.org/licenses/LICENSE-2.0
+*
+*   Unless required by applicable law or agreed to in writing, software
+*   distributed under the License is distributed on an "AS IS" BASIS,
+*   WITHOUT WARRANTIES OR CONDITIONS OF ANY KIND, either express or implied.
+*   See the License for the specific language governing permissions and
+*   limitations under the License.
+*/
+package org.i18nchecker.impl;
+
+/**
+ * One problem found by the scan. Formatted only when it is printed.
+ *
+ * @author agent
+ */
+final class Finding {
+    private final ScanResults.Type type;
+    private final String fileName;
+    private final int line;
+    private final String message;
+
+    Finding(ScanResults.Type type, String fileName, int line, String message) {
+        this.type = type;
+        this.fileName = fileName;
+        this.line = line;
+        this.message = message;
+    }
+
+    ScanResults.Type getType() {
+        return type;
+    }
+
+    String getFileName() {
+        return fileName;
+    }
+
+    int getLine() {
+        return line;
+    }
+
+    String getMessage() {
+        return message;
+    }
+
+    /** Append the finding in format "file:line: message" */
+    StringBuilder appendTo(StringBuilder sb) {
+        return sb.append(fileName).append(':').append(line).append(": ").append(message);
+    }
+
+    @Override
+    public String toString() {
+        return appendTo(new StringBuilder()).toString();
+    }
+}
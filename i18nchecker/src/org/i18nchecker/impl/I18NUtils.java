@@ -20,11 +20,14 @@ import java.io.BufferedWriter;
 import java.io.File;
 import java.io.FileOutputStream;
 import java.io.IOException;
+import java.io.InterruptedIOException;
 import java.io.OutputStreamWriter;
 import java.io.PrintWriter;
 import java.util.ArrayList;
 import java.util.Collections;
 import java.util.List;
+import java.util.concurrent.ExecutionException;
+import java.util.concurrent.Future;
 
 /**
  * Utilities for the package
@@ -33,52 +36,16 @@ import java.util.List;
  */
 public class I18NUtils {
 
-    /** Returns hex String representation of byte b */
-    private static String byteToHex(byte b) {
-
-        char hexDigit[] = {
-            '0', '1', '2', '3', '4', '5', '6', '7',
-            '8', '9', 'a', 'b', 'c', 'd', 'e', 'f'
-        };
-        char[] array = {hexDigit[(b >> 4) & 0x0f], hexDigit[b & 0x0f]};
-        return new String(array);
-    }
-
-    /** Returns hex String representation of char c */
-    private static String charToHex(char c) {
-        byte hi = (byte) (c >>> 8);
-        byte lo = (byte) (c & 0xff);
-        return byteToHex(hi) + byteToHex(lo);
-    }
-
+    /** Escape all non-ASCII characters as \\uXXXX */
     static String getUTFString(String s) {
-        int length = s.length();
-        StringBuilder b = new StringBuilder(length);
-        for (int i = 0; i < length; i++) {
-            char ch = s.charAt(i);
-            // do not translate chars from lower part od ASCII table
-            // useful for not translating ie. (&A) mnemonic labels, spaces etc.
-            // to \\u escape sequences
-            if (ch < 128) {
-                b.append(ch);
-            } else {
-                b.append("\\u").append(charToHex(ch));
-            }
-        }
-        return b.toString();
+        return UnicodeEscapes.escape(s);
     }
 
+    /** Replace \\uXXXX escapes by characters */
     static String getJapString(String s) {
-        StringBuilder b = new StringBuilder();
-        String[] split = s.split("\\\\u");
-        b.append(split[0]);
-        for (int i = 1; i < split.length; i++) {
-            b.append((char) Integer.parseInt(split[i].substring(0, 4), 16));
-            b.append(split[i].subSequence(4, split[i].length()));
-        }
-        return b.toString();
+        return UnicodeEscapes.unescape(s);
     }
-    
+
     /** Header for all translated resource bundle files (e.g. Bundle_ja.properties) */
     public static List<String> createTranslationFilesHeader(String toolName, File rootDir, File importFromFile) throws IOException {
         List<String> header = new ArrayList<String>();
@@ -105,6 +72,26 @@ public class I18NUtils {
         }
     }
 
+    /** Wait for result of a task, exceptions thrown by the task are rethrown unwrapped */
+    static <T> T waitFor(Future<T> future) throws IOException {
+        try {
+            return future.get();
+        } catch (InterruptedException ex) {
+            Thread.currentThread().interrupt();
+            throw new InterruptedIOException();
+        } catch (ExecutionException ex) {
+            Throwable cause = ex.getCause();
+            if (cause instanceof IOException) {
+                throw (IOException) cause;
+            } else if (cause instanceof RuntimeException) {
+                throw (RuntimeException) cause;
+            } else if (cause instanceof Error) {
+                throw (Error) cause;
+            }
+            throw new IllegalStateException(cause);
+        }
+    }
+
     /** Create a single line of CSV file. All strings are encapsulated with question marks
      */
     static String convertArrayToLine(String[] cols) {
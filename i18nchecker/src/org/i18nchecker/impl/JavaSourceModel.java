@@ -17,16 +17,10 @@
 package org.i18nchecker.impl;
 
 import java.io.File;
-import java.io.FileReader;
 import java.io.IOException;
-import java.util.ArrayList;
+import java.io.InputStream;
 import java.util.Arrays;
-import java.util.HashMap;
 import java.util.List;
-import java.util.Map;
-import org.antlr.runtime.ANTLRReaderStream;
-import org.antlr.runtime.CharStream;
-import org.antlr.runtime.CommonTokenStream;
 import org.antlr.runtime.Token;
 
 /**
@@ -34,7 +28,7 @@ import org.antlr.runtime.Token;
  *
  * @author Petr Hamernik
  */
-class JavaSourceModel {
+class JavaSourceModel implements FileModel {
     private static final boolean skipEmptyAndSingleCharStrings = true;
 
     private static final String NOI18N = "NOI18N";
@@ -45,34 +39,59 @@ class JavaSourceModel {
         "Tahoma", "Courier", "Arial", "Dialog"
     });
 
+    /** Flag - is the string in the same line as identifier "NbBundle" in source? */
+    private static final byte CLOSE_TO_NB_BUNDLE = 1;
+    /** Flag - is there // NOI18N line comment in the end of the line? */
+    private static final byte NOI18N_COMMENT = 2;
+    /** Flag - was the string found in package bundle? */
+    private static final byte FOUND_IN_BUNDLE = 4;
+
     private String fileName;
-    private List<Info> strings;
+
+    // Strings found in source, stored in columns ordered by line - a file can contain thousands of them
+    /** Number of strings */
+    private int count;
+    /** The strings */
+    private String[] texts;
+    /** Line numbers of strings */
+    private int[] lines;
+    /** Flags of strings */
+    private byte[] flags;
 
     public JavaSourceModel(String fileName) {
         this.fileName = fileName;
     }
 
-    /** Parse the source file and load strings into keys */
-    public void parse() throws IOException {
-        strings = new ArrayList<Info>();
+    public String getFileName() {
+        return fileName;
+    }
 
-        FileReader fr = new FileReader(fileName);
+    /** Parse the source file and load strings into keys */
+    public void parse(ScanContext context) throws IOException {
+        long start = System.nanoTime();
+        StringPool pool = context.getStringPool();
+        count = 0;
+        texts = new String[16];
+        lines = new int[16];
+        flags = new byte[16];
+
+        JavaTokenizer.Pool tokenizers = context.getJavaTokenizers();
+        JavaTokenizer tokenizer = tokenizers.acquire();
+        InputStream in = context.getFileSource().open(fileName);
         try {
-            CharStream stream = new ANTLRReaderStream(fr);
-            JavaLexer lexer = new JavaLexer(stream);
-            CommonTokenStream tokens = new CommonTokenStream(lexer);
-            List<?> list = tokens.getTokens();
+            tokenizer.open(in);
+            char[] chars = tokenizer.getChars();
             int lineOfLastNbBundleOccurence = -1;
             int lineOfLastAnnotationOccurence = -1;
             int lineOfLastAssert = -1;
             int lineOfLastFont = -1;
-            for (Object obj: list) {
-                Token token = (Token) obj;
-                int line = token.getLine();
-                if (token.getType() == JavaLexer.StringLiteral) {
-                    String str = token.getText();
-                    str = str.substring(1, str.length() - 1);
-                    if (skipEmptyAndSingleCharStrings && (str.trim().length() <= 1)) {
+            for (int type; (type = tokenizer.next()) != Token.EOF; ) {
+                int line = tokenizer.getLine();
+                if (type == JavaLexer.StringLiteral) {
+                    // without quotes
+                    int textStart = tokenizer.getStart() + 1;
+                    int textEnd = tokenizer.getEnd() - 1;
+                    if (skipEmptyAndSingleCharStrings && (trimmedLength(chars, textStart, textEnd) <= 1)) {
                         // skip short strings
                         continue;
                     }
@@ -84,6 +103,7 @@ class JavaSourceModel {
                         // skip asserts
                         continue;
                     }
+                    String str = pool.intern(chars, textStart, textEnd);
                     if (line == lineOfLastFont) {
                         // NetBeans is not generating // NOI18N in locked parts of code like this:
                         // label.setFont(new java.awt.Font("Tahoma", 0, 11));
@@ -92,39 +112,77 @@ class JavaSourceModel {
                             continue;
                         }
                     }
-                    boolean isCloseToNbBundle = (line == lineOfLastNbBundleOccurence);
-                    strings.add(new Info(str, line, isCloseToNbBundle));
-                } else if (token.getType() == JavaLexer.LINE_COMMENT) {
-                    if (token.getText().indexOf(NOI18N) >= 0) {
-                        for (Info info: strings) {
-                            if (info.getLine() == line) {
-                                info.setNoI18N();
-                            }
+                    add(str, line, line == lineOfLastNbBundleOccurence ? CLOSE_TO_NB_BUNDLE : 0);
+                } else if (type == JavaLexer.LINE_COMMENT) {
+                    if (tokenizer.textContains(NOI18N)) {
+                        // strings are collected in order of lines, so strings of this line are at the end
+                        for (int i = count - 1; i >= 0 && lines[i] == line; i--) {
+                            flags[i] |= NOI18N_COMMENT;
                         }
                     }
-                } else if (token.getType() == JavaLexer.Identifier) {
-                    if (token.getText().equals(NB_BUNDLE)) {
+                } else if (type == JavaLexer.Identifier) {
+                    if (tokenizer.textEquals(NB_BUNDLE)) {
                         lineOfLastNbBundleOccurence = line;
-                    } else if (token.getText().equals(FONT)) {
+                    } else if (tokenizer.textEquals(FONT)) {
                         lineOfLastFont = line;
                     }
-                } else if (token.getType() == JavaLexer.T__73) { // @ character - annotation
+                } else if (type == JavaLexer.T__73) { // @ character - annotation
                     lineOfLastAnnotationOccurence = line;
-                } else if (token.getType() == JavaLexer.ASSERT) {
+                } else if (type == JavaLexer.ASSERT) {
                     lineOfLastAssert = line;
                 }
             }
+            trim();
+            context.getMetrics().fileParsed(FileType.JAVA, start);
+            ScanProfile profile = context.getProfile();
+            if (profile != null) {
+                profile.fileParsed(FileType.JAVA, fileName, start, tokenizer.getLength(), count);
+            }
         } finally {
-            fr.close();
+            in.close();
+            tokenizers.release(tokenizer);
+        }
+    }
+
+    /** Length of the range without leading and trailing whitespace, like {@link String#trim()} */
+    private static int trimmedLength(char[] chars, int start, int end) {
+        while (start < end && chars[start] <= ' ') {
+            start++;
+        }
+        while (start < end && chars[end - 1] <= ' ') {
+            end--;
+        }
+        return end - start;
+    }
+
+    private void add(String str, int line, byte flag) {
+        if (count == texts.length) {
+            int capacity = count * 2;
+            texts = Arrays.copyOf(texts, capacity);
+            lines = Arrays.copyOf(lines, capacity);
+            flags = Arrays.copyOf(flags, capacity);
+        }
+        texts[count] = str;
+        lines[count] = line;
+        flags[count] = flag;
+        count++;
+    }
+
+    /** Models are kept until all modules are reported, so release unused capacity */
+    private void trim() {
+        if (count < texts.length) {
+            texts = Arrays.copyOf(texts, count);
+            lines = Arrays.copyOf(lines, count);
+            flags = Arrays.copyOf(flags, count);
         }
     }
 
     /** Do verification of strings against the provided resource bundle */
     void verify(PrimaryResourceBundleModel bundle) {
         if (bundle != null) {
-            for (Info info: strings) {
-                if (bundle.markAsUsed(info.getStr())) {
-                    info.markFoundInBundle();
+            for (int i = 0; i < count; i++) {
+                if (bundle.markAsUsed(texts[i])) {
+                    flags[i] |= FOUND_IN_BUNDLE;
                 }
             }
         }
@@ -133,15 +191,12 @@ class JavaSourceModel {
     /** Report results into the provided ScanResults */
     void reportResults(ScanResults results) {
         results.incrementFileCounter(FileType.JAVA);
-        Map<Integer,Integer> stringsPerLine = new HashMap<Integer,Integer>(); // [lineNo -> Count of strings at this line]
-        for (Info info: strings) {
-            int stringCount = stringsPerLine.containsKey(info.getLine()) ? stringsPerLine.get(info.getLine()).intValue() + 1 : 1;
-            stringsPerLine.put(info.getLine(), stringCount);
-            if (!info.isFoundInBundle() && !info.isNoI18N()) {
-                if (info.isCloseToNbBundle()) {
-                    results.add(ScanResults.Type.MISSING_KEY_IN_BUNDLE, fileName, info.getLine(), info.getStr());
+        for (int i = 0; i < count; i++) {
+            if ((flags[i] & (FOUND_IN_BUNDLE | NOI18N_COMMENT)) == 0) {
+                if ((flags[i] & CLOSE_TO_NB_BUNDLE) != 0) {
+                    results.add(ScanResults.Type.MISSING_KEY_IN_BUNDLE, fileName, lines[i], texts[i]);
                 } else {
-                    results.add(ScanResults.Type.MISSING_NOI18N_OR_KEY_IN_BUNDLE, fileName, info.getLine(), info.getStr());
+                    results.add(ScanResults.Type.MISSING_NOI18N_OR_KEY_IN_BUNDLE, fileName, lines[i], texts[i]);
                 }
             }
         }
@@ -150,60 +205,13 @@ class JavaSourceModel {
         // Ignore java sources which are forms.
         File form = new File(fileName.substring(0, fileName.length() - 5) + ".form");
         if (!form.exists()) {
-            for (Info info: strings) {
-                if (info.isFoundInBundle() && info.isNoI18N() && (stringsPerLine.get(info.getLine()).intValue() == 1)) {
-                    results.add(ScanResults.Type.NOT_NECESSARY_TO_USE_NOI18N, fileName, info.getLine(), info.getStr());
+            for (int i = 0; i < count; i++) {
+                boolean onlyStringInLine = (i == 0 || lines[i - 1] != lines[i])
+                        && (i == count - 1 || lines[i + 1] != lines[i]);
+                if (onlyStringInLine && (flags[i] & (FOUND_IN_BUNDLE | NOI18N_COMMENT)) == (FOUND_IN_BUNDLE | NOI18N_COMMENT)) {
+                    results.add(ScanResults.Type.NOT_NECESSARY_TO_USE_NOI18N, fileName, lines[i], texts[i]);
                 }
             }
         }
     }
-
-    /** Info about one string in java source */
-    private static class Info {
-        /** The string found in source */
-        private String str;
-        /** Line number of this string */
-        private int line;
-        /** Is this string in the same line as identifier "NbBundle" in source? */
-        private boolean closeToNbBundle;
-        /** Is there // NOI18N line comment in the end of this line? */
-        private boolean noi18n;
-        /** Was this string found in package bundle? */
-        private boolean foundInBundle;
-
-        public Info(String str, int line, boolean closeToNbBundle) {
-            this.str = str;
-            this.line = line;
-            this.closeToNbBundle = closeToNbBundle;
-            this.noi18n = false;
-        }
-
-        public String getStr() {
-            return str;
-        }
-
-        public void setNoI18N() {
-            noi18n = true;
-        }
-
-        public int getLine() {
-            return line;
-        }
-
-        private boolean isCloseToNbBundle() {
-            return closeToNbBundle;
-        }
-
-        private boolean isNoI18N() {
-            return noi18n;
-        }
-
-        private void markFoundInBundle() {
-            foundInBundle = true;
-        }
-
-        public boolean isFoundInBundle() {
-            return foundInBundle;
-        }
-    }
 }
@@ -0,0 +1,204 @@
+/**
+*   Copyright 2010-2011 Petr Hamernik
+*
+*   Licensed under the Apache License, Version 2.0 (the "License");
+*   you may not use this file except in compliance with the License.
+*   You may obtain a copy of the License at
+*
+*       http://www.apache.org/licenses/LICENSE-2.0
+*
+*   Unless required by applicable law or agreed to in writing, software
+*   distributed under the License is distributed on an "AS IS" BASIS,
+*   WITHOUT WARRANTIES OR CONDITIONS OF ANY KIND, either express or implied.
+*   See the License for the specific language governing permissions and
+*   limitations under the License.
+*/
+package org.i18nchecker.impl;
+
+import java.io.IOException;
+import java.io.InputStream;
+import java.nio.ByteBuffer;
+import java.nio.CharBuffer;
+import java.nio.charset.Charset;
+import java.nio.charset.CharsetDecoder;
+import java.nio.charset.CodingErrorAction;
+import java.nio.charset.CoderResult;
+import java.util.Arrays;
+import java.util.Queue;
+import java.util.concurrent.ConcurrentLinkedQueue;
+import org.antlr.runtime.ANTLRStringStream;
+import org.antlr.runtime.CommonToken;
+import org.antlr.runtime.Token;
+
+/**
+ * Reusable lexer of Java sources with its buffers. A new reader, char stream, lexer with its DFAs
+ * and token list per file make most of the garbage of a scan, so a tokenizer is borrowed from
+ * the {@link Pool} of the scan for each file, keeps its buffers for the next file and returns
+ * tokens one by one in a single reused token.
+ *
+ * @author agent
+ */
+final class JavaTokenizer {
+
+    /** Buffers are kept for the next file unless they grew bigger than this */
+    private static final int MAX_RETAINED_SIZE = 1 << 20;
+    private static final int INITIAL_SIZE = 8192;
+
+    /** The same decoding as {@link java.io.InputStreamReader} with default charset */
+    private final CharsetDecoder decoder = Charset.defaultCharset().newDecoder()
+            .onMalformedInput(CodingErrorAction.REPLACE)
+            .onUnmappableCharacter(CodingErrorAction.REPLACE);
+    private byte[] bytes = new byte[INITIAL_SIZE];
+    private char[] chars = new char[INITIAL_SIZE];
+    private final CharArrayStream stream = new CharArrayStream();
+    private final ReusingLexer lexer = new ReusingLexer();
+    private CommonToken token;
+
+    /** Read and decode the whole content, the stream is not closed */
+    void open(InputStream in) throws IOException {
+        int length = 0;
+        for (int n; (n = in.read(bytes, length, bytes.length - length)) >= 0; ) {
+            length += n;
+            if (length == bytes.length) {
+                bytes = Arrays.copyOf(bytes, bytes.length * 2);
+            }
+        }
+        int needed = (int) Math.ceil(length * (double) decoder.maxCharsPerByte());
+        if (chars.length < needed) {
+            chars = new char[needed];
+        }
+        CharBuffer out = CharBuffer.wrap(chars);
+        decoder.reset();
+        CoderResult result = decoder.decode(ByteBuffer.wrap(bytes, 0, length), out, true);
+        if (!result.isUnderflow()) {
+            result.throwException();
+        }
+        decoder.flush(out);
+        stream.reset(chars, out.position());
+        lexer.setCharStream(stream);
+        token = null;
+    }
+
+    /**
+     * Move to the next token.
+     *
+     * @return type of the token, {@link Token#EOF} at the end
+     */
+    int next() {
+        Token next = lexer.nextToken();
+        if (next.getType() == Token.EOF) {
+            token = null;
+            return Token.EOF;
+        }
+        token = (CommonToken) next;
+        return token.getType();
+    }
+
+    int getLine() {
+        return token.getLine();
+    }
+
+    /** Index of the first character of the token */
+    int getStart() {
+        return token.getStartIndex();
+    }
+
+    /** Index after the last character of the token */
+    int getEnd() {
+        return token.getStopIndex() + 1;
+    }
+
+    /** Number of characters of the file */
+    int getLength() {
+        return stream.size();
+    }
+
+    /** Content of the file, valid until the next file is opened */
+    char[] getChars() {
+        return chars;
+    }
+
+    /** Is the text of the token equal to the string? */
+    boolean textEquals(String str) {
+        int start = getStart();
+        if (getEnd() - start != str.length()) {
+            return false;
+        }
+        for (int i = 0; i < str.length(); i++) {
+            if (chars[start + i] != str.charAt(i)) {
+                return false;
+            }
+        }
+        return true;
+    }
+
+    /** Does the text of the token contain the string? */
+    boolean textContains(String str) {
+        int last = getEnd() - str.length();
+        for (int start = getStart(); start <= last; start++) {
+            int i = 0;
+            while (i < str.length() && chars[start + i] == str.charAt(i)) {
+                i++;
+            }
+            if (i == str.length()) {
+                return true;
+            }
+        }
+        return false;
+    }
+
+    /** Release content of the file, drop buffers which grew too big for a typical file */
+    private void close() {
+        if (bytes.length > MAX_RETAINED_SIZE) {
+            bytes = new byte[INITIAL_SIZE];
+        }
+        if (chars.length > MAX_RETAINED_SIZE) {
+            chars = new char[INITIAL_SIZE];
+        }
+        stream.reset(chars, 0);
+        token = null;
+    }
+
+    /** Tokenizers of one scan. Threads borrow them, so there are at most as many as files parsed at once. */
+    static final class Pool {
+        private final Queue<JavaTokenizer> free = new ConcurrentLinkedQueue<JavaTokenizer>();
+
+        JavaTokenizer acquire() {
+            JavaTokenizer tokenizer = free.poll();
+            return tokenizer != null ? tokenizer : new JavaTokenizer();
+        }
+
+        void release(JavaTokenizer tokenizer) {
+            tokenizer.close();
+            free.add(tokenizer);
+        }
+    }
+
+    /** Char stream over a reused array */
+    private static final class CharArrayStream extends ANTLRStringStream {
+        void reset(char[] data, int length) {
+            this.data = data;
+            this.n = length;
+            reset();
+        }
+    }
+
+    /** Lexer which emits all tokens into one reused token */
+    private static final class ReusingLexer extends JavaLexer {
+        private final CommonToken reused = new CommonToken(Token.INVALID_TOKEN_TYPE);
+
+        @Override
+        public Token emit() {
+            reused.setInputStream(input);
+            reused.setType(state.type);
+            reused.setChannel(state.channel);
+            reused.setStartIndex(state.tokenStartCharIndex);
+            reused.setStopIndex(getCharIndex() - 1);
+            reused.setLine(state.tokenStartLine);
+            reused.setText(state.text);
+            reused.setCharPositionInLine(state.tokenStartCharPositionInLine);
+            emit(reused);
+            return reused;
+        }
+    }
+}
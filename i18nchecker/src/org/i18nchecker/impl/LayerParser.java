@@ -16,33 +16,45 @@
 package org.i18nchecker.impl;
 
 import java.io.File;
+import java.io.IOException;
 import java.io.InputStream;
 import java.util.ArrayList;
 import java.util.Collections;
 import java.util.List;
-import java.util.Stack;
 import java.util.logging.Level;
 import java.util.logging.Logger;
-import javax.xml.parsers.DocumentBuilder;
-import javax.xml.parsers.DocumentBuilderFactory;
-import javax.xml.xpath.XPath;
-import javax.xml.xpath.XPathConstants;
-import javax.xml.xpath.XPathExpression;
-import javax.xml.xpath.XPathFactory;
-import org.w3c.dom.Attr;
-import org.w3c.dom.Document;
-import org.w3c.dom.Element;
-import org.w3c.dom.Node;
-import org.w3c.dom.NodeList;
+import javax.xml.stream.XMLInputFactory;
+import javax.xml.stream.XMLResolver;
+import javax.xml.stream.XMLStreamConstants;
+import javax.xml.stream.XMLStreamException;
+import javax.xml.stream.XMLStreamReader;
 import org.xml.sax.EntityResolver;
+import org.xml.sax.InputSource;
+import org.xml.sax.SAXException;
 
 /**
  * Simple parser to find localizable entries in NetBeans XML layer file.
+ * The layer is read as a stream of StAX events, only the <code>name</code>
+ * attributes of currently open elements are kept to build the path of each entry.
  *
  * @author radim
  */
 public class LayerParser {
 
+    private static final String BUNDLE_VALUE = "bundlevalue";
+    private static final String NAME = "name";
+
+    /** XMLInputFactory lookup is expensive and the factory is not thread-safe, so keep one per thread. */
+    private static final ThreadLocal<XMLInputFactory> FACTORY = new ThreadLocal<XMLInputFactory>() {
+        @Override
+        protected XMLInputFactory initialValue() {
+            XMLInputFactory factory = XMLInputFactory.newInstance();
+            factory.setProperty(XMLInputFactory.IS_NAMESPACE_AWARE, Boolean.FALSE);
+            factory.setProperty(XMLInputFactory.IS_COALESCING, Boolean.FALSE);
+            return factory;
+        }
+    };
+
     public static class LayerData {
 
         /**
@@ -55,16 +67,25 @@ public class LayerParser {
         public final String bundleKey;
         /**
          * Info where this is referenced in the layer file.
-         * Note that we do not know the offset or linenumber.
          */
         public final String info;
+        /**
+         * Line number of the element with <code>bundlevalue</code> attribute
+         * (line where its start tag ends), 1 if unknown.
+         */
+        public final int line;
 
         /*
          * @VisibleForTesting
          */ LayerData(String bundlePath, String bundleKey, String info) {
+            this(bundlePath, bundleKey, info, 1);
+        }
+
+        LayerData(String bundlePath, String bundleKey, String info, int line) {
             this.bundlePath = bundlePath;
             this.bundleKey = bundleKey;
             this.info = info;
+            this.line = line;
         }
 
         @Override
@@ -95,58 +116,104 @@ public class LayerParser {
 
         @Override
         public String toString() {
-            return "LayerData{" + "bundlePath=" + bundlePath + ", bundleKey=" + bundleKey + ", info=" + info + '}';
+            return "LayerData{" + "bundlePath=" + bundlePath + ", bundleKey=" + bundleKey + ", info=" + info + ", line=" + line + '}';
         }
     }
 
-    private List<LayerData> data = new ArrayList();
-
     public LayerParser() {
     }
 
+    /**
+     * Parse the layer.
+     *
+     * @param is layer content
+     * @param resolver entity resolver; DTDs bundled with this tool are used when it is null
+     *     or when it cannot resolve an entity
+     */
     public Iterable<LayerData> parse(InputStream is, EntityResolver resolver) {
         try {
-            DocumentBuilder docBuilder = DocumentBuilderFactory.newInstance().newDocumentBuilder();
-            if (resolver != null) {
-                docBuilder.setEntityResolver(resolver);
+            if (resolver == null) {
+                resolver = CatalogEntityResolver.getDefault();
             }
-            Document doc = docBuilder.parse(is);
-            XPath xpath = XPathFactory.newInstance().newXPath();
-
-            XPathExpression expr = xpath.compile("//@bundlevalue");
-            Object result = expr.evaluate(doc, XPathConstants.NODESET);
-
-            NodeList nodeList = (NodeList) result;
-            for (int i = 0; i < nodeList.getLength(); i++) {
-                Node node = nodeList.item(i);
-                String bundlevalue = node.getTextContent();
-                int idx = bundlevalue.indexOf('#');
-                String bundleFile = bundlevalue.substring(0, idx).replace('.', '/');
-                bundleFile = bundleFile.replace('/', File.separatorChar);
-                // assume that last part is Bundle
-                bundleFile = bundleFile.substring(0, bundleFile.lastIndexOf(File.separatorChar));
-                String bundleKey = bundlevalue.substring(idx + 1);
-                Stack<String> stack = new Stack<String>();
-                for (Node n = node;
-                        n != null;
-                        n = (n instanceof Attr) ? ((Attr) n).getOwnerElement() : n.getParentNode()) {
-                    if (n instanceof Element) {
-                        stack.push(((Element) n).getAttribute("name"));
-                    } else if (n instanceof Attr) {
-                        stack.push(((Attr) n).getName());
-                    }
-                }
-                StringBuilder sb = new StringBuilder();
-                while (!stack.empty()) {
-                    sb.append('/').append(stack.pop());
-                }
-                data.add(new LayerData(
-                        bundleFile, bundleKey, "bundle key referenced in " + sb.toString() + " not found"));
+            boolean loadDtd = !(resolver instanceof CatalogEntityResolver)
+                    || ((CatalogEntityResolver) resolver).isLoadDtd();
+            XMLInputFactory factory = FACTORY.get();
+            factory.setProperty(XMLInputFactory.SUPPORT_DTD, Boolean.valueOf(loadDtd));
+            factory.setXMLResolver(new EntityResolverAdapter(resolver));
+            XMLStreamReader reader = factory.createXMLStreamReader(is);
+            try {
+                return parse(reader);
+            } finally {
+                reader.close();
             }
-            return data;
         } catch (Exception ex) {
             Logger.getLogger(LayerParser.class.getName()).log(Level.SEVERE, null, ex);
         }
         return Collections.emptyList();
     }
+
+    private static List<LayerData> parse(XMLStreamReader reader) throws XMLStreamException {
+        List<LayerData> data = new ArrayList<LayerData>();
+        // values of "name" attribute of all open elements
+        List<String> names = new ArrayList<String>();
+        while (reader.hasNext()) {
+            int event = reader.next();
+            if (event == XMLStreamConstants.START_ELEMENT) {
+                String name = reader.getAttributeValue(null, NAME);
+                names.add(name != null ? name : "");
+                String bundlevalue = reader.getAttributeValue(null, BUNDLE_VALUE);
+                if (bundlevalue != null) {
+                    int line = Math.max(reader.getLocation().getLineNumber(), 1);
+                    data.add(createLayerData(bundlevalue, names, line));
+                }
+            } else if (event == XMLStreamConstants.END_ELEMENT) {
+                names.remove(names.size() - 1);
+            }
+        }
+        return data;
+    }
+
+    private static LayerData createLayerData(String bundlevalue, List<String> names, int line) {
+        int idx = bundlevalue.indexOf('#');
+        String bundleFile = bundlevalue.substring(0, idx).replace('.', '/');
+        bundleFile = bundleFile.replace('/', File.separatorChar);
+        // assume that last part is Bundle
+        bundleFile = bundleFile.substring(0, bundleFile.lastIndexOf(File.separatorChar));
+        String bundleKey = bundlevalue.substring(idx + 1);
+        StringBuilder sb = new StringBuilder();
+        for (String name : names) {
+            sb.append('/').append(name);
+        }
+        sb.append('/').append(BUNDLE_VALUE);
+        return new LayerData(
+                bundleFile, bundleKey, "bundle key referenced in " + sb.toString() + " not found", line);
+    }
+
+    /**
+     * Bridges SAX entity resolver (e.g. XML catalog) to StAX parser.
+     * Entities unknown to the resolver are resolved offline by the default resolver.
+     */
+    private static final class EntityResolverAdapter implements XMLResolver {
+        private final EntityResolver resolver;
+
+        EntityResolverAdapter(EntityResolver resolver) {
+            this.resolver = resolver;
+        }
+
+        public Object resolveEntity(String publicID, String systemID, String baseURI, String namespace)
+                throws XMLStreamException {
+            try {
+                InputSource source = resolver.resolveEntity(publicID, systemID);
+                if (source != null && source.getByteStream() != null) {
+                    return source.getByteStream();
+                }
+                String location = (source != null && source.getSystemId() != null) ? source.getSystemId() : systemID;
+                return CatalogEntityResolver.getDefault().resolveEntity(publicID, location).getByteStream();
+            } catch (SAXException ex) {
+                throw new XMLStreamException(ex);
+            } catch (IOException ex) {
+                throw new XMLStreamException(ex);
+            }
+        }
+    }
 }
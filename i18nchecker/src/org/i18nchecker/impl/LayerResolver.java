@@ -0,0 +1,148 @@
+/**
+*   Copyright 2010-2011 Petr Hamernik
+*
+*   Licensed under the Apache License, Version 2.0 (the "License");
+*   you may not use this file except in compliance with the License.
+*   You may obtain a copy of the License at
+*
+*       http://www.apache.org/licenses/LICENSE-2.0
+*
+*   Unless required by applicable law or agreed to in writing, software
+*   distributed under the License is distributed on an "AS IS" BASIS,
+*   WITHOUT WARRANTIES OR CONDITIONS OF ANY KIND, either express or implied.
+*   See the License for the specific language governing permissions and
+*   limitations under the License.
+*/
+package org.i18nchecker.impl;
+
+import java.io.File;
+import java.io.IOException;
+import java.util.ArrayList;
+import java.util.HashMap;
+import java.util.HashSet;
+import java.util.List;
+import java.util.Map;
+import java.util.Set;
+import java.util.concurrent.Callable;
+import java.util.concurrent.ExecutorService;
+import java.util.concurrent.Future;
+import org.i18nchecker.impl.LayerParser.LayerData;
+
+/**
+ * Resolves bundle keys used in layers of all modules before the modules are scanned,
+ * so each module can be reported and released without waiting for the other modules.
+ * Only layers and primary bundles referenced by layers are parsed. The result is the same
+ * as {@link ModuleScanner#verifyLayer} gives after all modules are scanned.
+ *
+ * @author agent
+ */
+final class LayerResolver {
+
+    /** By module - package path to keys of its bundle used by layers, null after the module is applied */
+    private final List<Map<String, List<String>>> usedKeys = new ArrayList<Map<String, List<String>>>();
+    /** By module - layer entries with keys missing in bundles, null after the module is applied */
+    private final List<List<LayerData>> missingKeys = new ArrayList<List<LayerData>>();
+
+    private LayerResolver() {
+    }
+
+    /**
+     * Read layers of all modules and bundles they use, then resolve the keys.
+     *
+     * @param scanners all modules in order of discovery, not scanned yet
+     * @param context context for parsing of layers and bundles
+     * @param executor executor for reading modules in parallel
+     */
+    static LayerResolver create(
+            final List<ModuleScanner> scanners, final ScanContext context, ExecutorService executor
+    ) throws IOException {
+        List<Future<Iterable<LayerData>>> layerFutures = new ArrayList<Future<Iterable<LayerData>>>();
+        for (final ModuleScanner scanner : scanners) {
+            layerFutures.add(executor.submit(new Callable<Iterable<LayerData>>() {
+                public Iterable<LayerData> call() throws IOException {
+                    return scanner.parseLayer();
+                }
+            }));
+        }
+        List<Iterable<LayerData>> layers = new ArrayList<Iterable<LayerData>>();
+        final Set<String> referenced = new HashSet<String>();
+        for (Future<Iterable<LayerData>> future : layerFutures) {
+            Iterable<LayerData> layer = I18NUtils.waitFor(future);
+            layers.add(layer);
+            if (layer != null) {
+                for (LayerData layerEntry : layer) {
+                    referenced.add(layerEntry.bundlePath);
+                }
+            }
+        }
+
+        // bundles of packages referenced by some layer
+        List<Future<Map<String, PrimaryResourceBundleModel>>> bundleFutures =
+                new ArrayList<Future<Map<String, PrimaryResourceBundleModel>>>();
+        for (final ModuleScanner scanner : scanners) {
+            bundleFutures.add(executor.submit(new Callable<Map<String, PrimaryResourceBundleModel>>() {
+                public Map<String, PrimaryResourceBundleModel> call() throws IOException {
+                    Map<String, PrimaryResourceBundleModel> bundles = new HashMap<String, PrimaryResourceBundleModel>();
+                    for (String packagePath : scanner.getBundlePackages()) {
+                        if (referenced.contains(packagePath)) {
+                            File file = new File(new File(scanner.getSourceRoot(), packagePath), "Bundle.properties");
+                            PrimaryResourceBundleModel bundle = new PrimaryResourceBundleModel(file.getPath());
+                            bundle.parse(context);
+                            bundles.put(packagePath, bundle);
+                        }
+                    }
+                    return bundles;
+                }
+            }));
+        }
+        List<Map<String, PrimaryResourceBundleModel>> bundles = new ArrayList<Map<String, PrimaryResourceBundleModel>>();
+        BundleIndex index = new BundleIndex();
+        for (Future<Map<String, PrimaryResourceBundleModel>> future : bundleFutures) {
+            Map<String, PrimaryResourceBundleModel> moduleBundles = I18NUtils.waitFor(future);
+            bundles.add(moduleBundles);
+            for (Map.Entry<String, PrimaryResourceBundleModel> entry : moduleBundles.entrySet()) {
+                index.add(entry.getKey(), entry.getValue());
+            }
+        }
+
+        // the same resolution as ModuleScanner.verifyLayer, in the same order of modules
+        LayerResolver resolver = new LayerResolver();
+        for (int i = 0; i < scanners.size(); i++) {
+            List<LayerData> missing = new ArrayList<LayerData>();
+            if (layers.get(i) != null) {
+                for (LayerData layerEntry : layers.get(i)) {
+                    if (!index.markAsUsed(layerEntry, bundles.get(i).get(layerEntry.bundlePath))) {
+                        missing.add(layerEntry);
+                    }
+                }
+            }
+            resolver.missingKeys.add(missing);
+        }
+        for (Map<String, PrimaryResourceBundleModel> moduleBundles : bundles) {
+            Map<String, List<String>> used = new HashMap<String, List<String>>();
+            for (Map.Entry<String, PrimaryResourceBundleModel> entry : moduleBundles.entrySet()) {
+                used.put(entry.getKey(), entry.getValue().getUsedKeys());
+            }
+            resolver.usedKeys.add(used);
+        }
+        return resolver;
+    }
+
+    /**
+     * Mark keys of the module used by layers and report missing keys of its layer,
+     * call after the module is scanned and before its results are reported.
+     *
+     * @param module index of the module in order of discovery
+     * @param scanner the scanned module
+     */
+    void apply(int module, ModuleScanner scanner) {
+        for (Map.Entry<String, List<String>> entry : usedKeys.get(module).entrySet()) {
+            scanner.markUsedByLayers(entry.getKey(), entry.getValue());
+        }
+        for (LayerData layerEntry : missingKeys.get(module)) {
+            scanner.reportMissingLayerKey(layerEntry);
+        }
+        usedKeys.set(module, null);
+        missingKeys.set(module, null);
+    }
+}
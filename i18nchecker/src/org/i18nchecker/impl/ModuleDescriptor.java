@@ -0,0 +1,139 @@
+/**
+*   Copyright 2010-2011 Petr Hamernik
+*
+*   Licensed under the Apache License, Version 2.0 (the "License");
+*   you may not use this file except in compliance with the License.
+*   You may obtain a copy of the License at
+*
+*       http://www.apache.org/licenses/LICENSE-2.0
+*
+*   Unless required by applicable law or agreed to in writing, software
+*   distributed under the License is distributed on an "AS IS" BASIS,
+*   WITHOUT WARRANTIES OR CONDITIONS OF ANY KIND, either express or implied.
+*   See the License for the specific language governing permissions and
+*   limitations under the License.
+*/
+
+package org.i18nchecker.impl;
+
+import java.io.ByteArrayInputStream;
+import java.io.ByteArrayOutputStream;
+import java.io.File;
+import java.io.FileInputStream;
+import java.io.FileNotFoundException;
+import java.io.IOException;
+import java.io.InputStream;
+import java.util.jar.Attributes;
+import java.util.jar.Manifest;
+
+/**
+ * Immutable description of a NetBeans module as declared in its manifest.mf.
+ * The manifest is read only once, when the module is discovered.
+ *
+ * @author agent
+ */
+public final class ModuleDescriptor {
+
+    public static final String MANIFEST_FILE = "manifest.mf";
+
+    private static final Attributes.Name MODULE = new Attributes.Name("OpenIDE-Module");
+    private static final Attributes.Name LOCALIZING_BUNDLE = new Attributes.Name("OpenIDE-Module-Localizing-Bundle");
+    private static final Attributes.Name LAYER = new Attributes.Name("OpenIDE-Module-Layer");
+
+    private final File manifest;
+    private final String moduleName;
+    private final String localizingBundle;
+    private final String layer;
+
+    private ModuleDescriptor(File manifest, String moduleName, String localizingBundle, String layer) {
+        this.manifest = manifest;
+        this.moduleName = moduleName;
+        this.localizingBundle = localizingBundle;
+        this.layer = layer;
+    }
+
+    /**
+     * Read the module manifest.
+     *
+     * @param manifest manifest.mf file
+     * @return module descriptor or null if there is no such file or it is not NetBeans module manifest
+     */
+    public static ModuleDescriptor read(File manifest) throws IOException {
+        InputStream is;
+        try {
+            // no separate exists()/isFile() check, opening the file is a single file system call
+            is = new FileInputStream(manifest);
+        } catch (FileNotFoundException ex) {
+            return null;
+        }
+        try {
+            return read(manifest, is);
+        } finally {
+            is.close();
+        }
+    }
+
+    static ModuleDescriptor read(File manifest, InputStream is) throws IOException {
+        ByteArrayOutputStream content = new ByteArrayOutputStream();
+        byte[] buf = new byte[4096];
+        for (;;) {
+            int len = is.read(buf);
+            if (len < 0) {
+                break;
+            }
+            content.write(buf, 0, len);
+        }
+        // java.util.jar.Manifest silently ignores the last line if it is not terminated
+        content.write('\n');
+        Attributes attrs = new Manifest(new ByteArrayInputStream(content.toByteArray())).getMainAttributes();
+        String moduleName = attrs.getValue(MODULE);
+        if (moduleName == null) {
+            return null;
+        }
+        return new ModuleDescriptor(manifest, moduleName.trim(), trim(attrs.getValue(LOCALIZING_BUNDLE)), trim(attrs.getValue(LAYER)));
+    }
+
+    private static String trim(String value) {
+        return value != null ? value.trim() : null;
+    }
+
+    /** The manifest.mf file */
+    public File getManifest() {
+        return manifest;
+    }
+
+    /** Value of OpenIDE-Module attribute e.g. "org.netbeans.paint/1" */
+    public String getModuleName() {
+        return moduleName;
+    }
+
+    /** Module's own resource bundle (e.g. "org/netbeans/paint/Bundle.properties") or null */
+    public String getLocalizingBundle() {
+        return localizingBundle;
+    }
+
+    /**
+     * Package of module's own resource bundle (using <code>File.separator</code> as delimiter) or null
+     */
+    public String getLocalizingBundlePackage() {
+        if (localizingBundle == null) {
+            return null;
+        }
+        String pack = localizingBundle.replace("/", File.separator);
+        int index = pack.lastIndexOf(File.separator);
+        if (index >= 0) {
+            pack = pack.substring(0, index);
+        }
+        return pack;
+    }
+
+    /** Module's XML layer path relative to source root (e.g. "org/netbeans/paint/layer.xml") or null */
+    public String getLayer() {
+        return layer;
+    }
+
+    @Override
+    public String toString() {
+        return "ModuleDescriptor{" + "moduleName=" + moduleName + ", localizingBundle=" + localizingBundle + ", layer=" + layer + '}';
+    }
+}
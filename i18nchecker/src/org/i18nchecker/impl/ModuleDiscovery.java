@@ -0,0 +1,227 @@
+/**
+*   Copyright 2010-2011 Petr Hamernik
+*
+*   Licensed under the Apache License, Version 2.0 (the "License");
+*   you may not use this file except in compliance with the License.
+*   You may obtain a copy of the License at
+*
+*       http://www.apache.org/licenses/LICENSE-2.0
+*
+*   Unless required by applicable law or agreed to in writing, software
+*   distributed under the License is distributed on an "AS IS" BASIS,
+*   WITHOUT WARRANTIES OR CONDITIONS OF ANY KIND, either express or implied.
+*   See the License for the specific language governing permissions and
+*   limitations under the License.
+*/
+
+package org.i18nchecker.impl;
+
+import java.io.File;
+import java.io.IOException;
+import java.nio.file.DirectoryStream;
+import java.nio.file.Files;
+import java.nio.file.NoSuchFileException;
+import java.nio.file.Path;
+import java.nio.file.attribute.BasicFileAttributes;
+import java.util.ArrayList;
+import java.util.Collections;
+import java.util.List;
+import java.util.concurrent.Callable;
+import java.util.concurrent.ExecutorService;
+import java.util.concurrent.Future;
+
+/**
+ * Finds modules in top level directories. Each module candidate (a directory
+ * in top level directory) is probed in the provided executor, so the file system
+ * is queried for many candidates at once. The source tree of a found module is
+ * listed by the probe too (see {@link ModuleScanner#list}), so the size of each
+ * module is known before it is scanned. Messages about ignored candidates are
+ * logged by the thread which discovers, in order of candidates.
+ * When the context records stamps, every probed candidate is stamped, even an ignored one,
+ * together with the files which decide whether it is a module.
+ *
+ * @author agent
+ */
+final class ModuleDiscovery {
+
+    /** Files of a candidate whose presence or content decides whether and how it is scanned */
+    private static final String[] DETECTION_FILES = { ModuleDescriptor.MANIFEST_FILE, "pom.xml", "src" };
+
+    /** Receives modules as soon as they are discovered */
+    interface Listener {
+        /**
+         * Called from a discovery thread.
+         *
+         * @param scanner scanner of newly discovered module
+         */
+        void moduleFound(ModuleScanner scanner);
+    }
+
+    private final File repoRoot;
+    private final String moduleFilter;
+    private final ScanContext context;
+    private final ExecutorService executor;
+    private ModuleScheduler.Log log = ModuleScheduler.SYSTEM_OUT;
+    /** Stamps of top level directories and probed candidates, null unless the context records them */
+    private final FileStamps stamps;
+
+    /**
+     * @param repoRoot root of repository
+     * @param moduleFilter only modules which contain this string are discovered, may be null
+     * @param context scan context passed to module scanners
+     * @param executor executor for probing module candidates
+     */
+    ModuleDiscovery(File repoRoot, String moduleFilter, ScanContext context, ExecutorService executor) {
+        this.repoRoot = repoRoot;
+        this.moduleFilter = (moduleFilter != null && moduleFilter.length() > 0) ? moduleFilter : null;
+        this.context = context;
+        this.executor = executor;
+        this.stamps = context.isRecordStamps() ? new FileStamps() : null;
+    }
+
+    /** Where messages about ignored candidates go, System.out by default */
+    void setLog(ModuleScheduler.Log log) {
+        this.log = log;
+    }
+
+    /**
+     * Stamps of top level directories, probed module candidates and their files which decide
+     * how the candidate is scanned (see {@link #DETECTION_FILES}), complete after {@link #discover}.
+     *
+     * @return null unless the context records stamps
+     */
+    FileStamps getStamps() {
+        return stamps;
+    }
+
+    /**
+     * Discover modules in the top level directories.
+     *
+     * @param topDirsToScan names of top level directories
+     * @param listener notified about each module as soon as it is found (in any order), may be null
+     * @return scanners of all modules in order of top level directories and module names
+     */
+    List<ModuleScanner> discover(Iterable<String> topDirsToScan, Listener listener) throws IOException {
+        List<Probe> probes = new ArrayList<Probe>();
+        for (String topDirToScan : topDirsToScan) {
+            Path topDir = new File(repoRoot, topDirToScan).toPath();
+            if (stamps != null) {
+                stamps.add(topDir.toFile());
+            }
+            if (!isDirectory(topDir) || (moduleFilter != null && !topDirToScan.contains(moduleFilter))) {
+                // missing or filtered out, other top level directories are still scanned
+                continue;
+            }
+
+            for (Path candidate : listSorted(topDir)) {
+                Probe probe = new Probe(candidate, listener);
+                if (moduleFilter != null && !candidate.getFileName().toString().contains(moduleFilter)) {
+                    probe.message = "Filtered out: " + candidate.toAbsolutePath();
+                } else {
+                    probe.future = executor.submit(probe);
+                }
+                probes.add(probe);
+            }
+        }
+
+        List<ModuleScanner> scanners = new ArrayList<ModuleScanner>();
+        for (Probe probe : probes) {
+            ModuleScanner scanner = probe.future != null ? I18NUtils.waitFor(probe.future) : null;
+            if (probe.stamps != null) {
+                stamps.addAll(probe.stamps);
+            }
+            if (probe.message != null) {
+                log.log(probe.message);
+            }
+            if (scanner != null) {
+                scanners.add(scanner);
+            }
+        }
+        return scanners;
+    }
+
+    private static List<Path> listSorted(Path dir) throws IOException {
+        List<Path> children = new ArrayList<Path>();
+        DirectoryStream<Path> stream = Files.newDirectoryStream(dir);
+        try {
+            for (Path child : stream) {
+                children.add(child);
+            }
+        } finally {
+            stream.close();
+        }
+        Collections.sort(children);
+        return children;
+    }
+
+    private static BasicFileAttributes readAttributes(Path path) throws IOException {
+        try {
+            return Files.readAttributes(path, BasicFileAttributes.class);
+        } catch (NoSuchFileException ex) {
+            return null;
+        }
+    }
+
+    private static boolean isDirectory(Path path) throws IOException {
+        BasicFileAttributes attrs = readAttributes(path);
+        return attrs != null && attrs.isDirectory();
+    }
+
+    /** Probe of a single module candidate */
+    private final class Probe implements Callable<ModuleScanner> {
+        private final Path candidate;
+        private final Listener listener;
+        /** The probe, null if the candidate is filtered out */
+        private Future<ModuleScanner> future;
+        /** Message about the ignored candidate, read after the probe is done */
+        private String message;
+        /** Stamps of the candidate, read after the probe is done */
+        private FileStamps stamps;
+
+        Probe(Path candidate, Listener listener) {
+            this.candidate = candidate;
+            this.listener = listener;
+        }
+
+        public ModuleScanner call() throws IOException {
+            if (context.isRecordStamps()) {
+                stamps = new FileStamps();
+                stamps.add(candidate.toFile());
+            }
+            BasicFileAttributes attrs = readAttributes(candidate);
+            if (attrs == null || attrs.isRegularFile()) {
+                return null;
+            }
+            if (stamps != null) {
+                for (String name : DETECTION_FILES) {
+                    stamps.add(candidate.resolve(name).toFile());
+                }
+            }
+            ModuleScanner scanner = createScanner(candidate.toFile());
+            if (scanner == null) {
+                return null;
+            }
+            scanner.list();
+            if (listener != null) {
+                listener.moduleFound(scanner);
+            }
+            return scanner;
+        }
+
+        private ModuleScanner createScanner(File f) throws IOException {
+            ModuleDescriptor descriptor = ModuleDescriptor.read(new File(f, ModuleDescriptor.MANIFEST_FILE));
+            if (descriptor != null) {
+                return new ModuleScanner(f, f, descriptor, context);
+            }
+            BasicFileAttributes pom = readAttributes(candidate.resolve("pom.xml"));
+            if (pom != null && pom.isRegularFile()) {
+                return new ModuleScanner(f, new File(f, "/src/main/java"), null, context);
+            }
+            if (readAttributes(candidate.resolve("src")) != null) {
+                return new ModuleScanner(f, new File(f, "src"), null, context);
+            }
+            message = "Can't auto-detect sources, ignoring: " + candidate.toAbsolutePath();
+            return null;
+        }
+    }
+}
@@ -0,0 +1,198 @@
+/**
+*   Copyright 2010-2011 Petr Hamernik
+*
+*   Licensed under the Apache License, Version 2.0 (the "License");
+*   you may not use this file except in compliance with the License.
+*   You may obtain a copy of the License at
+*
+*       http://www.apache.org/licenses/LICENSE-2.0
+*
+*   Unless required by applicable law or agreed to in writing, software
+*   distributed under the License is distributed on an "AS IS" BASIS,
+*   WITHOUT WARRANTIES OR CONDITIONS OF ANY KIND, either express or implied.
+*   See the License for the specific language governing permissions and
+*   limitations under the License.
+*/
+package org.i18nchecker.impl;
+
+import java.io.File;
+import java.io.FileInputStream;
+import java.io.FileNotFoundException;
+import java.io.FileOutputStream;
+import java.io.IOException;
+import java.io.InputStream;
+import java.io.OutputStream;
+import java.util.HashMap;
+import java.util.Map;
+import java.util.Properties;
+
+/**
+ * Results of modules from previous runs, persisted in a properties file.
+ * Modules which failed recently are scanned first, so a fail-fast run finds a failure early.
+ * Then the most expensive modules are scanned first, so no big module is left for the end of a parallel run.
+ *
+ * @author agent
+ */
+public final class ModuleHistory {
+
+    private static final String FAILURES = "failures.";
+    private static final String COSTS = "cost.";
+    private static final String SIZES = "size.";
+    /** Weight of older runs, the score halves with each run in which the module passed */
+    private static final double DECAY = 0.5;
+
+    private final String repoRoot;
+    /** Relative module path to decayed number of failures */
+    private final Map<String, Double> failureScores = new HashMap<String, Double>();
+    /** Relative module path to decayed duration of its scan in nanoseconds */
+    private final Map<String, Long> costs = new HashMap<String, Long>();
+    /** Relative module path to size of its files when it was scanned, see {@link ModuleScanner#estimateSize} */
+    private final Map<String, Long> sizes = new HashMap<String, Long>();
+    /** Average scan speed of modules with known cost and size, 0 if there is none, -1 if not computed yet */
+    private double nanosPerByte = -1;
+    /** Average cost of scanned modules, -1 if there is none or it is not computed yet */
+    private long averageCost = -1;
+
+    /**
+     * @param repoRoot modules are stored by path relative to this directory
+     */
+    public ModuleHistory(File repoRoot) {
+        this.repoRoot = repoRoot.toPath().toAbsolutePath().normalize().toString() + File.separator;
+    }
+
+    /**
+     * Read the history.
+     *
+     * @param repoRoot root of repository
+     * @param file history file, empty history if it does not exist
+     */
+    public static ModuleHistory read(File repoRoot, File file) throws IOException {
+        ModuleHistory history = new ModuleHistory(repoRoot);
+        Properties props = new Properties();
+        InputStream is;
+        try {
+            is = new FileInputStream(file);
+        } catch (FileNotFoundException ex) {
+            return history;
+        }
+        try {
+            props.load(is);
+        } finally {
+            is.close();
+        }
+        for (String key : props.stringPropertyNames()) {
+            try {
+                if (key.startsWith(FAILURES)) {
+                    history.failureScores.put(key.substring(FAILURES.length()), Double.valueOf(props.getProperty(key)));
+                } else if (key.startsWith(COSTS)) {
+                    history.costs.put(key.substring(COSTS.length()), Long.valueOf(props.getProperty(key)));
+                } else if (key.startsWith(SIZES)) {
+                    history.sizes.put(key.substring(SIZES.length()), Long.valueOf(props.getProperty(key)));
+                }
+            } catch (NumberFormatException ex) {
+                // ignore broken entry, the history is only a hint
+            }
+        }
+        return history;
+    }
+
+    public synchronized void write(File file) throws IOException {
+        Properties props = new Properties();
+        for (Map.Entry<String, Double> entry : failureScores.entrySet()) {
+            props.setProperty(FAILURES + entry.getKey(), entry.getValue().toString());
+        }
+        for (Map.Entry<String, Long> entry : costs.entrySet()) {
+            props.setProperty(COSTS + entry.getKey(), entry.getValue().toString());
+        }
+        for (Map.Entry<String, Long> entry : sizes.entrySet()) {
+            props.setProperty(SIZES + entry.getKey(), entry.getValue().toString());
+        }
+        OutputStream os = new FileOutputStream(file);
+        try {
+            props.store(os, "I18N checker module history");
+        } finally {
+            os.close();
+        }
+    }
+
+    /** How likely the module fails, 0 for modules which never failed */
+    public synchronized double getFailureScore(ModuleScanner scanner) {
+        Double score = failureScores.get(key(scanner));
+        return score != null ? score : 0;
+    }
+
+    /**
+     * Remember the result of the module in this run.
+     *
+     * @param failed did the module fail?
+     */
+    public synchronized void recordResult(ModuleScanner scanner, boolean failed) {
+        String key = key(scanner);
+        Double score = failureScores.get(key);
+        double newScore = (score != null ? score * DECAY : 0) + (failed ? 1 : 0);
+        if (newScore < 0.01) {
+            failureScores.remove(key);
+        } else {
+            failureScores.put(key, newScore);
+        }
+    }
+
+    /**
+     * Expected duration of the module scan.
+     *
+     * @return nanoseconds, -1 if the module was not scanned yet
+     */
+    public synchronized long getCost(ModuleScanner scanner) {
+        Long cost = costs.get(key(scanner));
+        return cost != null ? cost : -1;
+    }
+
+    /**
+     * Expected duration of a scan of a module which was not scanned yet, from the speed
+     * of scans of other modules.
+     *
+     * @param size size of files of the module, see {@link ModuleScanner#estimateSize}
+     * @return nanoseconds, the average duration of other scans if their sizes are not known,
+     *   -1 if no module was scanned yet
+     */
+    public synchronized long estimateCost(long size) {
+        if (nanosPerByte < 0) {
+            long totalCost = 0;
+            long totalSize = 0;
+            long allCosts = 0;
+            for (Map.Entry<String, Long> entry : costs.entrySet()) {
+                allCosts += entry.getValue();
+                Long scannedSize = sizes.get(entry.getKey());
+                if (scannedSize != null) {
+                    totalCost += entry.getValue();
+                    totalSize += scannedSize;
+                }
+            }
+            nanosPerByte = totalSize > 0 ? (double) totalCost / totalSize : 0;
+            averageCost = costs.isEmpty() ? -1 : allCosts / costs.size();
+        }
+        return nanosPerByte > 0 ? (long) (size * nanosPerByte) : averageCost;
+    }
+
+    /**
+     * Remember the duration of the module scan in this run.
+     *
+     * @param nanos duration of the scan
+     * @param size size of the scanned files, see {@link ModuleScanner#estimateSize}
+     */
+    public synchronized void recordCost(ModuleScanner scanner, long nanos, long size) {
+        String key = key(scanner);
+        Long cost = costs.get(key);
+        costs.put(key, cost != null ? (long) (cost * DECAY + nanos * (1 - DECAY)) : nanos);
+        sizes.put(key, size);
+        nanosPerByte = -1;
+    }
+
+    private String key(ModuleScanner scanner) {
+        String path = scanner.getRoot().toPath().toAbsolutePath().normalize().toString();
+        if (path.startsWith(repoRoot)) {
+            path = path.substring(repoRoot.length());
+        }
+        return path.replace(File.separatorChar, '/');
+    }
+}
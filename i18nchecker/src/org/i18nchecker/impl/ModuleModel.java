@@ -0,0 +1,47 @@
+/**
+*   Copyright 2010-2011 Petr Hamernik
+*
+*   Licensed under the Apache License, Version 2.0 (the "License");
+*   you may not use this file except in compliance with the License.
+*   You may obtain a copy of the License at
+*
+*       http://www.apache.org/licenses/LICENSE-2.0
+*
+*   Unless required by applicable law or agreed to in writing, software
+*   distributed under the License is distributed on an "AS IS" BASIS,
+*   WITHOUT WARRANTIES OR CONDITIONS OF ANY KIND, either express or implied.
+*   See the License for the specific language governing permissions and
+*   limitations under the License.
+*/
+package org.i18nchecker.impl;
+
+import java.io.IOException;
+import java.util.List;
+import java.util.Map;
+
+/**
+ * Results and bundles of one module, either scanned by this process or read from a {@link RepositorySnapshot}.
+ *
+ * @author agent
+ */
+public interface ModuleModel extends ModuleResults {
+
+    /**
+     * Export strings of primary bundles for translation.
+     *
+     * @param language language code of translated bundles with already translated strings
+     * @param exportTo lines of CSV file
+     * @param relativePath module path relative to repository root
+     */
+    void bundle2csv(String language, List<String> exportTo, String relativePath) throws IOException;
+
+    /**
+     * Generate translated bundles of the module.
+     *
+     * @param language language code of generated bundles
+     * @param header header of generated files
+     * @param translatedModule translated strings of the module by package and key
+     */
+    void csv2bundle(String language, List<String> header, Map<String, Map<String, String>> translatedModule)
+            throws IOException;
+}
@@ -0,0 +1,36 @@
+/**
+*   Copyright 2010-2011 Petr Hamernik
+*
+*   Licensed under the Apache License, Version 2.0 (the "License");
+*   you may not use this file except in compliance with the License.
+*   You may obtain a copy of the License at
+*
+*       http://www.apache.org/licenses/LICENSE-2.0
+*
+*   Unless required by applicable law or agreed to in writing, software
+*   distributed under the License is distributed on an "AS IS" BASIS,
+*   WITHOUT WARRANTIES OR CONDITIONS OF ANY KIND, either express or implied.
+*   See the License for the specific language governing permissions and
+*   limitations under the License.
+*/
+package org.i18nchecker.impl;
+
+import java.io.File;
+
+/**
+ * Results of one module, either scanned by this process or read from results of a shard.
+ *
+ * @author agent
+ */
+public interface ModuleResults {
+
+    /** Module directory (NetBeans module) or source root */
+    File getRoot();
+
+    int getProblemsCount();
+
+    /** Print results to System.out
+     * @param details Print details about each warning or just summary?
+     */
+    void printResults(boolean details);
+}
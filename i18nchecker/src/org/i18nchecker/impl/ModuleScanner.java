@@ -16,64 +16,261 @@
 
 package org.i18nchecker.impl;
 
-import java.io.BufferedReader;
 import java.io.File;
-import java.io.FileInputStream;
-import java.io.FileReader;
 import java.io.IOException;
+import java.io.InputStream;
+import java.nio.file.FileVisitOption;
+import java.nio.file.FileVisitResult;
+import java.nio.file.Files;
+import java.nio.file.Path;
+import java.nio.file.SimpleFileVisitor;
+import java.nio.file.attribute.BasicFileAttributes;
+import java.util.ArrayList;
+import java.util.Collection;
+import java.util.Collections;
+import java.util.EnumSet;
+import java.util.HashSet;
 import java.util.List;
 import java.util.Map;
+import java.util.Set;
 import java.util.TreeMap;
-import org.apache.tools.ant.DirectoryScanner;
 import org.i18nchecker.impl.LayerParser.LayerData;
-import org.xml.sax.EntityResolver;
 
 /**
  * Scanner for a single module strings.
  *
  * @author Petr Hamernik
  */
-public final class ModuleScanner {
+public final class ModuleScanner implements ModuleModel {
 
-    private static final String MANIFEST_FILE = "manifest.mf";
-    private static final String MANIFEST_BUNDLE_LINK = "OpenIDE-Module-Localizing-Bundle: ";
-    private static final String MANIFEST_LAYER_LINK = "OpenIDE-Module-Layer: ";
+    /** Cost of opening and parsing a file regardless of its length, in bytes of its content */
+    private static final long FILE_OVERHEAD = 2048;
 
     private final File root;
+    /** Directory of the module, the same as root for NetBeans modules, contains root otherwise */
+    private final File moduleDir;
     private final File sourceRoot;
-    private final boolean scanNbArtifacts;
+    /** Manifest of NetBeans module, null for plain Java sources */
+    private final ModuleDescriptor descriptor;
     private final Map<String, PackageScanner> packages;
     private final ScanResults results;
 
-    private final EntityResolver resolver;
+    /** Services of the run, the module can use its own string pool, see {@link #useOwnStringPool} */
+    private ScanContext context;
+    private boolean ownStringPool;
+
+    /** Scan only primary bundles and the layer, see {@link #setBundlesOnly} */
+    private boolean bundlesOnly;
+
+    /** Files and directories of the source tree found by {@link #list}, replayed by the scan, null after it */
+    private List<WalkStep> listing;
+    /** Result of {@link #estimateSize}, -1 until the source tree is listed */
+    private long estimatedSize = -1;
+    /** Paths of packages with a primary bundle, found by {@link #list} */
+    private final Set<String> bundlePackages = new HashSet<String>();
+
+    /** Stamps of files read by the scan, null unless the context records them */
+    private FileStamps stamps;
+
+    /** Entries of the layer file, resolved after all modules are scanned */
+    private Iterable<LayerData> layerEntries;
     
-    public ModuleScanner(
-            File root, boolean scanNbArtifacts, EntityResolver resolver
+    /**
+     * @param moduleDir directory of the module
+     * @param root module directory (NetBeans module) or source root
+     * @param descriptor module manifest if root is a NetBeans module, otherwise null
+     * @param context services shared by all scanned modules
+     */
+    ModuleScanner(
+            File moduleDir, File root, ModuleDescriptor descriptor, ScanContext context
     ) throws IOException {
+        this.moduleDir = moduleDir;
         this.root = root;
-        this.sourceRoot = scanNbArtifacts ? new File(root, "src") : root;
-        this.scanNbArtifacts = scanNbArtifacts;
-        this.resolver = resolver;
+        this.sourceRoot = descriptor != null ? new File(root, "src") : root;
+        this.descriptor = descriptor;
+        this.context = context;
         this.packages = new TreeMap<String, PackageScanner>();
         this.results = new ScanResults(sourceRoot.getCanonicalPath());
     }
 
-    /** Scan module, verify I18N and collects results */
+    /**
+     * Scan module, verify I18N and read the module layer.
+     * Files are parsed and packages verified in the parse executor of scan context
+     * while the source tree is still being walked.
+     * Layer entries can refer to bundles of other modules, so they are verified later
+     * by {@link #verifyLayer} and results are reported by {@link #reportResults}.
+     */
     public void scan() throws IOException {
-        scanFiles(FileType.PRIMARY_BUNDLE);
-        scanFiles(FileType.TRANSLATED_BUNDLE);
-        scanFiles(FileType.JAVA);
+        if (estimatedSize < 0) {
+            list();
+        }
+        ScanPipeline pipeline = new ScanPipeline(context);
+        List<String> prefetched = context.getPrefetcher() != null ? new ArrayList<String>() : null;
+        try {
+            scanFiles(pipeline, prefetched);
+            pipeline.await();
+        } finally {
+            if (prefetched != null) {
+                // files read ahead but not opened because the scan failed or was cancelled
+                context.getPrefetcher().cancel(prefetched);
+            }
+        }
 
-        for (PackageScanner ps: packages.values()) {
-            ps.parseFiles();
-            ps.verify();
+        if (descriptor != null && !context.isCancelled()) {
+            if (!bundlesOnly) {
+                verifyManifest();
+            }
+            readLayer();
+            if (stamps != null) {
+                stamps.add(root);
+                stamps.add(descriptor.getManifest());
+                if (descriptor.getLayer() != null) {
+                    stamps.add(new File(sourceRoot, descriptor.getLayer()));
+                }
+            }
         }
+    }
 
-        if (scanNbArtifacts) {
-            verifyManifest();
-            verifyLayer();
+    /**
+     * Scan only what other modules need - primary bundles and the layer. Used for modules
+     * of other shards, their results are incomplete then. Set before the scan.
+     */
+    void setBundlesOnly(boolean bundlesOnly) {
+        this.bundlesOnly = bundlesOnly;
+    }
+
+    boolean isBundlesOnly() {
+        return bundlesOnly;
+    }
+
+    /**
+     * Pool strings of this module separately from other modules, so they can be collected
+     * when the module is {@link #release released}. Call before the scan.
+     */
+    void useOwnStringPool() {
+        context = context.withOwnStringPool();
+        ownStringPool = true;
+    }
+
+    /** Drop models of all files, only results stay. Call after the results are reported and printed or exported. */
+    void release() {
+        packages.clear();
+        layerEntries = null;
+        if (ownStringPool) {
+            context.getStringPool().clear();
         }
+    }
 
+    /**
+     * Walk the source tree and remember its files for the scan. Called by discovery,
+     * so the size of the module is known before any module is scanned, or by the scan
+     * of a module which was not discovered. Records stamps if the context records them.
+     * Ant's default excludes and links out of the tree are skipped (see {@link SourceTreeFilter}).
+     */
+    void list() throws IOException {
+        if (context.isRecordStamps()) {
+            stamps = new FileStamps();
+        }
+        final List<WalkStep> steps = new ArrayList<WalkStep>();
+        if (!sourceRoot.isDirectory()) {
+            if (stamps != null) {
+                stamps.add(sourceRoot);
+            }
+            listing = steps;
+            estimatedSize = 0;
+            return;
+        }
+        final long[] size = new long[1];
+        final Path start = sourceRoot.toPath();
+        final SourceTreeFilter filter = new SourceTreeFilter(start);
+        // package paths of directories being walked
+        final List<String> packagePaths = new ArrayList<String>();
+        Files.walkFileTree(start, EnumSet.of(FileVisitOption.FOLLOW_LINKS), Integer.MAX_VALUE, new SimpleFileVisitor<Path>() {
+            @Override
+            public FileVisitResult preVisitDirectory(Path dir, BasicFileAttributes attrs) throws IOException {
+                if (context.isCancelled() || (!dir.equals(start) && filter.isSkipped(dir))) {
+                    return FileVisitResult.SKIP_SUBTREE;
+                }
+                if (stamps != null) {
+                    stamps.add(dir, attrs);
+                }
+                packagePaths.add(start.relativize(dir).toString());
+                steps.add(WalkStep.ENTER);
+                return FileVisitResult.CONTINUE;
+            }
+
+            @Override
+            public FileVisitResult visitFile(Path file, BasicFileAttributes attrs) {
+                String name = file.getFileName().toString();
+                FileType type = FileType.forFileName(name);
+                if (type == null || !attrs.isRegularFile() || SourceTreeFilter.isExcluded(name)) {
+                    return FileVisitResult.CONTINUE;
+                }
+                if (stamps != null) {
+                    stamps.add(file, attrs);
+                }
+                String packagePath = packagePaths.get(packagePaths.size() - 1);
+                steps.add(new WalkStep(packagePath, name, type, attrs.size()));
+                if (isParsed(type)) {
+                    size[0] += attrs.size() + FILE_OVERHEAD;
+                }
+                if (type == FileType.PRIMARY_BUNDLE) {
+                    bundlePackages.add(packagePath);
+                }
+                return FileVisitResult.CONTINUE;
+            }
+
+            @Override
+            public FileVisitResult visitFileFailed(Path file, IOException exc) {
+                // e.g. broken link, ignore as the file could not be read anyway
+                return FileVisitResult.CONTINUE;
+            }
+
+            @Override
+            public FileVisitResult postVisitDirectory(Path dir, IOException exc) {
+                packagePaths.remove(packagePaths.size() - 1);
+                steps.add(WalkStep.LEAVE);
+                return FileVisitResult.CONTINUE;
+            }
+        });
+        listing = steps;
+        estimatedSize = size[0];
+    }
+
+    /**
+     * Size of files which the scan parses plus a fixed overhead per file, known once the source tree
+     * is listed. Used to order modules not scanned yet and to balance shards.
+     */
+    long estimateSize() throws IOException {
+        if (estimatedSize < 0) {
+            list();
+        }
+        return estimatedSize;
+    }
+
+    /** Paths of packages (with system separators) which have a primary bundle */
+    Set<String> getBundlePackages() throws IOException {
+        estimateSize();
+        return Collections.unmodifiableSet(bundlePackages);
+    }
+
+    /** Translations are parsed only when they are checked */
+    private boolean isParsed(FileType type) {
+        return type != FileType.TRANSLATED_BUNDLE || context.isCheckTranslations();
+    }
+
+    /** Add primary bundles of this module to the index */
+    void indexBundles(BundleIndex index) {
+        for (Map.Entry<String, PackageScanner> entry : packages.entrySet()) {
+            PrimaryResourceBundleModel bundle = entry.getValue().getPrimaryBundle();
+            if (bundle != null) {
+                index.add(entry.getKey(), bundle);
+            }
+        }
+    }
+
+    /** Collect results of all packages, call after layers of all modules are verified */
+    void reportResults() {
         for (PackageScanner ps: packages.values()) {
             ps.reportResults(results);
         }
@@ -81,179 +278,271 @@ public final class ModuleScanner {
 
     /** Check the module manifest and verify module's own resource bundle */
     private void verifyManifest() throws IOException {
-        File manifest = findManifest();
-        if (manifest == null) {
-            return;
-        }
-
-        String moduleBundlePack = findModuleBundlePackage(manifest);
+        String moduleBundlePack = descriptor.getLocalizingBundlePackage();
         if (moduleBundlePack == null) {
             return;
         }
 
-        for (String p: packages.keySet()) {
-            if (p.equals(moduleBundlePack)) {
-                packages.get(p).verifyNBModuleBundle(results);
-                return;
-            }
+        PackageScanner ps = packages.get(moduleBundlePack);
+        if (ps != null) {
+            ps.verifyNBModuleBundle(results);
+            return;
         }
         results.add(
                 ScanResults.Type.MODULE_MANIFEST_BUNDLE,
-                manifest.getAbsolutePath(),
+                descriptor.getManifest().getAbsolutePath(),
                 1,
                 "Missing resource bundle specified in module manifest"
         );
     }
 
-    /** Check the module layer if there is one. */
-    private void verifyLayer() throws IOException {
-        String moduleLayerFile = findModuleLayer();
+    /** Read the module layer if there is one. */
+    private void readLayer() throws IOException {
+        String moduleLayerFile = descriptor.getLayer();
         if (moduleLayerFile == null) {
             return;
         }
-        final File layerFile = new File(sourceRoot, moduleLayerFile);
+        File layerFile = new File(sourceRoot, moduleLayerFile);
         if (!layerFile.exists()) {
             results.add(ScanResults.Type.MODULE_LAYER_DEFINITION, moduleLayerFile, 1,
                     "Missing layer file specified in manifest " + moduleLayerFile);
             return;
         }
-        Iterable<LayerData> layerEntries = new LayerParser().parse(new FileInputStream(layerFile), resolver);
+        layerEntries = parseLayer();
+    }
+
+    /** Entries of the module layer, null if the module has no layer */
+    Iterable<LayerData> parseLayer() throws IOException {
+        if (descriptor == null || descriptor.getLayer() == null) {
+            return null;
+        }
+        File file = new File(sourceRoot, descriptor.getLayer());
+        if (!file.exists()) {
+            return null;
+        }
+        InputStream is = context.getFileSource().open(file.getPath());
+        try {
+            return new LayerParser().parse(is, context.getResolver());
+        } finally {
+            is.close();
+        }
+    }
+
+    /**
+     * Check bundle keys used in the module layer. Bundles of this module are searched first,
+     * then bundles of other scanned modules. Bundles which are not part of any scanned module
+     * are ignored, they can be provided by the platform.
+     *
+     * @param index primary bundles of all scanned modules
+     */
+    void verifyLayer(BundleIndex index) {
+        if (layerEntries == null) {
+            return;
+        }
         for (LayerData layerEntry : layerEntries) {
-            boolean found = false;
-            for (String p: packages.keySet()) {
-                if (p.equals(layerEntry.bundlePath)) {
-                    if (!packages.get(p).markAsUsed(layerEntry.bundleKey)) {
-                        results.add(ScanResults.Type.MODULE_LAYER_DEFINITION, layerFile.getAbsolutePath(), 1,
-                                "Missing resource bundle key " + layerEntry.bundleKey +
-                                " specified in layer file: " + layerEntry.info);
-
-                    }
-                    found = true;
-                    break;
-                }
+            PackageScanner own = packages.get(layerEntry.bundlePath);
+            if (!index.markAsUsed(layerEntry, own != null ? own.getPrimaryBundle() : null)) {
+                reportMissingLayerKey(layerEntry);
+            }
+        }
+    }
+
+    /**
+     * Mark keys of the package bundle as used by layers, call before {@link #reportResults}.
+     *
+     * @param packagePath path of a package which has a primary bundle
+     * @param keys keys used by layers of any module
+     */
+    void markUsedByLayers(String packagePath, Collection<String> keys) {
+        PackageScanner ps = packages.get(packagePath);
+        if (ps != null && ps.getPrimaryBundle() != null) {
+            for (String key : keys) {
+                ps.markAsUsed(key);
             }
-            // want to raise a warning - it can refer to bundle in a different module so it is OK
-//            if (!found) {
-//                results.add(ScanResults.Type.MODULE_LAYER_DEFINITION, layerFile.getAbsolutePath(), 1,
-//                        "Missing resource bundle specified in layer file: " + layerEntry.info);
-//            }
         }
     }
 
-    /** Print results to System.out
-     * @param details Print details about each warning or just summary?
+    /**
+     * Mark keys of package bundles which are string constants of compiled classes
+     * of the same package and of this module or of no module as used, call before {@link #reportResults}.
      */
+    void markUsedByClasses(ClassUsage usage) throws IOException {
+        for (Map.Entry<String, PackageScanner> entry : packages.entrySet()) {
+            if (entry.getValue().getPrimaryBundle() != null) {
+                for (String constant : usage.getStrings(moduleDir, entry.getKey())) {
+                    entry.getValue().markAsUsed(constant);
+                }
+            }
+        }
+    }
+
+    /** Report the layer entry whose key is not in any bundle of its package */
+    void reportMissingLayerKey(LayerData layerEntry) {
+        results.add(ScanResults.Type.MODULE_LAYER_DEFINITION, new File(sourceRoot, descriptor.getLayer()).getAbsolutePath(),
+                layerEntry.line, "Missing resource bundle key " + layerEntry.bundleKey +
+                " specified in layer file: " + layerEntry.info);
+    }
+
     public void printResults(boolean details) {
         results.printAll(details);
     }
 
-    public int getProblemsCount() {
-        return results.getProblemsCount();
+    /**
+     * Number of problems which the module has at least, known before layers of other modules
+     * are resolved. Layers of other modules can only mark keys as used, so all problems
+     * except unused keys are final.
+     */
+    int getMinimumProblemsCount() {
+        ScanResults preliminary = new ScanResults(sourceRoot.getPath());
+        for (PackageScanner ps: packages.values()) {
+            ps.reportResults(preliminary);
+        }
+        Map<ScanResults.Type, List<Finding>> findings = preliminary.getFindings();
+        List<Finding> unused = findings.get(ScanResults.Type.MAYBE_UNUSED_KEY_IN_BUNDLE);
+        return results.getProblemsCount() + preliminary.getProblemsCount() - (unused != null ? unused.size() : 0);
     }
 
-    private File findManifest() throws IOException {
-        File manifest = new File(sourceRoot.getParentFile(), MANIFEST_FILE);
-        if (manifest.exists() && manifest.isFile()) {
-            return manifest;
-        } else {
-            return null;
-        }
+    /** Findings by type, call after the scan is finished */
+    Map<ScanResults.Type, List<Finding>> getFindings() {
+        return results.getFindings();
+    }
+
+    ScanResults getResults() {
+        return results;
+    }
+
+    /** Stamps of directories and files read by the scan, null if the context did not record them */
+    FileStamps getStamps() {
+        return stamps;
+    }
+
+    /** Packages of the module, empty after {@link #release} */
+    Collection<PackageScanner> getPackages() {
+        return packages.values();
     }
 
-    /** Return path to module's own resource bundle as written in manifest.mf
+    public int getProblemsCount() {
+        return results.getProblemsCount();
+    }
+
+    /**
+     * Discovery stage - replay the listed source tree and submit all interesting files to the pipeline.
+     * When files are prefetched, all files are announced to the prefetcher before the first one
+     * is submitted, so they are read ahead of parsers.
+     *
+     * @param prefetched receives names of announced files, null if files are not prefetched
      */
-    private String findModuleBundlePackage(File manifest) throws IOException {
-        FileReader fr = new FileReader(manifest);
-        try {
-            BufferedReader br = new BufferedReader(fr);
-            for (;;) {
-                String line = br.readLine();
-                if (line == null) {
-                    break;
-                }
-                if (line.startsWith(MANIFEST_BUNDLE_LINK)) {
-                    String pack = line.substring(MANIFEST_BUNDLE_LINK.length()).trim().replace("/", File.separator);
-                    int index = pack.lastIndexOf(File.separator);
-                    if (index >= 0) {
-                        pack = pack.substring(0, index);
-                    }
-                    return pack;
+    private void scanFiles(ScanPipeline pipeline, List<String> prefetched) throws IOException {
+        List<WalkStep> steps = listing;
+        listing = null;
+        PrefetchingFileSource prefetcher = context.getPrefetcher();
+        if (prefetcher != null) {
+            for (WalkStep step : steps) {
+                if (step.type != null && isSubmitted(step.type) && isParsed(step.type)) {
+                    String fileName = PackageScanner.getFileName(new File(sourceRoot, step.packagePath), step.name);
+                    prefetcher.prefetch(fileName, step.size);
+                    prefetched.add(fileName);
                 }
             }
-            return null;
-        } finally {
-            fr.close();
+        }
+        Walk walk = new Walk(pipeline);
+        for (WalkStep step : steps) {
+            if (step == WalkStep.ENTER) {
+                walk.enter();
+            } else if (step == WalkStep.LEAVE) {
+                walk.leave();
+            } else if (isSubmitted(step.type) && !context.isCancelled()) {
+                walk.file(step.packagePath, step.name, step.type);
+            }
         }
     }
 
-    /** Return path to module's layer file
-     */
-    private String findModuleLayer() throws IOException {
-        File manifest = findManifest();
-        if (manifest != null) {
-            FileReader fr = new FileReader(manifest);
-            try {
-                BufferedReader br = new BufferedReader(fr);
-                for (;;) {
-                    String line = br.readLine();
-                    if (line == null) {
-                        break;
-                    }
-                    if (line.startsWith(MANIFEST_LAYER_LINK)) {
-                        String layerName = line.substring(MANIFEST_LAYER_LINK.length()).trim();
-                        return layerName;
-                    }
-                }
-            } finally {
-                fr.close();
+    /** Modules of other shards need only primary bundles */
+    private boolean isSubmitted(FileType type) {
+        return !bundlesOnly || type == FileType.PRIMARY_BUNDLE;
+    }
+
+    /** Submits files found by the walk to the pipeline, one package per directory */
+    private final class Walk {
+        private final ScanPipeline pipeline;
+        /** Trackers of directories being walked, null until a file of the package is found */
+        private final List<ScanPipeline.PackageTracker> trackers = new ArrayList<ScanPipeline.PackageTracker>();
+
+        Walk(ScanPipeline pipeline) {
+            this.pipeline = pipeline;
+        }
+
+        void enter() {
+            trackers.add(null);
+        }
+
+        void file(String packagePath, String name, FileType type) throws IOException {
+            int last = trackers.size() - 1;
+            ScanPipeline.PackageTracker tracker = trackers.get(last);
+            if (tracker == null) {
+                tracker = pipeline.openPackage(getPackageScanner(packagePath));
+                trackers.set(last, tracker);
+            }
+            FileModel model = tracker.getPackageScanner().addFile(type, name);
+            if (model != null) {
+                pipeline.submit(tracker, model);
             }
         }
 
-        return null;
+        void leave() {
+            ScanPipeline.PackageTracker tracker = trackers.remove(trackers.size() - 1);
+            if (tracker != null) {
+                pipeline.closePackage(tracker);
+            }
+        }
     }
 
-    private void scanFiles(FileType type) throws IOException {
-        if (!sourceRoot.exists() || !sourceRoot.isDirectory()) {
-            return;
-        }
-        
-        DirectoryScanner ds = new DirectoryScanner();
-        ds.setCaseSensitive(true);
-        ds.setBasedir(sourceRoot);
-        ds.setIncludes(type.getFilter());
-        ds.scan();
-        String[] files = ds.getIncludedFiles();
-        for (String file : files) {
-            String[] splitName = splitPathAndFileName(file);
-            getPackageScanner(splitName[0]).addFile(type, splitName[1]);
+    /** File or directory boundary found by the walk */
+    private static final class WalkStep {
+        static final WalkStep ENTER = new WalkStep(null, null, null, 0);
+        static final WalkStep LEAVE = new WalkStep(null, null, null, 0);
+
+        private final String packagePath;
+        private final String name;
+        private final FileType type;
+        private final long size;
+
+        WalkStep(String packagePath, String name, FileType type, long size) {
+            this.packagePath = packagePath;
+            this.name = name;
+            this.type = type;
+            this.size = size;
         }
     }
 
     private PackageScanner getPackageScanner(String packagePath) throws IOException {
         PackageScanner ps = packages.get(packagePath);
         if (ps == null) {
-            ps = new PackageScanner(new File(sourceRoot, packagePath), sourceRoot.getAbsolutePath());
+            ps = new PackageScanner(new File(sourceRoot, packagePath), sourceRoot.getAbsolutePath(), context);
             packages.put(packagePath, ps);
         }
         return ps;
     }
 
-    private static String[] splitPathAndFileName(String file) {
-        int index = file.lastIndexOf(File.separator);
-        if (index >= 0) {
-            return new String[] {
-                file.substring(0, index),
-                file.substring(index + 1)
-            };
-        } else {
-            return new String[]{"", file};
-        }
-    }
-
     public File getRoot() {
         return root;
     }
 
+    /** Directory of the module, it contains the root */
+    File getModuleDir() {
+        return moduleDir;
+    }
+
+    /** Root of Java sources and bundles */
+    File getSourceRoot() {
+        return sourceRoot;
+    }
+
+    /** Manifest of NetBeans module or null if this is not a NetBeans module */
+    public ModuleDescriptor getDescriptor() {
+        return descriptor;
+    }
+
 //    private static String createSimpleName(File f) throws IOException {
 //        String name = f.getCanonicalPath();
 //        name = name.replace(File.separator, "/");
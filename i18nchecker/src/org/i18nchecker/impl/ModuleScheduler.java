@@ -0,0 +1,635 @@
+/**
+*   Copyright 2010-2011 Petr Hamernik
+*
+*   Licensed under the Apache License, Version 2.0 (the "License");
+*   you may not use this file except in compliance with the License.
+*   You may obtain a copy of the License at
+*
+*       http://www.apache.org/licenses/LICENSE-2.0
+*
+*   Unless required by applicable law or agreed to in writing, software
+*   distributed under the License is distributed on an "AS IS" BASIS,
+*   WITHOUT WARRANTIES OR CONDITIONS OF ANY KIND, either express or implied.
+*   See the License for the specific language governing permissions and
+*   limitations under the License.
+*/
+
+package org.i18nchecker.impl;
+
+import java.io.File;
+import java.io.IOException;
+import java.util.ArrayList;
+import java.util.Collections;
+import java.util.List;
+import java.util.Map;
+import java.util.Queue;
+import java.util.concurrent.Callable;
+import java.util.concurrent.CancellationException;
+import java.util.concurrent.ConcurrentHashMap;
+import java.util.concurrent.ConcurrentLinkedQueue;
+import java.util.concurrent.ExecutorService;
+import java.util.concurrent.Executors;
+import java.util.concurrent.Future;
+import java.util.concurrent.FutureTask;
+import java.util.concurrent.PriorityBlockingQueue;
+import java.util.concurrent.ThreadPoolExecutor;
+import java.util.concurrent.TimeUnit;
+import java.util.concurrent.atomic.AtomicLong;
+import java.util.concurrent.atomic.AtomicReference;
+import org.xml.sax.EntityResolver;
+
+/**
+ * Discovers and scans modules. A serial scan without {@link #setHistory history} hands modules
+ * over to the scanning thread as soon as they are discovered, so scanning overlaps with discovery.
+ * Otherwise all modules are discovered first and then scanned in order of their priority - modules
+ * which failed recently first, then the modules whose scans take longest, so a parallel run does not
+ * wait for a big module which started last. The expected duration comes from the history, or from
+ * the size of module files listed by discovery for modules not scanned yet.
+ *
+ * @author agent
+ */
+public final class ModuleScheduler {
+
+    /** Receives modules of {@link #scanStreaming} */
+    public interface ModuleConsumer {
+        /**
+         * Called from the thread which started the scan, in order of discovery.
+         * Models of the module are released when this method returns, only its results stay.
+         *
+         * @param scanner scanned module with reported results
+         */
+        void moduleScanned(ModuleScanner scanner) throws IOException;
+    }
+
+    /** Receives progress messages of the scan, e.g. the Ant task logger */
+    public interface Log {
+        /**
+         * Called from the thread which started the scan, messages about modules come in order of discovery.
+         *
+         * @param message the message
+         */
+        void log(String message);
+    }
+
+    /** Prints messages to System.out, used unless {@link #setLog another log} is set */
+    static final Log SYSTEM_OUT = new Log() {
+        public void log(String message) {
+            System.out.println(message);
+        }
+    };
+
+    /** Decides about a failure as soon as a module is scanned, used to stop scanning early */
+    public interface FailFast {
+        /**
+         * Called from a scanning thread.
+         *
+         * @param scanner scanned module, its layer is not verified yet
+         * @param minimumProblems number of problems the module will have at least
+         * @return true if the module fails, all other scanning is cancelled then
+         */
+        boolean isFailed(ModuleScanner scanner, int minimumProblems) throws IOException;
+    }
+
+    /** Discovery just waits for the file system, so it runs in more threads than scanning */
+    private static final int DISCOVERY_THREADS = 8;
+
+    /** Reads ahead of parsers have their own threads, so they never wait behind discovery */
+    private static final int PREFETCH_THREADS = 4;
+
+    /** Class roots are read by a few threads of their own, so many roots never hold up discovery */
+    private static final int CLASS_THREADS = 2;
+
+    /** Files parsed at the same time in virtual mode unless another number is given */
+    static final int DEFAULT_VIRTUAL_FILES = 64;
+
+    /** Maximum number of files waiting for a parser thread */
+    private static final int MAX_PENDING_FILES = 256;
+
+    private final ExecutorService discoveryExecutor;
+    private final ExecutorService scanExecutor;
+    /** Parser threads, null if files are parsed by threads which scan modules */
+    private final ExecutorService parseExecutor;
+    /** Threads reading files ahead of parsers, null until a scan prefetches files */
+    private ExecutorService prefetchExecutor;
+    /** Threads reading class roots, null until a scan reads classes */
+    private ExecutorService classExecutor;
+    private final int maxPendingFiles;
+    /** Do modules wait for a scanning thread, so their order matters? */
+    private final boolean ordered;
+    /** Modules scanned at the same time */
+    private final int scanThreads;
+    private final FileSource fileSource;
+    private final ScanMetrics metrics = new ScanMetrics();
+    private boolean checkTranslations;
+    private boolean recordStamps;
+    /** Stamps recorded by discovery of the last scan */
+    private FileStamps discoveryStamps;
+    private ScanProfile profile;
+    private Log log = SYSTEM_OUT;
+    private long prefetchWindow;
+    private List<File> classRoots;
+    private ModuleHistory history;
+    private FailFast failFast;
+    private int shardIndex;
+    private int shardCount = 1;
+    private ShardPlan shardPlan;
+
+    /**
+     * @param threads number of modules scanned at the same time and number of threads parsing files,
+     *   files are parsed serially for 1
+     */
+    public ModuleScheduler(int threads) {
+        this(threads > 1 ? ExecutionMode.PLATFORM : ExecutionMode.SERIAL, threads);
+    }
+
+    /**
+     * @param mode how modules are scanned and files parsed
+     * @param threads number of threads for {@link ExecutionMode#PLATFORM}, maximum number
+     *   of files parsed at the same time for {@link ExecutionMode#VIRTUAL} (0 for {@link #DEFAULT_VIRTUAL_FILES}),
+     *   ignored for serial mode
+     * @throws UnsupportedOperationException virtual mode on a JVM without virtual threads
+     */
+    public ModuleScheduler(ExecutionMode mode, int threads) {
+        this(mode, threads, FileSource.DEFAULT);
+    }
+
+    ModuleScheduler(ExecutionMode mode, int threads, FileSource fileSource) {
+        this.fileSource = fileSource;
+        if (mode == ExecutionMode.VIRTUAL) {
+            ExecutorService virtual = newVirtualThreadExecutor();
+            this.discoveryExecutor = virtual;
+            // modules wait for the file system like discovery, but in order of priority,
+            // files are parsed in virtual threads
+            this.scanExecutor = newPriorityPool(DISCOVERY_THREADS);
+            this.parseExecutor = virtual;
+            this.maxPendingFiles = threads > 0 ? threads : DEFAULT_VIRTUAL_FILES;
+            this.ordered = true;
+            this.scanThreads = DISCOVERY_THREADS;
+            return;
+        }
+        threads = Math.max(threads, 1);
+        if (mode == ExecutionMode.SERIAL) {
+            this.discoveryExecutor = Executors.newFixedThreadPool(DISCOVERY_THREADS);
+            this.scanExecutor = newPriorityPool(1);
+            this.parseExecutor = null;
+            this.maxPendingFiles = 1;
+            this.ordered = false;
+            this.scanThreads = 1;
+        } else {
+            this.discoveryExecutor = Executors.newFixedThreadPool(DISCOVERY_THREADS);
+            this.scanExecutor = newPriorityPool(threads);
+            this.parseExecutor = Executors.newFixedThreadPool(threads);
+            this.maxPendingFiles = MAX_PENDING_FILES;
+            this.ordered = threads > 1;
+            this.scanThreads = threads;
+        }
+    }
+
+    /**
+     * Discover and scan all modules.
+     *
+     * @param repoRoot root of repository
+     * @param topDirsToScan names of top level directories with modules
+     * @param moduleFilter only modules which contain this string are scanned, may be null
+     * @param resolver entity resolver for module layers
+     * @return scanned modules in deterministic order (see {@link ModuleDiscovery#discover}),
+     *   only the failed module if {@link FailFast} stopped the scan,
+     *   only modules of this shard if {@link #setShard sharded}
+     */
+    public List<ModuleScanner> scan(
+            File repoRoot, Iterable<String> topDirsToScan, String moduleFilter, EntityResolver resolver
+    ) throws IOException {
+        long start = System.nanoTime();
+        final Map<ModuleScanner, Future<?>> scans = new ConcurrentHashMap<ModuleScanner, Future<?>>();
+        final AtomicReference<ModuleScanner> failed = new AtomicReference<ModuleScanner>();
+        final Queue<ModuleScanner> passed = new ConcurrentLinkedQueue<ModuleScanner>();
+        final AtomicLong sequence = new AtomicLong();
+        final ScanContext context = new ScanContext(
+                resolver, createFileSource(), parseExecutor != null ? parseExecutor : ScanContext.DIRECT, maxPendingFiles, metrics);
+        context.setCheckTranslations(checkTranslations);
+        context.setRecordStamps(recordStamps);
+        context.setProfile(profile);
+        ClassUsage classUsage = classRoots != null ? ClassUsage.start(classRoots, getClassExecutor(), metrics) : null;
+        ModuleDiscovery discovery = new ModuleDiscovery(repoRoot, moduleFilter, context, discoveryExecutor);
+        discovery.setLog(log);
+        discoveryStamps = discovery.getStamps();
+        ModuleDiscovery.Listener listener = new ModuleDiscovery.Listener() {
+            public void moduleFound(ModuleScanner scanner) {
+                if (!context.isCancelled()) {
+                    ScanTask task = new ScanTask(scanner, 0, 0, sequence.getAndIncrement(), context, scans, failed, passed);
+                    scans.put(scanner, task);
+                    scanExecutor.execute(task);
+                }
+            }
+        };
+        boolean allDiscovered = shardCount > 1 || history != null || ordered;
+        List<ModuleScanner> scanners = discovery.discover(topDirsToScan, allDiscovered ? null : listener);
+        if (shardCount > 1) {
+            // all modules have to be known to assign them, modules of other shards are needed
+            // only for their bundles and layers which can refer to bundles of this shard
+            shardPlan = ShardPlan.create(scanners, shardIndex, shardCount, discoveryExecutor);
+            for (int i = 0; i < scanners.size(); i++) {
+                scanners.get(i).setBundlesOnly(!shardPlan.isOwned(i));
+            }
+        }
+        if (allDiscovered) {
+            // idle threads start the first submitted tasks at once, so submit in order of priority
+            List<ScanTask> tasks = new ArrayList<ScanTask>();
+            for (ModuleScanner scanner : scanners) {
+                double failureScore = history != null ? history.getFailureScore(scanner) : 0;
+                tasks.add(new ScanTask(scanner, failureScore, expectedCost(scanner), sequence.getAndIncrement(),
+                        context, scans, failed, passed));
+            }
+            Collections.sort(tasks);
+            for (ScanTask task : tasks) {
+                scans.put(task.scanner, task);
+            }
+            for (ScanTask task : tasks) {
+                if (!context.isCancelled()) {
+                    scanExecutor.execute(task);
+                }
+            }
+        }
+        try {
+            for (ModuleScanner scanner : scanners) {
+                if (context.isCancelled()) {
+                    break;
+                }
+                logScanning(scanner);
+                try {
+                    I18NUtils.waitFor(scans.get(scanner));
+                } catch (CancellationException ex) {
+                    break;
+                }
+            }
+        } finally {
+            closePrefetcher(context);
+        }
+        if (failed.get() != null) {
+            if (history != null) {
+                // modules scanned before the failure passed the fail-fast check, the failed one is recorded by the caller
+                for (ModuleScanner scanner : passed) {
+                    history.recordResult(scanner, false);
+                }
+            }
+            // results of other modules are incomplete, layers of the failed module are not verified
+            failed.get().reportResults();
+            metrics.phaseDone(ScanMetrics.Phase.SCAN, start);
+            return Collections.singletonList(failed.get());
+        }
+
+        metrics.phaseDone(ScanMetrics.Phase.SCAN, start);
+
+        // layers can use bundles of any module, resolve them once all bundles are parsed
+        start = System.nanoTime();
+        BundleIndex index = new BundleIndex();
+        for (ModuleScanner scanner : scanners) {
+            scanner.indexBundles(index);
+        }
+        for (ModuleScanner scanner : scanners) {
+            scanner.verifyLayer(index);
+        }
+        if (classUsage != null) {
+            classUsage.setModules(getModuleDirs(scanners));
+            for (ModuleScanner scanner : scanners) {
+                scanner.markUsedByClasses(classUsage);
+            }
+        }
+        metrics.phaseDone(ScanMetrics.Phase.RESOLVE_LAYERS, start);
+
+        start = System.nanoTime();
+        List<ModuleScanner> owned = new ArrayList<ModuleScanner>();
+        for (ModuleScanner scanner : scanners) {
+            if (!scanner.isBundlesOnly()) {
+                scanner.reportResults();
+                owned.add(scanner);
+            }
+        }
+        metrics.phaseDone(ScanMetrics.Phase.REPORT, start);
+        return owned;
+    }
+
+    /**
+     * Discover and scan all modules, but keep models of only a few modules in memory.
+     * Bundle keys used by layers are resolved first from layers and the bundles they use,
+     * then modules are scanned in order of discovery, at most one per scanning thread ahead
+     * of the module being consumed, and each module is released after it is consumed.
+     * Results are the same as results of {@link #scan}. Can't be sharded or fail-fast.
+     *
+     * @param repoRoot root of repository
+     * @param topDirsToScan names of top level directories with modules
+     * @param moduleFilter only modules which contain this string are scanned, may be null
+     * @param resolver entity resolver for module layers
+     * @param consumer receives modules with reported results one by one
+     * @return all released modules in deterministic order, only their results are kept
+     */
+    public List<ModuleScanner> scanStreaming(
+            File repoRoot, Iterable<String> topDirsToScan, String moduleFilter, EntityResolver resolver,
+            ModuleConsumer consumer
+    ) throws IOException {
+        if (shardCount > 1 || failFast != null) {
+            throw new IllegalStateException("Streaming scan can't be sharded or fail-fast");
+        }
+        long start = System.nanoTime();
+        ScanContext context = new ScanContext(
+                resolver, createFileSource(), parseExecutor != null ? parseExecutor : ScanContext.DIRECT, maxPendingFiles, metrics);
+        context.setCheckTranslations(checkTranslations);
+        context.setRecordStamps(recordStamps);
+        context.setProfile(profile);
+        ClassUsage classUsage = classRoots != null ? ClassUsage.start(classRoots, getClassExecutor(), metrics) : null;
+        ModuleDiscovery discovery = new ModuleDiscovery(repoRoot, moduleFilter, context, discoveryExecutor);
+        discovery.setLog(log);
+        discoveryStamps = discovery.getStamps();
+        List<ModuleScanner> scanners = discovery.discover(topDirsToScan, null);
+        LayerResolver layers = LayerResolver.create(scanners, context, discoveryExecutor);
+        if (classUsage != null) {
+            classUsage.setModules(getModuleDirs(scanners));
+        }
+        metrics.phaseDone(ScanMetrics.Phase.RESOLVE_LAYERS, start);
+
+        start = System.nanoTime();
+        Map<ModuleScanner, Future<?>> scans = new ConcurrentHashMap<ModuleScanner, Future<?>>();
+        AtomicReference<ModuleScanner> failed = new AtomicReference<ModuleScanner>();
+        List<Future<?>> tasks = new ArrayList<Future<?>>();
+        try {
+            for (int i = 0; i < scanners.size(); i++) {
+                while (tasks.size() < Math.min(i + scanThreads, scanners.size())) {
+                    ModuleScanner scanner = scanners.get(tasks.size());
+                    scanner.useOwnStringPool();
+                    ScanTask task = new ScanTask(scanner, 0, 0, tasks.size(), context, scans, failed, null);
+                    tasks.add(task);
+                    metrics.moduleRetained();
+                    scanExecutor.execute(task);
+                }
+                ModuleScanner scanner = scanners.get(i);
+                logScanning(scanner);
+                I18NUtils.waitFor(tasks.get(i));
+                tasks.set(i, null);
+                layers.apply(i, scanner);
+                if (classUsage != null) {
+                    scanner.markUsedByClasses(classUsage);
+                }
+                scanner.reportResults();
+                consumer.moduleScanned(scanner);
+                scanner.release();
+                metrics.moduleReleased();
+            }
+        } finally {
+            closePrefetcher(context);
+        }
+        metrics.phaseDone(ScanMetrics.Phase.SCAN, start);
+        return scanners;
+    }
+
+    /** Where progress messages go, System.out by default */
+    public void setLog(Log log) {
+        this.log = log;
+    }
+
+    /** Compare translated bundles with primary bundles? False by default, translations are not even parsed then. */
+    public void setCheckTranslations(boolean checkTranslations) {
+        this.checkTranslations = checkTranslations;
+    }
+
+    /** Record stamps of scanned files, needed to write a {@link RepositorySnapshot}. False by default. */
+    public void setRecordStamps(boolean recordStamps) {
+        this.recordStamps = recordStamps;
+    }
+
+    /**
+     * Stamps of top level directories and module candidates probed by the last scan,
+     * see {@link ModuleDiscovery#getStamps}. Stamps of module files are kept by each module.
+     *
+     * @return null unless stamps were recorded
+     */
+    FileStamps getDiscoveryStamps() {
+        return discoveryStamps;
+    }
+
+    /** Record time, size and strings of every parsed file into the profile. Not profiled (null) by default. */
+    public void setProfile(ScanProfile profile) {
+        this.profile = profile;
+    }
+
+    /**
+     * Directories with compiled classes and jars whose string constants are used keys of bundles
+     * of the same packages, in addition to strings of Java sources. Classes are read in the
+     * background by a few threads of their own. Not used (null) by default.
+     */
+    public void setClassRoots(List<File> classRoots) {
+        this.classRoots = classRoots;
+    }
+
+    /**
+     * Read files ahead of parsers. Each module lists its files first, then they are read
+     * in the background by a few prefetching threads while earlier files are parsed. Helps when
+     * the scan waits for a slow file system. Disabled by default.
+     *
+     * @param bytes maximum number of bytes read ahead, 0 disables prefetching
+     */
+    public void setPrefetchWindow(long bytes) {
+        this.prefetchWindow = bytes;
+    }
+
+    /**
+     * History of previous runs. Modules which failed recently are scanned first.
+     *
+     * Durations of scans are recorded into the history. When a {@link #setFailFast fail-fast} scan
+     * stops, modules which were scanned before and passed the check are recorded as passed,
+     * results of the returned modules are left to the caller.
+     *
+     * @param history the history, null to scan modules in order of discovery
+     */
+    public void setHistory(ModuleHistory history) {
+        this.history = history;
+    }
+
+    /**
+     * Stop scanning as soon as a module fails.
+     *
+     * @param failFast decides whether a module failed, null to scan all modules
+     */
+    public void setFailFast(FailFast failFast) {
+        this.failFast = failFast;
+    }
+
+    /**
+     * Scan only a part of modules, other processes scan the other shards.
+     * Results of all shards together are the same as results of scanning all modules.
+     *
+     * @param index shard scanned by this scheduler, from 0 to count - 1
+     * @param count number of shards, 1 scans all modules
+     */
+    public void setShard(int index, int count) {
+        if (count < 1 || index < 0 || index >= count) {
+            throw new IllegalArgumentException("Invalid shard " + index + " of " + count);
+        }
+        this.shardIndex = index;
+        this.shardCount = count;
+    }
+
+    /** Assignment of modules to shards made by the last scan, null if it was not sharded */
+    public ShardPlan getShardPlan() {
+        return shardPlan;
+    }
+
+    /** Counters and times of all scans run by this scheduler */
+    public ScanMetrics getMetrics() {
+        return metrics;
+    }
+
+    /** Source of files for one scan */
+    private FileSource createFileSource() {
+        if (prefetchWindow <= 0) {
+            return fileSource;
+        }
+        if (prefetchExecutor == null) {
+            prefetchExecutor = Executors.newFixedThreadPool(PREFETCH_THREADS);
+        }
+        return new PrefetchingFileSource(fileSource, prefetchExecutor, prefetchWindow, metrics);
+    }
+
+    private ExecutorService getClassExecutor() {
+        if (classExecutor == null) {
+            classExecutor = Executors.newFixedThreadPool(CLASS_THREADS);
+        }
+        return classExecutor;
+    }
+
+    private static List<File> getModuleDirs(List<ModuleScanner> scanners) {
+        List<File> dirs = new ArrayList<File>();
+        for (ModuleScanner scanner : scanners) {
+            dirs.add(scanner.getModuleDir());
+        }
+        return dirs;
+    }
+
+    /** Modules are scanned in parallel, but reported in order of discovery while the scan waits for them */
+    private void logScanning(ModuleScanner scanner) {
+        log.log((scanner.isBundlesOnly() ? "Scanning bundles of " : "Scanning ") + scanner.getRoot().getAbsolutePath());
+    }
+
+    /** Release files read ahead for modules which will not open them */
+    private static void closePrefetcher(ScanContext context) {
+        if (context.getPrefetcher() != null) {
+            context.getPrefetcher().close();
+        }
+    }
+
+    /** Stop all threads */
+    public void shutdown() {
+        discoveryExecutor.shutdownNow();
+        scanExecutor.shutdownNow();
+        if (parseExecutor != null) {
+            parseExecutor.shutdownNow();
+        }
+        if (prefetchExecutor != null) {
+            prefetchExecutor.shutdownNow();
+        }
+        if (classExecutor != null) {
+            classExecutor.shutdownNow();
+        }
+    }
+
+    /**
+     * Expected duration of the module scan from history, modules which were not scanned yet
+     * are estimated from the size of their files (see {@link ModuleHistory#estimateCost}).
+     * Without history just the size, so the largest modules are still scanned first.
+     * Zero if modules are scanned in order of discovery anyway.
+     */
+    long expectedCost(ModuleScanner scanner) throws IOException {
+        if (!ordered) {
+            return 0;
+        }
+        long cost = history != null ? history.getCost(scanner) : -1;
+        if (cost >= 0) {
+            return cost;
+        }
+        long size = scanner.estimateSize();
+        cost = history != null ? history.estimateCost(size) : -1;
+        return cost >= 0 ? cost : size;
+    }
+
+    /** Fixed thread pool which runs waiting {@link ScanTask}s in order of their priority */
+    private static ExecutorService newPriorityPool(int threads) {
+        return new ThreadPoolExecutor(threads, threads, 0L, TimeUnit.MILLISECONDS, new PriorityBlockingQueue<Runnable>());
+    }
+
+    /** Does this JVM have virtual threads needed by {@link ExecutionMode#VIRTUAL}? (Java 21 and newer) */
+    public static boolean isVirtualThreadsSupported() {
+        try {
+            Executors.class.getMethod("newVirtualThreadPerTaskExecutor");
+            return true;
+        } catch (NoSuchMethodException ex) {
+            return false;
+        }
+    }
+
+    /**
+     * Executor starting a new virtual thread for each task. Looked up reflectively,
+     * so the checker still runs on JVMs without virtual threads in other modes.
+     *
+     * @throws UnsupportedOperationException if virtual threads are not supported
+     */
+    private static ExecutorService newVirtualThreadExecutor() {
+        if (!isVirtualThreadsSupported()) {
+            throw new UnsupportedOperationException("Virtual execution mode needs Java 21 or newer, this JVM is "
+                    + System.getProperty("java.version"));
+        }
+        try {
+            return (ExecutorService) Executors.class.getMethod("newVirtualThreadPerTaskExecutor").invoke(null);
+        } catch (Exception ex) {
+            throw new IllegalStateException(ex);
+        }
+    }
+
+    /** Scan of one module, ordered by priority */
+    final class ScanTask extends FutureTask<Void> implements Comparable<ScanTask> {
+        private final ModuleScanner scanner;
+        private final double failureScore;
+        private final long cost;
+        private final long sequence;
+
+        ScanTask(final ModuleScanner scanner, double failureScore, long cost, long sequence, final ScanContext context,
+                final Map<ModuleScanner, Future<?>> scans, final AtomicReference<ModuleScanner> failed,
+                final Queue<ModuleScanner> passed) {
+            super(new Callable<Void>() {
+                public Void call() throws IOException {
+                    long start = System.nanoTime();
+                    scanner.scan();
+                    if (history != null && !scanner.isBundlesOnly() && !context.isCancelled()) {
+                        history.recordCost(scanner, System.nanoTime() - start, scanner.estimateSize());
+                    }
+                    if (failFast != null && !scanner.isBundlesOnly() && !context.isCancelled()) {
+                        if (!failFast.isFailed(scanner, scanner.getMinimumProblemsCount())) {
+                            passed.add(scanner);
+                        } else if (failed.compareAndSet(null, scanner)) {
+                            context.cancel();
+                            for (Map.Entry<ModuleScanner, Future<?>> entry : scans.entrySet()) {
+                                if (entry.getKey() != scanner) {
+                                    entry.getValue().cancel(true);
+                                }
+                            }
+                        }
+                    }
+                    return null;
+                }
+            });
+            this.scanner = scanner;
+            this.failureScore = failureScore;
+            this.cost = cost;
+            this.sequence = sequence;
+        }
+
+        /** Higher failure score first, then higher cost, then in order of discovery */
+        public int compareTo(ScanTask other) {
+            if (failureScore != other.failureScore) {
+                return failureScore > other.failureScore ? -1 : 1;
+            }
+            if (cost != other.cost) {
+                return cost > other.cost ? -1 : 1;
+            }
+            return sequence < other.sequence ? -1 : (sequence == other.sequence ? 0 : 1);
+        }
+    }
+}
@@ -18,10 +18,9 @@ package org.i18nchecker.impl;
 
 import java.io.File;
 import java.io.IOException;
-import java.util.HashSet;
+import java.util.Collection;
 import java.util.List;
 import java.util.Map;
-import java.util.Set;
 import java.util.TreeMap;
 
 /**
@@ -34,8 +33,8 @@ class PackageScanner {
     /** One primary resource bundle per package. */
     private PrimaryResourceBundleModel primaryBundle;
 
-    /** Translations */
-    private Set<TranslatedResourceBundleModel> translatedBundles;
+    /** Translations by file name */
+    private Map<String, TranslatedResourceBundleModel> translatedBundles;
 
     /** Java sources in this package */
     private Map<String, JavaSourceModel> sources;
@@ -43,10 +42,13 @@ class PackageScanner {
     /** Simple package name e.g. "com/im/df/api" */
     private String simpleName;
 
-    public PackageScanner(File packageDir, String moduleDirName) throws IOException {
+    private final ScanContext context;
+
+    public PackageScanner(File packageDir, String moduleDirName, ScanContext context) throws IOException {
         this.packageDir = packageDir;
+        this.context = context;
         this.sources = new TreeMap<String, JavaSourceModel>();
-        this.translatedBundles = new HashSet<TranslatedResourceBundleModel>();
+        this.translatedBundles = new TreeMap<String, TranslatedResourceBundleModel>();
         this.simpleName = packageDir.getCanonicalPath().substring(moduleDirName.length()).replace(File.separator, "/");
     }
 
@@ -55,46 +57,50 @@ class PackageScanner {
      *
      * @param type is it java or resource bundle?
      * @param name Name of the file
+     * @return model of the file, it has to be parsed before the package is verified,
+     *   null for translations which are parsed on demand
      */
-    public void addFile(FileType type, String name) {
+    public FileModel addFile(FileType type, String name) {
         switch (type) {
             case PRIMARY_BUNDLE:
                 if (primaryBundle != null) {
                     throw new IllegalStateException("Not implemented yet: more resource bundles in one package: "+packageDir);
                 }
-                primaryBundle = new PrimaryResourceBundleModel(packageDir + File.separator + name);
-                break;
+                primaryBundle = new PrimaryResourceBundleModel(getFileName(packageDir, name));
+                return primaryBundle;
             case TRANSLATED_BUNDLE:
-                translatedBundles.add(new TranslatedResourceBundleModel(packageDir + File.separator + name));
-                break;
+                TranslatedResourceBundleModel translated = new TranslatedResourceBundleModel(getFileName(packageDir, name), context);
+                translatedBundles.put(name, translated);
+                if (context.isCheckTranslations()) {
+                    return translated;
+                }
+                context.getMetrics().fileDeferred(FileType.TRANSLATED_BUNDLE);
+                return null;
             case JAVA:
-                sources.put(name, new JavaSourceModel(packageDir + File.separator + name));
-                break;
+                JavaSourceModel source = new JavaSourceModel(getFileName(packageDir, name));
+                sources.put(name, source);
+                return source;
+            default:
+                throw new IllegalArgumentException("Unknown file type: " + type);
         }
     }
 
-    /** Parse all files
-     *
-     * @throws IOException
-     */
-    public void parseFiles() throws IOException {
-        if (primaryBundle != null) {
-            primaryBundle.parse();
-        }
-        for (TranslatedResourceBundleModel translated: translatedBundles) {
-            translated.parse();
-        }
-        for (JavaSourceModel source: sources.values()) {
-            source.parse();
-        }
+    /** Full path of a file in the package, models open files by this name */
+    static String getFileName(File packageDir, String name) {
+        return packageDir + File.separator + name;
     }
 
     /** Verify whole package.
      */
-    public void verify() {
+    public void verify() throws IOException {
         for (JavaSourceModel source: sources.values()) {
             source.verify(primaryBundle);
         }
+        if (context.isCheckTranslations()) {
+            for (TranslatedResourceBundleModel trb: translatedBundles.values()) {
+                trb.verify(primaryBundle);
+            }
+        }
     }
 
     /** Verify module's resource bundle.
@@ -105,6 +111,11 @@ class PackageScanner {
         primaryBundle.verifyNBModuleBundle(results);
     }
 
+    /** Resource bundle of the package, null if there is none */
+    PrimaryResourceBundleModel getPrimaryBundle() {
+        return primaryBundle;
+    }
+
     /**
      * Checks if the primary bundle contains given key and marks it as used.
      *
@@ -122,7 +133,7 @@ class PackageScanner {
         if (primaryBundle != null) {
             primaryBundle.reportResults(results);
         }
-        for (TranslatedResourceBundleModel trb: translatedBundles) {
+        for (TranslatedResourceBundleModel trb: translatedBundles.values()) {
             trb.reportResults(results);
         }
     }
@@ -137,14 +148,14 @@ class PackageScanner {
     void csv2bundle(String language, List<String> header, Map<String, String> translatedPackage) throws IOException {
         TranslatedResourceBundleModel translationRB = findLanguage(language);
         if (translationRB == null) {
-            translationRB = new TranslatedResourceBundleModel(packageDir + File.separator + "Bundle_" + language + ".properties");
+            translationRB = new TranslatedResourceBundleModel(TranslatedResourceBundleModel.getFileName(packageDir, language), null);
         }
         translationRB.generateTranslatedResource(header, translatedPackage);
 
     }
 
     private TranslatedResourceBundleModel findLanguage(String language) {
-        for (TranslatedResourceBundleModel trb: translatedBundles) {
+        for (TranslatedResourceBundleModel trb: translatedBundles.values()) {
             if (language.equals(trb.getLanguage())) {
                 return trb;
             }
@@ -152,6 +163,15 @@ class PackageScanner {
         return null;
     }
 
+    File getPackageDir() {
+        return packageDir;
+    }
+
+    /** Translated bundles in order of file names */
+    Collection<TranslatedResourceBundleModel> getTranslatedBundles() {
+        return translatedBundles.values();
+    }
+
     public String getSimpleName() {
         return simpleName;
     }
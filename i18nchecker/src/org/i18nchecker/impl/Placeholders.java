@@ -0,0 +1,84 @@
+/**
+*   Copyright 2010-2011 Petr Hamernik
+*
+*   Licensed under the Apache License, Version 2.0 (the "License");
+*   you may not use this file except in compliance with the License.
+*   You may obtain a copy of the License at
+*
+*       http://www.apache.org/licenses/LICENSE-2.0
+*
+*   Unless required by applicable law or agreed to in writing, software
+*   distributed under the License is distributed on an "AS IS" BASIS,
+*   WITHOUT WARRANTIES OR CONDITIONS OF ANY KIND, either express or implied.
+*   See the License for the specific language governing permissions and
+*   limitations under the License.
+*/
+package org.i18nchecker.impl;
+
+/**
+ * Extracts argument indexes of {@link java.text.MessageFormat} placeholders like {0}
+ * or {1,number} from resource bundle values without creating a MessageFormat.
+ *
+ * @author agent
+ */
+final class Placeholders {
+
+    /** Bit used for all indexes which do not fit into the mask */
+    private static final int LAST_BIT = 63;
+
+    private Placeholders() {
+    }
+
+    /**
+     * Argument indexes used in the value. Quotes are not interpreted - values which are not
+     * used as patterns often contain apostrophes and translations differ in them.
+     * Braces which do not start an argument (e.g. "{file}") are ignored.
+     *
+     * @param value bundle value
+     * @return bit N is set if argument N is used, indexes from 63 up share the last bit
+     */
+    static long extract(String value) {
+        long mask = 0;
+        int length = value.length();
+        int i = value.indexOf('{');
+        while (i >= 0 && i < length) {
+            int j = i + 1;
+            int index = 0;
+            while (j < length && value.charAt(j) >= '0' && value.charAt(j) <= '9') {
+                index = Math.min(index * 10 + value.charAt(j) - '0', LAST_BIT);
+                j++;
+            }
+            if (j > i + 1 && j < length && (value.charAt(j) == '}' || value.charAt(j) == ',')) {
+                mask |= 1L << index;
+                j = skipFormat(value, j);
+            }
+            i = value.indexOf('{', j);
+        }
+        return mask;
+    }
+
+    /** Index after the closing brace of the argument, nested braces (choice format) are skipped */
+    private static int skipFormat(String value, int i) {
+        int depth = 1;
+        for (; i < value.length(); i++) {
+            char c = value.charAt(i);
+            if (c == '{') {
+                depth++;
+            } else if (c == '}' && --depth == 0) {
+                return i + 1;
+            }
+        }
+        return i;
+    }
+
+    /** Readable form of the mask, e.g. "{0}{2}" */
+    static String toString(long mask) {
+        StringBuilder sb = new StringBuilder();
+        for (int i = 0; i <= LAST_BIT; i++) {
+            if ((mask & (1L << i)) != 0) {
+                sb.append('{').append(i).append(i == LAST_BIT ? "+" : "").append('}');
+            }
+        }
+        return sb.length() > 0 ? sb.toString() : "none";
+    }
+}
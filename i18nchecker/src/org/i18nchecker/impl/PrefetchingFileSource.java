@@ -0,0 +1,225 @@
+/**
+*   Copyright 2010-2011 Petr Hamernik
+*
+*   Licensed under the Apache License, Version 2.0 (the "License");
+*   you may not use this file except in compliance with the License.
+*   You may obtain a copy of the License at
+*
+*       http://www.apache.org/licenses/LICENSE-2.0
+*
+*   Unless required by applicable law or agreed to in writing, software
+*   distributed under the License is distributed on an "AS IS" BASIS,
+*   WITHOUT WARRANTIES OR CONDITIONS OF ANY KIND, either express or implied.
+*   See the License for the specific language governing permissions and
+*   limitations under the License.
+*/
+package org.i18nchecker.impl;
+
+import java.io.ByteArrayInputStream;
+import java.io.IOException;
+import java.io.InputStream;
+import java.util.ArrayDeque;
+import java.util.Arrays;
+import java.util.Collection;
+import java.util.HashMap;
+import java.util.Map;
+import java.util.Queue;
+import java.util.concurrent.Callable;
+import java.util.concurrent.ExecutorService;
+import java.util.concurrent.Future;
+
+/**
+ * Reads files ahead of parsers. Discovery announces files in the order they will be parsed,
+ * they are read in the background into memory, at most a window of bytes at once, so parsing
+ * does not wait for the file system. Memory of a file is released when its stream is closed,
+ * or when the file will not be opened after all (see {@link #cancel} and {@link #close}).
+ * Files which were not announced, or whose read has not started yet, are opened directly.
+ *
+ * @author agent
+ */
+final class PrefetchingFileSource implements FileSource {
+
+    private final FileSource delegate;
+    private final ExecutorService executor;
+    private final long window;
+    private final ScanMetrics metrics;
+
+    /** Announced files by name, guarded by this */
+    private final Map<String, Read> reads = new HashMap<String, Read>();
+    /** Announced files waiting for space in the window, cancelled ones are skipped, guarded by this */
+    private final Queue<Read> waiting = new ArrayDeque<Read>();
+    /** Bytes of files being read or read and not closed yet, guarded by this */
+    private long loaded;
+    /** The scan ended, no more files are read ahead, guarded by this */
+    private boolean closed;
+
+    /**
+     * @param delegate source which reads files
+     * @param executor runs the reads, files are read by as many threads as it has
+     * @param window maximum number of bytes read ahead and not consumed yet, a bigger file is read alone
+     * @param metrics counts prefetched files and time parsers waited for them
+     */
+    PrefetchingFileSource(FileSource delegate, ExecutorService executor, long window, ScanMetrics metrics) {
+        this.delegate = delegate;
+        this.executor = executor;
+        this.window = window;
+        this.metrics = metrics;
+    }
+
+    /**
+     * Announce a file which will be opened soon. Files are read in the order they are announced.
+     *
+     * @param fileName full path of the file
+     * @param size expected size of the file
+     */
+    synchronized void prefetch(String fileName, long size) {
+        if (!closed && !reads.containsKey(fileName)) {
+            Read read = new Read(fileName, size);
+            reads.put(fileName, read);
+            waiting.add(read);
+            startReads();
+        }
+    }
+
+    public InputStream open(String fileName) throws IOException {
+        final Read read;
+        synchronized (this) {
+            Read announced = reads.remove(fileName);
+            if (announced != null && announced.future == null) {
+                // not started yet, it would wait for files announced before it
+                announced.cancelled = true;
+                announced = null;
+            }
+            read = announced;
+        }
+        if (read == null) {
+            return delegate.open(fileName);
+        }
+        long start = System.nanoTime();
+        byte[] content;
+        try {
+            content = I18NUtils.waitFor(read.future);
+        } catch (IOException ex) {
+            release(read);
+            throw ex;
+        } catch (RuntimeException ex) {
+            release(read);
+            throw ex;
+        }
+        metrics.filePrefetched(start);
+        return new ByteArrayInputStream(content, 0, read.length) {
+            private boolean closed;
+
+            @Override
+            public void close() {
+                if (!closed) {
+                    closed = true;
+                    release(read);
+                }
+            }
+        };
+    }
+
+    /**
+     * The announced file will not be opened, e.g. its module failed. Its read is cancelled
+     * and its bytes leave the window.
+     */
+    synchronized void cancel(String fileName) {
+        Read read = reads.remove(fileName);
+        if (read != null) {
+            cancel(read);
+            startReads();
+        }
+    }
+
+    /** Cancel reads of announced files which were not opened, e.g. when the scan of their module ends */
+    synchronized void cancel(Collection<String> fileNames) {
+        for (String fileName : fileNames) {
+            Read read = reads.remove(fileName);
+            if (read != null) {
+                cancel(read);
+            }
+        }
+        startReads();
+    }
+
+    /** The scan ended, reads of all files which were not opened are cancelled */
+    synchronized void close() {
+        closed = true;
+        for (Read read : reads.values()) {
+            cancel(read);
+        }
+        reads.clear();
+        waiting.clear();
+    }
+
+    /** Bytes of files being read or read and not closed yet */
+    synchronized long getLoaded() {
+        return loaded;
+    }
+
+    /** Cancel the read of a file removed from reads, called with lock held */
+    private void cancel(Read read) {
+        if (read.future == null) {
+            read.cancelled = true;
+        } else {
+            read.future.cancel(true);
+            loaded -= read.size;
+        }
+    }
+
+    /** Start reads of waiting files which fit into the window, called with lock held */
+    private void startReads() {
+        while (!waiting.isEmpty()) {
+            Read next = waiting.peek();
+            if (next.cancelled) {
+                waiting.remove();
+                continue;
+            }
+            if (loaded > 0 && loaded + next.size > window) {
+                return;
+            }
+            waiting.remove();
+            loaded += next.size;
+            next.future = executor.submit(next);
+        }
+    }
+
+    private synchronized void release(Read read) {
+        loaded -= read.size;
+        startReads();
+    }
+
+    /** Read of one file */
+    private final class Read implements Callable<byte[]> {
+        private final String fileName;
+        private final long size;
+        /** Null until the read is started */
+        private Future<byte[]> future;
+        /** The read will not be started, the file is opened directly or not at all */
+        private boolean cancelled;
+        /** Number of bytes read, the file could change since it was announced */
+        private int length;
+
+        Read(String fileName, long size) {
+            this.fileName = fileName;
+            this.size = size;
+        }
+
+        public byte[] call() throws IOException {
+            byte[] content = new byte[(int) Math.min(size + 1, Integer.MAX_VALUE - 8)];
+            InputStream in = delegate.open(fileName);
+            try {
+                for (int n; (n = in.read(content, length, content.length - length)) >= 0; ) {
+                    length += n;
+                    if (length == content.length) {
+                        content = Arrays.copyOf(content, content.length * 2);
+                    }
+                }
+            } finally {
+                in.close();
+            }
+            return content;
+        }
+    }
+}
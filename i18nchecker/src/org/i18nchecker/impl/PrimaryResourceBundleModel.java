@@ -16,6 +16,8 @@
 
 package org.i18nchecker.impl;
 
+import java.io.IOException;
+import java.util.ArrayList;
 import java.util.List;
 import java.util.Map;
 
@@ -52,10 +54,14 @@ class PrimaryResourceBundleModel extends AbstractResourceBundleModel<PrimaryRBIn
         }
     }
 
+    FileType getFileType() {
+        return FileType.PRIMARY_BUNDLE;
+    }
+
     /** Report results into the provided ScanResults */
     void reportResults(ScanResults results) {
         results.incrementFileCounter(FileType.PRIMARY_BUNDLE);
-        for (Map.Entry<String,PrimaryRBInfo> entry: keys.entrySet()) {
+        for (Map.Entry<String,PrimaryRBInfo> entry: sortedKeys().entrySet()) {
             String key = entry.getKey();
             PrimaryRBInfo info = entry.getValue();
             if ((info.getUsedCount() == 0) && (!info.isYesI18N())) {
@@ -79,6 +85,22 @@ class PrimaryResourceBundleModel extends AbstractResourceBundleModel<PrimaryRBIn
         return true;
     }
 
+    /** Keys which were marked as used */
+    List<String> getUsedKeys() {
+        List<String> used = new ArrayList<String>();
+        for (Map.Entry<String, PrimaryRBInfo> entry : keys.entrySet()) {
+            if (entry.getValue().getUsedCount() > 0) {
+                used.add(entry.getKey());
+            }
+        }
+        return used;
+    }
+
+    /** Info about the key or null if there is no such key */
+    PrimaryRBInfo getInfo(String key) {
+        return keys.get(key);
+    }
+
     @Override
     protected PrimaryRBInfo createInfo(String value, int lineCount, boolean yesI18N) {
         return new PrimaryRBInfo(value, lineCount, yesI18N);
@@ -92,28 +114,29 @@ class PrimaryResourceBundleModel extends AbstractResourceBundleModel<PrimaryRBIn
      * @param pack package name
      * @param exportTo export strings into this list
      */
-    void findStringsForTranslationTo(TranslatedResourceBundleModel translated, String module, String pack, List<String> exportTo) {
+    void findStringsForTranslationTo(TranslatedResourceBundleModel translated, String module, String pack, List<String> exportTo)
+            throws IOException {
+        for (Map.Entry<String,PrimaryRBInfo> entry: sortedKeys().entrySet()) {
+            String key = entry.getKey();
+            TranslatedRBInfo translatedInfo = translated != null ? translated.getKeys().get(key) : null;
+            exportTo.add(toCSVLine(module, pack, key, entry.getValue().getValue(),
+                    translatedInfo != null ? translatedInfo.getValue() : null));
+        }
+    }
+
+    /**
+     * Line of exported CSV for one key.
+     *
+     * @param translatedValue value of the key in translated bundle, null if it is not translated
+     */
+    static String toCSVLine(String module, String pack, String key, String primaryValue, String translatedValue) {
         assert TranslatedCSVColumns.values().length == 5;
         String[] cols = new String[TranslatedCSVColumns.values().length];
         cols[TranslatedCSVColumns.MODULE.getIndex()] = module;
         cols[TranslatedCSVColumns.PACKAGE.getIndex()] = pack;
-
-        for (Map.Entry<String,PrimaryRBInfo> entry: keys.entrySet()) {
-            String key = entry.getKey();
-            PrimaryRBInfo primaryInfo = entry.getValue();
-
-            cols[TranslatedCSVColumns.KEY.getIndex()] = key;
-            cols[TranslatedCSVColumns.PRIMARY.getIndex()] = primaryInfo.getValue().replace("\"", "\"\"");
-            cols[TranslatedCSVColumns.TRANSLATED.getIndex()] = "";
-            if (translated != null) {
-                TranslatedRBInfo translatedInfo = translated.keys.get(key);
-                if (translatedInfo != null) {
-                    String str = translatedInfo.getValue();
-                    str = I18NUtils.getJapString(str);
-                    cols[TranslatedCSVColumns.TRANSLATED.getIndex()] = str;
-                }
-            }
-            exportTo.add(I18NUtils.convertArrayToLine(cols));
-        }
+        cols[TranslatedCSVColumns.KEY.getIndex()] = key;
+        cols[TranslatedCSVColumns.PRIMARY.getIndex()] = primaryValue.replace("\"", "\"\"");
+        cols[TranslatedCSVColumns.TRANSLATED.getIndex()] = translatedValue != null ? I18NUtils.getJapString(translatedValue) : "";
+        return I18NUtils.convertArrayToLine(cols);
     }
 }
@@ -0,0 +1,467 @@
+/**
+*   Copyright 2010-2011 Petr Hamernik
+*
+*   Licensed under the Apache License, Version 2.0 (the "License");
+*   you may not use this file except in compliance with the License.
+*   You may obtain a copy of the License at
+*
+*       http://www.apache.org/licenses/LICENSE-2.0
+*
+*   Unless required by applicable law or agreed to in writing, software
+*   distributed under the License is distributed on an "AS IS" BASIS,
+*   WITHOUT WARRANTIES OR CONDITIONS OF ANY KIND, either express or implied.
+*   See the License for the specific language governing permissions and
+*   limitations under the License.
+*/
+package org.i18nchecker.impl;
+
+import java.io.BufferedOutputStream;
+import java.io.ByteArrayOutputStream;
+import java.io.DataOutputStream;
+import java.io.File;
+import java.io.FileOutputStream;
+import java.io.IOException;
+import java.nio.ByteBuffer;
+import java.nio.channels.FileChannel;
+import java.nio.file.Files;
+import java.nio.file.StandardCopyOption;
+import java.nio.file.StandardOpenOption;
+import java.util.ArrayList;
+import java.util.Collections;
+import java.util.HashMap;
+import java.util.List;
+import java.util.Map;
+import java.util.TreeMap;
+
+/**
+ * Scanned modules stored in a binary file - results and bundles of all modules together with stamps
+ * of all scanned files and directories. Export, import and check of a repository which did not change
+ * since the snapshot was written can use the snapshot instead of scanning modules again.
+ * <p>
+ * Every string is stored once in a string table at the end of the file and records refer to it
+ * by index. The file is memory mapped and records are decoded only when they are used, so an open
+ * snapshot needs little heap.
+ *
+ * @author agent
+ */
+public final class RepositorySnapshot {
+
+    private static final int MAGIC = 0x49313852; // "I18R"
+    private static final int VERSION = 1;
+
+    /** Magic, version and offsets of parameters, stamps, modules and strings */
+    private static final int HEADER_SIZE = 6 * 4;
+    /** Index of a missing string or count of a missing bundle */
+    private static final int NONE = -1;
+    /** Bundle key record: key, value and line */
+    private static final int KEY_SIZE = 3 * 4;
+    /** Finding record: type, file, line and message */
+    private static final int FINDING_SIZE = 4 * 4;
+
+    private final ByteBuffer buffer;
+    private final int parameters;
+    private final int stamps;
+    private final int strings;
+    private final List<Module> modules;
+
+    private RepositorySnapshot(ByteBuffer buffer) {
+        this.buffer = buffer;
+        this.parameters = buffer.getInt(8);
+        this.stamps = buffer.getInt(12);
+        this.strings = buffer.getInt(20);
+        Cursor cursor = new Cursor(buffer.getInt(16));
+        List<Module> list = new ArrayList<Module>();
+        for (int i = cursor.readInt(); i > 0; i--) {
+            list.add(new Module(cursor.readInt()));
+        }
+        this.modules = Collections.unmodifiableList(list);
+    }
+
+    /**
+     * Store scanned modules. The scheduler has to {@link ModuleScheduler#setRecordStamps record stamps}.
+     * Translated bundles which were not parsed by the scan are parsed now.
+     *
+     * @param file file to write, it is replaced only when the whole snapshot is written
+     * @param repoRoot root of repository
+     * @param topDirs names of scanned top level directories
+     * @param moduleFilter module filter of the scan, may be null
+     * @param checkTranslations were translations checked by the scan?
+     * @param scheduler scheduler which scanned the modules, has stamps of module candidates
+     * @param scanners all modules returned by {@link ModuleScheduler#scan}
+     */
+    public static void write(File file, File repoRoot, List<String> topDirs, String moduleFilter,
+            boolean checkTranslations, ModuleScheduler scheduler, List<ModuleScanner> scanners) throws IOException {
+        Writer writer = new Writer();
+        DataOutputStream out = writer.out;
+
+        int parameters = writer.offset();
+        out.writeInt(checkTranslations ? 1 : 0);
+        writer.writeString(normalizeFilter(moduleFilter));
+        out.writeInt(topDirs.size());
+        for (String topDir : topDirs) {
+            writer.writeString(new File(repoRoot, topDir).getAbsolutePath());
+        }
+
+        int stamps = writer.offset();
+        List<FileStamps> all = new ArrayList<FileStamps>();
+        // candidates which were ignored become modules when sources or a manifest are added
+        FileStamps discovered = scheduler.getDiscoveryStamps();
+        if (discovered == null) {
+            throw new IllegalStateException("Modules were discovered without stamps");
+        }
+        all.add(discovered);
+        int stampCount = discovered.size();
+        for (ModuleScanner scanner : scanners) {
+            if (scanner.getStamps() == null) {
+                throw new IllegalStateException("Module was scanned without stamps: " + scanner.getRoot());
+            }
+            all.add(scanner.getStamps());
+            stampCount += scanner.getStamps().size();
+        }
+        out.writeInt(stampCount);
+        for (FileStamps fileStamps : all) {
+            for (int i = 0; i < fileStamps.size(); i++) {
+                writer.writeString(fileStamps.getPath(i));
+                out.writeLong(fileStamps.getModified(i));
+                out.writeLong(fileStamps.getSize(i));
+            }
+        }
+
+        List<Integer> moduleOffsets = new ArrayList<Integer>();
+        for (ModuleScanner scanner : scanners) {
+            moduleOffsets.add(writer.offset());
+            writeModule(writer, scanner);
+        }
+        int modules = writer.offset();
+        out.writeInt(moduleOffsets.size());
+        for (int offset : moduleOffsets) {
+            out.writeInt(offset);
+        }
+
+        File tmp = new File(file.getPath() + ".tmp");
+        DataOutputStream fileOut = new DataOutputStream(new BufferedOutputStream(new FileOutputStream(tmp)));
+        try {
+            fileOut.writeInt(MAGIC);
+            fileOut.writeInt(VERSION);
+            fileOut.writeInt(parameters);
+            fileOut.writeInt(stamps);
+            fileOut.writeInt(modules);
+            fileOut.writeInt(writer.offset());
+            writer.bytes.writeTo(fileOut);
+            writer.writeStrings(fileOut);
+        } finally {
+            fileOut.close();
+        }
+        Files.move(tmp.toPath(), file.toPath(), StandardCopyOption.REPLACE_EXISTING);
+    }
+
+    private static void writeModule(Writer writer, ModuleScanner scanner) throws IOException {
+        DataOutputStream out = writer.out;
+        ScanResults results = scanner.getResults();
+        writer.writeString(scanner.getRoot().getPath());
+        writer.writeString(results.getName());
+        for (FileType type : FileType.values()) {
+            out.writeInt(results.getFileCount(type));
+        }
+        out.writeInt(results.getProblemsCount());
+        for (Map.Entry<ScanResults.Type, List<Finding>> entry : results.getFindings().entrySet()) {
+            for (Finding finding : entry.getValue()) {
+                out.writeInt(entry.getKey().ordinal());
+                writer.writeString(finding.getFileName());
+                out.writeInt(finding.getLine());
+                writer.writeString(finding.getMessage());
+            }
+        }
+        out.writeInt(scanner.getPackages().size());
+        for (PackageScanner ps : scanner.getPackages()) {
+            writer.writeString(ps.getSimpleName());
+            writer.writeString(ps.getPackageDir().getPath());
+            PrimaryResourceBundleModel primary = ps.getPrimaryBundle();
+            if (primary != null) {
+                writer.writeKeys(primary.sortedKeys());
+            } else {
+                out.writeInt(NONE);
+            }
+            out.writeInt(ps.getTranslatedBundles().size());
+            for (TranslatedResourceBundleModel translated : ps.getTranslatedBundles()) {
+                writer.writeString(translated.getFileName());
+                writer.writeKeys(new TreeMap<String, TranslatedRBInfo>(translated.getKeys()));
+            }
+        }
+    }
+
+    /**
+     * Map the snapshot file.
+     *
+     * @throws IOException if the file is not a snapshot of this version
+     */
+    public static RepositorySnapshot open(File file) throws IOException {
+        FileChannel channel = FileChannel.open(file.toPath(), StandardOpenOption.READ);
+        try {
+            long size = channel.size();
+            if (size < HEADER_SIZE || size > Integer.MAX_VALUE) {
+                throw new IOException("Not a repository snapshot: " + file);
+            }
+            ByteBuffer buffer = channel.map(FileChannel.MapMode.READ_ONLY, 0, size);
+            if (buffer.getInt(0) != MAGIC || buffer.getInt(4) != VERSION) {
+                throw new IOException("Not a repository snapshot: " + file);
+            }
+            return new RepositorySnapshot(buffer);
+        } finally {
+            channel.close();
+        }
+    }
+
+    /**
+     * Was the snapshot written by a scan with the same parameters and no scanned file or directory
+     * has changed since? Every stamped file is checked, but none is read. Files modified
+     * shortly before the scan count as changed, see {@link FileStamps}.
+     */
+    public boolean isFresh(File repoRoot, List<String> topDirs, String moduleFilter, boolean checkTranslations)
+            throws IOException {
+        Cursor cursor = new Cursor(parameters);
+        if ((cursor.readInt() != 0) != checkTranslations) {
+            return false;
+        }
+        String filter = cursor.readString();
+        if (filter == null ? normalizeFilter(moduleFilter) != null : !filter.equals(moduleFilter)) {
+            return false;
+        }
+        if (cursor.readInt() != topDirs.size()) {
+            return false;
+        }
+        for (String topDir : topDirs) {
+            if (!cursor.readString().equals(new File(repoRoot, topDir).getAbsolutePath())) {
+                return false;
+            }
+        }
+        cursor = new Cursor(stamps);
+        for (int i = cursor.readInt(); i > 0; i--) {
+            if (!FileStamps.isCurrent(cursor.readString(), cursor.readLong(), cursor.readLong())) {
+                return false;
+            }
+        }
+        return true;
+    }
+
+    /** Modules in the same order as the scan returned them */
+    public List<Module> getModules() {
+        return modules;
+    }
+
+    /** Baseline of findings of all modules */
+    public Baseline createBaseline(File repoRoot) throws IOException {
+        List<Finding> all = new ArrayList<Finding>();
+        for (Module module : modules) {
+            for (List<Finding> ofType : module.readResults().getFindings().values()) {
+                all.addAll(ofType);
+            }
+        }
+        return Baseline.fromFindings(repoRoot, all);
+    }
+
+    private static String normalizeFilter(String moduleFilter) {
+        return moduleFilter != null && moduleFilter.length() > 0 ? moduleFilter : null;
+    }
+
+    private String getString(int index) {
+        if (index == NONE) {
+            return null;
+        }
+        int offset = buffer.getInt(strings + 4 + 4 * index);
+        char[] chars = new char[buffer.getInt(offset)];
+        for (int i = 0; i < chars.length; i++) {
+            chars[i] = buffer.getChar(offset + 4 + 2 * i);
+        }
+        return new String(chars);
+    }
+
+    /** Key of the bundle key record */
+    private String getKey(int keys, int index) {
+        return getString(buffer.getInt(keys + index * KEY_SIZE));
+    }
+
+    /** Value of the bundle key record */
+    private String getValue(int keys, int index) {
+        return getString(buffer.getInt(keys + index * KEY_SIZE + 4));
+    }
+
+    /** Reads records of the mapped file one after another */
+    private final class Cursor {
+        private int position;
+
+        Cursor(int position) {
+            this.position = position;
+        }
+
+        int readInt() {
+            int value = buffer.getInt(position);
+            position += 4;
+            return value;
+        }
+
+        long readLong() {
+            long value = buffer.getLong(position);
+            position += 8;
+            return value;
+        }
+
+        String readString() {
+            return getString(readInt());
+        }
+
+        void skip(int bytes) {
+            position += bytes;
+        }
+    }
+
+    /** Writes records into memory and collects their strings into the string table */
+    private static final class Writer {
+        private final ByteArrayOutputStream bytes = new ByteArrayOutputStream();
+        private final DataOutputStream out = new DataOutputStream(bytes);
+        private final Map<String, Integer> indexes = new HashMap<String, Integer>();
+        private final List<String> table = new ArrayList<String>();
+
+        /** Offset of the next record in the file */
+        int offset() {
+            return HEADER_SIZE + out.size();
+        }
+
+        void writeString(String str) throws IOException {
+            if (str == null) {
+                out.writeInt(NONE);
+                return;
+            }
+            Integer index = indexes.get(str);
+            if (index == null) {
+                index = table.size();
+                indexes.put(str, index);
+                table.add(str);
+            }
+            out.writeInt(index);
+        }
+
+        void writeKeys(Map<String, ? extends AbstractRBInfo> keys) throws IOException {
+            out.writeInt(keys.size());
+            for (Map.Entry<String, ? extends AbstractRBInfo> entry : keys.entrySet()) {
+                writeString(entry.getKey());
+                writeString(entry.getValue().getValue());
+                out.writeInt(entry.getValue().getLine());
+            }
+        }
+
+        /** String table - number of strings, offsets of strings and strings as length and chars */
+        void writeStrings(DataOutputStream fileOut) throws IOException {
+            int offset = offset() + 4 + 4 * table.size();
+            fileOut.writeInt(table.size());
+            for (String str : table) {
+                fileOut.writeInt(offset);
+                offset += 4 + 2 * str.length();
+            }
+            for (String str : table) {
+                fileOut.writeInt(str.length());
+                fileOut.writeChars(str);
+            }
+        }
+    }
+
+    /** Results and bundles of one module read from the snapshot */
+    public final class Module implements ModuleModel {
+        private final int offset;
+
+        private Module(int offset) {
+            this.offset = offset;
+        }
+
+        public File getRoot() {
+            return new File(getString(buffer.getInt(offset)));
+        }
+
+        public int getProblemsCount() {
+            return buffer.getInt(offset + 8 + 4 * FileType.values().length);
+        }
+
+        public void printResults(boolean details) {
+            readResults().printAll(details);
+        }
+
+        ScanResults readResults() {
+            Cursor cursor = new Cursor(offset + 4);
+            ScanResults results = new ScanResults(cursor.readString());
+            for (FileType type : FileType.values()) {
+                results.addFileCount(type, cursor.readInt());
+            }
+            ScanResults.Type[] types = ScanResults.Type.values();
+            for (int i = cursor.readInt(); i > 0; i--) {
+                results.add(types[cursor.readInt()], cursor.readString(), cursor.readInt(), cursor.readString());
+            }
+            return results;
+        }
+
+        /** Cursor at the number of packages */
+        private Cursor packages() {
+            Cursor cursor = new Cursor(offset + 8 + 4 * FileType.values().length);
+            cursor.skip(cursor.readInt() * FINDING_SIZE);
+            return cursor;
+        }
+
+        public void bundle2csv(String language, List<String> exportTo, String relativePath) throws IOException {
+            Cursor cursor = packages();
+            for (int p = cursor.readInt(); p > 0; p--) {
+                String pack = cursor.readString();
+                cursor.skip(4); // package directory
+                int keyCount = cursor.readInt();
+                int keys = cursor.position;
+                cursor.skip(Math.max(keyCount, 0) * KEY_SIZE);
+                int translatedKeys = NONE;
+                int translatedCount = 0;
+                for (int t = cursor.readInt(); t > 0; t--) {
+                    String fileName = cursor.readString();
+                    int count = cursor.readInt();
+                    if (translatedKeys == NONE && language.equals(TranslatedResourceBundleModel.getLanguage(fileName))) {
+                        translatedKeys = cursor.position;
+                        translatedCount = count;
+                    }
+                    cursor.skip(count * KEY_SIZE);
+                }
+                // both bundles are sorted by key, so translations are found by one pass
+                int t = 0;
+                String translatedKey = translatedCount > 0 ? getKey(translatedKeys, 0) : null;
+                for (int k = 0; k < keyCount; k++) {
+                    String key = getKey(keys, k);
+                    while (translatedKey != null && translatedKey.compareTo(key) < 0) {
+                        t++;
+                        translatedKey = t < translatedCount ? getKey(translatedKeys, t) : null;
+                    }
+                    String translatedValue = key.equals(translatedKey) ? getValue(translatedKeys, t) : null;
+                    exportTo.add(PrimaryResourceBundleModel.toCSVLine(relativePath, pack, key, getValue(keys, k), translatedValue));
+                }
+            }
+        }
+
+        public void csv2bundle(String language, List<String> header, Map<String, Map<String, String>> translatedModule)
+                throws IOException {
+            Cursor cursor = packages();
+            for (int p = cursor.readInt(); p > 0; p--) {
+                String pack = cursor.readString();
+                File packageDir = new File(cursor.readString());
+                cursor.skip(Math.max(cursor.readInt(), 0) * KEY_SIZE);
+                String fileName = null;
+                for (int t = cursor.readInt(); t > 0; t--) {
+                    String translated = cursor.readString();
+                    if (fileName == null && language.equals(TranslatedResourceBundleModel.getLanguage(translated))) {
+                        fileName = translated;
+                    }
+                    cursor.skip(cursor.readInt() * KEY_SIZE);
+                }
+                Map<String, String> translatedPackage = translatedModule.get(pack);
+                if (translatedPackage != null) {
+                    if (fileName == null) {
+                        fileName = TranslatedResourceBundleModel.getFileName(packageDir, language);
+                    }
+                    new TranslatedResourceBundleModel(fileName, null).generateTranslatedResource(header, translatedPackage);
+                }
+            }
+        }
+    }
+}
@@ -0,0 +1,165 @@
+/**
+*   Copyright 2010-2011 Petr Hamernik
+*
+*   Licensed under the Apache License, Version 2.0 (the "License");
+*   you may not use this file except in compliance with the License.
+*   You may obtain a copy of the License at
+*
+*       http://www.apache.org/licenses/LICENSE-2.0
+*
+*   Unless required by applicable law or agreed to in writing, software
+*   distributed under the License is distributed on an "AS IS" BASIS,
+*   WITHOUT WARRANTIES OR CONDITIONS OF ANY KIND, either express or implied.
+*   See the License for the specific language governing permissions and
+*   limitations under the License.
+*/
+package org.i18nchecker.impl;
+
+import java.util.concurrent.Executor;
+import java.util.concurrent.Semaphore;
+import java.util.concurrent.atomic.AtomicBoolean;
+import org.xml.sax.EntityResolver;
+
+/**
+ * Services shared by all modules scanned in one run.
+ *
+ * @author agent
+ */
+final class ScanContext {
+
+    /** Runs tasks directly in the calling thread */
+    static final Executor DIRECT = new Executor() {
+        public void execute(Runnable command) {
+            command.run();
+        }
+    };
+
+    private final EntityResolver resolver;
+    private final FileSource fileSource;
+    private final Executor parseExecutor;
+    private final Semaphore pendingFiles;
+    private final StringPool stringPool;
+    private final JavaTokenizer.Pool tokenizers;
+    private final ScanMetrics metrics;
+    private boolean checkTranslations;
+    private boolean recordStamps;
+    private ScanProfile profile;
+    private final AtomicBoolean cancelled;
+
+    /**
+     * @param resolver entity resolver for module layers
+     * @param fileSource opens files for parsing
+     * @param parseExecutor executor for parsing and verification of files
+     * @param maxPendingFiles maximum number of files submitted for parsing and not parsed yet in the whole run
+     * @param metrics collects counters and times of the run
+     */
+    ScanContext(EntityResolver resolver, FileSource fileSource, Executor parseExecutor, int maxPendingFiles,
+            ScanMetrics metrics) {
+        this.resolver = resolver;
+        this.fileSource = fileSource;
+        this.parseExecutor = parseExecutor;
+        this.pendingFiles = new Semaphore(maxPendingFiles);
+        this.stringPool = new StringPool();
+        this.tokenizers = new JavaTokenizer.Pool();
+        this.metrics = metrics;
+        this.cancelled = new AtomicBoolean();
+    }
+
+    /** Context sharing everything with the given one except the string pool */
+    private ScanContext(ScanContext shared, StringPool stringPool) {
+        this.resolver = shared.resolver;
+        this.fileSource = shared.fileSource;
+        this.parseExecutor = shared.parseExecutor;
+        this.pendingFiles = shared.pendingFiles;
+        this.stringPool = stringPool;
+        this.tokenizers = shared.tokenizers;
+        this.metrics = shared.metrics;
+        this.checkTranslations = shared.checkTranslations;
+        this.recordStamps = shared.recordStamps;
+        this.profile = shared.profile;
+        this.cancelled = shared.cancelled;
+    }
+
+    /**
+     * Context for one module whose strings are not shared with other modules,
+     * so they can be collected as soon as the module is released.
+     */
+    ScanContext withOwnStringPool() {
+        return new ScanContext(this, new StringPool());
+    }
+
+    EntityResolver getResolver() {
+        return resolver;
+    }
+
+    FileSource getFileSource() {
+        return fileSource;
+    }
+
+    /** Source which reads files ahead of parsers, null if files are not prefetched */
+    PrefetchingFileSource getPrefetcher() {
+        return fileSource instanceof PrefetchingFileSource ? (PrefetchingFileSource) fileSource : null;
+    }
+
+    Executor getParseExecutor() {
+        return parseExecutor;
+    }
+
+    /** Strings shared by all models of the run */
+    StringPool getStringPool() {
+        return stringPool;
+    }
+
+    /** Reusable lexers shared by all threads parsing Java sources */
+    JavaTokenizer.Pool getJavaTokenizers() {
+        return tokenizers;
+    }
+
+    /** Should translated bundles be parsed and compared with primary bundles? */
+    boolean isCheckTranslations() {
+        return checkTranslations;
+    }
+
+    /** Set before scanning starts */
+    void setCheckTranslations(boolean checkTranslations) {
+        this.checkTranslations = checkTranslations;
+    }
+
+    /** Should modules record {@link FileStamps} of walked directories and read files? */
+    boolean isRecordStamps() {
+        return recordStamps;
+    }
+
+    /** Set before scanning starts */
+    void setRecordStamps(boolean recordStamps) {
+        this.recordStamps = recordStamps;
+    }
+
+    /** Records every parsed file, null if the scan is not profiled */
+    ScanProfile getProfile() {
+        return profile;
+    }
+
+    /** Set before scanning starts */
+    void setProfile(ScanProfile profile) {
+        this.profile = profile;
+    }
+
+    /** Stop scanning, modules which are still scanned will have incomplete results */
+    void cancel() {
+        cancelled.set(true);
+    }
+
+    boolean isCancelled() {
+        return cancelled.get();
+    }
+
+    ScanMetrics getMetrics() {
+        return metrics;
+    }
+
+    /** Permits for files submitted to parse executor, limits memory used by files waiting for parsing */
+    Semaphore getPendingFiles() {
+        return pendingFiles;
+    }
+}
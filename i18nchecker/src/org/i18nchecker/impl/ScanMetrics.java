@@ -0,0 +1,154 @@
+/**
+*   Copyright 2010-2011 Petr Hamernik
+*
+*   Licensed under the Apache License, Version 2.0 (the "License");
+*   you may not use this file except in compliance with the License.
+*   You may obtain a copy of the License at
+*
+*       http://www.apache.org/licenses/LICENSE-2.0
+*
+*   Unless required by applicable law or agreed to in writing, software
+*   distributed under the License is distributed on an "AS IS" BASIS,
+*   WITHOUT WARRANTIES OR CONDITIONS OF ANY KIND, either express or implied.
+*   See the License for the specific language governing permissions and
+*   limitations under the License.
+*/
+package org.i18nchecker.impl;
+
+import java.util.concurrent.atomic.AtomicLong;
+import java.util.concurrent.atomic.AtomicLongArray;
+
+/**
+ * Counters and times of scan phases. Updated concurrently by all scanning threads.
+ *
+ * @author agent
+ */
+public final class ScanMetrics {
+
+    /** Phases of the scan which run one after another */
+    enum Phase {
+        /** Discovery of modules, parsing and verification of files, reading of layers */
+        SCAN,
+        /** Verification of layers and constants of classes against bundles of all modules */
+        RESOLVE_LAYERS,
+        /** Collecting results */
+        REPORT
+    }
+
+    private final AtomicLongArray phaseNanos = new AtomicLongArray(Phase.values().length);
+    private final AtomicLongArray parsedFiles = new AtomicLongArray(FileType.values().length);
+    private final AtomicLongArray parseNanos = new AtomicLongArray(FileType.values().length);
+    private final AtomicLongArray deferredFiles = new AtomicLongArray(FileType.values().length);
+    private final AtomicLong readClasses = new AtomicLong();
+    private final AtomicLong readClassesNanos = new AtomicLong();
+    private final AtomicLong prefetchedFiles = new AtomicLong();
+    private final AtomicLong prefetchWaitNanos = new AtomicLong();
+    private final AtomicLong retainedModules = new AtomicLong();
+    private final AtomicLong peakRetainedModules = new AtomicLong();
+
+    /**
+     * @param phase finished phase
+     * @param start {@link System#nanoTime()} when the phase started
+     */
+    void phaseDone(Phase phase, long start) {
+        phaseNanos.addAndGet(phase.ordinal(), System.nanoTime() - start);
+    }
+
+    /**
+     * @param type type of the parsed file
+     * @param start {@link System#nanoTime()} when parsing started
+     */
+    void fileParsed(FileType type, long start) {
+        parsedFiles.incrementAndGet(type.ordinal());
+        parseNanos.addAndGet(type.ordinal(), System.nanoTime() - start);
+    }
+
+    /** The file was found and will be parsed only if its content is needed */
+    void fileDeferred(FileType type) {
+        deferredFiles.incrementAndGet(type.ordinal());
+    }
+
+    /**
+     * @param classes number of class files read from one directory or jar
+     * @param start {@link System#nanoTime()} when reading started
+     */
+    void classesRead(int classes, long start) {
+        readClasses.addAndGet(classes);
+        readClassesNanos.addAndGet(System.nanoTime() - start);
+    }
+
+    /**
+     * A parser got the file from {@link PrefetchingFileSource}.
+     *
+     * @param start {@link System#nanoTime()} when the parser started to wait for the content
+     */
+    void filePrefetched(long start) {
+        prefetchedFiles.incrementAndGet();
+        prefetchWaitNanos.addAndGet(System.nanoTime() - start);
+    }
+
+    /** Scan of the module started, its models stay in memory until it is {@link #moduleReleased released} */
+    void moduleRetained() {
+        long retained = retainedModules.incrementAndGet();
+        for (long peak; (peak = peakRetainedModules.get()) < retained; ) {
+            if (peakRetainedModules.compareAndSet(peak, retained)) {
+                break;
+            }
+        }
+    }
+
+    void moduleReleased() {
+        retainedModules.decrementAndGet();
+    }
+
+    /** The most modules with models in memory at once during a streaming scan */
+    public long getPeakRetainedModules() {
+        return peakRetainedModules.get();
+    }
+
+    public long getPrefetchedFiles() {
+        return prefetchedFiles.get();
+    }
+
+    public long getParsedFiles(FileType type) {
+        return parsedFiles.get(type.ordinal());
+    }
+
+    public long getDeferredFiles(FileType type) {
+        return deferredFiles.get(type.ordinal());
+    }
+
+    public long getReadClasses() {
+        return readClasses.get();
+    }
+
+    @Override
+    public String toString() {
+        StringBuilder sb = new StringBuilder("Phases:");
+        for (Phase phase : Phase.values()) {
+            sb.append(' ').append(phase).append('=').append(millis(phaseNanos.get(phase.ordinal()))).append("ms");
+        }
+        for (FileType type : FileType.values()) {
+            int i = type.ordinal();
+            sb.append("\nParsed ").append(type).append(": ").append(parsedFiles.get(i)).append(" files in ")
+                    .append(millis(parseNanos.get(i))).append("ms of thread time, ")
+                    .append(deferredFiles.get(i)).append(" deferred until needed");
+        }
+        if (readClasses.get() > 0) {
+            sb.append("\nRead constants of ").append(readClasses.get()).append(" classes in ")
+                    .append(millis(readClassesNanos.get())).append("ms of thread time");
+        }
+        if (peakRetainedModules.get() > 0) {
+            sb.append("\nAt most ").append(peakRetainedModules.get()).append(" modules kept in memory");
+        }
+        if (prefetchedFiles.get() > 0) {
+            sb.append("\nPrefetched ").append(prefetchedFiles.get()).append(" files, parsers waited for them ")
+                    .append(millis(prefetchWaitNanos.get())).append("ms");
+        }
+        return sb.toString();
+    }
+
+    private static long millis(long nanos) {
+        return nanos / 1000000;
+    }
+}
@@ -0,0 +1,136 @@
+/**
+*   Copyright 2010-2011 Petr Hamernik
+*
+*   Licensed under the Apache License, Version 2.0 (the "License");
+*   you may not use this file except in compliance with the License.
+*   You may obtain a copy of the License at
+*
+*       http://www.apache.org/licenses/LICENSE-2.0
+*
+*   Unless required by applicable law or agreed to in writing, software
+*   distributed under the License is distributed on an "AS IS" BASIS,
+*   WITHOUT WARRANTIES OR CONDITIONS OF ANY KIND, either express or implied.
+*   See the License for the specific language governing permissions and
+*   limitations under the License.
+*/
+package org.i18nchecker.impl;
+
+import java.io.IOException;
+import java.io.InterruptedIOException;
+import java.util.concurrent.Phaser;
+import java.util.concurrent.Semaphore;
+import java.util.concurrent.atomic.AtomicInteger;
+import java.util.concurrent.atomic.AtomicReference;
+
+/**
+ * Parsing pipeline of one module. The discovery stage (thread which scans the module)
+ * submits files to the parse executor as soon as they are found. A package is verified
+ * as soon as its last file is parsed and discovery has finished its directory.
+ * Discovery blocks when too many files wait for parsing, so memory stays bounded.
+ *
+ * @author agent
+ */
+final class ScanPipeline {
+
+    private final ScanContext context;
+    /** Running tasks, the discovery thread is registered as a party too */
+    private final Phaser running = new Phaser(1);
+    private final AtomicReference<Throwable> failure = new AtomicReference<Throwable>();
+
+    ScanPipeline(ScanContext context) {
+        this.context = context;
+    }
+
+    /** Start tracking files of a package */
+    PackageTracker openPackage(PackageScanner packageScanner) {
+        return new PackageTracker(packageScanner);
+    }
+
+    /**
+     * Parse the file in the parse executor.
+     *
+     * @param tracker package of the file
+     * @param model file to parse
+     */
+    void submit(final PackageTracker tracker, final FileModel model) throws IOException {
+        final Semaphore pendingFiles = context.getPendingFiles();
+        try {
+            pendingFiles.acquire();
+        } catch (InterruptedException ex) {
+            Thread.currentThread().interrupt();
+            throw new InterruptedIOException();
+        }
+        tracker.pending.incrementAndGet();
+        running.register();
+        try {
+            context.getParseExecutor().execute(new Runnable() {
+                public void run() {
+                    try {
+                        if (failure.get() == null && !context.isCancelled()) {
+                            model.parse(context);
+                        } else if (context.getPrefetcher() != null) {
+                            // skipped, the file could be read ahead already
+                            context.getPrefetcher().cancel(model.getFileName());
+                        }
+                    } catch (Throwable t) {
+                        failure.compareAndSet(null, t);
+                    } finally {
+                        pendingFiles.release();
+                        tracker.fileDone();
+                        running.arriveAndDeregister();
+                    }
+                }
+            });
+        } catch (RuntimeException ex) {
+            // rejected - nothing will run
+            pendingFiles.release();
+            tracker.fileDone();
+            running.arriveAndDeregister();
+            throw ex;
+        }
+    }
+
+    /** No more files will be submitted for the package */
+    void closePackage(PackageTracker tracker) {
+        tracker.fileDone();
+    }
+
+    /** Wait until all files are parsed and all packages verified, rethrow the first failure */
+    void await() throws IOException {
+        running.arriveAndAwaitAdvance();
+        Throwable t = failure.get();
+        if (t instanceof IOException) {
+            throw (IOException) t;
+        } else if (t instanceof RuntimeException) {
+            throw (RuntimeException) t;
+        } else if (t instanceof Error) {
+            throw (Error) t;
+        }
+    }
+
+    /** Unparsed files of one package */
+    final class PackageTracker {
+        private final PackageScanner packageScanner;
+        /** Unparsed files plus one until discovery closes the package */
+        private final AtomicInteger pending = new AtomicInteger(1);
+
+        private PackageTracker(PackageScanner packageScanner) {
+            this.packageScanner = packageScanner;
+        }
+
+        PackageScanner getPackageScanner() {
+            return packageScanner;
+        }
+
+        private void fileDone() {
+            // a cancelled scan skips files, the package is incomplete then
+            if (pending.decrementAndGet() == 0 && failure.get() == null && !context.isCancelled()) {
+                try {
+                    packageScanner.verify();
+                } catch (Throwable t) {
+                    failure.compareAndSet(null, t);
+                }
+            }
+        }
+    }
+}
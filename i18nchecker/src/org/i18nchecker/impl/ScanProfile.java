@@ -0,0 +1,222 @@
+/**
+*   Copyright 2010-2011 Petr Hamernik
+*
+*   Licensed under the Apache License, Version 2.0 (the "License");
+*   you may not use this file except in compliance with the License.
+*   You may obtain a copy of the License at
+*
+*       http://www.apache.org/licenses/LICENSE-2.0
+*
+*   Unless required by applicable law or agreed to in writing, software
+*   distributed under the License is distributed on an "AS IS" BASIS,
+*   WITHOUT WARRANTIES OR CONDITIONS OF ANY KIND, either express or implied.
+*   See the License for the specific language governing permissions and
+*   limitations under the License.
+*/
+package org.i18nchecker.impl;
+
+import java.io.BufferedWriter;
+import java.io.File;
+import java.io.FileOutputStream;
+import java.io.IOException;
+import java.io.OutputStreamWriter;
+import java.io.Writer;
+import java.util.ArrayList;
+import java.util.Collections;
+import java.util.Comparator;
+import java.util.HashMap;
+import java.util.List;
+import java.util.Locale;
+import java.util.Map;
+import java.util.Queue;
+import java.util.concurrent.ConcurrentLinkedQueue;
+
+/**
+ * Time, size and number of strings or keys of every parsed file, recorded when the scan is profiled.
+ * Parsers already measure their time for {@link ScanMetrics}, so a record costs one small object
+ * added to a lock-free queue. The report lists the slowest files, the largest bundles
+ * and the packages with the most findings.
+ *
+ * @author agent
+ */
+public final class ScanProfile {
+
+    private final Queue<FileRecord> files = new ConcurrentLinkedQueue<FileRecord>();
+
+    /**
+     * @param type type of the parsed file
+     * @param fileName the parsed file
+     * @param start {@link System#nanoTime()} when parsing started
+     * @param chars number of characters of the file
+     * @param count number of strings of a Java source or number of keys of a bundle
+     */
+    void fileParsed(FileType type, String fileName, long start, int chars, int count) {
+        files.add(new FileRecord(type, fileName, System.nanoTime() - start, chars, count));
+    }
+
+    /** Number of recorded files */
+    public int getRecordedFiles() {
+        return files.size();
+    }
+
+    /** Files which took the longest to read and parse, the slowest first */
+    List<FileRecord> getSlowestFiles(int top) {
+        return top(new ArrayList<FileRecord>(files), top, new Comparator<FileRecord>() {
+            public int compare(FileRecord r1, FileRecord r2) {
+                return r1.nanos != r2.nanos ? (r1.nanos > r2.nanos ? -1 : 1) : r1.fileName.compareTo(r2.fileName);
+            }
+        });
+    }
+
+    /** Primary and translated bundles with the most keys, the largest first */
+    List<FileRecord> getLargestBundles(int top) {
+        List<FileRecord> bundles = new ArrayList<FileRecord>();
+        for (FileRecord record : files) {
+            if (record.type != FileType.JAVA) {
+                bundles.add(record);
+            }
+        }
+        return top(bundles, top, new Comparator<FileRecord>() {
+            public int compare(FileRecord r1, FileRecord r2) {
+                if (r1.count != r2.count) {
+                    return r1.count > r2.count ? -1 : 1;
+                }
+                return r1.chars != r2.chars ? (r1.chars > r2.chars ? -1 : 1) : r1.fileName.compareTo(r2.fileName);
+            }
+        });
+    }
+
+    /**
+     * Directories with the most findings, the worst first.
+     *
+     * @param scanners modules with reported results
+     */
+    static List<Map.Entry<String, Integer>> getPackagesWithMostFindings(List<ModuleScanner> scanners, int top) {
+        Map<String, Integer> counts = new HashMap<String, Integer>();
+        for (ModuleScanner scanner : scanners) {
+            for (List<Finding> ofType : scanner.getFindings().values()) {
+                for (Finding finding : ofType) {
+                    String dir = new File(finding.getFileName()).getParent();
+                    if (dir == null) {
+                        dir = finding.getFileName();
+                    }
+                    Integer count = counts.get(dir);
+                    counts.put(dir, count == null ? 1 : count + 1);
+                }
+            }
+        }
+        return top(new ArrayList<Map.Entry<String, Integer>>(counts.entrySet()), top,
+                new Comparator<Map.Entry<String, Integer>>() {
+                    public int compare(Map.Entry<String, Integer> e1, Map.Entry<String, Integer> e2) {
+                        int c = e2.getValue().compareTo(e1.getValue());
+                        return c != 0 ? c : e1.getKey().compareTo(e2.getKey());
+                    }
+                });
+    }
+
+    private static <T> List<T> top(List<T> list, int top, Comparator<? super T> order) {
+        Collections.sort(list, order);
+        return list.size() > top ? new ArrayList<T>(list.subList(0, top)) : list;
+    }
+
+    /**
+     * Human readable report.
+     *
+     * @param scanners modules with reported results
+     * @param top maximum number of entries of each list
+     */
+    public String format(List<ModuleScanner> scanners, int top) {
+        StringBuilder sb = new StringBuilder();
+        sb.append("Slowest files:");
+        for (FileRecord record : getSlowestFiles(top)) {
+            sb.append(String.format(Locale.ENGLISH, "\n%10.2f ms %9d chars %6d %-7s  %s", record.nanos / 1e6, record.chars, record.count,
+                    record.type == FileType.JAVA ? "strings" : "keys", record.fileName));
+        }
+        sb.append("\nLargest bundles:");
+        for (FileRecord record : getLargestBundles(top)) {
+            sb.append(String.format(Locale.ENGLISH, "\n%8d keys %9d chars  %s", record.count, record.chars, record.fileName));
+        }
+        sb.append("\nPackages with most findings:");
+        for (Map.Entry<String, Integer> entry : getPackagesWithMostFindings(scanners, top)) {
+            sb.append(String.format(Locale.ENGLISH, "\n%8d findings  %s", entry.getValue(), entry.getKey()));
+        }
+        return sb.toString();
+    }
+
+    /**
+     * Store the report as JSON.
+     *
+     * @param file target file, overwritten
+     * @param scanners modules with reported results
+     * @param top maximum number of entries of each list
+     */
+    public void writeJson(File file, List<ModuleScanner> scanners, int top) throws IOException {
+        StringBuilder sb = new StringBuilder();
+        sb.append("{\n  \"recordedFiles\": ").append(files.size()).append(",\n  \"slowestFiles\": [");
+        appendRecords(sb, getSlowestFiles(top));
+        sb.append("],\n  \"largestBundles\": [");
+        appendRecords(sb, getLargestBundles(top));
+        sb.append("],\n  \"packagesWithMostFindings\": [");
+        List<Map.Entry<String, Integer>> packages = getPackagesWithMostFindings(scanners, top);
+        String separator = "\n";
+        for (Map.Entry<String, Integer> entry : packages) {
+            sb.append(separator).append("    {\"package\": ");
+            appendJsonString(sb, entry.getKey());
+            sb.append(", \"findings\": ").append(entry.getValue()).append('}');
+            separator = ",\n";
+        }
+        sb.append(packages.isEmpty() ? "" : "\n  ").append("]\n}\n");
+
+        Writer writer = new BufferedWriter(new OutputStreamWriter(new FileOutputStream(file), "UTF-8"));
+        try {
+            writer.write(sb.toString());
+        } finally {
+            writer.close();
+        }
+    }
+
+    private static void appendRecords(StringBuilder sb, List<FileRecord> records) {
+        String separator = "\n";
+        for (FileRecord record : records) {
+            sb.append(separator).append("    {\"file\": ");
+            appendJsonString(sb, record.fileName);
+            sb.append(", \"type\": \"").append(record.type).append("\", \"nanos\": ").append(record.nanos)
+                    .append(", \"chars\": ").append(record.chars).append(", \"count\": ").append(record.count).append('}');
+            separator = ",\n";
+        }
+        sb.append(records.isEmpty() ? "" : "\n  ");
+    }
+
+    /** Append quoted string, quotes, backslashes and control characters are escaped */
+    static void appendJsonString(StringBuilder sb, String str) {
+        sb.append('"');
+        for (int i = 0; i < str.length(); i++) {
+            char c = str.charAt(i);
+            if (c == '"' || c == '\\') {
+                sb.append('\\').append(c);
+            } else if (c < ' ') {
+                sb.append(String.format(Locale.ENGLISH, "\\u%04x", (int) c));
+            } else {
+                sb.append(c);
+            }
+        }
+        sb.append('"');
+    }
+
+    /** Profile of one parsed file */
+    static final class FileRecord {
+        final FileType type;
+        final String fileName;
+        final long nanos;
+        final int chars;
+        final int count;
+
+        FileRecord(FileType type, String fileName, long nanos, int chars, int count) {
+            this.type = type;
+            this.fileName = fileName;
+            this.nanos = nanos;
+            this.chars = chars;
+            this.count = count;
+        }
+    }
+}
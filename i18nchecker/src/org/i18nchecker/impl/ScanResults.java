@@ -21,6 +21,7 @@ import java.util.ArrayList;
 import java.util.EnumMap;
 import java.util.List;
 import java.util.Map;
+import java.util.concurrent.atomic.AtomicInteger;
 
 /**
  * Collects results per module.
@@ -28,8 +29,8 @@ import java.util.Map;
  * @author Petr Hamernik
  */
 class ScanResults {
-    private static final MessageFormat MSG = new MessageFormat("{0}:{1}: {2}");
-    private static final MessageFormat SUMMARY = new MessageFormat("Scanned {0} Java sources, {1} primary and {2} translated resource bundles. Found {3} potential problems.");
+    private static final String NL = System.getProperty("line.separator");
+    private static final String SUMMARY = "Scanned {0} Java sources, {1} primary and {2} translated resource bundles. Found {3} potential problems.";
 
     public enum Type {
         MISSING_KEY_IN_BUNDLE("Very likely missing key in resource bundle"),
@@ -37,7 +38,9 @@ class ScanResults {
         MAYBE_UNUSED_KEY_IN_BUNDLE("Probably unused resource bundle"),
         MODULE_MANIFEST_BUNDLE("Module's resource bundle specified in manifest.mf"),
         MODULE_LAYER_DEFINITION("Module's XML layer definition is missing in resource bundle"),
-        NOT_NECESSARY_TO_USE_NOI18N("It is redundant to use NOI18N when String actually is in resource bundle");
+        NOT_NECESSARY_TO_USE_NOI18N("It is redundant to use NOI18N when String actually is in resource bundle"),
+        TRANSLATED_KEY_NOT_IN_BUNDLE("Translated key is missing in primary resource bundle"),
+        TRANSLATED_PLACEHOLDERS_MISMATCH("Translation uses different MessageFormat arguments than primary resource bundle");
 
         private String description;
 
@@ -50,11 +53,12 @@ class ScanResults {
         }
     }
 
-    private String name;
-    private Map<Type,List<String>> results = new EnumMap<Type,List<String>>(Type.class);
-    private int sourceCount;
-    private int bundleCount;
-    private int translatedBundleCount;
+    private final String name;
+    /** Findings in the order they were added */
+    private final List<Finding> findings = new ArrayList<Finding>();
+    private final AtomicInteger sourceCount = new AtomicInteger();
+    private final AtomicInteger bundleCount = new AtomicInteger();
+    private final AtomicInteger translatedBundleCount = new AtomicInteger();
 
     /**
      * New ScanResults instance (typically for a whole module).
@@ -66,62 +70,87 @@ class ScanResults {
     }
 
     /**
-     * Add a warning/error message to this results
+     * Add a warning/error message to this results. Findings of a module come from the module task,
+     * from parser threads verifying its packages and from the thread which resolves layers and reports,
+     * so they are kept in the order in which they are added.
      *
      * @param type The type of problem
      * @param fileName Name of file where is the problem
      * @param line line number inside the file
      * @param message Some description message
      */
-    public void add(Type type, String fileName, int line, String message) {
-        List<String> list = results.get(type);
-        if (list == null) {
-            list = new ArrayList<String>();
-            results.put(type, list);
-        }
-        list.add(MSG.format(new Object[] { fileName, Integer.toString(line), message }));
+    public synchronized void add(Type type, String fileName, int line, String message) {
+        findings.add(new Finding(type, fileName, line, message));
     }
 
     /** Just a primitive counter of Java/bundle files to be printed in summary
      */
     void incrementFileCounter(FileType type) {
-        if (type == FileType.JAVA) {
-            sourceCount++;
-        } else if (type == FileType.PRIMARY_BUNDLE) {
-            bundleCount++;
-        } else if (type == FileType.TRANSLATED_BUNDLE) {
-            translatedBundleCount++;
+        addFileCount(type, 1);
+    }
+
+    /** Add to the counter of files, used when results are read from a file */
+    void addFileCount(FileType type, int count) {
+        getFileCounter(type).addAndGet(count);
+    }
+
+    int getFileCount(FileType type) {
+        return getFileCounter(type).get();
+    }
+
+    private AtomicInteger getFileCounter(FileType type) {
+        switch (type) {
+            case JAVA:
+                return sourceCount;
+            case PRIMARY_BUNDLE:
+                return bundleCount;
+            default:
+                return translatedBundleCount;
         }
     }
 
-    public int getProblemsCount() {
-        int count = 0;
-        for (Type type: Type.values()) {
-            List<String> list = results.get(type);
-            if (list != null) {
-                count += list.size();
+    /** Display name of the results */
+    String getName() {
+        return name;
+    }
+
+    /** Number of findings, call when no thread adds findings anymore */
+    public synchronized int getProblemsCount() {
+        return findings.size();
+    }
+
+    /**
+     * All findings grouped by type, findings of one type are in the order they were added.
+     * Call when no thread adds findings anymore.
+     */
+    synchronized Map<Type, List<Finding>> getFindings() {
+        Map<Type, List<Finding>> byType = new EnumMap<Type, List<Finding>>(Type.class);
+        for (Finding finding : findings) {
+            List<Finding> ofType = byType.get(finding.getType());
+            if (ofType == null) {
+                ofType = new ArrayList<Finding>();
+                byType.put(finding.getType(), ofType);
             }
+            ofType.add(finding);
         }
-        return count;
+        return byType;
     }
 
     /** Print all results to System.out */
     public void printAll(boolean details) {
-        System.out.println();
-        System.out.println("Module: " + name);
-        System.out.println(
-                SUMMARY.format(new Object[] { sourceCount, bundleCount,
-                translatedBundleCount, getProblemsCount() }));
+        StringBuilder sb = new StringBuilder();
+        sb.append(NL);
+        sb.append("Module: ").append(name).append(NL);
+        sb.append(MessageFormat.format(SUMMARY, new Object[] { sourceCount.get(), bundleCount.get(),
+                translatedBundleCount.get(), getProblemsCount() })).append(NL);
         if (details) {
-            for (Type type: Type.values()) {
-                List<String> list = results.get(type);
-                if (list != null) {
-                    System.out.println(type.getDescription());
-                    for (String val: list) {
-                        System.out.println(val);
-                    }
+            for (Map.Entry<Type, List<Finding>> entry : getFindings().entrySet()) {
+                sb.append(entry.getKey().getDescription()).append(NL);
+                for (Finding finding : entry.getValue()) {
+                    finding.appendTo(sb).append(NL);
                 }
             }
         }
+        System.out.print(sb);
     }
 }
@@ -0,0 +1,132 @@
+/**
+*   Copyright 2010-2011 Petr Hamernik
+*
+*   Licensed under the Apache License, Version 2.0 (the "License");
+*   you may not use this file except in compliance with the License.
+*   You may obtain a copy of the License at
+*
+*       http://www.apache.org/licenses/LICENSE-2.0
+*
+*   Unless required by applicable law or agreed to in writing, software
+*   distributed under the License is distributed on an "AS IS" BASIS,
+*   WITHOUT WARRANTIES OR CONDITIONS OF ANY KIND, either express or implied.
+*   See the License for the specific language governing permissions and
+*   limitations under the License.
+*/
+package org.i18nchecker.impl;
+
+import java.io.File;
+import java.io.IOException;
+import java.util.ArrayList;
+import java.util.Arrays;
+import java.util.Collections;
+import java.util.Comparator;
+import java.util.List;
+import java.util.concurrent.Callable;
+import java.util.concurrent.ExecutorService;
+import java.util.concurrent.Future;
+
+/**
+ * Assignment of modules to shards which are scanned by separate processes.
+ * Modules are assigned by their estimated size, the largest first, each to the shard
+ * with the smallest total size so far. The plan depends only on the scanned tree,
+ * so all processes compute the same plan.
+ *
+ * @author agent
+ */
+public final class ShardPlan {
+
+    private final int shardIndex;
+    private final int shardCount;
+    /** Roots of all modules in order of discovery */
+    private final List<File> roots;
+    /** Shard of each module */
+    private final int[] shards;
+
+    private ShardPlan(int shardIndex, int shardCount, List<File> roots, int[] shards) {
+        this.shardIndex = shardIndex;
+        this.shardCount = shardCount;
+        this.roots = roots;
+        this.shards = shards;
+    }
+
+    /**
+     * Estimate sizes of all modules and assign them to shards.
+     *
+     * @param scanners all discovered modules in order of discovery
+     * @param shardIndex shard scanned by this process
+     * @param shardCount number of shards
+     * @param executor executor for estimating sizes of modules
+     */
+    static ShardPlan create(
+            List<ModuleScanner> scanners, int shardIndex, int shardCount, ExecutorService executor
+    ) throws IOException {
+        List<Future<Long>> estimates = new ArrayList<Future<Long>>();
+        for (final ModuleScanner scanner : scanners) {
+            estimates.add(executor.submit(new Callable<Long>() {
+                public Long call() throws IOException {
+                    return scanner.estimateSize();
+                }
+            }));
+        }
+        long[] sizes = new long[scanners.size()];
+        List<File> roots = new ArrayList<File>();
+        for (int i = 0; i < sizes.length; i++) {
+            sizes[i] = I18NUtils.waitFor(estimates.get(i));
+            roots.add(scanners.get(i).getRoot());
+        }
+        return new ShardPlan(shardIndex, shardCount, Collections.unmodifiableList(roots), assign(sizes, shardCount));
+    }
+
+    /**
+     * Longest processing time first: modules sorted by size (ties in order of discovery)
+     * go one by one to the least loaded shard (ties to the lower shard).
+     *
+     * @return shard of each module
+     */
+    static int[] assign(final long[] sizes, int shardCount) {
+        Integer[] order = new Integer[sizes.length];
+        for (int i = 0; i < order.length; i++) {
+            order[i] = i;
+        }
+        Arrays.sort(order, new Comparator<Integer>() {
+            public int compare(Integer a, Integer b) {
+                if (sizes[a] != sizes[b]) {
+                    return sizes[a] > sizes[b] ? -1 : 1;
+                }
+                return a.compareTo(b);
+            }
+        });
+        long[] loads = new long[shardCount];
+        int[] shards = new int[sizes.length];
+        for (int module : order) {
+            int least = 0;
+            for (int shard = 1; shard < shardCount; shard++) {
+                if (loads[shard] < loads[least]) {
+                    least = shard;
+                }
+            }
+            shards[module] = least;
+            loads[least] += sizes[module];
+        }
+        return shards;
+    }
+
+    int getShardIndex() {
+        return shardIndex;
+    }
+
+    int getShardCount() {
+        return shardCount;
+    }
+
+    /** Roots of all modules of all shards in order of discovery */
+    List<File> getRoots() {
+        return roots;
+    }
+
+    /** Is the module (index in order of discovery) scanned by this process? */
+    boolean isOwned(int module) {
+        return shards[module] == shardIndex;
+    }
+}
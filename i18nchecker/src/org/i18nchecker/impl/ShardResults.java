@@ -0,0 +1,250 @@
+/**
+*   Copyright 2010-2011 Petr Hamernik
+*
+*   Licensed under the Apache License, Version 2.0 (the "License");
+*   you may not use this file except in compliance with the License.
+*   You may obtain a copy of the License at
+*
+*       http://www.apache.org/licenses/LICENSE-2.0
+*
+*   Unless required by applicable law or agreed to in writing, software
+*   distributed under the License is distributed on an "AS IS" BASIS,
+*   WITHOUT WARRANTIES OR CONDITIONS OF ANY KIND, either express or implied.
+*   See the License for the specific language governing permissions and
+*   limitations under the License.
+*/
+package org.i18nchecker.impl;
+
+import java.io.BufferedInputStream;
+import java.io.BufferedOutputStream;
+import java.io.DataInputStream;
+import java.io.DataOutputStream;
+import java.io.File;
+import java.io.FileInputStream;
+import java.io.FileOutputStream;
+import java.io.IOException;
+import java.util.ArrayList;
+import java.util.Arrays;
+import java.util.Collections;
+import java.util.List;
+import java.util.Map;
+
+/**
+ * Results of all shards merged together. Each shard stores results of its modules into a file
+ * together with the list of all modules, so the merge can check that every module was scanned
+ * exactly once. Paths under the repository root are stored relative, so shards can be scanned
+ * in checkouts at different locations.
+ *
+ * @author agent
+ */
+public final class ShardResults {
+
+    private static final int MAGIC = 0x49313853; // "I18S"
+    private static final int VERSION = 1;
+
+    /** Tag of a path stored as it is, other tags are 1 + index of the prefix the path is relative to */
+    private static final int PATH_AS_IS = 0;
+
+    private final List<Module> modules;
+
+    private ShardResults(List<Module> modules) {
+        this.modules = modules;
+    }
+
+    /**
+     * Store results of modules scanned by this shard.
+     *
+     * @param file file to write
+     * @param repoRoot root of repository
+     * @param plan assignment of modules used by the scan
+     * @param scanners modules of the shard returned by {@link ModuleScheduler#scan}
+     */
+    public static void write(File file, File repoRoot, ShardPlan plan, List<ModuleScanner> scanners) throws IOException {
+        String[] prefixes = prefixes(repoRoot);
+        List<File> roots = plan.getRoots();
+        DataOutputStream out = new DataOutputStream(new BufferedOutputStream(new FileOutputStream(file)));
+        try {
+            out.writeInt(MAGIC);
+            out.writeInt(VERSION);
+            out.writeInt(plan.getShardIndex());
+            out.writeInt(plan.getShardCount());
+            out.writeInt(roots.size());
+            for (File root : roots) {
+                writePath(out, root.getPath(), prefixes);
+            }
+            out.writeInt(scanners.size());
+            for (ModuleScanner scanner : scanners) {
+                ScanResults results = scanner.getResults();
+                out.writeInt(roots.indexOf(scanner.getRoot()));
+                writePath(out, results.getName(), prefixes);
+                for (FileType type : FileType.values()) {
+                    out.writeInt(results.getFileCount(type));
+                }
+                out.writeInt(results.getProblemsCount());
+                for (Map.Entry<ScanResults.Type, List<Finding>> entry : results.getFindings().entrySet()) {
+                    for (Finding finding : entry.getValue()) {
+                        writeString(out, entry.getKey().name());
+                        writePath(out, finding.getFileName(), prefixes);
+                        out.writeInt(finding.getLine());
+                        writeString(out, finding.getMessage());
+                    }
+                }
+            }
+        } finally {
+            out.close();
+        }
+    }
+
+    /**
+     * Read and merge results of all shards.
+     *
+     * @param repoRoot root of repository, relative paths are resolved against it
+     * @param files results of all shards, in any order
+     * @throws IOException if a shard is missing or shards were scanned with different modules
+     */
+    public static ShardResults read(File repoRoot, List<File> files) throws IOException {
+        String[] prefixes = prefixes(repoRoot);
+        List<String> roots = null;
+        Module[] modules = null;
+        boolean[] shards = null;
+        for (File file : files) {
+            DataInputStream in = new DataInputStream(new BufferedInputStream(new FileInputStream(file)));
+            try {
+                if (in.readInt() != MAGIC || in.readInt() != VERSION) {
+                    throw new IOException("Not a shard results file: " + file);
+                }
+                int shardIndex = in.readInt();
+                int shardCount = in.readInt();
+                List<String> shardRoots = new ArrayList<String>();
+                for (int i = in.readInt(); i > 0; i--) {
+                    shardRoots.add(readPath(in, prefixes));
+                }
+                if (roots == null) {
+                    roots = shardRoots;
+                    modules = new Module[roots.size()];
+                    shards = new boolean[shardCount];
+                } else if (!roots.equals(shardRoots) || shards.length != shardCount) {
+                    throw new IOException("Shard results " + file + " were scanned with different modules or shards");
+                }
+                if (shardIndex < 0 || shardIndex >= shardCount) {
+                    throw new IOException("Invalid shard " + shardIndex + " of " + shardCount + ": " + file);
+                }
+                if (shards[shardIndex]) {
+                    throw new IOException("Shard " + shardIndex + " is merged twice: " + file);
+                }
+                shards[shardIndex] = true;
+                for (int i = in.readInt(); i > 0; i--) {
+                    int index = in.readInt();
+                    ScanResults results = new ScanResults(readPath(in, prefixes));
+                    for (FileType type : FileType.values()) {
+                        results.addFileCount(type, in.readInt());
+                    }
+                    for (int j = in.readInt(); j > 0; j--) {
+                        ScanResults.Type type = ScanResults.Type.valueOf(readString(in));
+                        results.add(type, readPath(in, prefixes), in.readInt(), readString(in));
+                    }
+                    modules[index] = new Module(new File(roots.get(index)), results);
+                }
+            } finally {
+                in.close();
+            }
+        }
+        if (roots == null) {
+            throw new IOException("No shard results to merge");
+        }
+        for (int i = 0; i < shards.length; i++) {
+            if (!shards[i]) {
+                throw new IOException("Missing results of shard " + i + " of " + shards.length);
+            }
+        }
+        for (int i = 0; i < modules.length; i++) {
+            if (modules[i] == null) {
+                throw new IOException("Module " + roots.get(i) + " is not in results of any shard");
+            }
+        }
+        return new ShardResults(Collections.unmodifiableList(Arrays.asList(modules)));
+    }
+
+    /** Results of all modules in the same order as a scan of all modules returns them */
+    public List<Module> getModules() {
+        return modules;
+    }
+
+    /** Baseline of findings of all modules */
+    public Baseline createBaseline(File repoRoot) throws IOException {
+        List<Finding> all = new ArrayList<Finding>();
+        for (Module module : modules) {
+            for (List<Finding> ofType : module.results.getFindings().values()) {
+                all.addAll(ofType);
+            }
+        }
+        return Baseline.fromFindings(repoRoot, all);
+    }
+
+    /** Root of repository as given, absolute and canonical - paths of findings use all of them */
+    private static String[] prefixes(File repoRoot) throws IOException {
+        return new String[] {
+            repoRoot.getPath() + File.separator,
+            repoRoot.getAbsolutePath() + File.separator,
+            repoRoot.getCanonicalPath() + File.separator
+        };
+    }
+
+    private static void writePath(DataOutputStream out, String path, String[] prefixes) throws IOException {
+        for (int i = 0; i < prefixes.length; i++) {
+            if (path.startsWith(prefixes[i])) {
+                out.writeByte(i + 1);
+                writeString(out, path.substring(prefixes[i].length()).replace(File.separatorChar, '/'));
+                return;
+            }
+        }
+        out.writeByte(PATH_AS_IS);
+        writeString(out, path);
+    }
+
+    private static String readPath(DataInputStream in, String[] prefixes) throws IOException {
+        int tag = in.readByte();
+        String path = readString(in);
+        if (tag == PATH_AS_IS) {
+            return path;
+        }
+        return prefixes[tag - 1] + path.replace('/', File.separatorChar);
+    }
+
+    /** Strings can be longer than {@link DataOutputStream#writeUTF} allows */
+    private static void writeString(DataOutputStream out, String str) throws IOException {
+        out.writeInt(str.length());
+        out.writeChars(str);
+    }
+
+    private static String readString(DataInputStream in) throws IOException {
+        char[] chars = new char[in.readInt()];
+        for (int i = 0; i < chars.length; i++) {
+            chars[i] = in.readChar();
+        }
+        return new String(chars);
+    }
+
+    /** Results of one module read from a shard */
+    public static final class Module implements ModuleResults {
+        private final File root;
+        private final ScanResults results;
+
+        private Module(File root, ScanResults results) {
+            this.root = root;
+            this.results = results;
+        }
+
+        public File getRoot() {
+            return root;
+        }
+
+        public int getProblemsCount() {
+            return results.getProblemsCount();
+        }
+
+        public void printResults(boolean details) {
+            results.printAll(details);
+        }
+    }
+}
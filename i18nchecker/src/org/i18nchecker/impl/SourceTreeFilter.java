@@ -0,0 +1,90 @@
+/**
+*   Copyright 2010-2011 Petr Hamernik
+*
+*   Licensed under the Apache License, Version 2.0 (the "License");
+*   you may not use this file except in compliance with the License.
+*   You may obtain a copy of the License at
+*
+*       http://www.apache.org/licenses/LICENSE-2.0
+*
+*   Unless required by applicable law or agreed to in writing, software
+*   distributed under the License is distributed on an "AS IS" BASIS,
+*   WITHOUT WARRANTIES OR CONDITIONS OF ANY KIND, either express or implied.
+*   See the License for the specific language governing permissions and
+*   limitations under the License.
+*/
+package org.i18nchecker.impl;
+
+import java.io.IOException;
+import java.nio.file.Files;
+import java.nio.file.Path;
+import java.util.ArrayList;
+import java.util.HashSet;
+import java.util.List;
+import java.util.Set;
+import org.apache.tools.ant.DirectoryScanner;
+import org.apache.tools.ant.types.selectors.SelectorUtils;
+
+/**
+ * Files and directories of a source tree which are not scanned, the same as Ant's
+ * DirectoryScanner used to skip: default excludes (.svn, CVS, .git, editor backups, ...)
+ * by name. Links are followed like Ant does, but a linked directory whose target is outside
+ * of the tree is skipped, so a link can't make the walk scan another module or the whole disk.
+ * Link cycles are reported by the walk as failed files and skipped.
+ *
+ * @author agent
+ */
+final class SourceTreeFilter {
+
+    /** Names of default excludes without wildcards, e.g. ".svn" */
+    private static final Set<String> EXCLUDED_NAMES = new HashSet<String>();
+    /** Name patterns of default excludes with wildcards, e.g. "*~" */
+    private static final List<String> EXCLUDED_PATTERNS = new ArrayList<String>();
+
+    static {
+        for (String exclude : DirectoryScanner.getDefaultExcludes()) {
+            // all default excludes are "**/name" or "**/name/**"
+            String name = exclude.replace('\\', '/');
+            if (name.endsWith("/**")) {
+                name = name.substring(0, name.length() - 3);
+            }
+            name = name.substring(name.lastIndexOf('/') + 1);
+            if (name.indexOf('*') >= 0 || name.indexOf('?') >= 0) {
+                EXCLUDED_PATTERNS.add(name);
+            } else {
+                EXCLUDED_NAMES.add(name);
+            }
+        }
+    }
+
+    private final Path realRoot;
+
+    /**
+     * @param root root of the walked tree, an existing directory
+     */
+    SourceTreeFilter(Path root) throws IOException {
+        this.realRoot = root.toRealPath();
+    }
+
+    /** Is the file or directory with this name one of Ant's default excludes? */
+    static boolean isExcluded(String name) {
+        if (EXCLUDED_NAMES.contains(name)) {
+            return true;
+        }
+        for (String pattern : EXCLUDED_PATTERNS) {
+            if (SelectorUtils.match(pattern, name)) {
+                return true;
+            }
+        }
+        return false;
+    }
+
+    /**
+     * Should the walk skip the directory? Call from preVisitDirectory for all directories
+     * below the root.
+     */
+    boolean isSkipped(Path dir) throws IOException {
+        return isExcluded(dir.getFileName().toString())
+                || (Files.isSymbolicLink(dir) && !dir.toRealPath().startsWith(realRoot));
+    }
+}
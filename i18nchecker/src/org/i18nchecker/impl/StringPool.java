@@ -0,0 +1,167 @@
+/**
+*   Copyright 2010-2011 Petr Hamernik
+*
+*   Licensed under the Apache License, Version 2.0 (the "License");
+*   you may not use this file except in compliance with the License.
+*   You may obtain a copy of the License at
+*
+*       http://www.apache.org/licenses/LICENSE-2.0
+*
+*   Unless required by applicable law or agreed to in writing, software
+*   distributed under the License is distributed on an "AS IS" BASIS,
+*   WITHOUT WARRANTIES OR CONDITIONS OF ANY KIND, either express or implied.
+*   See the License for the specific language governing permissions and
+*   limitations under the License.
+*/
+package org.i18nchecker.impl;
+
+/**
+ * Keeps one instance of each distinct string found in sources and resource bundles
+ * of all scanned modules. Texts like "OK" or "Cancel" are repeated in many files.
+ * Strings can be looked up by a range of characters, so no substring has to be
+ * created for strings which are already in the pool. Thread safe, the pool is split
+ * into independently locked shards.
+ *
+ * @author agent
+ */
+final class StringPool {
+
+    /** Number of shards, power of two */
+    private static final int SHARDS = 32;
+
+    private final Shard[] shards;
+
+    StringPool() {
+        shards = new Shard[SHARDS];
+        for (int i = 0; i < SHARDS; i++) {
+            shards[i] = new Shard();
+        }
+    }
+
+    /**
+     * Pooled instance of the string.
+     *
+     * @param str the string
+     * @return an equal string, the same instance for equal strings
+     */
+    String intern(String str) {
+        return intern(str, 0, str.length());
+    }
+
+    /**
+     * Pooled instance of a substring.
+     *
+     * @param str the string
+     * @param start index of the first character
+     * @param end index after the last character
+     * @return string equal to {@code str.substring(start, end)}, the same instance for equal strings
+     */
+    String intern(String str, int start, int end) {
+        return intern(str, null, start, end);
+    }
+
+    /**
+     * Pooled instance of a range of characters.
+     *
+     * @param chars the characters
+     * @param start index of the first character
+     * @param end index after the last character
+     * @return string equal to {@code new String(chars, start, end - start)}, the same instance for equal strings
+     */
+    String intern(char[] chars, int start, int end) {
+        return intern(null, chars, start, end);
+    }
+
+    /** Pooled instance of a range of the string or of the characters, the other one is null */
+    private String intern(String str, char[] chars, int start, int end) {
+        int hash = 0;
+        for (int i = start; i < end; i++) {
+            hash = 31 * hash + (str != null ? str.charAt(i) : chars[i]);
+        }
+        // the same hash as String.hashCode(), spread it so that shard and slot use different bits
+        int spread = hash ^ (hash >>> 16);
+        return shards[spread & (SHARDS - 1)].intern(str, chars, start, end, spread >>> 5);
+    }
+
+    /** Number of strings in the pool */
+    int size() {
+        int size = 0;
+        for (Shard shard : shards) {
+            synchronized (shard) {
+                size += shard.size;
+            }
+        }
+        return size;
+    }
+
+    /** Remove all strings, used when strings of the pool are not needed anymore */
+    void clear() {
+        for (Shard shard : shards) {
+            synchronized (shard) {
+                shard.table = new String[64];
+                shard.hashes = new int[64];
+                shard.size = 0;
+            }
+        }
+    }
+
+    /** Open addressing hash set of strings */
+    private static final class Shard {
+        private String[] table = new String[64];
+        private int[] hashes = new int[64];
+        private int size;
+
+        synchronized String intern(String str, char[] chars, int start, int end, int hash) {
+            int mask = table.length - 1;
+            int length = end - start;
+            for (int i = hash & mask; ; i = (i + 1) & mask) {
+                String pooled = table[i];
+                if (pooled == null) {
+                    String s;
+                    if (str == null) {
+                        s = new String(chars, start, length);
+                    } else {
+                        s = (start == 0 && end == str.length()) ? str : str.substring(start, end);
+                    }
+                    table[i] = s;
+                    hashes[i] = hash;
+                    if (++size * 4 > table.length * 3) {
+                        rehash();
+                    }
+                    return s;
+                }
+                if (hashes[i] == hash && pooled.length() == length
+                        && (str != null ? pooled.regionMatches(0, str, start, length) : regionMatches(pooled, chars, start))) {
+                    return pooled;
+                }
+            }
+        }
+
+        private static boolean regionMatches(String pooled, char[] chars, int start) {
+            for (int i = 0; i < pooled.length(); i++) {
+                if (pooled.charAt(i) != chars[start + i]) {
+                    return false;
+                }
+            }
+            return true;
+        }
+
+        private void rehash() {
+            String[] oldTable = table;
+            int[] oldHashes = hashes;
+            table = new String[oldTable.length * 2];
+            hashes = new int[table.length];
+            int mask = table.length - 1;
+            for (int j = 0; j < oldTable.length; j++) {
+                if (oldTable[j] != null) {
+                    int i = oldHashes[j] & mask;
+                    while (table[i] != null) {
+                        i = (i + 1) & mask;
+                    }
+                    table[i] = oldTable[j];
+                    hashes[i] = oldHashes[j];
+                }
+            }
+        }
+    }
+}
@@ -23,6 +23,7 @@ import java.util.Collections;
 import java.util.LinkedList;
 import java.util.List;
 import java.util.Map;
+import java.util.TreeMap;
 
 /**
  * Represents one translated resource bundle (e.g Bundle_ja.properties)
@@ -33,13 +34,68 @@ class TranslatedResourceBundleModel extends AbstractResourceBundleModel<Translat
     private static final String PREFIX = "Bundle_";
     private static final String EXT = ".properties";
 
-    public TranslatedResourceBundleModel(String fileName) {
+    /** Parses the bundle on demand, null if the bundle is only generated */
+    private final ScanContext context;
+
+    /** Problems found by {@link #verify}, reported later by {@link #reportResults} */
+    private final List<Problem> problems = new ArrayList<Problem>();
+
+    /**
+     * @param fileName bundle file
+     * @param context used to parse the bundle when its keys are needed, may be null for new bundles
+     */
+    public TranslatedResourceBundleModel(String fileName, ScanContext context) {
         super(fileName);
+        this.context = context;
+    }
+
+    FileType getFileType() {
+        return FileType.TRANSLATED_BUNDLE;
+    }
+
+    /**
+     * Translated keys. Consistency check does not need translations, so the bundle
+     * is parsed the first time its keys are requested.
+     */
+    synchronized Map<String, TranslatedRBInfo> getKeys() throws IOException {
+        if (keys == null) {
+            parse(context);
+        }
+        return keys;
+    }
+
+    /**
+     * Compare translated keys and placeholders with the primary bundle.
+     * Problems of a previous verification are replaced.
+     *
+     * @param primary primary bundle of the package, may be null
+     */
+    void verify(PrimaryResourceBundleModel primary) throws IOException {
+        problems.clear();
+        for (Map.Entry<String, TranslatedRBInfo> entry : new TreeMap<String, TranslatedRBInfo>(getKeys()).entrySet()) {
+            String key = entry.getKey();
+            TranslatedRBInfo translatedInfo = entry.getValue();
+            PrimaryRBInfo primaryInfo = primary != null ? primary.getInfo(key) : null;
+            if (primaryInfo == null) {
+                problems.add(new Problem(ScanResults.Type.TRANSLATED_KEY_NOT_IN_BUNDLE, translatedInfo.getLine(), key));
+                continue;
+            }
+            long primaryArgs = Placeholders.extract(primaryInfo.getValue());
+            long translatedArgs = Placeholders.extract(translatedInfo.getValue());
+            if (primaryArgs != translatedArgs) {
+                problems.add(new Problem(ScanResults.Type.TRANSLATED_PLACEHOLDERS_MISMATCH, translatedInfo.getLine(),
+                        key + ": " + Placeholders.toString(translatedArgs)
+                        + " instead of " + Placeholders.toString(primaryArgs)));
+            }
+        }
     }
 
     /** Report results into the provided ScanResults */
     void reportResults(ScanResults results) {
         results.incrementFileCounter(FileType.TRANSLATED_BUNDLE);
+        for (Problem problem : problems) {
+            results.add(problem.type, getFileName(), problem.line, problem.message);
+        }
     }
 
     @Override
@@ -52,8 +108,17 @@ class TranslatedResourceBundleModel extends AbstractResourceBundleModel<Translat
      * @return language code
      */
     public String getLanguage() {
-        String name = getFileName();
-        return name.substring(name.lastIndexOf(PREFIX) + PREFIX.length(), name.length() - EXT.length());
+        return getLanguage(getFileName());
+    }
+
+    /** Language code of translated bundle file */
+    static String getLanguage(String fileName) {
+        return fileName.substring(fileName.lastIndexOf(PREFIX) + PREFIX.length(), fileName.length() - EXT.length());
+    }
+
+    /** Translated bundle of the language in the package directory */
+    static String getFileName(File packageDir, String language) {
+        return packageDir + File.separator + PREFIX + language + EXT;
     }
 
     /** Generate this resource bundle.
@@ -74,4 +139,17 @@ class TranslatedResourceBundleModel extends AbstractResourceBundleModel<Translat
         }
         I18NUtils.storeToFile(new File(getFileName()), strings2Export);
     }
+
+    /** Problem found in the bundle */
+    private static final class Problem {
+        private final ScanResults.Type type;
+        private final int line;
+        private final String message;
+
+        Problem(ScanResults.Type type, int line, String message) {
+            this.type = type;
+            this.line = line;
+            this.message = message;
+        }
+    }
 }
@@ -0,0 +1,150 @@
+/**
+*   Copyright 2010-2011 Petr Hamernik
+*
+*   Licensed under the Apache License, Version 2.0 (the "License");
+*   you may not use this file except in compliance with the License.
+*   You may obtain a copy of the License at
+*
+*       http://www.apache.org/licenses/LICENSE-2.0
+*
+*   Unless required by applicable law or agreed to in writing, software
+*   distributed under the License is distributed on an "AS IS" BASIS,
+*   WITHOUT WARRANTIES OR CONDITIONS OF ANY KIND, either express or implied.
+*   See the License for the specific language governing permissions and
+*   limitations under the License.
+*/
+package org.i18nchecker.impl;
+
+import java.util.Arrays;
+
+/**
+ * Converts between characters and \\uXXXX escapes used in resource bundles.
+ * Both directions are a single pass appending to a caller supplied buffer,
+ * strings without anything to convert are returned as they are.
+ *
+ * @author agent
+ */
+final class UnicodeEscapes {
+
+    private static final char[] HEX = "0123456789abcdef".toCharArray();
+
+    /** Value of a hex digit by character, -1 for other characters */
+    private static final byte[] DIGITS = new byte[128];
+
+    static {
+        Arrays.fill(DIGITS, (byte) -1);
+        for (int i = 0; i < 10; i++) {
+            DIGITS['0' + i] = (byte) i;
+        }
+        for (int i = 0; i < 6; i++) {
+            DIGITS['a' + i] = (byte) (10 + i);
+            DIGITS['A' + i] = (byte) (10 + i);
+        }
+    }
+
+    private UnicodeEscapes() {
+    }
+
+    /**
+     * Escape all non-ASCII characters. Characters outside of BMP are escaped as two
+     * surrogates, like in {@link java.util.Properties} files.
+     */
+    static String escape(String s) {
+        int i = firstNonAscii(s);
+        if (i == s.length()) {
+            return s;
+        }
+        StringBuilder out = new StringBuilder(s.length() + 16);
+        out.append(s, 0, i);
+        escape(s, i, out);
+        return out.toString();
+    }
+
+    /** Append the string with all non-ASCII characters escaped */
+    static void escape(String s, StringBuilder out) {
+        escape(s, 0, out);
+    }
+
+    private static void escape(String s, int start, StringBuilder out) {
+        int length = s.length();
+        int i = start;
+        while (i < length) {
+            // copy the run of ASCII characters at once
+            int asciiStart = i;
+            while (i < length && s.charAt(i) < 128) {
+                i++;
+            }
+            out.append(s, asciiStart, i);
+            for (; i < length && s.charAt(i) >= 128; i++) {
+                char c = s.charAt(i);
+                out.append('\\').append('u')
+                        .append(HEX[c >>> 12]).append(HEX[(c >>> 8) & 0xf])
+                        .append(HEX[(c >>> 4) & 0xf]).append(HEX[c & 0xf]);
+            }
+        }
+    }
+
+    /**
+     * Replace \\uXXXX escapes by characters. Escaped backslash (\\) is kept as it is,
+     * malformed escapes (less than four hex digits) are kept as they are.
+     */
+    static String unescape(String s) {
+        int i = s.indexOf('\\');
+        if (i < 0) {
+            return s;
+        }
+        StringBuilder out = new StringBuilder(s.length());
+        out.append(s, 0, i);
+        unescape(s, i, out);
+        return out.toString();
+    }
+
+    /** Append the string with \\uXXXX escapes replaced by characters */
+    static void unescape(String s, StringBuilder out) {
+        unescape(s, 0, out);
+    }
+
+    private static void unescape(String s, int start, StringBuilder out) {
+        int length = s.length();
+        int i = start;
+        while (i < length) {
+            int backslash = s.indexOf('\\', i);
+            if (backslash < 0) {
+                out.append(s, i, length);
+                return;
+            }
+            out.append(s, i, backslash);
+            i = backslash;
+            if (i + 1 < length && s.charAt(i + 1) == '\\') {
+                out.append('\\').append('\\');
+                i += 2;
+            } else if (i + 5 < length && s.charAt(i + 1) == 'u') {
+                int value = hex(s.charAt(i + 2)) << 12 | hex(s.charAt(i + 3)) << 8
+                        | hex(s.charAt(i + 4)) << 4 | hex(s.charAt(i + 5));
+                if (value >= 0) {
+                    out.append((char) value);
+                    i += 6;
+                } else {
+                    out.append('\\');
+                    i++;
+                }
+            } else {
+                out.append('\\');
+                i++;
+            }
+        }
+    }
+
+    /** Value of the hex digit, a negative number for other characters */
+    private static int hex(char c) {
+        return c < 128 ? DIGITS[c] : -1;
+    }
+
+    private static int firstNonAscii(String s) {
+        int i = 0;
+        while (i < s.length() && s.charAt(i) < 128) {
+            i++;
+        }
+        return i;
+    }
+}
@@ -12,7 +12,6 @@
 
 package org.i18nchecker;
 
-import com.sun.org.apache.xerces.internal.util.XMLCatalogResolver;
 import java.io.File;
 import java.io.IOException;
 import java.io.InputStream;
@@ -23,6 +22,7 @@ import java.util.HashMap;
 import java.util.Map;
 import java.util.Properties;
 import junit.framework.TestCase;
+import org.i18nchecker.impl.CatalogEntityResolver;
 import org.xml.sax.EntityResolver;
 
 /**
@@ -56,13 +56,9 @@ public class I18NTest extends TestCase {
         }
     }
 
-    public static EntityResolver createEntityResolver() {
+    public static EntityResolver createEntityResolver() throws IOException {
         URL resource = I18NTest.class.getResource("i18n_catalog.xml");
-        String [] catalogs = { resource.toString() };
-        XMLCatalogResolver resolver = new XMLCatalogResolver();
-        resolver.setPreferPublic(true);
-        resolver.setCatalogList(catalogs);
-        return resolver;
+        return new CatalogEntityResolver(resource, true);
     }
 
     private URL[] urlToLibs(File suiteDir, String[] paths) throws Exception {
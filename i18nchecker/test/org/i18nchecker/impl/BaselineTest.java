@@ -0,0 +1,105 @@
+/**
+*   Copyright 2010-2011 Petr Hamernik
+*
+*   Licensed under the Apache License, Version 2.0 (the "License");
+*   you may not use this file except in compliance with the License.
+*   You may obtain a copy of the License at
+*
+*       http://www.apache.org/licenses/LICENSE-2.0
+*
+*   Unless required by applicable law or agreed to in writing, software
+*   distributed under the License is distributed on an "AS IS" BASIS,
+*   WITHOUT WARRANTIES OR CONDITIONS OF ANY KIND, either express or implied.
+*   See the License for the specific language governing permissions and
+*   limitations under the License.
+*/
+package org.i18nchecker.impl;
+
+import java.io.File;
+import java.io.IOException;
+import java.util.ArrayList;
+import java.util.Arrays;
+import java.util.Collections;
+import java.util.List;
+import org.junit.Test;
+import static org.junit.Assert.*;
+
+/**
+ *
+ * @author agent
+ */
+public class BaselineTest {
+
+    private static final File ROOT = new File("repo").getAbsoluteFile();
+    private static final String FILE = new File(ROOT, "module/src/org/A.java").getPath();
+
+    @Test
+    public void testLineNumbersAreIgnored() throws IOException {
+        Baseline known = baseline(
+                missing(FILE, 10, "Hello"),
+                missing(FILE, 20, "World"));
+        Baseline current = baseline(
+                missing(FILE, 25, "World"),
+                missing(FILE, 15, "Hello"));
+        assertEquals(Collections.<String>emptyList(), current.findNew(known));
+        assertEquals(0, current.countFixed(known));
+    }
+
+    @Test
+    public void testNewAndFixed() throws IOException {
+        Baseline known = baseline(
+                missing(FILE, 10, "Hello"),
+                missing(FILE, 20, "World"));
+        Baseline current = baseline(
+                missing(FILE, 10, "Hello"),
+                missing(FILE, 30, "Again"));
+        assertEquals(Arrays.asList(FILE + ":30: Again"), current.findNew(known));
+        assertEquals(1, current.countFixed(known));
+    }
+
+    @Test
+    public void testRepeatedFindingIsNew() throws IOException {
+        Baseline known = baseline(missing(FILE, 10, "Hello"));
+        Baseline current = baseline(
+                missing(FILE, 10, "Hello"),
+                missing(FILE, 11, "Hello"));
+        assertEquals(Arrays.asList(FILE + ":11: Hello"), current.findNew(known));
+    }
+
+    @Test
+    public void testTypeAndFileMatter() throws IOException {
+        Baseline known = baseline(missing(FILE, 10, "Hello"));
+        Baseline current = baseline(
+                new Finding(ScanResults.Type.MISSING_KEY_IN_BUNDLE, FILE, 10, "Hello"),
+                missing(new File(ROOT, "module/src/org/B.java").getPath(), 10, "Hello"));
+        assertEquals(2, current.findNew(known).size());
+    }
+
+    @Test
+    public void testWriteAndRead() throws IOException {
+        List<Finding> findings = new ArrayList<Finding>();
+        for (int i = 0; i < 1000; i++) {
+            findings.add(missing(FILE, i, "String " + i));
+        }
+        Baseline current = Baseline.fromFindings(ROOT, findings);
+        File file = File.createTempFile("baseline", ".bin");
+        try {
+            current.write(file);
+            assertEquals(8 * 1000 + 12, file.length());
+            Baseline read = Baseline.read(file);
+            assertEquals(1000, read.size());
+            assertEquals(Collections.<String>emptyList(), current.findNew(read));
+        } finally {
+            file.delete();
+        }
+        assertEquals(0, Baseline.read(file).size());
+    }
+
+    private static Finding missing(String file, int line, String message) {
+        return new Finding(ScanResults.Type.MISSING_NOI18N_OR_KEY_IN_BUNDLE, file, line, message);
+    }
+
+    private static Baseline baseline(Finding... findings) throws IOException {
+        return Baseline.fromFindings(ROOT, Arrays.asList(findings));
+    }
+}
@@ -0,0 +1,197 @@
+/**
+*   Copyright 2010-2011 Petr Hamernik
+*
+*   Licensed under the Apache License, Version 2.0 (the "License");
+*   you may not use this file except in compliance with the License.
+*   You may obtain a copy of the License at
+*
+*       http://www.apache.org/licenses/LICENSE-2.0
+*
+*   Unless required by applicable law or agreed to in writing, software
+*   distributed under the License is distributed on an "AS IS" BASIS,
+*   WITHOUT WARRANTIES OR CONDITIONS OF ANY KIND, either express or implied.
+*   See the License for the specific language governing permissions and
+*   limitations under the License.
+*/
+package org.i18nchecker.impl;
+
+import java.io.ByteArrayOutputStream;
+import java.io.File;
+import java.io.IOException;
+import java.io.InputStream;
+import java.util.Arrays;
+import java.util.List;
+import java.util.Locale;
+import java.util.Map;
+
+/**
+ * Runs the benchmark suite, stores times as JSON keyed by commit and fails when a benchmark
+ * regressed against a baseline run. Everything runs offline, results are kept in a local
+ * directory which can be part of the repository. Times measured in one JVM share its JIT
+ * compilation and heap layout, so they are not independent samples. Each benchmark therefore
+ * runs in several forked JVMs, rounds of all benchmarks one after another, and the median
+ * of each fork is one sample. Configured by system properties:
+ * <ul>
+ * <li>benchmark.suite - comma separated benchmark classes, default {@link #DEFAULT_SUITE}</li>
+ * <li>benchmark.forks - number of JVMs which run each benchmark, default 8</li>
+ * <li>benchmark.results - directory with results, default "benchmarks"</li>
+ * <li>benchmark.commit - key of this run, default the current git commit ("-dirty" with local changes)</li>
+ * <li>benchmark.baseline - commit or JSON file to compare with, nothing is compared if not set</li>
+ * <li>benchmark.maxSlowdown - allowed slowdown of the median, default 0.1 (10%)</li>
+ * <li>benchmark.minZ - z-score of the Mann-Whitney U test for a significant slowdown of any benchmark,
+ *   default 1.645 (one-sided 5%), corrected for the number of benchmarks. With 14 benchmarks
+ *   it is 2.69, which needs at least 6 forks.</li>
+ * <li>benchmark.allowEnvironmentChange - compare with a baseline measured by another JVM, OS
+ *   or number of processors, only with a warning, default false</li>
+ * </ul>
+ * Run by "ant benchmark-gate -Dbenchmark.baseline=...".
+ *
+ * @author agent
+ */
+public final class BenchmarkGate {
+
+    /** Parsing of Java sources, end-to-end scan, NOI18N lines, escapes and snapshots */
+    static final String DEFAULT_SUITE =
+            "ParseAllocationBenchmark,ProfileBenchmark,NoI18NBenchmark,UnicodeEscapesBenchmark,SnapshotBenchmark";
+
+    private BenchmarkGate() {
+    }
+
+    public static void main(String[] args) throws Exception {
+        if (args.length == 2) {
+            runFork(args[0], new File(args[1]));
+            return;
+        }
+        File dir = new File(System.getProperty("benchmark.results", "benchmarks"));
+        String commit = System.getProperty("benchmark.commit", "");
+        if (commit.length() == 0) {
+            commit = currentCommit();
+        }
+        String baselineName = System.getProperty("benchmark.baseline", "");
+        double maxSlowdown = Double.parseDouble(System.getProperty("benchmark.maxSlowdown", "0.1"));
+        double minZ = Double.parseDouble(System.getProperty("benchmark.minZ", "1.645"));
+        int forks = Integer.parseInt(System.getProperty("benchmark.forks", "8"));
+        boolean allowEnvironmentChange = Boolean.getBoolean("benchmark.allowEnvironmentChange");
+
+        BenchmarkResults results = new BenchmarkResults(commit);
+        BenchmarkResults baseline = null;
+        if (baselineName.length() > 0) {
+            File baselineFile = new File(baselineName);
+            if (!baselineFile.isFile()) {
+                baselineFile = new File(dir, baselineName + ".json");
+            }
+            // fail before running anything if the baseline can't be read or was measured elsewhere
+            baseline = BenchmarkResults.read(baselineFile);
+            List<String> differences = results.getEnvironmentDifferences(baseline);
+            if (!differences.isEmpty()) {
+                String message = "Baseline " + baseline.getCommit() + " was measured in another environment: " + differences;
+                if (!allowEnvironmentChange) {
+                    throw new IllegalStateException(message + ". Set benchmark.allowEnvironmentChange=true to compare anyway.");
+                }
+                System.out.println("WARNING: " + message);
+            }
+        }
+
+        List<String> suite = Arrays.asList(System.getProperty("benchmark.suite", DEFAULT_SUITE).trim().split("\\s*,\\s*"));
+        run(results, suite, forks);
+        File file = new File(dir, commit + ".json");
+        results.write(file);
+        System.out.println("Results of " + results.getTimes().size() + " benchmarks stored to " + file);
+
+        if (baseline != null) {
+            List<BenchmarkResults.Comparison> comparisons = results.compare(baseline, maxSlowdown, minZ);
+            System.out.println(String.format(Locale.ENGLISH, "Compared with %s %s, allowed slowdown %d%%, z >= %.2f:",
+                    baseline.getCommit(), baseline.getEnvironment().values(), Math.round(maxSlowdown * 100),
+                    BenchmarkResults.correctedZ(minZ, comparisons.size())));
+            int regressions = 0;
+            for (BenchmarkResults.Comparison comparison : comparisons) {
+                System.out.println(comparison);
+                if (comparison.regression) {
+                    regressions++;
+                }
+            }
+            if (regressions > 0) {
+                // fails the forked java task of the build
+                throw new IllegalStateException(regressions + " of " + comparisons.size() + " benchmarks regressed.");
+            }
+            System.out.println("No regression in " + comparisons.size() + " benchmarks.");
+        }
+    }
+
+    /**
+     * Run each benchmark of the suite in forked JVMs with the class path of this JVM.
+     * Rounds of all benchmarks run one after another, so a slow period of the machine does
+     * not hit only one benchmark. Each fork adds the median of its times as one sample.
+     *
+     * @param results receives the samples, its environment is the one of this JVM
+     * @param suite names of benchmark classes in this package
+     * @param forks number of JVMs which run each benchmark
+     */
+    static void run(BenchmarkResults results, List<String> suite, int forks) throws IOException, InterruptedException {
+        String java = new File(new File(System.getProperty("java.home"), "bin"), "java").getPath();
+        File output = File.createTempFile("i18nbench", ".json");
+        try {
+            for (int fork = 1; fork <= forks; fork++) {
+                for (String benchmark : suite) {
+                    System.out.println("Running " + benchmark + ", fork " + fork + " of " + forks);
+                    Process process = new ProcessBuilder(java, "-cp", System.getProperty("java.class.path"),
+                            BenchmarkGate.class.getName(), benchmark, output.getPath()).inheritIO().start();
+                    int exitCode = process.waitFor();
+                    if (exitCode != 0) {
+                        throw new IllegalStateException(benchmark + " failed with exit code " + exitCode);
+                    }
+                    for (Map.Entry<String, long[]> entry : BenchmarkResults.read(output).getTimes().entrySet()) {
+                        results.add(entry.getKey(), new long[] { BenchmarkResults.median(entry.getValue()) });
+                    }
+                }
+            }
+        } finally {
+            output.delete();
+        }
+    }
+
+    /** Run one benchmark in this JVM and store its times to the file */
+    private static void runFork(String benchmark, File output) throws Exception {
+        BenchmarkResults results = new BenchmarkResults(benchmark);
+        BenchmarkHarness.record(results, benchmark + ": ");
+        try {
+            Class.forName(BenchmarkGate.class.getPackage().getName() + "." + benchmark)
+                    .getMethod("main", String[].class).invoke(null, (Object) new String[0]);
+        } finally {
+            BenchmarkHarness.record(null, "");
+        }
+        results.write(output);
+    }
+
+    /** Current git commit, with "-dirty" suffix when tracked files are modified */
+    private static String currentCommit() throws IOException, InterruptedException {
+        String commit = git("rev-parse", "--short", "HEAD");
+        if (commit.length() == 0) {
+            return "unknown";
+        }
+        return git("status", "--porcelain", "--untracked-files=no").length() > 0 ? commit + "-dirty" : commit;
+    }
+
+    /** Output of a git command, empty if git is not available */
+    private static String git(String... args) throws InterruptedException {
+        String[] command = new String[args.length + 1];
+        command[0] = "git";
+        System.arraycopy(args, 0, command, 1, args.length);
+        try {
+            Process process = new ProcessBuilder(command).redirectErrorStream(true).start();
+            ByteArrayOutputStream out = new ByteArrayOutputStream();
+            InputStream in = process.getInputStream();
+            try {
+                byte[] buffer = new byte[1024];
+                for (int n; (n = in.read(buffer)) > 0; ) {
+                    out.write(buffer, 0, n);
+                }
+            } finally {
+                in.close();
+            }
+            return process.waitFor() == 0 ? out.toString("UTF-8").trim() : "";
+        } catch (IOException ex) {
+            return "";
+        }
+    }
+}
@@ -0,0 +1,89 @@
+/**
+*   Copyright 2010-2011 Petr Hamernik
+*
+*   Licensed under the Apache License, Version 2.0 (the "License");
+*   you may not use this file except in compliance with the License.
+*   You may obtain a copy of the License at
+*
+*       http://www.apache.org/licenses/LICENSE-2.0
+*
+*   Unless required by applicable law or agreed to in writing, software
+*   distributed under the License is distributed on an "AS IS" BASIS,
+*   WITHOUT WARRANTIES OR CONDITIONS OF ANY KIND, either express or implied.
+*   See the License for the specific language governing permissions and
+*   limitations under the License.
+*/
+package org.i18nchecker.impl;
+
+import java.util.Arrays;
+import java.util.concurrent.Callable;
+
+/**
+ * Minimal benchmark support: repeated timing of a task, synthetic repositories are
+ * created by {@link ScanFixture}. Benchmarks are run by "ant benchmark -Dbenchmark.class=...",
+ * all of them by "ant benchmark-gate" (see {@link BenchmarkGate}).
+ *
+ * @author agent
+ */
+final class BenchmarkHarness {
+
+    /** Receives times of all measurements, null when they are only printed */
+    private static BenchmarkResults results;
+    /** Prefix of names of recorded measurements */
+    private static String prefix = "";
+
+    private BenchmarkHarness() {
+    }
+
+    /**
+     * Record times of following measurements.
+     *
+     * @param results receives the times, null stops recording
+     * @param prefix prepended to names of the measurements, e.g. name of the benchmark
+     */
+    static void record(BenchmarkResults results, String prefix) {
+        BenchmarkHarness.results = results;
+        BenchmarkHarness.prefix = prefix;
+    }
+
+    /**
+     * Run the task several times and print the median and minimum time.
+     *
+     * @param name printed name of the measurement
+     * @param warmup number of runs which are not measured
+     * @param runs number of measured runs
+     * @return median time in nanoseconds
+     */
+    static long measure(String name, int warmup, int runs, Callable<?> task) throws Exception {
+        for (int i = 0; i < warmup; i++) {
+            task.call();
+        }
+        long[] times = new long[runs];
+        for (int i = 0; i < runs; i++) {
+            long start = System.nanoTime();
+            task.call();
+            times[i] = System.nanoTime() - start;
+        }
+        if (results != null) {
+            results.add(prefix + name, times);
+        }
+        Arrays.sort(times);
+        long median = times[runs / 2];
+        System.out.println(String.format("%-40s median %8.1f ms   min %8.1f ms",
+                name, median / 1e6, times[0] / 1e6));
+        return median;
+    }
+
+    /** Heap used after garbage collection */
+    static long usedHeap() throws InterruptedException {
+        Runtime runtime = Runtime.getRuntime();
+        long used = Long.MAX_VALUE;
+        // several rounds, one collection does not always free everything
+        for (int i = 0; i < 5; i++) {
+            System.gc();
+            Thread.sleep(50);
+            used = Math.min(used, runtime.totalMemory() - runtime.freeMemory());
+        }
+        return used;
+    }
+}
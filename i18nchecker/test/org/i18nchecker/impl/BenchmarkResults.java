@@ -0,0 +1,438 @@
+/**
+*   Copyright 2010-2011 Petr Hamernik
+*
+*   Licensed under the Apache License, Version 2.0 (the "License");
+*   you may not use this file except in compliance with the License.
+*   You may obtain a copy of the License at
+*
+*       http://www.apache.org/licenses/LICENSE-2.0
+*
+*   Unless required by applicable law or agreed to in writing, software
+*   distributed under the License is distributed on an "AS IS" BASIS,
+*   WITHOUT WARRANTIES OR CONDITIONS OF ANY KIND, either express or implied.
+*   See the License for the specific language governing permissions and
+*   limitations under the License.
+*/
+package org.i18nchecker.impl;
+
+import java.io.File;
+import java.io.FileOutputStream;
+import java.io.IOException;
+import java.io.OutputStreamWriter;
+import java.io.Writer;
+import java.nio.file.Files;
+import java.util.ArrayList;
+import java.util.Arrays;
+import java.util.LinkedHashMap;
+import java.util.LinkedHashSet;
+import java.util.List;
+import java.util.Locale;
+import java.util.Map;
+import java.util.Set;
+
+/**
+ * Times of benchmark runs by name, stored as JSON. Results of a run are compared
+ * with a baseline run: a benchmark regressed when its median is slower by more than
+ * the allowed slowdown and the Mann-Whitney U test says the times are really slower,
+ * so a single noisy run does not fail the build. The test needs independent times,
+ * e.g. one per JVM (see {@link BenchmarkGate}). Its significance is corrected for the number
+ * of compared benchmarks, so unchanged code passes as often as with a single benchmark.
+ *
+ * @author agent
+ */
+final class BenchmarkResults {
+
+    /** What a time is, results measured before had all times of one JVM */
+    private static final String SAMPLES = "median of each JVM";
+
+    private final String commit;
+    private final Map<String, String> environment = new LinkedHashMap<String, String>();
+    /** Measured times in nanoseconds by benchmark name, in order of measurement */
+    private final Map<String, long[]> times = new LinkedHashMap<String, long[]>();
+
+    /** Results of this JVM, the environment describes it */
+    BenchmarkResults(String commit) {
+        this.commit = commit;
+        environment.put("java", System.getProperty("java.vm.name") + " " + System.getProperty("java.version"));
+        environment.put("os", System.getProperty("os.name") + " " + System.getProperty("os.arch"));
+        environment.put("processors", String.valueOf(Runtime.getRuntime().availableProcessors()));
+        environment.put("samples", SAMPLES);
+    }
+
+    String getCommit() {
+        return commit;
+    }
+
+    /** Description of the machine and JVM which ran the benchmarks */
+    Map<String, String> getEnvironment() {
+        return environment;
+    }
+
+    Map<String, long[]> getTimes() {
+        return times;
+    }
+
+    /** Add times of a measurement, times of a benchmark measured more than once are joined */
+    synchronized void add(String name, long[] measured) {
+        long[] previous = times.get(name);
+        if (previous == null) {
+            times.put(name, measured.clone());
+        } else {
+            long[] joined = Arrays.copyOf(previous, previous.length + measured.length);
+            System.arraycopy(measured, 0, joined, previous.length, measured.length);
+            times.put(name, joined);
+        }
+    }
+
+    /**
+     * Entries of the environment which differ from the baseline, times measured
+     * in different environments are not comparable.
+     *
+     * @return e.g. "processors: 8 -> 4", empty if the environments are the same
+     */
+    List<String> getEnvironmentDifferences(BenchmarkResults baseline) {
+        Set<String> keys = new LinkedHashSet<String>(baseline.environment.keySet());
+        keys.addAll(environment.keySet());
+        List<String> differences = new ArrayList<String>();
+        for (String key : keys) {
+            String base = baseline.environment.get(key);
+            String current = environment.get(key);
+            if (base == null ? current != null : !base.equals(current)) {
+                differences.add(key + ": " + base + " -> " + current);
+            }
+        }
+        return differences;
+    }
+
+    /**
+     * Compare with a baseline. Benchmarks missing in either run are skipped.
+     *
+     * @param baseline results of an earlier run
+     * @param maxSlowdown allowed relative slowdown of the median, e.g. 0.1 for 10%
+     * @param minZ minimal z-score of the Mann-Whitney U test for a significant slowdown of any
+     *   of the benchmarks, e.g. 1.645 for one-sided 5% significance, see {@link #correctedZ}
+     * @return comparison of all benchmarks of both runs
+     */
+    List<Comparison> compare(BenchmarkResults baseline, double maxSlowdown, double minZ) {
+        List<String> names = new ArrayList<String>();
+        for (String name : times.keySet()) {
+            if (baseline.times.containsKey(name)) {
+                names.add(name);
+            }
+        }
+        double z = correctedZ(minZ, names.size());
+        List<Comparison> comparisons = new ArrayList<Comparison>();
+        for (String name : names) {
+            comparisons.add(new Comparison(name, baseline.times.get(name), times.get(name), maxSlowdown, z));
+        }
+        return comparisons;
+    }
+
+    /**
+     * Z-score for each of the comparisons, so that the probability of a false regression
+     * in any of them is at most the one of minZ for a single comparison (Bonferroni correction).
+     */
+    static double correctedZ(double minZ, int comparisons) {
+        double alpha = upperTail(minZ) / Math.max(comparisons, 1);
+        double low = minZ;
+        double high = 40;
+        for (int i = 0; i < 100; i++) {
+            double mid = (low + high) / 2;
+            if (upperTail(mid) > alpha) {
+                low = mid;
+            } else {
+                high = mid;
+            }
+        }
+        return high;
+    }
+
+    /** Probability that a standard normal variable is larger, Abramowitz and Stegun 26.2.17 */
+    static double upperTail(double z) {
+        if (z < 0) {
+            return 1 - upperTail(-z);
+        }
+        double t = 1 / (1 + 0.2316419 * z);
+        double density = Math.exp(-z * z / 2) / Math.sqrt(2 * Math.PI);
+        return density * t * (0.319381530 + t * (-0.356563782 + t * (1.781477937 + t * (-1.821255978 + t * 1.330274429))));
+    }
+
+    void write(File file) throws IOException {
+        StringBuilder sb = new StringBuilder();
+        sb.append("{\n  \"commit\": ");
+        appendJsonString(sb, commit);
+        sb.append(",\n  \"environment\": {");
+        String separator = "\n";
+        for (Map.Entry<String, String> entry : environment.entrySet()) {
+            sb.append(separator).append("    ");
+            appendJsonString(sb, entry.getKey());
+            sb.append(": ");
+            appendJsonString(sb, entry.getValue());
+            separator = ",\n";
+        }
+        sb.append(environment.isEmpty() ? "" : "\n  ").append("},\n  \"nanos\": {");
+        separator = "\n";
+        for (Map.Entry<String, long[]> entry : times.entrySet()) {
+            sb.append(separator).append("    ");
+            appendJsonString(sb, entry.getKey());
+            sb.append(": [");
+            for (int i = 0; i < entry.getValue().length; i++) {
+                sb.append(i > 0 ? ", " : "").append(entry.getValue()[i]);
+            }
+            sb.append(']');
+            separator = ",\n";
+        }
+        sb.append(times.isEmpty() ? "" : "\n  ").append("}\n}\n");
+
+        File parent = file.getAbsoluteFile().getParentFile();
+        if (!parent.isDirectory() && !parent.mkdirs()) {
+            throw new IOException("Cannot create " + parent);
+        }
+        Writer writer = new OutputStreamWriter(new FileOutputStream(file), "UTF-8");
+        try {
+            writer.write(sb.toString());
+        } finally {
+            writer.close();
+        }
+    }
+
+    /** Append quoted string, quotes, backslashes and control characters are escaped */
+    private static void appendJsonString(StringBuilder sb, String str) {
+        sb.append('"');
+        for (int i = 0; i < str.length(); i++) {
+            char c = str.charAt(i);
+            if (c == '"' || c == '\\') {
+                sb.append('\\').append(c);
+            } else if (c < ' ') {
+                sb.append(String.format(Locale.ENGLISH, "\\u%04x", (int) c));
+            } else {
+                sb.append(c);
+            }
+        }
+        sb.append('"');
+    }
+
+    /** Read results stored by {@link #write} */
+    static BenchmarkResults read(File file) throws IOException {
+        JsonReader reader = new JsonReader(new String(Files.readAllBytes(file.toPath()), "UTF-8"), file);
+        reader.expect('{');
+        String commit = null;
+        Map<String, String> environment = new LinkedHashMap<String, String>();
+        Map<String, long[]> times = new LinkedHashMap<String, long[]>();
+        if (!reader.next('}')) {
+            do {
+                String field = reader.string();
+                reader.expect(':');
+                if (field.equals("commit")) {
+                    commit = reader.string();
+                } else if (field.equals("environment")) {
+                    reader.expect('{');
+                    if (!reader.next('}')) {
+                        do {
+                            String key = reader.string();
+                            reader.expect(':');
+                            environment.put(key, reader.string());
+                        } while (!reader.next('}'));
+                    }
+                } else if (field.equals("nanos")) {
+                    reader.expect('{');
+                    if (!reader.next('}')) {
+                        do {
+                            String name = reader.string();
+                            reader.expect(':');
+                            times.put(name, reader.numbers());
+                        } while (!reader.next('}'));
+                    }
+                } else {
+                    throw reader.error("Unknown field " + field);
+                }
+            } while (!reader.next('}'));
+        }
+        if (commit == null) {
+            throw reader.error("Missing commit");
+        }
+        BenchmarkResults results = new BenchmarkResults(commit);
+        results.environment.clear();
+        results.environment.putAll(environment);
+        results.times.putAll(times);
+        return results;
+    }
+
+    static long median(long[] values) {
+        long[] sorted = values.clone();
+        Arrays.sort(sorted);
+        int n = sorted.length;
+        return n % 2 == 1 ? sorted[n / 2] : (sorted[n / 2 - 1] + sorted[n / 2]) / 2;
+    }
+
+    /**
+     * Z-score of the Mann-Whitney U test that times of the current run are larger
+     * than times of the baseline, normal approximation with correction for ties.
+     */
+    static double slowerZ(long[] baseline, long[] current) {
+        int n1 = current.length;
+        int n2 = baseline.length;
+        double u = 0;
+        for (long c : current) {
+            for (long b : baseline) {
+                u += c > b ? 1 : c == b ? 0.5 : 0;
+            }
+        }
+        long[] all = Arrays.copyOf(current, n1 + n2);
+        System.arraycopy(baseline, 0, all, n1, n2);
+        Arrays.sort(all);
+        double ties = 0;
+        for (int i = 0; i < all.length; ) {
+            int j = i + 1;
+            while (j < all.length && all[j] == all[i]) {
+                j++;
+            }
+            double t = j - i;
+            ties += t * t * t - t;
+            i = j;
+        }
+        int n = n1 + n2;
+        double variance = n1 * n2 / 12.0 * ((n + 1) - ties / (n * (n - 1.0)));
+        if (variance <= 0) {
+            return 0;
+        }
+        return (u - n1 * n2 / 2.0) / Math.sqrt(variance);
+    }
+
+    /** One benchmark of the current run compared with the baseline */
+    static final class Comparison {
+        final String name;
+        final long baselineMedian;
+        final long currentMedian;
+        final double z;
+        final boolean regression;
+
+        /** @param minZ z-score of this comparison, already corrected */
+        Comparison(String name, long[] baseline, long[] current, double maxSlowdown, double minZ) {
+            this.name = name;
+            this.baselineMedian = median(baseline);
+            this.currentMedian = median(current);
+            this.z = slowerZ(baseline, current);
+            this.regression = currentMedian > baselineMedian * (1 + maxSlowdown) && z >= minZ;
+        }
+
+        /** Relative change of the median, positive when slower */
+        double getChange() {
+            return (double) currentMedian / baselineMedian - 1;
+        }
+
+        @Override
+        public String toString() {
+            return String.format(Locale.ENGLISH, "%-60s %10.2f ms -> %10.2f ms %+7.1f%%  z=%5.2f%s", name,
+                    baselineMedian / 1e6, currentMedian / 1e6, getChange() * 100, z, regression ? "  REGRESSION" : "");
+        }
+    }
+
+    /** Reader of the subset of JSON written by {@link #write} */
+    private static final class JsonReader {
+        private final String text;
+        private final File file;
+        private int pos;
+
+        JsonReader(String text, File file) {
+            this.text = text;
+            this.file = file;
+        }
+
+        IOException error(String message) {
+            return new IOException(file + ": " + message + " at offset " + pos);
+        }
+
+        private void skipWhitespace() {
+            while (pos < text.length() && Character.isWhitespace(text.charAt(pos))) {
+                pos++;
+            }
+        }
+
+        void expect(char c) throws IOException {
+            skipWhitespace();
+            if (pos >= text.length() || text.charAt(pos) != c) {
+                throw error("Expected '" + c + "'");
+            }
+            pos++;
+        }
+
+        /** Skip a comma, return true if the closing character follows instead */
+        boolean next(char close) throws IOException {
+            skipWhitespace();
+            if (pos < text.length() && text.charAt(pos) == close) {
+                pos++;
+                return true;
+            }
+            if (pos < text.length() && text.charAt(pos) == ',') {
+                pos++;
+            }
+            return false;
+        }
+
+        String string() throws IOException {
+            expect('"');
+            StringBuilder sb = new StringBuilder();
+            while (pos < text.length()) {
+                char c = text.charAt(pos++);
+                if (c == '"') {
+                    return sb.toString();
+                } else if (c == '\\' && pos < text.length()) {
+                    char e = text.charAt(pos++);
+                    switch (e) {
+                        case 'n':
+                            sb.append('\n');
+                            break;
+                        case 't':
+                            sb.append('\t');
+                            break;
+                        case 'r':
+                            sb.append('\r');
+                            break;
+                        case 'b':
+                            sb.append('\b');
+                            break;
+                        case 'f':
+                            sb.append('\f');
+                            break;
+                        case 'u':
+                            if (pos + 4 > text.length()) {
+                                throw error("Truncated escape");
+                            }
+                            sb.append((char) Integer.parseInt(text.substring(pos, pos + 4), 16));
+                            pos += 4;
+                            break;
+                        default:
+                            sb.append(e);
+                    }
+                } else {
+                    sb.append(c);
+                }
+            }
+            throw error("Unterminated string");
+        }
+
+        long[] numbers() throws IOException {
+            expect('[');
+            List<Long> list = new ArrayList<Long>();
+            if (!next(']')) {
+                do {
+                    skipWhitespace();
+                    int start = pos;
+                    while (pos < text.length() && (Character.isDigit(text.charAt(pos)) || text.charAt(pos) == '-')) {
+                        pos++;
+                    }
+                    if (start == pos) {
+                        throw error("Expected number");
+                    }
+                    list.add(Long.parseLong(text.substring(start, pos)));
+                } while (!next(']'));
+            }
+            long[] numbers = new long[list.size()];
+            for (int i = 0; i < numbers.length; i++) {
+                numbers[i] = list.get(i);
+            }
+            return numbers;
+        }
+    }
+}
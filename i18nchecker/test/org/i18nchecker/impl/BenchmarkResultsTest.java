@@ -0,0 +1,152 @@
+/**
+*   Copyright 2010-2011 Petr Hamernik
+*
+*   Licensed under the Apache License, Version 2.0 (the "License");
+*   you may not use this file except in compliance with the License.
+*   You may obtain a copy of the License at
+*
+*       http://www.apache.org/licenses/LICENSE-2.0
+*
+*   Unless required by applicable law or agreed to in writing, software
+*   distributed under the License is distributed on an "AS IS" BASIS,
+*   WITHOUT WARRANTIES OR CONDITIONS OF ANY KIND, either express or implied.
+*   See the License for the specific language governing permissions and
+*   limitations under the License.
+*/
+package org.i18nchecker.impl;
+
+import java.io.File;
+import java.io.IOException;
+import java.util.Arrays;
+import java.util.Collections;
+import java.util.List;
+import java.util.concurrent.Callable;
+import org.junit.Test;
+import static org.junit.Assert.*;
+
+/**
+ *
+ * @author agent
+ */
+public class BenchmarkResultsTest {
+
+    @Test
+    public void testWriteAndRead() throws IOException {
+        BenchmarkResults results = new BenchmarkResults("abc123-dirty");
+        results.getEnvironment().put("java", "VM \"x\" 1.8");
+        results.add("ParseAllocationBenchmark: parse 2000 files", new long[] { 3, 1, 2 });
+        results.add("ProfileBenchmark: scan", new long[] { 10 });
+        results.add("ProfileBenchmark: scan", new long[] { 20, 30 });
+        File file = File.createTempFile("i18nbench", ".json");
+        try {
+            results.write(file);
+            BenchmarkResults read = BenchmarkResults.read(file);
+            assertEquals("abc123-dirty", read.getCommit());
+            assertEquals(results.getEnvironment(), read.getEnvironment());
+            assertEquals(Arrays.asList("ParseAllocationBenchmark: parse 2000 files", "ProfileBenchmark: scan"),
+                    Arrays.asList(read.getTimes().keySet().toArray()));
+            assertArrayEquals(new long[] { 3, 1, 2 }, read.getTimes().get("ParseAllocationBenchmark: parse 2000 files"));
+            assertArrayEquals(new long[] { 10, 20, 30 }, read.getTimes().get("ProfileBenchmark: scan"));
+
+            new BenchmarkResults("empty").write(file);
+            assertTrue(BenchmarkResults.read(file).getTimes().isEmpty());
+        } finally {
+            file.delete();
+        }
+    }
+
+    @Test
+    public void testRegressions() {
+        BenchmarkResults baseline = new BenchmarkResults("base");
+        baseline.add("same", new long[] { 100, 102, 98, 101, 99 });
+        baseline.add("slower", new long[] { 100, 102, 98, 101, 99 });
+        baseline.add("noisy", new long[] { 100, 102, 98, 101, 99 });
+        baseline.add("slightly slower", new long[] { 100, 102, 98, 101, 99 });
+        baseline.add("removed", new long[] { 100 });
+        BenchmarkResults current = new BenchmarkResults("new");
+        current.add("same", new long[] { 99, 101, 100, 103, 98 });
+        current.add("slower", new long[] { 130, 128, 135, 131, 129 });
+        // one slow run moves the median, but most runs are as fast as before
+        current.add("noisy", new long[] { 97, 300, 250, 99, 101 });
+        current.add("slightly slower", new long[] { 105, 106, 104, 107, 105 });
+        current.add("added", new long[] { 100 });
+
+        List<BenchmarkResults.Comparison> comparisons = current.compare(baseline, 0.1, 1.645);
+        assertEquals(4, comparisons.size());
+        assertEquals("same", comparisons.get(0).name);
+        assertFalse(comparisons.get(0).regression);
+        assertEquals("slower", comparisons.get(1).name);
+        assertTrue(comparisons.get(1).regression);
+        assertEquals(0.3, comparisons.get(1).getChange(), 0.01);
+        assertTrue(comparisons.get(1).toString().endsWith("REGRESSION"));
+        assertEquals("noisy", comparisons.get(2).name);
+        assertFalse(comparisons.get(2).regression);
+        assertEquals("slightly slower", comparisons.get(3).name);
+        assertFalse(comparisons.get(3).regression);
+        assertTrue(current.compare(baseline, 0.01, 1.645).get(3).regression);
+    }
+
+    @Test
+    public void testEnvironmentDifferences() {
+        BenchmarkResults baseline = new BenchmarkResults("base");
+        BenchmarkResults current = new BenchmarkResults("new");
+        assertEquals(Collections.emptyList(), current.getEnvironmentDifferences(baseline));
+        baseline.getEnvironment().put("processors", "256");
+        assertEquals(Arrays.asList("processors: 256 -> " + Runtime.getRuntime().availableProcessors()),
+                current.getEnvironmentDifferences(baseline));
+        // measured before times were medians of forked JVMs
+        baseline.getEnvironment().putAll(current.getEnvironment());
+        baseline.getEnvironment().remove("samples");
+        assertEquals(1, current.getEnvironmentDifferences(baseline).size());
+        assertTrue(current.getEnvironmentDifferences(baseline).get(0).startsWith("samples: null -> "));
+    }
+
+    @Test
+    public void testUnchangedCodePasses() throws Exception {
+        List<String> suite = Collections.singletonList("BenchmarkResultsTest$SleepBenchmark");
+        BenchmarkResults baseline = new BenchmarkResults("base");
+        BenchmarkGate.run(baseline, suite, 3);
+        BenchmarkResults current = new BenchmarkResults("new");
+        BenchmarkGate.run(current, suite, 3);
+        assertEquals(Collections.emptyList(), current.getEnvironmentDifferences(baseline));
+        assertEquals("One sample per JVM", 3, current.getTimes().get("BenchmarkResultsTest$SleepBenchmark: sleep").length);
+        List<BenchmarkResults.Comparison> comparisons = current.compare(baseline, 0.1, 1.645);
+        assertEquals(1, comparisons.size());
+        assertFalse(comparisons.get(0).toString(), comparisons.get(0).regression);
+    }
+
+    @Test
+    public void testMannWhitney() {
+        long[] base = { 1, 2, 3, 4, 5 };
+        assertEquals(0, BenchmarkResults.slowerZ(base, base.clone()), 1e-9);
+        double z = BenchmarkResults.slowerZ(base, new long[] { 6, 7, 8, 9, 10 });
+        // U = 25, mean 12.5, sd = sqrt(5 * 5 * 11 / 12)
+        assertEquals(12.5 / Math.sqrt(25 * 11 / 12.0), z, 1e-9);
+        assertEquals(-z, BenchmarkResults.slowerZ(new long[] { 6, 7, 8, 9, 10 }, base), 1e-9);
+        assertEquals(0, BenchmarkResults.slowerZ(new long[] { 5, 5 }, new long[] { 5, 5 }), 1e-9);
+        assertEquals(100, BenchmarkResults.median(new long[] { 300, 100, 99 }));
+        assertEquals(150, BenchmarkResults.median(new long[] { 200, 100 }));
+
+        assertEquals(0.05, BenchmarkResults.upperTail(1.645), 1e-4);
+        assertEquals(0.5, BenchmarkResults.upperTail(0), 1e-7);
+        assertEquals(0.975, BenchmarkResults.upperTail(-1.96), 1e-4);
+        assertEquals(1.645, BenchmarkResults.correctedZ(1.645, 1), 1e-6);
+        // 5% for any of 14 benchmarks
+        assertEquals(2.69, BenchmarkResults.correctedZ(1.645, 14), 0.01);
+    }
+
+    /** Benchmark with stable times, run by {@link #testUnchangedCodePasses} in forked JVMs */
+    public static final class SleepBenchmark {
+        private SleepBenchmark() {
+        }
+
+        public static void main(String[] args) throws Exception {
+            BenchmarkHarness.measure("sleep", 1, 5, new Callable<Void>() {
+                public Void call() throws InterruptedException {
+                    Thread.sleep(20);
+                    return null;
+                }
+            });
+        }
+    }
+}
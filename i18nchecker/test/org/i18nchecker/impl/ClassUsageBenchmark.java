@@ -0,0 +1,161 @@
+/**
+*   Copyright 2010-2011 Petr Hamernik
+*
+*   Licensed under the Apache License, Version 2.0 (the "License");
+*   you may not use this file except in compliance with the License.
+*   You may obtain a copy of the License at
+*
+*       http://www.apache.org/licenses/LICENSE-2.0
+*
+*   Unless required by applicable law or agreed to in writing, software
+*   distributed under the License is distributed on an "AS IS" BASIS,
+*   WITHOUT WARRANTIES OR CONDITIONS OF ANY KIND, either express or implied.
+*   See the License for the specific language governing permissions and
+*   limitations under the License.
+*/
+package org.i18nchecker.impl;
+
+import java.io.ByteArrayInputStream;
+import java.io.File;
+import java.io.FileOutputStream;
+import java.io.IOException;
+import java.nio.file.FileVisitResult;
+import java.nio.file.Files;
+import java.nio.file.Path;
+import java.nio.file.SimpleFileVisitor;
+import java.nio.file.attribute.BasicFileAttributes;
+import java.util.ArrayList;
+import java.util.Collections;
+import java.util.List;
+import java.util.concurrent.Callable;
+import java.util.concurrent.ExecutorService;
+import java.util.concurrent.Executors;
+import java.util.zip.ZipEntry;
+import java.util.zip.ZipOutputStream;
+import javax.tools.JavaCompiler;
+import javax.tools.ToolProvider;
+
+/**
+ * Strings of generated module sources collected by lexing the sources compared with string
+ * constants read from the same sources compiled by the running JDK, in a directory, in a jar
+ * and in memory. Runs on any JDK, the compiler is needed.
+ *
+ * @author agent
+ */
+public final class ClassUsageBenchmark {
+
+    private static final int MODULES = 20;
+    private static final int PACKAGES = 10;
+
+    private ClassUsageBenchmark() {
+    }
+
+    public static void main(String[] args) throws Exception {
+        JavaCompiler compiler = ToolProvider.getSystemJavaCompiler();
+        if (compiler == null) {
+            throw new IllegalStateException("Run the benchmark with a JDK, the Java compiler is needed");
+        }
+        File root = ScanFixture.createTempDir("i18nbench");
+        ExecutorService executor = Executors.newSingleThreadExecutor();
+        try {
+            ScanFixture.createRepository(root, MODULES, PACKAGES, 10, 10);
+            final List<File> sources = list(new File(root, "modules"), ".java");
+            // the generated sources call NbBundle of their own package
+            List<String> arguments = new ArrayList<String>();
+            File classes = new File(root, "classes");
+            if (!classes.mkdirs()) {
+                throw new IOException("Cannot create " + classes);
+            }
+            Collections.addAll(arguments, "-nowarn", "-d", classes.getPath());
+            for (int m = 0; m < MODULES; m++) {
+                for (int p = 0; p < PACKAGES; p++) {
+                    String pkg = "org.bench.m" + m + ".p" + p;
+                    File stub = new File(root, "stubs/" + pkg.replace('.', '/') + "/NbBundle.java");
+                    if (!stub.getParentFile().mkdirs()) {
+                        throw new IOException("Cannot create " + stub.getParentFile());
+                    }
+                    ScanFixture.write(stub, "package " + pkg + ";\n\nclass NbBundle {\n"
+                            + "    static String getMessage(Class<?> c, String key) {\n        return key;\n    }\n}\n");
+                    arguments.add(stub.getPath());
+                }
+            }
+            for (File source : sources) {
+                arguments.add(source.getPath());
+            }
+            if (compiler.run(null, null, null, arguments.toArray(new String[arguments.size()])) != 0) {
+                throw new IllegalStateException("Sources not compiled");
+            }
+
+            List<File> classFiles = list(classes, ".class");
+            final List<byte[]> classBytes = new ArrayList<byte[]>();
+            File jar = new File(root, "classes.jar");
+            ZipOutputStream zip = new ZipOutputStream(new FileOutputStream(jar));
+            try {
+                for (File classFile : classFiles) {
+                    byte[] bytes = Files.readAllBytes(classFile.toPath());
+                    classBytes.add(bytes);
+                    zip.putNextEntry(new ZipEntry(classes.toPath().relativize(classFile.toPath()).toString().replace(File.separatorChar, '/')));
+                    zip.write(bytes);
+                }
+            } finally {
+                zip.close();
+            }
+
+            final ScanContext context =
+                    new ScanContext(null, FileSource.DEFAULT, ScanContext.DIRECT, 1, new ScanMetrics());
+            BenchmarkHarness.measure("lex " + sources.size() + " sources", 3, 10, new Callable<Object>() {
+                public Object call() throws Exception {
+                    for (File source : sources) {
+                        new JavaSourceModel(source.getPath()).parse(context);
+                    }
+                    return null;
+                }
+            });
+            measure("read " + classBytes.size() + " classes from directory", classes, executor);
+            measure("read " + classBytes.size() + " classes from jar", jar, executor);
+            BenchmarkHarness.measure("read " + classBytes.size() + " classes from memory", 3, 10, new Callable<Object>() {
+                public Object call() throws Exception {
+                    ConstantPoolReader reader = new ConstantPoolReader();
+                    List<String> strings = new ArrayList<String>();
+                    for (byte[] bytes : classBytes) {
+                        reader.read(new ByteArrayInputStream(bytes), strings);
+                    }
+                    return strings;
+                }
+            });
+        } finally {
+            executor.shutdown();
+            ScanFixture.delete(root);
+        }
+    }
+
+    private static void measure(String name, File classes, final ExecutorService executor) throws Exception {
+        final List<File> roots = Collections.singletonList(classes);
+        final String packagePath = "org" + File.separator + "bench" + File.separator + "m0" + File.separator + "p0";
+        BenchmarkHarness.measure(name, 3, 10, new Callable<Object>() {
+            public Object call() throws Exception {
+                ClassUsage usage = ClassUsage.start(roots, executor, new ScanMetrics());
+                if (usage.getStrings(null, packagePath).isEmpty()) {
+                    throw new IllegalStateException("Classes not read");
+                }
+                return usage;
+            }
+        });
+    }
+
+    /** Files with the extension in the directory and its subdirectories, sorted */
+    private static List<File> list(File dir, final String ext) throws IOException {
+        final List<File> files = new ArrayList<File>();
+        Files.walkFileTree(dir.toPath(), new SimpleFileVisitor<Path>() {
+            @Override
+            public FileVisitResult visitFile(Path file, BasicFileAttributes attrs) {
+                if (file.getFileName().toString().endsWith(ext)) {
+                    files.add(file.toFile());
+                }
+                return FileVisitResult.CONTINUE;
+            }
+        });
+        Collections.sort(files);
+        return files;
+    }
+}
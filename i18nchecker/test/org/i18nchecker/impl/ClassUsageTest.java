@@ -0,0 +1,244 @@
+/**
+*   Copyright 2010-2011 Petr Hamernik
+*
+*   Licensed under the Apache License, Version 2.0 (the "License");
+*   you may not use this file except in compliance with the License.
+*   You may obtain a copy of the License at
+*
+*       http://www.apache.org/licenses/LICENSE-2.0
+*
+*   Unless required by applicable law or agreed to in writing, software
+*   distributed under the License is distributed on an "AS IS" BASIS,
+*   WITHOUT WARRANTIES OR CONDITIONS OF ANY KIND, either express or implied.
+*   See the License for the specific language governing permissions and
+*   limitations under the License.
+*/
+package org.i18nchecker.impl;
+
+import java.io.ByteArrayInputStream;
+import java.io.ByteArrayOutputStream;
+import java.io.DataOutputStream;
+import java.io.File;
+import java.io.FileOutputStream;
+import java.io.IOException;
+import java.io.InputStream;
+import java.util.ArrayList;
+import java.util.Arrays;
+import java.util.Collections;
+import java.util.List;
+import java.util.zip.ZipEntry;
+import java.util.zip.ZipOutputStream;
+import org.junit.Test;
+import static org.junit.Assert.*;
+
+/**
+ *
+ * @author agent
+ */
+public class ClassUsageTest {
+
+    @Test
+    public void testReadCompiledClass() throws IOException {
+        ConstantPoolReader reader = new ConstantPoolReader();
+        List<String> strings = new ArrayList<String>();
+        InputStream in = Constants.class.getResourceAsStream("ClassUsageTest$Constants.class");
+        try {
+            assertEquals("org/i18nchecker/impl/ClassUsageTest$Constants", reader.read(in, strings));
+        } finally {
+            in.close();
+        }
+        assertTrue(strings.toString(), strings.contains("MY_KEY"));
+        assertTrue(strings.toString(), strings.contains("caf\u00e9 \u4e00 \ud83d\ude00 \u0000"));
+        assertFalse(strings.toString(), strings.contains("Constants"));
+
+        // the reader is reused
+        strings.clear();
+        assertEquals("org/x/Y", reader.read(new ByteArrayInputStream(createClass("org/x/Y", "A", "B")), strings));
+        assertEquals(Arrays.asList("A", "B"), strings);
+
+        try {
+            reader.read(new ByteArrayInputStream(new byte[] { 1, 2, 3, 4, 5, 6, 7, 8, 9 }), strings);
+            fail("Not a class");
+        } catch (IOException ex) {
+            // expected
+        }
+    }
+
+    @Test
+    public void testConstantsMarkKeysAsUsed() throws IOException {
+        File root = ScanFixture.createTempDir("i18nclasses");
+        try {
+            List<String> topDirs = Collections.singletonList(ScanFixture.createRepository(root, 2, 2, 1, 1));
+            append(new File(root, "modules/module0/src/org/bench/m0/p0/Bundle.properties"), "UNUSED_0=a\nUNUSED_1=b\n");
+            append(new File(root, "modules/module1/src/org/bench/m1/p1/Bundle.properties"), "UNUSED_2=c\n");
+
+            File classes = new File(root, "classes/org/bench/m0/p0");
+            assertTrue(classes.mkdirs());
+            write(new File(classes, "Extra.class"), createClass("org/bench/m0/p0/Extra", "UNUSED_0", "other"));
+            File jar = new File(root, "module1.jar");
+            ZipOutputStream zip = new ZipOutputStream(new FileOutputStream(jar));
+            try {
+                zip.putNextEntry(new ZipEntry("org/bench/m1/p1/"));
+                zip.putNextEntry(new ZipEntry("org/bench/m1/p1/Extra.class"));
+                zip.write(createClass("org/bench/m1/p1/Extra", "UNUSED_2"));
+                zip.putNextEntry(new ZipEntry("org/bench/m1/p0/Other.class"));
+                zip.write(createClass("org/bench/m1/p0/Other", "UNUSED_1"));
+            } finally {
+                zip.close();
+            }
+
+            assertEquals(Arrays.asList("UNUSED_0", "UNUSED_1", "UNUSED_2"), unusedKeys(root, topDirs, null, false, 0));
+            List<File> roots = Arrays.asList(new File(root, "classes"), jar);
+            assertEquals(Arrays.asList("UNUSED_1"), unusedKeys(root, topDirs, roots, false, 3));
+            assertEquals(Arrays.asList("UNUSED_1"), unusedKeys(root, topDirs, roots, true, 3));
+        } finally {
+            ScanFixture.delete(root);
+        }
+    }
+
+    @Test
+    public void testClassesOfModuleMarkOnlyItsKeys() throws IOException {
+        File root = ScanFixture.createTempDir("i18nclasses");
+        try {
+            List<String> topDirs = Collections.singletonList(ScanFixture.createRepository(root, 2, 2, 1, 1));
+            append(new File(root, "modules/module0/src/org/bench/m0/p0/Bundle.properties"), "UNUSED_0=a\n");
+            append(new File(root, "modules/module1/src/org/bench/m1/p1/Bundle.properties"), "UNUSED_1=b\n");
+            for (String dir : new String[] { "modules/module0/build/classes", "classes" }) {
+                File classes = new File(root, dir);
+                assertTrue(new File(classes, "org/bench/m0/p0").mkdirs());
+                assertTrue(new File(classes, "org/bench/m1/p1").mkdirs());
+                write(new File(classes, "org/bench/m0/p0/Extra.class"), createClass("org/bench/m0/p0/Extra", "UNUSED_0"));
+                // the package of module1, but the class belongs to module0
+                write(new File(classes, "org/bench/m1/p1/Other.class"), createClass("org/bench/m1/p1/Other", "UNUSED_1"));
+            }
+
+            List<File> moduleClasses = Collections.singletonList(new File(root, "modules/module0/build/classes"));
+            assertEquals(Arrays.asList("UNUSED_1"), unusedKeys(root, topDirs, moduleClasses, false, 2));
+            assertEquals(Arrays.asList("UNUSED_1"), unusedKeys(root, topDirs, moduleClasses, true, 2));
+            List<File> sharedClasses = Collections.singletonList(new File(root, "classes"));
+            assertEquals("Classes outside of modules mark keys of all modules",
+                    Collections.<String>emptyList(), unusedKeys(root, topDirs, sharedClasses, false, 2));
+        } finally {
+            ScanFixture.delete(root);
+        }
+    }
+
+    @Test
+    public void testMoreClassRootsThanDiscoveryThreads() throws IOException {
+        File root = ScanFixture.createTempDir("i18nclasses");
+        try {
+            List<String> topDirs = Collections.singletonList(ScanFixture.createRepository(root, 12, 1, 1, 1));
+            List<File> roots = new ArrayList<File>();
+            for (int m = 0; m < 12; m++) {
+                append(new File(root, "modules/module" + m + "/src/org/bench/m" + m + "/p0/Bundle.properties"),
+                        "UNUSED_" + m + "=x\n");
+                File classes = new File(root, "classes" + m + "/org/bench/m" + m + "/p0");
+                assertTrue(classes.mkdirs());
+                write(new File(classes, "Extra.class"), createClass("org/bench/m" + m + "/p0/Extra", "UNUSED_" + m));
+                roots.add(new File(root, "classes" + m));
+            }
+            assertEquals(12, unusedKeys(root, topDirs, null, false, 0).size());
+            assertEquals(Collections.<String>emptyList(), unusedKeys(root, topDirs, roots, false, 12));
+            assertEquals(Collections.<String>emptyList(), unusedKeys(root, topDirs, roots, true, 12));
+        } finally {
+            ScanFixture.delete(root);
+        }
+    }
+
+    private static List<String> unusedKeys(File root, List<String> topDirs, List<File> classRoots, boolean streaming,
+            int readClasses) throws IOException {
+        ModuleScheduler scheduler = new ModuleScheduler(2);
+        List<ModuleScanner> scanners;
+        try {
+            scheduler.setClassRoots(classRoots);
+            if (streaming) {
+                scanners = scheduler.scanStreaming(root, topDirs, null, new CatalogEntityResolver(false),
+                        new ModuleScheduler.ModuleConsumer() {
+                            public void moduleScanned(ModuleScanner scanner) {
+                            }
+                        });
+            } else {
+                scanners = scheduler.scan(root, topDirs, null, new CatalogEntityResolver(false));
+            }
+        } finally {
+            scheduler.shutdown();
+        }
+        assertEquals(readClasses, scheduler.getMetrics().getReadClasses());
+        List<String> keys = new ArrayList<String>();
+        for (ModuleScanner scanner : scanners) {
+            List<Finding> unused = scanner.getFindings().get(ScanResults.Type.MAYBE_UNUSED_KEY_IN_BUNDLE);
+            if (unused != null) {
+                for (Finding finding : unused) {
+                    keys.add(finding.getMessage());
+                }
+            }
+        }
+        Collections.sort(keys);
+        return keys;
+    }
+
+    /** Class file with the given string constants and no members */
+    private static byte[] createClass(String name, String... strings) throws IOException {
+        ByteArrayOutputStream bytes = new ByteArrayOutputStream();
+        DataOutputStream out = new DataOutputStream(bytes);
+        out.writeInt(0xCAFEBABE);
+        out.writeShort(0);
+        out.writeShort(50);
+        out.writeShort(7 + strings.length * 2);
+        out.writeByte(1);
+        out.writeUTF(name);
+        out.writeByte(7);
+        out.writeShort(1);
+        out.writeByte(1);
+        out.writeUTF("java/lang/Object");
+        out.writeByte(7);
+        out.writeShort(3);
+        // a long takes two entries
+        out.writeByte(5);
+        out.writeLong(42);
+        for (int i = 0; i < strings.length; i++) {
+            out.writeByte(1);
+            out.writeUTF(strings[i]);
+            out.writeByte(8);
+            out.writeShort(7 + i * 2);
+        }
+        out.writeShort(0x21);
+        out.writeShort(2);
+        out.writeShort(4);
+        out.writeShort(0);
+        out.writeShort(0);
+        out.writeShort(0);
+        out.writeShort(0);
+        out.close();
+        return bytes.toByteArray();
+    }
+
+    private static void write(File file, byte[] content) throws IOException {
+        FileOutputStream out = new FileOutputStream(file);
+        try {
+            out.write(content);
+        } finally {
+            out.close();
+        }
+    }
+
+    private static void append(File file, String content) throws IOException {
+        FileOutputStream out = new FileOutputStream(file, true);
+        try {
+            out.write(content.getBytes("ISO-8859-1"));
+        } finally {
+            out.close();
+        }
+    }
+
+    private static final class Constants {
+        static final long LONG = 1234567890123L;
+        static final double DOUBLE = 3.5;
+        final String key = "MY_KEY";
+        final String text = "caf\u00e9 \u4e00 \ud83d\ude00 \u0000";
+
+        long sum() {
+            return LONG + (long) DOUBLE + key.length() + text.length();
+        }
+    }
+}
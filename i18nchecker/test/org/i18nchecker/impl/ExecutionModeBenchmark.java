@@ -0,0 +1,84 @@
+/**
+*   Copyright 2010-2011 Petr Hamernik
+*
+*   Licensed under the Apache License, Version 2.0 (the "License");
+*   you may not use this file except in compliance with the License.
+*   You may obtain a copy of the License at
+*
+*       http://www.apache.org/licenses/LICENSE-2.0
+*
+*   Unless required by applicable law or agreed to in writing, software
+*   distributed under the License is distributed on an "AS IS" BASIS,
+*   WITHOUT WARRANTIES OR CONDITIONS OF ANY KIND, either express or implied.
+*   See the License for the specific language governing permissions and
+*   limitations under the License.
+*/
+package org.i18nchecker.impl;
+
+import java.io.File;
+import java.io.IOException;
+import java.io.InputStream;
+import java.io.InterruptedIOException;
+import java.util.Collections;
+import java.util.concurrent.Callable;
+
+/**
+ * Compares execution modes on a file system where opening a file takes long,
+ * like NFS. Virtual mode needs Java 21, run with -Dbenchmark.jvm=/path/to/jdk21/bin/java.
+ *
+ * @author agent
+ */
+public final class ExecutionModeBenchmark {
+
+    /** Simulated latency of opening a file */
+    private static final long OPEN_LATENCY_MS = 2;
+
+    private ExecutionModeBenchmark() {
+    }
+
+    public static void main(String[] args) throws Exception {
+        final int threads = args.length > 0 ? Integer.parseInt(args[0]) : Runtime.getRuntime().availableProcessors();
+        final int concurrency = args.length > 1 ? Integer.parseInt(args[1]) : 64;
+        final File root = ScanFixture.createTempDir("i18nbench");
+        try {
+            final String topDir = ScanFixture.createRepository(root, 20, 5, 10, 5);
+            final FileSource slow = new FileSource() {
+                public InputStream open(String fileName) throws IOException {
+                    try {
+                        Thread.sleep(OPEN_LATENCY_MS);
+                    } catch (InterruptedException ex) {
+                        throw new InterruptedIOException();
+                    }
+                    return DEFAULT.open(fileName);
+                }
+            };
+            BenchmarkHarness.measure("serial", 1, 3, scan(root, topDir, ExecutionMode.SERIAL, 1, slow));
+            BenchmarkHarness.measure("platform, " + threads + " threads", 1, 3,
+                    scan(root, topDir, ExecutionMode.PLATFORM, threads, slow));
+            if (ModuleScheduler.isVirtualThreadsSupported()) {
+                BenchmarkHarness.measure("virtual, " + concurrency + " files at once", 1, 3,
+                        scan(root, topDir, ExecutionMode.VIRTUAL, concurrency, slow));
+            } else {
+                System.out.println("virtual: needs Java 21, this JVM is " + System.getProperty("java.version"));
+            }
+        } finally {
+            ScanFixture.delete(root);
+        }
+    }
+
+    private static Callable<Void> scan(
+            final File root, final String topDir, final ExecutionMode mode, final int threads, final FileSource source
+    ) {
+        return new Callable<Void>() {
+            public Void call() throws Exception {
+                ModuleScheduler scheduler = new ModuleScheduler(mode, threads, source);
+                try {
+                    scheduler.scan(root, Collections.singletonList(topDir), null, CatalogEntityResolver.getDefault());
+                } finally {
+                    scheduler.shutdown();
+                }
+                return null;
+            }
+        };
+    }
+}
@@ -0,0 +1,89 @@
+/**
+*   Copyright 2010-2011 Petr Hamernik
+*
+*   Licensed under the Apache License, Version 2.0 (the "License");
+*   you may not use this file except in compliance with the License.
+*   You may obtain a copy of the License at
+*
+*       http://www.apache.org/licenses/LICENSE-2.0
+*
+*   Unless required by applicable law or agreed to in writing, software
+*   distributed under the License is distributed on an "AS IS" BASIS,
+*   WITHOUT WARRANTIES OR CONDITIONS OF ANY KIND, either express or implied.
+*   See the License for the specific language governing permissions and
+*   limitations under the License.
+*/
+package org.i18nchecker.impl;
+
+import java.io.ByteArrayInputStream;
+import java.io.IOException;
+import java.util.ArrayList;
+import java.util.List;
+import org.antlr.runtime.ANTLRStringStream;
+import org.antlr.runtime.CommonTokenStream;
+import org.antlr.runtime.Token;
+import org.junit.Test;
+import static org.junit.Assert.*;
+
+/**
+ *
+ * @author agent
+ */
+public class JavaTokenizerTest {
+
+    @Test
+    public void testSameTokensAsNewLexer() throws IOException {
+        JavaTokenizer tokenizer = new JavaTokenizer();
+        StringBuilder big = new StringBuilder("class Big {\n");
+        for (int i = 0; i < 2000; i++) {
+            big.append("    String s").append(i).append(" = \"text ").append(i).append("\"; // NOI18N\n");
+        }
+        big.append("}\n");
+        String[] sources = {
+            "class A { String s = NbBundle.getMessage(A.class, \"KEY\"); }\n",
+            big.toString(),
+            "@Deprecated\nclass B {\n  /* comment */ char c = 'x';\n  assert true : \"never\";\n}\n",
+            "class C {}",
+        };
+        // one tokenizer for all sources, the big one needs bigger buffers than the others
+        for (String source : sources) {
+            tokenizer.open(new ByteArrayInputStream(source.getBytes()));
+            assertEquals(tokensOf(source), tokensOf(tokenizer));
+        }
+    }
+
+    @Test
+    public void testTextComparison() throws IOException {
+        JavaTokenizer tokenizer = new JavaTokenizer();
+        tokenizer.open(new ByteArrayInputStream("NbBundle NbBundles // NOI18N\n".getBytes()));
+        assertEquals(JavaLexer.Identifier, tokenizer.next());
+        assertTrue(tokenizer.textEquals("NbBundle"));
+        tokenizer.next();
+        assertEquals(JavaLexer.Identifier, tokenizer.next());
+        assertFalse(tokenizer.textEquals("NbBundle"));
+        tokenizer.next();
+        assertEquals(JavaLexer.LINE_COMMENT, tokenizer.next());
+        assertTrue(tokenizer.textContains("NOI18N"));
+        assertFalse(tokenizer.textContains("NOI18NX"));
+        assertEquals(Token.EOF, tokenizer.next());
+    }
+
+    /** Tokens as "type:line:text" */
+    private static List<String> tokensOf(String source) {
+        List<String> tokens = new ArrayList<String>();
+        for (Object obj : new CommonTokenStream(new JavaLexer(new ANTLRStringStream(source))).getTokens()) {
+            Token token = (Token) obj;
+            tokens.add(token.getType() + ":" + token.getLine() + ":" + token.getText());
+        }
+        return tokens;
+    }
+
+    private static List<String> tokensOf(JavaTokenizer tokenizer) {
+        List<String> tokens = new ArrayList<String>();
+        for (int type; (type = tokenizer.next()) != Token.EOF; ) {
+            String text = new String(tokenizer.getChars(), tokenizer.getStart(), tokenizer.getEnd() - tokenizer.getStart());
+            tokens.add(type + ":" + tokenizer.getLine() + ":" + text);
+        }
+        return tokens;
+    }
+}
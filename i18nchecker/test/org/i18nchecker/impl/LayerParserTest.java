@@ -16,10 +16,12 @@
 package org.i18nchecker.impl;
 
 import java.io.File;
+import java.io.IOException;
 import java.io.InputStream;
 import java.util.ArrayList;
 import org.i18nchecker.I18NTest;
 import org.junit.Test;
+import org.xml.sax.EntityResolver;
 import static org.junit.Assert.*;
 
 /**
@@ -32,12 +34,8 @@ public class LayerParserTest {
      * Test of parse method, of class LayerParser.
      */
     @Test
-    public void testParse() {
-        InputStream is = LayerParserTest.class.getResourceAsStream("layer.xml");
-        ArrayList<LayerParser.LayerData> results = new ArrayList<LayerParser.LayerData>();
-        for (LayerParser.LayerData entry : new LayerParser().parse(is, I18NTest.createEntityResolver())) {
-            results.add(entry);
-        }
+    public void testParse() throws IOException {
+        ArrayList<LayerParser.LayerData> results = parse(I18NTest.createEntityResolver());
         LayerParser.LayerData entry = new LayerParser.LayerData(
                 "com/im/ijc/examples/viewcustomizer".replace('/', File.separatorChar),
                 "CTL_CustomizeViewAction", null);
@@ -45,5 +43,27 @@ public class LayerParserTest {
         assertTrue(results.toString(), results.contains(entry));
         assertTrue(results.toString(), results.get(0).info.contains(
                 "Actions/Tools/com-im-ijc-examples-viewcustomizer-CustomizeViewAction.instance/displayName"));
+        assertEquals(8, results.get(0).line);
+    }
+
+    /**
+     * Layer is parsed with bundled DTD or without any DTD.
+     */
+    @Test
+    public void testParseOffline() {
+        assertEquals(1, parse(null).size());
+        ArrayList<LayerParser.LayerData> results = parse(new CatalogEntityResolver(false));
+        assertEquals(1, results.size());
+        assertEquals("CTL_CustomizeViewAction", results.get(0).bundleKey);
+        assertEquals(8, results.get(0).line);
+    }
+
+    private static ArrayList<LayerParser.LayerData> parse(EntityResolver resolver) {
+        InputStream is = LayerParserTest.class.getResourceAsStream("layer.xml");
+        ArrayList<LayerParser.LayerData> results = new ArrayList<LayerParser.LayerData>();
+        for (LayerParser.LayerData entry : new LayerParser().parse(is, resolver)) {
+            results.add(entry);
+        }
+        return results;
     }
 }
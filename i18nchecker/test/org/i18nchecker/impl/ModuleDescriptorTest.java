@@ -0,0 +1,64 @@
+/**
+*   Copyright 2010-2011 Petr Hamernik
+*
+*   Licensed under the Apache License, Version 2.0 (the "License");
+*   you may not use this file except in compliance with the License.
+*   You may obtain a copy of the License at
+*
+*       http://www.apache.org/licenses/LICENSE-2.0
+*
+*   Unless required by applicable law or agreed to in writing, software
+*   distributed under the License is distributed on an "AS IS" BASIS,
+*   WITHOUT WARRANTIES OR CONDITIONS OF ANY KIND, either express or implied.
+*   See the License for the specific language governing permissions and
+*   limitations under the License.
+*/
+package org.i18nchecker.impl;
+
+import java.io.ByteArrayInputStream;
+import java.io.File;
+import java.io.IOException;
+import org.junit.Test;
+import static org.junit.Assert.*;
+
+/**
+ *
+ * @author agent
+ */
+public class ModuleDescriptorTest {
+
+    @Test
+    public void testContinuationLinesAndUnterminatedLastLine() throws IOException {
+        File manifest = new File("manifest.mf");
+        ModuleDescriptor descriptor = read(manifest, "Manifest-Version: 1.0\r\n"
+                + "OpenIDE-Module: org.netbeans.\r\n"
+                + " paint/1\r\n"
+                + "OpenIDE-Module-Localizing-Bundle: org/netbeans/paint/Bun\r\n"
+                + " dle.properties\r\n"
+                + "OpenIDE-Module-Layer: org/netbeans/paint/layer.xml");
+        assertNotNull(descriptor);
+        assertSame(manifest, descriptor.getManifest());
+        assertEquals("org.netbeans.paint/1", descriptor.getModuleName());
+        assertEquals("org/netbeans/paint/Bundle.properties", descriptor.getLocalizingBundle());
+        assertEquals("org" + File.separator + "netbeans" + File.separator + "paint", descriptor.getLocalizingBundlePackage());
+        assertEquals("Unterminated last line is read", "org/netbeans/paint/layer.xml", descriptor.getLayer());
+
+        descriptor = read(manifest, "Manifest-Version: 1.0\n"
+                + "OpenIDE-Module: org.netbeans.paint\n"
+                + "OpenIDE-Module-Localizing-Bundle: org/netbeans/paint/Bundle.prop\n"
+                + " erties");
+        assertEquals("Unterminated continuation line is read", "org/netbeans/paint/Bundle.properties",
+                descriptor.getLocalizingBundle());
+        assertNull(descriptor.getLayer());
+    }
+
+    @Test
+    public void testNotModule() throws IOException {
+        assertNull(read(new File("manifest.mf"), "Manifest-Version: 1.0\nMain-Class: org.Foo"));
+        assertNull(ModuleDescriptor.read(new File(ScanFixture.REPO_ROOT, "no-such-dir/manifest.mf")));
+    }
+
+    private static ModuleDescriptor read(File manifest, String content) throws IOException {
+        return ModuleDescriptor.read(manifest, new ByteArrayInputStream(content.getBytes("UTF-8")));
+    }
+}
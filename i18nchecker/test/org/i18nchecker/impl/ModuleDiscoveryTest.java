@@ -0,0 +1,76 @@
+/**
+*   Copyright 2010-2011 Petr Hamernik
+*
+*   Licensed under the Apache License, Version 2.0 (the "License");
+*   you may not use this file except in compliance with the License.
+*   You may obtain a copy of the License at
+*
+*       http://www.apache.org/licenses/LICENSE-2.0
+*
+*   Unless required by applicable law or agreed to in writing, software
+*   distributed under the License is distributed on an "AS IS" BASIS,
+*   WITHOUT WARRANTIES OR CONDITIONS OF ANY KIND, either express or implied.
+*   See the License for the specific language governing permissions and
+*   limitations under the License.
+*/
+package org.i18nchecker.impl;
+
+import java.io.File;
+import java.io.IOException;
+import java.util.ArrayList;
+import java.util.Arrays;
+import java.util.List;
+import java.util.concurrent.ExecutorService;
+import java.util.concurrent.Executors;
+import org.junit.Test;
+import static org.junit.Assert.*;
+
+/**
+ *
+ * @author agent
+ */
+public class ModuleDiscoveryTest {
+
+    @Test
+    public void testMissingTopDirIsSkipped() throws IOException {
+        File root = ScanFixture.createTempDir("i18ndiscovery");
+        ExecutorService executor = Executors.newFixedThreadPool(2);
+        try {
+            String topDir = ScanFixture.createRepository(root, 3, 1, 1, 1);
+            ScanContext context = new ScanContext(null, FileSource.DEFAULT, ScanContext.DIRECT, 1, new ScanMetrics());
+            ModuleDiscovery discovery = new ModuleDiscovery(root, null, context, executor);
+            List<ModuleScanner> scanners = discovery.discover(Arrays.asList("missing", topDir), null);
+            assertEquals(3, scanners.size());
+            assertEquals("module0", scanners.get(0).getRoot().getParentFile().getName());
+        } finally {
+            executor.shutdown();
+            ScanFixture.delete(root);
+        }
+    }
+
+    @Test
+    public void testMessagesInOrderOfDiscovery() throws IOException {
+        List<String> expected = null;
+        List<ModuleScheduler> schedulers = new ArrayList<ModuleScheduler>(
+                Arrays.asList(new ModuleScheduler(1), new ModuleScheduler(4)));
+        if (ModuleScheduler.isVirtualThreadsSupported()) {
+            schedulers.add(new ModuleScheduler(ExecutionMode.VIRTUAL, 4));
+        }
+        for (ModuleScheduler scheduler : schedulers) {
+            final List<String> messages = new ArrayList<String>();
+            scheduler.setLog(new ModuleScheduler.Log() {
+                public void log(String message) {
+                    messages.add(message);
+                }
+            });
+            ScanFixture.scan(scheduler);
+            if (expected == null) {
+                expected = messages;
+                assertTrue(messages.toString(), messages.get(0).startsWith("Can't auto-detect sources, ignoring: "));
+                assertTrue(messages.toString(), messages.get(messages.size() - 1).startsWith("Scanning "));
+            } else {
+                assertEquals(expected, messages);
+            }
+        }
+    }
+}
@@ -0,0 +1,176 @@
+/**
+*   Copyright 2010-2011 Petr Hamernik
+*
+*   Licensed under the Apache License, Version 2.0 (the "License");
+*   you may not use this file except in compliance with the License.
+*   You may obtain a copy of the License at
+*
+*       http://www.apache.org/licenses/LICENSE-2.0
+*
+*   Unless required by applicable law or agreed to in writing, software
+*   distributed under the License is distributed on an "AS IS" BASIS,
+*   WITHOUT WARRANTIES OR CONDITIONS OF ANY KIND, either express or implied.
+*   See the License for the specific language governing permissions and
+*   limitations under the License.
+*/
+package org.i18nchecker.impl;
+
+import java.io.File;
+import java.io.IOException;
+import java.nio.file.Files;
+import java.util.ArrayList;
+import java.util.Arrays;
+import java.util.Collections;
+import java.util.HashMap;
+import java.util.List;
+import java.util.Map;
+import java.util.concurrent.ExecutorService;
+import java.util.concurrent.Executors;
+import org.junit.After;
+import org.junit.Before;
+import org.junit.Test;
+import static org.junit.Assert.*;
+
+/**
+ *
+ * @author agent
+ */
+public class ModuleHistoryTest {
+
+    private File root;
+    private String topDir;
+
+    @Before
+    public void createRepository() throws IOException {
+        root = ScanFixture.createTempDir("i18nhistory");
+        topDir = ScanFixture.createRepository(root, 6, 1, 1, 2);
+        // module4 has a string which is neither in the bundle nor marked NOI18N
+        ScanFixture.write(new File(root, topDir + "/module4/src/org/bench/m4/p0/Bad.java"),
+                "package org.bench.m4.p0;\n\nclass Bad {\n    String s = \"Hello\";\n}\n");
+        // module2 has an unused key, which is not known before layers are resolved
+        File bundle = new File(root, topDir + "/module2/src/org/bench/m2/p0/Bundle.properties");
+        ScanFixture.write(bundle, new String(Files.readAllBytes(bundle.toPath()), "UTF-8") + "UNUSED=x\n");
+    }
+
+    @After
+    public void deleteRepository() {
+        ScanFixture.delete(root);
+    }
+
+    @Test
+    public void testFailFastScansModuleWithFailuresFirst() throws IOException {
+        List<ModuleScanner> modules = discover();
+        ModuleHistory history = new ModuleHistory(root);
+        history.recordResult(modules.get(1), true);
+        history.recordResult(modules.get(4), true);
+        history.recordResult(modules.get(4), false);
+
+        final List<String> checked = Collections.synchronizedList(new ArrayList<String>());
+        ModuleScheduler scheduler = new ModuleScheduler(1);
+        scheduler.setHistory(history);
+        scheduler.setFailFast(new ModuleScheduler.FailFast() {
+            public boolean isFailed(ModuleScanner scanner, int minimumProblems) {
+                checked.add(moduleName(scanner));
+                return minimumProblems > 0;
+            }
+        });
+        List<ModuleScanner> scanners = ScanFixture.scan(scheduler, root, Arrays.asList(topDir));
+
+        // module1 failed most recently, then module4 fails and the queued modules are cancelled
+        assertEquals(Arrays.asList("module1", "module4"), checked);
+        assertEquals(1, scanners.size());
+        assertEquals("module4", moduleName(scanners.get(0)));
+        assertEquals(1, scanners.get(0).getProblemsCount());
+        assertEquals(3, scheduler.getMetrics().getParsedFiles(FileType.JAVA));
+
+        // module1 passed before the scan stopped, the failed module is recorded by the caller
+        assertEquals(0.5, history.getFailureScore(modules.get(1)), 0);
+        assertEquals(0.5, history.getFailureScore(modules.get(4)), 0);
+        assertEquals(0, history.getFailureScore(modules.get(0)), 0);
+        assertTrue(history.getCost(modules.get(1)) > 0);
+        assertEquals(-1, history.getCost(modules.get(0)));
+    }
+
+    @Test
+    public void testMinimumProblemsCount() throws IOException {
+        final Map<String, Integer> minimum = Collections.synchronizedMap(new HashMap<String, Integer>());
+        ModuleScheduler scheduler = new ModuleScheduler(2);
+        scheduler.setFailFast(new ModuleScheduler.FailFast() {
+            public boolean isFailed(ModuleScanner scanner, int minimumProblems) {
+                minimum.put(moduleName(scanner), minimumProblems);
+                return false;
+            }
+        });
+        List<ModuleScanner> scanners = ScanFixture.scan(scheduler, root, Arrays.asList(topDir));
+        List<ModuleScanner> expected = ScanFixture.scan(new ModuleScheduler(2), root, Arrays.asList(topDir));
+        ScanFixture.assertSameResults(root, expected, scanners);
+
+        assertEquals(6, scanners.size());
+        assertEquals(6, minimum.size());
+        for (ModuleScanner scanner : scanners) {
+            String name = moduleName(scanner);
+            int unused = name.equals("module2") ? 1 : 0;
+            assertEquals(name, name.equals("module4") ? 1 : 0, (int) minimum.get(name));
+            assertEquals(name, minimum.get(name) + unused, scanner.getProblemsCount());
+        }
+    }
+
+    @Test
+    public void testWriteAndRead() throws IOException {
+        List<ModuleScanner> modules = discover();
+        ModuleHistory history = new ModuleHistory(root);
+        history.recordResult(modules.get(0), true);
+        history.recordResult(modules.get(0), true);
+        history.recordResult(modules.get(1), true);
+        history.recordResult(modules.get(1), false);
+        history.recordCost(modules.get(0), 1000, 100);
+        history.recordCost(modules.get(0), 3000, 100);
+        history.recordCost(modules.get(2), 500, 150);
+
+        File file = new File(root, "history.properties");
+        history.write(file);
+        ModuleHistory read = ModuleHistory.read(root, file);
+        for (ModuleScanner module : modules) {
+            String name = moduleName(module);
+            assertEquals(name, history.getFailureScore(module), read.getFailureScore(module), 0);
+            assertEquals(name, history.getCost(module), read.getCost(module));
+        }
+        assertEquals(1.5, read.getFailureScore(modules.get(0)), 0);
+        assertEquals(0.5, read.getFailureScore(modules.get(1)), 0);
+        assertEquals(2000, read.getCost(modules.get(0)));
+        assertEquals(500, read.getCost(modules.get(2)));
+        assertEquals(-1, read.getCost(modules.get(1)));
+        assertEquals("Speed of scanned modules", 400, read.estimateCost(40));
+
+        // the score decays with each passed run until the module is forgotten
+        for (int i = 0; i < 10; i++) {
+            read.recordResult(modules.get(1), false);
+        }
+        read.write(file);
+        assertEquals(0, ModuleHistory.read(root, file).getFailureScore(modules.get(1)), 0);
+
+        ModuleHistory missing = ModuleHistory.read(root, new File(root, "missing.properties"));
+        assertEquals(0, missing.getFailureScore(modules.get(0)), 0);
+        assertEquals(-1, missing.getCost(modules.get(0)));
+        assertEquals(-1, missing.estimateCost(40));
+
+        ScanFixture.write(file, "cost.modules/module0/src=1000\ncost.modules/module2/src=3000\n");
+        ModuleHistory withoutSizes = ModuleHistory.read(root, file);
+        assertEquals(1000, withoutSizes.getCost(modules.get(0)));
+        assertEquals("Average cost without sizes", 2000, withoutSizes.estimateCost(40));
+    }
+
+    private List<ModuleScanner> discover() throws IOException {
+        ExecutorService executor = Executors.newFixedThreadPool(2);
+        try {
+            ScanContext context = new ScanContext(null, FileSource.DEFAULT, ScanContext.DIRECT, 1, new ScanMetrics());
+            return new ModuleDiscovery(root, null, context, executor).discover(Arrays.asList(topDir), null);
+        } finally {
+            executor.shutdown();
+        }
+    }
+
+    private static String moduleName(ModuleScanner scanner) {
+        return scanner.getRoot().getParentFile().getName();
+    }
+}
@@ -0,0 +1,142 @@
+/**
+*   Copyright 2010-2011 Petr Hamernik
+*
+*   Licensed under the Apache License, Version 2.0 (the "License");
+*   you may not use this file except in compliance with the License.
+*   You may obtain a copy of the License at
+*
+*       http://www.apache.org/licenses/LICENSE-2.0
+*
+*   Unless required by applicable law or agreed to in writing, software
+*   distributed under the License is distributed on an "AS IS" BASIS,
+*   WITHOUT WARRANTIES OR CONDITIONS OF ANY KIND, either express or implied.
+*   See the License for the specific language governing permissions and
+*   limitations under the License.
+*/
+package org.i18nchecker.impl;
+
+import java.io.File;
+import java.io.FileInputStream;
+import java.io.FilterInputStream;
+import java.io.IOException;
+import java.io.InputStream;
+import java.util.ArrayList;
+import java.util.Arrays;
+import java.util.Collections;
+import java.util.List;
+import java.util.concurrent.ExecutorService;
+import java.util.concurrent.Executors;
+import java.util.concurrent.atomic.AtomicInteger;
+import org.junit.Test;
+import static org.junit.Assert.*;
+
+/**
+ *
+ * @author agent
+ */
+public class ModuleSchedulerTest {
+
+    @Test
+    public void testTaskOrder() {
+        ModuleScheduler scheduler = new ModuleScheduler(2);
+        try {
+            List<ModuleScheduler.ScanTask> tasks = new ArrayList<ModuleScheduler.ScanTask>();
+            ModuleScheduler.ScanTask big = task(scheduler, 0, 900, 0);
+            ModuleScheduler.ScanTask small = task(scheduler, 0, 100, 1);
+            ModuleScheduler.ScanTask failed = task(scheduler, 0.5, 10, 2);
+            ModuleScheduler.ScanTask failedOften = task(scheduler, 1.5, 10, 3);
+            ModuleScheduler.ScanTask smallLater = task(scheduler, 0, 100, 4);
+            tasks.addAll(Arrays.asList(smallLater, small, big, failed, failedOften));
+            Collections.sort(tasks);
+            // failure score first, then cost, then order of discovery
+            assertEquals(Arrays.asList(failedOften, failed, big, small, smallLater), tasks);
+            assertEquals(0, small.compareTo(small));
+            assertTrue(small.compareTo(smallLater) < 0);
+            assertTrue(smallLater.compareTo(small) > 0);
+        } finally {
+            scheduler.shutdown();
+        }
+    }
+
+    @Test
+    public void testExpectedCost() throws IOException {
+        File root = ScanFixture.createTempDir("i18nscheduler");
+        ExecutorService executor = Executors.newFixedThreadPool(2);
+        ModuleScheduler parallel = new ModuleScheduler(2);
+        ModuleScheduler serial = new ModuleScheduler(1);
+        try {
+            String topDir = ScanFixture.createRepository(root, 3, 1, 1, 1);
+            StringBuilder big = new StringBuilder("package org.bench.m2.p0;\n\nclass Big {\n");
+            for (int i = 0; i < 100; i++) {
+                big.append("    String s").append(i).append(" = \"id").append(i).append("\"; // NOI18N\n");
+            }
+            ScanFixture.write(new File(root, topDir + "/module2/src/org/bench/m2/p0/Big.java"), big.append("}\n"));
+            ScanContext context = new ScanContext(null, FileSource.DEFAULT, ScanContext.DIRECT, 1, new ScanMetrics());
+            List<ModuleScanner> modules = new ModuleDiscovery(root, null, context, executor)
+                    .discover(Arrays.asList(topDir), null);
+            long size = modules.get(0).estimateSize();
+            long bigSize = modules.get(2).estimateSize();
+            assertTrue(size > 0);
+            assertTrue("Sizes listed by discovery: " + size + ", " + bigSize, bigSize > size);
+            assertEquals("No history, the size", size, parallel.expectedCost(modules.get(0)));
+            assertEquals("No history, the size", bigSize, parallel.expectedCost(modules.get(2)));
+
+            ModuleHistory history = new ModuleHistory(root);
+            history.recordCost(modules.get(0), 1000, 500);
+            history.recordCost(modules.get(1), 3000, 1500);
+            parallel.setHistory(history);
+            serial.setHistory(history);
+            assertEquals(1000, parallel.expectedCost(modules.get(0)));
+            assertEquals(3000, parallel.expectedCost(modules.get(1)));
+            assertEquals("Not scanned yet, 2 ns per byte", 2 * bigSize, parallel.expectedCost(modules.get(2)));
+            assertEquals("Serial scan does not reorder", 0, serial.expectedCost(modules.get(1)));
+        } finally {
+            parallel.shutdown();
+            serial.shutdown();
+            executor.shutdown();
+            ScanFixture.delete(root);
+        }
+    }
+
+    @Test
+    public void testVirtualMode() throws IOException {
+        if (!ModuleScheduler.isVirtualThreadsSupported()) {
+            try {
+                new ModuleScheduler(ExecutionMode.VIRTUAL, 4);
+                fail("Virtual mode without virtual threads");
+            } catch (UnsupportedOperationException ex) {
+                assertTrue(ex.getMessage(), ex.getMessage().contains("Java 21"));
+            }
+            return;
+        }
+        final AtomicInteger open = new AtomicInteger();
+        final AtomicInteger peak = new AtomicInteger();
+        FileSource counting = new FileSource() {
+            public InputStream open(String fileName) throws IOException {
+                int now = open.incrementAndGet();
+                while (peak.get() < now && !peak.compareAndSet(peak.get(), now)) {
+                }
+                return new FilterInputStream(new FileInputStream(fileName)) {
+                    private boolean closed;
+
+                    @Override
+                    public void close() throws IOException {
+                        if (!closed) {
+                            closed = true;
+                            open.decrementAndGet();
+                        }
+                        super.close();
+                    }
+                };
+            }
+        };
+        List<ModuleScanner> expected = ScanFixture.scan(new ModuleScheduler(1));
+        List<ModuleScanner> actual = ScanFixture.scan(new ModuleScheduler(ExecutionMode.VIRTUAL, 3, counting));
+        ScanFixture.assertSameResults(ScanFixture.REPO_ROOT, expected, actual);
+        assertTrue("Files parsed at the same time: " + peak.get(), peak.get() <= 3);
+    }
+
+    private static ModuleScheduler.ScanTask task(ModuleScheduler scheduler, double failureScore, long cost, long sequence) {
+        return scheduler.new ScanTask(null, failureScore, cost, sequence, null, null, null, null);
+    }
+}
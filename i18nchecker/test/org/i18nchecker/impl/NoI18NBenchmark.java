@@ -0,0 +1,65 @@
+/**
+*   Copyright 2010-2011 Petr Hamernik
+*
+*   Licensed under the Apache License, Version 2.0 (the "License");
+*   you may not use this file except in compliance with the License.
+*   You may obtain a copy of the License at
+*
+*       http://www.apache.org/licenses/LICENSE-2.0
+*
+*   Unless required by applicable law or agreed to in writing, software
+*   distributed under the License is distributed on an "AS IS" BASIS,
+*   WITHOUT WARRANTIES OR CONDITIONS OF ANY KIND, either express or implied.
+*   See the License for the specific language governing permissions and
+*   limitations under the License.
+*/
+package org.i18nchecker.impl;
+
+import java.io.File;
+import java.util.concurrent.Callable;
+
+/**
+ * Parsing time of generated GUI sources with one "// NOI18N" string per line.
+ * Time per literal has to stay the same as the number of literals grows.
+ *
+ * @author agent
+ */
+public final class NoI18NBenchmark {
+
+    private NoI18NBenchmark() {
+    }
+
+    public static void main(String[] args) throws Exception {
+        File dir = ScanFixture.createTempDir("i18nbench");
+        try {
+            double first = 0;
+            for (int literals = 2500; literals <= 20000; literals *= 2) {
+                File source = new File(dir, "Form" + literals + ".java");
+                StringBuilder sb = new StringBuilder("class Form {\n    void initComponents() {\n");
+                for (int i = 0; i < literals; i++) {
+                    sb.append("        button").append(i).append(".setName(\"button").append(i).append("\"); // NOI18N\n");
+                }
+                sb.append("    }\n}\n");
+                ScanFixture.write(source, sb);
+
+                final JavaSourceModel model = new JavaSourceModel(source.getPath());
+                final ScanContext context =
+                        new ScanContext(null, FileSource.DEFAULT, ScanContext.DIRECT, 1, new ScanMetrics());
+                long time = BenchmarkHarness.measure(literals + " literals", 5, 10, new Callable<Void>() {
+                    public Void call() throws Exception {
+                        model.parse(context);
+                        return null;
+                    }
+                });
+                double perLiteral = (double) time / literals;
+                if (first == 0) {
+                    first = perLiteral;
+                }
+                System.out.println(String.format("    %.0f ns per literal, %.2fx of the smallest file",
+                        perLiteral, perLiteral / first));
+            }
+        } finally {
+            ScanFixture.delete(dir);
+        }
+    }
+}
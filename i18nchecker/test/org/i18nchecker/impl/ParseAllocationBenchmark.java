@@ -0,0 +1,84 @@
+/**
+*   Copyright 2010-2011 Petr Hamernik
+*
+*   Licensed under the Apache License, Version 2.0 (the "License");
+*   you may not use this file except in compliance with the License.
+*   You may obtain a copy of the License at
+*
+*       http://www.apache.org/licenses/LICENSE-2.0
+*
+*   Unless required by applicable law or agreed to in writing, software
+*   distributed under the License is distributed on an "AS IS" BASIS,
+*   WITHOUT WARRANTIES OR CONDITIONS OF ANY KIND, either express or implied.
+*   See the License for the specific language governing permissions and
+*   limitations under the License.
+*/
+package org.i18nchecker.impl;
+
+import java.io.File;
+import java.lang.management.ManagementFactory;
+import java.util.ArrayList;
+import java.util.List;
+import java.util.concurrent.Callable;
+
+/**
+ * Bytes allocated per parsed Java source, measured by the allocation counter of the thread
+ * (HotSpot's com.sun.management.ThreadMXBean), and the parse time.
+ *
+ * @author agent
+ */
+public final class ParseAllocationBenchmark {
+
+    private static final int FILES = 2000;
+    private static final int KEYS_PER_FILE = 20;
+
+    private ParseAllocationBenchmark() {
+    }
+
+    public static void main(String[] args) throws Exception {
+        File root = ScanFixture.createTempDir("i18nbench");
+        try {
+            String topDir = ScanFixture.createRepository(root, 1, FILES / 10, 10, KEYS_PER_FILE);
+            final List<File> sources = new ArrayList<File>();
+            collectSources(new File(root, topDir), sources);
+            final ScanContext context =
+                    new ScanContext(null, FileSource.DEFAULT, ScanContext.DIRECT, 1, new ScanMetrics());
+            Callable<Object> parseAll = new Callable<Object>() {
+                public Object call() throws Exception {
+                    for (File source : sources) {
+                        new JavaSourceModel(source.getPath()).parse(context);
+                    }
+                    return null;
+                }
+            };
+
+            BenchmarkHarness.measure("parse " + sources.size() + " files", 3, 10, parseAll);
+            com.sun.management.ThreadMXBean threads = (com.sun.management.ThreadMXBean) ManagementFactory.getThreadMXBean();
+            long thread = Thread.currentThread().getId();
+            long before = threads.getThreadAllocatedBytes(thread);
+            parseAll.call();
+            long allocated = threads.getThreadAllocatedBytes(thread) - before;
+            long size = 0;
+            for (File source : sources) {
+                size += source.length();
+            }
+            System.out.println(String.format("Allocated %.1f KB per file, %.1f bytes per byte of source",
+                    allocated / 1024.0 / sources.size(), (double) allocated / size));
+        } finally {
+            ScanFixture.delete(root);
+        }
+    }
+
+    private static void collectSources(File dir, List<File> sources) {
+        File[] children = dir.listFiles();
+        if (children != null) {
+            for (File child : children) {
+                if (child.getName().endsWith(".java")) {
+                    sources.add(child);
+                } else {
+                    collectSources(child, sources);
+                }
+            }
+        }
+    }
+}
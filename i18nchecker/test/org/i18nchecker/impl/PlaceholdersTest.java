@@ -0,0 +1,54 @@
+/**
+*   Copyright 2010-2011 Petr Hamernik
+*
+*   Licensed under the Apache License, Version 2.0 (the "License");
+*   you may not use this file except in compliance with the License.
+*   You may obtain a copy of the License at
+*
+*       http://www.apache.org/licenses/LICENSE-2.0
+*
+*   Unless required by applicable law or agreed to in writing, software
+*   distributed under the License is distributed on an "AS IS" BASIS,
+*   WITHOUT WARRANTIES OR CONDITIONS OF ANY KIND, either express or implied.
+*   See the License for the specific language governing permissions and
+*   limitations under the License.
+*/
+package org.i18nchecker.impl;
+
+import org.junit.Test;
+import static org.junit.Assert.*;
+
+/**
+ *
+ * @author agent
+ */
+public class PlaceholdersTest {
+
+    @Test
+    public void testExtract() {
+        assertEquals(0L, Placeholders.extract("No arguments"));
+        assertEquals(0L, Placeholders.extract("Braces {file} and {} are not arguments"));
+        assertEquals(0L, Placeholders.extract("Unfinished {0"));
+        assertEquals(1L, Placeholders.extract("{0}"));
+        assertEquals(1L | 4L, Placeholders.extract("File {2} of {0}, again {0}"));
+        assertEquals(2L, Placeholders.extract("Size {1,number,integer}"));
+        assertEquals(1L << 63, Placeholders.extract("{99}"));
+    }
+
+    @Test
+    public void testExtractIgnoresQuotes() {
+        assertEquals(1L, Placeholders.extract("Can't open {0}"));
+        assertEquals(1L, Placeholders.extract("Cannot open {0}"));
+    }
+
+    @Test
+    public void testExtractChoice() {
+        assertEquals(1L | 2L, Placeholders.extract("{0,choice,0#no files|1#one file|1<{0} files} in {1}"));
+    }
+
+    @Test
+    public void testToString() {
+        assertEquals("none", Placeholders.toString(0L));
+        assertEquals("{0}{2}", Placeholders.toString(5L));
+    }
+}
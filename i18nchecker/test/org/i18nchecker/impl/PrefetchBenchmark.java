@@ -0,0 +1,81 @@
+/**
+*   Copyright 2010-2011 Petr Hamernik
+*
+*   Licensed under the Apache License, Version 2.0 (the "License");
+*   you may not use this file except in compliance with the License.
+*   You may obtain a copy of the License at
+*
+*       http://www.apache.org/licenses/LICENSE-2.0
+*
+*   Unless required by applicable law or agreed to in writing, software
+*   distributed under the License is distributed on an "AS IS" BASIS,
+*   WITHOUT WARRANTIES OR CONDITIONS OF ANY KIND, either express or implied.
+*   See the License for the specific language governing permissions and
+*   limitations under the License.
+*/
+package org.i18nchecker.impl;
+
+import java.io.File;
+import java.io.IOException;
+import java.io.InputStream;
+import java.io.InterruptedIOException;
+import java.util.Collections;
+import java.util.concurrent.Callable;
+
+/**
+ * Scan with and without prefetching on a file system where every open waits,
+ * like a cold cache of a network file system.
+ *
+ * @author agent
+ */
+public final class PrefetchBenchmark {
+
+    /** Simulated latency of opening a file */
+    private static final long OPEN_LATENCY_MS = 2;
+    private static final long WINDOW = 16 << 20;
+
+    private PrefetchBenchmark() {
+    }
+
+    public static void main(String[] args) throws Exception {
+        final int threads = args.length > 0 ? Integer.parseInt(args[0]) : 4;
+        final File root = ScanFixture.createTempDir("i18nbench");
+        try {
+            final String topDir = ScanFixture.createRepository(root, 10, 5, 10, 5);
+            final FileSource slow = new FileSource() {
+                public InputStream open(String fileName) throws IOException {
+                    try {
+                        Thread.sleep(OPEN_LATENCY_MS);
+                    } catch (InterruptedException ex) {
+                        throw new InterruptedIOException();
+                    }
+                    return DEFAULT.open(fileName);
+                }
+            };
+            BenchmarkHarness.measure("serial", 1, 3, scan(root, topDir, 1, slow, 0));
+            BenchmarkHarness.measure("serial, prefetch", 1, 3, scan(root, topDir, 1, slow, WINDOW));
+            BenchmarkHarness.measure(threads + " threads", 1, 3, scan(root, topDir, threads, slow, 0));
+            BenchmarkHarness.measure(threads + " threads, prefetch", 1, 3, scan(root, topDir, threads, slow, WINDOW));
+        } finally {
+            ScanFixture.delete(root);
+        }
+    }
+
+    private static Callable<Void> scan(
+            final File root, final String topDir, final int threads, final FileSource source, final long window
+    ) {
+        return new Callable<Void>() {
+            public Void call() throws Exception {
+                ExecutionMode mode = threads > 1 ? ExecutionMode.PLATFORM : ExecutionMode.SERIAL;
+                ModuleScheduler scheduler = new ModuleScheduler(mode, threads, source);
+                scheduler.setPrefetchWindow(window);
+                try {
+                    scheduler.scan(root, Collections.singletonList(topDir), null, CatalogEntityResolver.getDefault());
+                } finally {
+                    scheduler.shutdown();
+                }
+                return null;
+            }
+        };
+    }
+}
@@ -0,0 +1,222 @@
+/**
+*   Copyright 2010-2011 Petr Hamernik
+*
+*   Licensed under the Apache License, Version 2.0 (the "License");
+*   you may not use this file except in compliance with the License.
+*   You may obtain a copy of the License at
+*
+*       http://www.apache.org/licenses/LICENSE-2.0
+*
+*   Unless required by applicable law or agreed to in writing, software
+*   distributed under the License is distributed on an "AS IS" BASIS,
+*   WITHOUT WARRANTIES OR CONDITIONS OF ANY KIND, either express or implied.
+*   See the License for the specific language governing permissions and
+*   limitations under the License.
+*/
+package org.i18nchecker.impl;
+
+import java.io.ByteArrayOutputStream;
+import java.io.File;
+import java.io.IOException;
+import java.io.InputStream;
+import java.util.ArrayList;
+import java.util.Arrays;
+import java.util.List;
+import java.util.concurrent.Callable;
+import java.util.concurrent.ExecutorService;
+import java.util.concurrent.Executors;
+import java.util.concurrent.atomic.AtomicInteger;
+import org.junit.Test;
+import static org.junit.Assert.*;
+
+/**
+ *
+ * @author agent
+ */
+public class PrefetchingFileSourceTest {
+
+    @Test
+    public void testWindow() throws Exception {
+        File dir = ScanFixture.createTempDir("i18nprefetch");
+        ExecutorService executor = Executors.newSingleThreadExecutor();
+        try {
+            List<String> files = new ArrayList<String>();
+            for (int i = 0; i < 5; i++) {
+                File file = new File(dir, "File" + i + ".java");
+                StringBuilder content = new StringBuilder();
+                while (content.length() < 100) {
+                    content.append("// file ").append(i).append('\n');
+                }
+                ScanFixture.write(file, content.substring(0, 100));
+                files.add(file.getPath());
+            }
+            final AtomicInteger opened = new AtomicInteger();
+            FileSource counting = new FileSource() {
+                public InputStream open(String fileName) throws IOException {
+                    opened.incrementAndGet();
+                    return DEFAULT.open(fileName);
+                }
+            };
+            PrefetchingFileSource source = new PrefetchingFileSource(counting, executor, 250, new ScanMetrics());
+            for (String file : files) {
+                source.prefetch(file, 100);
+            }
+            awaitReads(executor);
+            assertEquals("Only two files fit into the window", 2, opened.get());
+
+            assertEquals(read(FileSource.DEFAULT.open(files.get(0))), read(source.open(files.get(0))));
+            awaitReads(executor);
+            assertEquals("Closed file makes space for the next one", 3, opened.get());
+
+            // not read yet, opened directly
+            assertEquals(read(FileSource.DEFAULT.open(files.get(4))), read(source.open(files.get(4))));
+            assertEquals(4, opened.get());
+            for (int i = 1; i < 4; i++) {
+                assertEquals(read(FileSource.DEFAULT.open(files.get(i))), read(source.open(files.get(i))));
+            }
+            awaitReads(executor);
+            assertEquals(5, opened.get());
+        } finally {
+            executor.shutdownNow();
+            ScanFixture.delete(dir);
+        }
+    }
+
+    @Test
+    public void testScanResultsSameAsWithoutPrefetching() throws IOException {
+        List<ModuleScanner> direct = scan(1, 0);
+        for (int threads = 1; threads <= 4; threads += 3) {
+            // window smaller than most files, so files are read one by one
+            List<ModuleScanner> prefetched = scan(threads, 16);
+            ScanFixture.assertSameResults(ScanFixture.REPO_ROOT, direct, prefetched);
+        }
+    }
+
+    @Test
+    public void testCancelledScanReleasesWindow() throws Exception {
+        final AtomicInteger opened = new AtomicInteger();
+        final ScanContext[] context = new ScanContext[1];
+        PrefetchingFileSource source = scanModule(new FileSource() {
+            public InputStream open(String fileName) throws IOException {
+                if (opened.incrementAndGet() == 10) {
+                    context[0].cancel();
+                }
+                return DEFAULT.open(fileName);
+            }
+        }, context);
+        assertTrue(context[0].isCancelled());
+        assertEquals("Files not parsed after the cancel leave the window", 0, source.getLoaded());
+        source.close();
+        assertEquals(0, source.getLoaded());
+    }
+
+    @Test
+    public void testFailedScanReleasesWindow() throws Exception {
+        final AtomicInteger opened = new AtomicInteger();
+        try {
+            scanModule(new FileSource() {
+                public InputStream open(String fileName) throws IOException {
+                    if (opened.incrementAndGet() == 10) {
+                        throw new IOException("Cannot read " + fileName);
+                    }
+                    return DEFAULT.open(fileName);
+                }
+            }, new ScanContext[1]);
+            fail("Read failure should fail the scan");
+        } catch (IOException ex) {
+            // expected
+        }
+        assertEquals("Files not parsed after the failure leave the window", 0, lastSource.getLoaded());
+    }
+
+    @Test
+    public void testClose() throws Exception {
+        File dir = ScanFixture.createTempDir("i18nprefetch");
+        ExecutorService executor = Executors.newSingleThreadExecutor();
+        try {
+            List<String> files = new ArrayList<String>();
+            for (int i = 0; i < 3; i++) {
+                File file = new File(dir, "File" + i + ".java");
+                ScanFixture.write(file, "// file " + i + "\n");
+                files.add(file.getPath());
+            }
+            PrefetchingFileSource source = new PrefetchingFileSource(FileSource.DEFAULT, executor, 1, new ScanMetrics());
+            for (String file : files) {
+                source.prefetch(file, 10);
+            }
+            awaitReads(executor);
+            assertEquals("Only the first file is read", 10, source.getLoaded());
+            source.cancel(files.get(0));
+            awaitReads(executor);
+            assertEquals("Cancelled file makes space for the next one", 10, source.getLoaded());
+            source.close();
+            assertEquals(0, source.getLoaded());
+            source.prefetch(files.get(2), 10);
+            assertEquals("Closed source does not read ahead", 0, source.getLoaded());
+            assertEquals(read(FileSource.DEFAULT.open(files.get(1))), read(source.open(files.get(1))));
+        } finally {
+            executor.shutdownNow();
+            ScanFixture.delete(dir);
+        }
+    }
+
+    /** Source of the last {@link #scanModule}, kept when the scan fails */
+    private PrefetchingFileSource lastSource;
+
+    /**
+     * Scan one module with all its files prefetched.
+     *
+     * @param context receives the context of the scan before it starts
+     */
+    private PrefetchingFileSource scanModule(FileSource delegate, ScanContext[] context) throws IOException {
+        File root = ScanFixture.createTempDir("i18nprefetch");
+        ExecutorService discoveryExecutor = Executors.newSingleThreadExecutor();
+        ExecutorService prefetchExecutor = Executors.newFixedThreadPool(2);
+        ExecutorService parseExecutor = Executors.newFixedThreadPool(2);
+        try {
+            String topDir = ScanFixture.createRepository(root, 1, 10, 5, 5);
+            lastSource = new PrefetchingFileSource(delegate, prefetchExecutor, Long.MAX_VALUE, new ScanMetrics());
+            context[0] = new ScanContext(null, lastSource, parseExecutor, 4, new ScanMetrics());
+            List<ModuleScanner> modules = new ModuleDiscovery(root, null, context[0], discoveryExecutor)
+                    .discover(Arrays.asList(topDir), null);
+            assertEquals(1, modules.size());
+            modules.get(0).scan();
+            return lastSource;
+        } finally {
+            discoveryExecutor.shutdownNow();
+            prefetchExecutor.shutdownNow();
+            parseExecutor.shutdownNow();
+            ScanFixture.delete(root);
+        }
+    }
+
+    private static List<ModuleScanner> scan(int threads, long window) throws IOException {
+        ModuleScheduler scheduler = new ModuleScheduler(threads);
+        scheduler.setPrefetchWindow(window);
+        List<ModuleScanner> scanners = ScanFixture.scan(scheduler);
+        assertEquals(window > 0, scheduler.getMetrics().getPrefetchedFiles() > 0);
+        return scanners;
+    }
+
+    /** Wait until reads submitted to the single thread executor are done */
+    private static void awaitReads(ExecutorService executor) throws Exception {
+        executor.submit(new Callable<Void>() {
+            public Void call() {
+                return null;
+            }
+        }).get();
+    }
+
+    private static String read(InputStream in) throws IOException {
+        try {
+            ByteArrayOutputStream out = new ByteArrayOutputStream();
+            byte[] buffer = new byte[64];
+            for (int n; (n = in.read(buffer)) >= 0; ) {
+                out.write(buffer, 0, n);
+            }
+            return out.toString("UTF-8");
+        } finally {
+            in.close();
+        }
+    }
+}
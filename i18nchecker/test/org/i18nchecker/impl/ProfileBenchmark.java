@@ -0,0 +1,65 @@
+/**
+*   Copyright 2010-2011 Petr Hamernik
+*
+*   Licensed under the Apache License, Version 2.0 (the "License");
+*   you may not use this file except in compliance with the License.
+*   You may obtain a copy of the License at
+*
+*       http://www.apache.org/licenses/LICENSE-2.0
+*
+*   Unless required by applicable law or agreed to in writing, software
+*   distributed under the License is distributed on an "AS IS" BASIS,
+*   WITHOUT WARRANTIES OR CONDITIONS OF ANY KIND, either express or implied.
+*   See the License for the specific language governing permissions and
+*   limitations under the License.
+*/
+package org.i18nchecker.impl;
+
+import java.io.File;
+import java.util.Collections;
+import java.util.List;
+import java.util.concurrent.Callable;
+
+/**
+ * Scan with and without recording of the {@link ScanProfile}.
+ *
+ * @author agent
+ */
+public final class ProfileBenchmark {
+
+    private ProfileBenchmark() {
+    }
+
+    public static void main(String[] args) throws Exception {
+        final File root = ScanFixture.createTempDir("i18nbench");
+        try {
+            final List<String> topDirs = Collections.singletonList(ScanFixture.createRepository(root, 20, 20, 10, 10));
+            for (int i = 0; i < 2; i++) {
+                BenchmarkHarness.measure("scan", 3, 10, new Callable<Object>() {
+                    public Object call() throws Exception {
+                        return scan(root, topDirs, null);
+                    }
+                });
+                BenchmarkHarness.measure("scan with profile", 3, 10, new Callable<Object>() {
+                    public Object call() throws Exception {
+                        ScanProfile profile = new ScanProfile();
+                        List<ModuleScanner> scanners = scan(root, topDirs, profile);
+                        return profile.format(scanners, 10);
+                    }
+                });
+            }
+        } finally {
+            ScanFixture.delete(root);
+        }
+    }
+
+    private static List<ModuleScanner> scan(File root, List<String> topDirs, ScanProfile profile) throws Exception {
+        ModuleScheduler scheduler = new ModuleScheduler(4);
+        scheduler.setProfile(profile);
+        try {
+            return scheduler.scan(root, topDirs, null, new CatalogEntityResolver(false));
+        } finally {
+            scheduler.shutdown();
+        }
+    }
+}
@@ -0,0 +1,193 @@
+/**
+*   Copyright 2010-2011 Petr Hamernik
+*
+*   Licensed under the Apache License, Version 2.0 (the "License");
+*   you may not use this file except in compliance with the License.
+*   You may obtain a copy of the License at
+*
+*       http://www.apache.org/licenses/LICENSE-2.0
+*
+*   Unless required by applicable law or agreed to in writing, software
+*   distributed under the License is distributed on an "AS IS" BASIS,
+*   WITHOUT WARRANTIES OR CONDITIONS OF ANY KIND, either express or implied.
+*   See the License for the specific language governing permissions and
+*   limitations under the License.
+*/
+package org.i18nchecker.impl;
+
+import java.io.File;
+import java.io.IOException;
+import java.nio.file.Files;
+import java.util.ArrayList;
+import java.util.Arrays;
+import java.util.Collections;
+import java.util.List;
+import java.util.Map;
+import org.junit.Test;
+import static org.junit.Assert.*;
+
+/**
+ *
+ * @author agent
+ */
+public class RepositorySnapshotTest {
+
+    @Test
+    public void testSnapshotEqualsScan() throws IOException {
+        File dir = ScanFixture.createTempDir("i18nsnapshot");
+        try {
+            File file = new File(dir, "snapshot.bin");
+            List<ModuleScanner> scanners = scan(ScanFixture.REPO_ROOT, ScanFixture.TOP_DIRS, file);
+            RepositorySnapshot snapshot = RepositorySnapshot.open(file);
+            assertTrue(snapshot.isFresh(ScanFixture.REPO_ROOT, ScanFixture.TOP_DIRS, null, false));
+            assertTrue(snapshot.isFresh(ScanFixture.REPO_ROOT, ScanFixture.TOP_DIRS, "", false));
+
+            List<RepositorySnapshot.Module> modules = snapshot.getModules();
+            ScanFixture.assertSameResults(ScanFixture.REPO_ROOT, scanners, modules,
+                    snapshot.createBaseline(ScanFixture.REPO_ROOT));
+            for (int i = 0; i < scanners.size(); i++) {
+                for (String language : Arrays.asList("ja", "cs")) {
+                    List<String> scanned = new ArrayList<String>();
+                    scanners.get(i).bundle2csv(language, scanned, "module" + i);
+                    List<String> read = new ArrayList<String>();
+                    modules.get(i).bundle2csv(language, read, "module" + i);
+                    assertEquals(scanned, read);
+                }
+            }
+        } finally {
+            ScanFixture.delete(dir);
+        }
+    }
+
+    @Test
+    public void testOutOfDate() throws IOException {
+        File root = ScanFixture.createTempDir("i18nsnapshot");
+        try {
+            List<String> topDirs = Collections.singletonList(ScanFixture.createRepository(root, 2, 2, 2, 2));
+            File pack = new File(root, "modules/module1/src/org/bench/m1/p0");
+            ScanFixture.setLastModified(root, System.currentTimeMillis() - 60000);
+            File file = new File(root, "snapshot.bin");
+            scan(root, topDirs, file);
+            RepositorySnapshot snapshot = RepositorySnapshot.open(file);
+            assertTrue(snapshot.isFresh(root, topDirs, null, false));
+            assertFalse("Other options", snapshot.isFresh(root, topDirs, null, true));
+            assertFalse("Other options", snapshot.isFresh(root, topDirs, "module1", false));
+            assertFalse("Other directories", snapshot.isFresh(root, Arrays.asList("modules", "libs"), null, false));
+
+            File source = new File(pack, "Source0.java");
+            long modified = source.lastModified();
+            assertTrue(source.setLastModified(modified - 10000));
+            assertFalse("Changed file", snapshot.isFresh(root, topDirs, null, false));
+            assertTrue(source.setLastModified(modified));
+            assertTrue(snapshot.isFresh(root, topDirs, null, false));
+
+            ScanFixture.write(new File(pack, "Source9.java"), "class Source9 {}\n");
+            assertFalse("New file", snapshot.isFresh(root, topDirs, null, false));
+        } finally {
+            ScanFixture.delete(root);
+        }
+    }
+
+    @Test
+    public void testNewModuleInIgnoredCandidate() throws IOException {
+        File root = ScanFixture.createTempDir("i18nsnapshot");
+        try {
+            List<String> topDirs = Collections.singletonList(ScanFixture.createRepository(root, 2, 1, 1, 1));
+            File ignored = new File(root, "modules/docs");
+            assertTrue(ignored.mkdir());
+            ScanFixture.write(new File(ignored, "README"), "No sources\n");
+            ScanFixture.setLastModified(root, System.currentTimeMillis() - 60000);
+            File file = new File(root, "snapshot.bin");
+            assertEquals(2, scan(root, topDirs, file).size());
+            RepositorySnapshot snapshot = RepositorySnapshot.open(file);
+            assertTrue(snapshot.isFresh(root, topDirs, null, false));
+            long topModified = new File(root, "modules").lastModified();
+
+            File source = new File(ignored, "src/p/A.java");
+            assertTrue(source.getParentFile().mkdirs());
+            ScanFixture.write(source, "package p;\nclass A {\n    String s = \"Unlocalized\";\n}\n");
+            // the top level directory did not change, the candidate is a module now
+            assertEquals(topModified, new File(root, "modules").lastModified());
+            assertFalse("New module", snapshot.isFresh(root, topDirs, null, false));
+            List<ModuleScanner> scanners = scan(root, topDirs, null);
+            assertEquals(3, scanners.size());
+            assertEquals(1, scanners.get(0).getProblemsCount());
+
+            // a manifest decides how the candidate is scanned, not only whether
+            ScanFixture.setLastModified(root, System.currentTimeMillis() - 60000);
+            scan(root, topDirs, file);
+            snapshot = RepositorySnapshot.open(file);
+            assertTrue(snapshot.isFresh(root, topDirs, null, false));
+            long candidateModified = ignored.lastModified();
+            File manifest = new File(ignored, ModuleDescriptor.MANIFEST_FILE);
+            ScanFixture.write(manifest, "Manifest-Version: 1.0\n");
+            assertTrue(manifest.setLastModified(candidateModified));
+            assertTrue(ignored.setLastModified(candidateModified));
+            assertFalse("New manifest", snapshot.isFresh(root, topDirs, null, false));
+        } finally {
+            ScanFixture.delete(root);
+        }
+    }
+
+    @Test
+    public void testRecentlyModifiedFile() throws IOException {
+        File root = ScanFixture.createTempDir("i18nsnapshot");
+        try {
+            List<String> topDirs = Collections.singletonList(ScanFixture.createRepository(root, 1, 1, 1, 1));
+            ScanFixture.setLastModified(root, System.currentTimeMillis() - 60000);
+            File source = new File(root, "modules/module0/src/org/bench/m0/p0/Source0.java");
+            String content = new String(Files.readAllBytes(source.toPath()), "UTF-8");
+            ScanFixture.write(source, content.replace("id0", "ID0"));
+            long modified = source.lastModified();
+            File file = new File(root, "snapshot.bin");
+            scan(root, topDirs, file);
+            RepositorySnapshot snapshot = RepositorySnapshot.open(file);
+            assertFalse("Modified just before the scan", snapshot.isFresh(root, topDirs, null, false));
+
+            // changed within the granularity of file times, size and time stay the same
+            ScanFixture.write(source, content);
+            assertTrue(source.setLastModified(modified));
+            assertFalse("Changed in the same tick", snapshot.isFresh(root, topDirs, null, false));
+
+            assertTrue(source.setLastModified(modified - FileStamps.GRANULARITY));
+            scan(root, topDirs, file);
+            assertTrue(RepositorySnapshot.open(file).isFresh(root, topDirs, null, false));
+        } finally {
+            ScanFixture.delete(root);
+        }
+    }
+
+    @Test
+    public void testImportFromSnapshot() throws IOException {
+        File root = ScanFixture.createTempDir("i18nsnapshot");
+        try {
+            List<String> topDirs = Collections.singletonList(ScanFixture.createRepository(root, 1, 1, 1, 1));
+            File file = new File(root, "snapshot.bin");
+            scan(root, topDirs, file);
+            RepositorySnapshot.Module module = RepositorySnapshot.open(file).getModules().get(0);
+            Map<String, String> translated = Collections.singletonMap("KEY_0_0", "Text {0}");
+            module.csv2bundle("cs", Collections.singletonList("# header"),
+                    Collections.singletonMap("/org/bench/m0/p0", translated));
+            File bundle = new File(root, "modules/module0/src/org/bench/m0/p0/Bundle_cs.properties");
+            assertTrue(bundle.isFile());
+
+            List<String> exported = new ArrayList<String>();
+            scan(root, topDirs, null).get(0).bundle2csv("cs", exported, "module0");
+            assertEquals(1, exported.size());
+            assertEquals("\"KEY_0_0\",\"Text {0} of KEY_0_0\",\"Text {0}\",\"module0\",\"/org/bench/m0/p0\"", exported.get(0));
+        } finally {
+            ScanFixture.delete(root);
+        }
+    }
+
+    /** Scan the modules and write their snapshot if the file is not null */
+    private static List<ModuleScanner> scan(File repoRoot, List<String> topDirs, File snapshot) throws IOException {
+        ModuleScheduler scheduler = new ModuleScheduler(1);
+        scheduler.setRecordStamps(true);
+        List<ModuleScanner> scanners = ScanFixture.scan(scheduler, repoRoot, topDirs);
+        if (snapshot != null) {
+            RepositorySnapshot.write(snapshot, repoRoot, topDirs, null, false, scheduler, scanners);
+        }
+        return scanners;
+    }
+}
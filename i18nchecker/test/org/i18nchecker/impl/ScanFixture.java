@@ -0,0 +1,168 @@
+/**
+*   Copyright 2010-2011 Petr Hamernik
+*
+*   Licensed under the Apache License, Version 2.0 (the "License");
+*   you may not use this file except in compliance with the License.
+*   You may obtain a copy of the License at
+*
+*       http://www.apache.org/licenses/LICENSE-2.0
+*
+*   Unless required by applicable law or agreed to in writing, software
+*   distributed under the License is distributed on an "AS IS" BASIS,
+*   WITHOUT WARRANTIES OR CONDITIONS OF ANY KIND, either express or implied.
+*   See the License for the specific language governing permissions and
+*   limitations under the License.
+*/
+package org.i18nchecker.impl;
+
+import java.io.File;
+import java.io.FileOutputStream;
+import java.io.IOException;
+import java.io.OutputStreamWriter;
+import java.io.Writer;
+import java.util.Arrays;
+import java.util.Collections;
+import java.util.List;
+import static org.junit.Assert.*;
+
+/**
+ * Repositories and scans shared by tests and benchmarks: the playground of this project
+ * and synthetic repositories in temporary directories.
+ *
+ * @author agent
+ */
+final class ScanFixture {
+
+    /** Top level directories of the playground, relative to {@link #REPO_ROOT} */
+    static final List<String> TOP_DIRS = Arrays.asList("i18nchecker/playground", "i18nchecker/playground/PaintApp");
+
+    /** Root of the repository with the playground, tests run in the project directory */
+    static final File REPO_ROOT = new File(System.getProperty("user.dir")).getAbsoluteFile().getParentFile();
+
+    private ScanFixture() {
+    }
+
+    /** Scan the playground, the scheduler is shut down afterwards */
+    static List<ModuleScanner> scan(ModuleScheduler scheduler) throws IOException {
+        return scan(scheduler, REPO_ROOT, TOP_DIRS);
+    }
+
+    /** Scan the modules, the scheduler is shut down afterwards */
+    static List<ModuleScanner> scan(ModuleScheduler scheduler, File repoRoot, List<String> topDirs) throws IOException {
+        try {
+            return scheduler.scan(repoRoot, topDirs, null, new CatalogEntityResolver(false));
+        } finally {
+            scheduler.shutdown();
+        }
+    }
+
+    /** Check that scans found the same modules with the same findings */
+    static void assertSameResults(File repoRoot, List<ModuleScanner> expected, List<ModuleScanner> actual)
+            throws IOException {
+        assertSameResults(repoRoot, expected, actual, Baseline.create(repoRoot, actual));
+    }
+
+    /**
+     * Check that results of modules, e.g. read from a file, are the same as results of the scan.
+     *
+     * @param findings all findings of the actual modules
+     */
+    static void assertSameResults(File repoRoot, List<ModuleScanner> expected, List<? extends ModuleResults> actual,
+            Baseline findings) throws IOException {
+        assertEquals(expected.size(), actual.size());
+        for (int i = 0; i < expected.size(); i++) {
+            assertEquals(expected.get(i).getRoot(), actual.get(i).getRoot());
+            assertEquals(expected.get(i).getRoot().getPath(), expected.get(i).getProblemsCount(), actual.get(i).getProblemsCount());
+        }
+        Baseline full = Baseline.create(repoRoot, expected);
+        assertEquals(full.size(), findings.size());
+        assertEquals(Collections.<String>emptyList(), findings.findNew(full));
+    }
+
+    /**
+     * Create a repository with plain source modules "modules/moduleN/src". Every package contains
+     * Java sources using keys of its Bundle.properties and a Japanese translation of the bundle.
+     *
+     * @param root empty directory
+     * @param modules number of modules
+     * @param packages number of packages in each module
+     * @param filesPerPackage number of Java sources in each package
+     * @param keysPerFile number of bundle keys used by each source
+     * @return name of the top level directory with modules
+     */
+    static String createRepository(File root, int modules, int packages, int filesPerPackage, int keysPerFile)
+            throws IOException {
+        for (int m = 0; m < modules; m++) {
+            for (int p = 0; p < packages; p++) {
+                File dir = new File(root, "modules/module" + m + "/src/org/bench/m" + m + "/p" + p);
+                if (!dir.mkdirs()) {
+                    throw new IOException("Cannot create " + dir);
+                }
+                StringBuilder bundle = new StringBuilder();
+                StringBuilder translation = new StringBuilder();
+                for (int f = 0; f < filesPerPackage; f++) {
+                    StringBuilder java = new StringBuilder();
+                    java.append("package org.bench.m").append(m).append(".p").append(p).append(";\n\n");
+                    java.append("class Source").append(f).append(" {\n");
+                    for (int k = 0; k < keysPerFile; k++) {
+                        String key = "KEY_" + f + "_" + k;
+                        java.append("    String s").append(k).append(" = NbBundle.getMessage(Source")
+                                .append(f).append(".class, \"").append(key).append("\");\n");
+                        java.append("    String t").append(k).append(" = \"id").append(k).append("\"; // NOI18N\n");
+                        bundle.append(key).append("=Text {0} of ").append(key).append('\n');
+                        translation.append(key).append("=\\u30c6\\u30ad\\u30b9\\u30c8 {0}\n");
+                    }
+                    java.append("}\n");
+                    write(new File(dir, "Source" + f + ".java"), java);
+                }
+                write(new File(dir, "Bundle.properties"), bundle);
+                write(new File(dir, "Bundle_ja.properties"), translation);
+            }
+        }
+        return "modules";
+    }
+
+    /**
+     * Set the time of the file or directory and all its content, e.g. to make a new repository old
+     * enough for {@link FileStamps}.
+     */
+    static void setLastModified(File file, long time) throws IOException {
+        File[] children = file.listFiles();
+        if (children != null) {
+            for (File child : children) {
+                setLastModified(child, time);
+            }
+        }
+        if (!file.setLastModified(time)) {
+            throw new IOException("Cannot set time of " + file);
+        }
+    }
+
+    /** Delete the directory with all its content */
+    static void delete(File file) {
+        File[] children = file.listFiles();
+        if (children != null) {
+            for (File child : children) {
+                delete(child);
+            }
+        }
+        file.delete();
+    }
+
+    static File createTempDir(String prefix) throws IOException {
+        File dir = File.createTempFile(prefix, "");
+        if (!dir.delete() || !dir.mkdir()) {
+            throw new IOException("Cannot create " + dir);
+        }
+        return dir;
+    }
+
+    static void write(File file, CharSequence content) throws IOException {
+        Writer w = new OutputStreamWriter(new FileOutputStream(file), "UTF-8");
+        try {
+            w.append(content);
+        } finally {
+            w.close();
+        }
+    }
+}
@@ -0,0 +1,112 @@
+/**
+*   Copyright 2010-2011 Petr Hamernik
+*
+*   Licensed under the Apache License, Version 2.0 (the "License");
+*   you may not use this file except in compliance with the License.
+*   You may obtain a copy of the License at
+*
+*       http://www.apache.org/licenses/LICENSE-2.0
+*
+*   Unless required by applicable law or agreed to in writing, software
+*   distributed under the License is distributed on an "AS IS" BASIS,
+*   WITHOUT WARRANTIES OR CONDITIONS OF ANY KIND, either express or implied.
+*   See the License for the specific language governing permissions and
+*   limitations under the License.
+*/
+package org.i18nchecker.impl;
+
+import java.io.File;
+import java.io.IOException;
+import java.nio.charset.Charset;
+import java.nio.file.Files;
+import java.util.List;
+import java.util.Map;
+import org.junit.Test;
+import static org.junit.Assert.*;
+
+/**
+ *
+ * @author agent
+ */
+public class ScanProfileTest {
+
+    @Test
+    public void testProfileOfPlaygroundScan() throws IOException {
+        ScanProfile profile = new ScanProfile();
+        ModuleScheduler scheduler = new ModuleScheduler(2);
+        scheduler.setProfile(profile);
+        List<ModuleScanner> scanners = ScanFixture.scan(scheduler);
+        long parsed = 0;
+        for (FileType type : FileType.values()) {
+            parsed += scheduler.getMetrics().getParsedFiles(type);
+        }
+        assertTrue(parsed > 0);
+        assertEquals(parsed, profile.getRecordedFiles());
+
+        List<ScanProfile.FileRecord> slowest = profile.getSlowestFiles(3);
+        assertEquals(3, slowest.size());
+        for (int i = 1; i < slowest.size(); i++) {
+            assertTrue(slowest.get(i - 1).nanos >= slowest.get(i).nanos);
+        }
+        boolean javaFound = false;
+        for (ScanProfile.FileRecord record : profile.getSlowestFiles(profile.getRecordedFiles())) {
+            assertTrue(record.fileName, new File(record.fileName).isFile());
+            assertTrue(record.fileName, record.chars > 0);
+            if (record.type == FileType.JAVA) {
+                javaFound = true;
+            }
+        }
+        assertTrue(javaFound);
+
+        List<ScanProfile.FileRecord> bundles = profile.getLargestBundles(Integer.MAX_VALUE);
+        assertFalse(bundles.isEmpty());
+        for (int i = 0; i < bundles.size(); i++) {
+            assertNotSame(FileType.JAVA, bundles.get(i).type);
+            assertTrue(bundles.get(i).fileName.endsWith(".properties"));
+            if (i > 0) {
+                assertTrue(bundles.get(i - 1).count >= bundles.get(i).count);
+            }
+        }
+
+        int findings = 0;
+        for (ModuleScanner scanner : scanners) {
+            for (List<Finding> ofType : scanner.getFindings().values()) {
+                findings += ofType.size();
+            }
+        }
+        assertTrue(findings > 0);
+        List<Map.Entry<String, Integer>> packages = ScanProfile.getPackagesWithMostFindings(scanners, Integer.MAX_VALUE);
+        int reported = 0;
+        for (int i = 0; i < packages.size(); i++) {
+            reported += packages.get(i).getValue();
+            if (i > 0) {
+                assertTrue(packages.get(i - 1).getValue() >= packages.get(i).getValue());
+            }
+        }
+        assertEquals(findings, reported);
+        assertEquals(1, ScanProfile.getPackagesWithMostFindings(scanners, 1).size());
+
+        File json = File.createTempFile("i18nprofile", ".json");
+        try {
+            profile.writeJson(json, scanners, 2);
+            String content = new String(Files.readAllBytes(json.toPath()), Charset.forName("UTF-8"));
+            assertTrue(content, content.startsWith("{\n  \"recordedFiles\": " + parsed + ",\n  \"slowestFiles\": [\n    {\"file\": "));
+            assertTrue(content, content.contains("\"largestBundles\": [\n    {\"file\": "));
+            assertTrue(content, content.contains("\"packagesWithMostFindings\": [\n    {\"package\": "));
+            assertTrue(content, content.endsWith("\n  ]\n}\n"));
+        } finally {
+            json.delete();
+        }
+    }
+
+    @Test
+    public void testJsonStrings() {
+        StringBuilder sb = new StringBuilder();
+        ScanProfile.appendJsonString(sb, "C:\\src\\\"a\"\tb");
+        assertEquals("\"C:\\\\src\\\\\\\"a\\\"\\u0009b\"", sb.toString());
+
+        sb.setLength(0);
+        ScanProfile.appendJsonString(sb, "");
+        assertEquals("\"\"", sb.toString());
+    }
+}
@@ -0,0 +1,51 @@
+/**
+*   Copyright 2010-2011 Petr Hamernik
+*
+*   Licensed under the Apache License, Version 2.0 (the "License");
+*   you may not use this file except in compliance with the License.
+*   You may obtain a copy of the License at
+*
+*       http://www.apache.org/licenses/LICENSE-2.0
+*
+*   Unless required by applicable law or agreed to in writing, software
+*   distributed under the License is distributed on an "AS IS" BASIS,
+*   WITHOUT WARRANTIES OR CONDITIONS OF ANY KIND, either express or implied.
+*   See the License for the specific language governing permissions and
+*   limitations under the License.
+*/
+package org.i18nchecker.impl;
+
+import java.util.List;
+import org.junit.Test;
+import static org.junit.Assert.*;
+
+/**
+ *
+ * @author agent
+ */
+public class ScanResultsTest {
+
+    @Test
+    public void testFindingsKeepOrderAcrossThreads() throws InterruptedException {
+        final ScanResults results = new ScanResults("module");
+        results.add(ScanResults.Type.MISSING_KEY_IN_BUNDLE, "A.java", 1, "first");
+        Thread other = new Thread() {
+            @Override
+            public void run() {
+                results.add(ScanResults.Type.MISSING_KEY_IN_BUNDLE, "B.java", 2, "second");
+            }
+        };
+        other.start();
+        other.join();
+        results.add(ScanResults.Type.MAYBE_UNUSED_KEY_IN_BUNDLE, "Bundle.properties", 3, "KEY");
+        results.add(ScanResults.Type.MISSING_KEY_IN_BUNDLE, "C.java", 4, "third");
+
+        assertEquals(4, results.getProblemsCount());
+        List<Finding> missing = results.getFindings().get(ScanResults.Type.MISSING_KEY_IN_BUNDLE);
+        assertEquals(3, missing.size());
+        assertEquals("first", missing.get(0).getMessage());
+        assertEquals("second", missing.get(1).getMessage());
+        assertEquals("third", missing.get(2).getMessage());
+        assertEquals(1, results.getFindings().get(ScanResults.Type.MAYBE_UNUSED_KEY_IN_BUNDLE).size());
+    }
+}
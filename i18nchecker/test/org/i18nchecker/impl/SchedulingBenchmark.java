@@ -0,0 +1,141 @@
+/**
+*   Copyright 2010-2011 Petr Hamernik
+*
+*   Licensed under the Apache License, Version 2.0 (the "License");
+*   you may not use this file except in compliance with the License.
+*   You may obtain a copy of the License at
+*
+*       http://www.apache.org/licenses/LICENSE-2.0
+*
+*   Unless required by applicable law or agreed to in writing, software
+*   distributed under the License is distributed on an "AS IS" BASIS,
+*   WITHOUT WARRANTIES OR CONDITIONS OF ANY KIND, either express or implied.
+*   See the License for the specific language governing permissions and
+*   limitations under the License.
+*/
+package org.i18nchecker.impl;
+
+import java.util.Arrays;
+import java.util.Comparator;
+import java.util.Random;
+
+/**
+ * Simulation of parallel module scanning with different orders of modules. Generated repositories
+ * have a few big modules which are 40% of all work. Modules are discovered much faster than scanned,
+ * so each free thread takes the first waiting module in the given order.
+ * Usage: SchedulingBenchmark [modules] [threads]
+ *
+ * @author agent
+ */
+public final class SchedulingBenchmark {
+
+    private static final int REPOSITORIES = 100;
+    private static final int BIG_MODULES = 5;
+    private static final double BIG_MODULES_SHARE = 0.4;
+
+    private SchedulingBenchmark() {
+    }
+
+    public static void main(String[] args) {
+        int modules = args.length > 0 ? Integer.parseInt(args[0]) : 300;
+        int threads = args.length > 1 ? Integer.parseInt(args[1]) : 8;
+        Random random = new Random(42);
+        double discovery = 0;
+        double size = 0;
+        double history = 0;
+        for (int r = 0; r < REPOSITORIES; r++) {
+            double[] costs = createCosts(random, modules);
+            double bound = lowerBound(costs, threads);
+            // modules are discovered in order of names, not related to their cost
+            discovery += makespan(costs, new double[costs.length], threads) / bound;
+            // size of files is a rough estimate of the cost
+            size += makespan(costs, noisy(random, costs, 0.5), threads) / bound;
+            // durations of previous runs differ from this run a little
+            history += makespan(costs, noisy(random, costs, 0.1), threads) / bound;
+        }
+        System.out.println(modules + " modules, " + threads + " threads, "
+                + BIG_MODULES + " modules are " + Math.round(BIG_MODULES_SHARE * 100) + "% of work");
+        System.out.println("Duration of the run relative to the ideal one (total work / threads or the biggest module):");
+        System.out.println(String.format("    discovery order     %.2f", discovery / REPOSITORIES));
+        System.out.println(String.format("    by size estimate    %.2f", size / REPOSITORIES));
+        System.out.println(String.format("    by history          %.2f", history / REPOSITORIES));
+    }
+
+    /** Random costs of modules in order of discovery, total cost is 1 */
+    private static double[] createCosts(Random random, int modules) {
+        double[] costs = new double[modules];
+        double big = 0;
+        double small = 0;
+        for (int i = 0; i < modules; i++) {
+            // log-normal sizes of small modules
+            costs[i] = Math.exp(random.nextGaussian());
+            if (i < BIG_MODULES) {
+                big += costs[i];
+            } else {
+                small += costs[i];
+            }
+        }
+        for (int i = 0; i < modules; i++) {
+            costs[i] *= i < BIG_MODULES ? BIG_MODULES_SHARE / big : (1 - BIG_MODULES_SHARE) / small;
+        }
+        // big modules are anywhere in the order of discovery
+        for (int i = modules - 1; i > 0; i--) {
+            int j = random.nextInt(i + 1);
+            double tmp = costs[i];
+            costs[i] = costs[j];
+            costs[j] = tmp;
+        }
+        return costs;
+    }
+
+    /** Costs multiplied by log-normal noise */
+    private static double[] noisy(Random random, double[] costs, double sigma) {
+        double[] estimates = new double[costs.length];
+        for (int i = 0; i < costs.length; i++) {
+            estimates[i] = costs[i] * Math.exp(random.nextGaussian() * sigma);
+        }
+        return estimates;
+    }
+
+    private static double lowerBound(double[] costs, int threads) {
+        double total = 0;
+        double max = 0;
+        for (double cost : costs) {
+            total += cost;
+            max = Math.max(max, cost);
+        }
+        return Math.max(total / threads, max);
+    }
+
+    /**
+     * Duration of the run if modules are taken by free threads in order of estimates,
+     * like ModuleScheduler's priority queue does (higher estimate first, then order of discovery).
+     */
+    private static double makespan(double[] costs, final double[] estimates, int threads) {
+        Integer[] order = new Integer[costs.length];
+        for (int i = 0; i < costs.length; i++) {
+            order[i] = i;
+        }
+        Arrays.sort(order, new Comparator<Integer>() {
+            public int compare(Integer a, Integer b) {
+                int c = Double.compare(estimates[b], estimates[a]);
+                return c != 0 ? c : a.compareTo(b);
+            }
+        });
+        double[] free = new double[threads];
+        for (int module : order) {
+            int first = 0;
+            for (int t = 1; t < threads; t++) {
+                if (free[t] < free[first]) {
+                    first = t;
+                }
+            }
+            free[first] += costs[module];
+        }
+        double end = 0;
+        for (double time : free) {
+            end = Math.max(end, time);
+        }
+        return end;
+    }
+}
@@ -0,0 +1,88 @@
+/**
+*   Copyright 2010-2011 Petr Hamernik
+*
+*   Licensed under the Apache License, Version 2.0 (the "License");
+*   you may not use this file except in compliance with the License.
+*   You may obtain a copy of the License at
+*
+*       http://www.apache.org/licenses/LICENSE-2.0
+*
+*   Unless required by applicable law or agreed to in writing, software
+*   distributed under the License is distributed on an "AS IS" BASIS,
+*   WITHOUT WARRANTIES OR CONDITIONS OF ANY KIND, either express or implied.
+*   See the License for the specific language governing permissions and
+*   limitations under the License.
+*/
+package org.i18nchecker.impl;
+
+import java.io.File;
+import java.io.IOException;
+import java.util.ArrayList;
+import java.util.Collections;
+import java.util.List;
+import org.junit.Test;
+import static org.junit.Assert.*;
+
+/**
+ *
+ * @author agent
+ */
+public class ShardResultsTest {
+
+    @Test
+    public void testAssignBySize() {
+        // one big module is balanced by all the small ones
+        assertArrayEquals(new int[] { 1, 1, 0, 1, 1 }, ShardPlan.assign(new long[] { 1, 1, 4, 1, 1 }, 2));
+        // ties go to the lower shard in order of discovery
+        assertArrayEquals(new int[] { 0, 1, 2, 0 }, ShardPlan.assign(new long[] { 5, 5, 5, 5 }, 3));
+    }
+
+    @Test
+    public void testMergedResultsEqualFullScan() throws IOException {
+        List<ModuleScanner> all = scan(0, 1, null);
+        File dir = ScanFixture.createTempDir("i18nshards");
+        try {
+            for (int count = 2; count <= 3; count++) {
+                List<File> files = new ArrayList<File>();
+                for (int index = count - 1; index >= 0; index--) {
+                    File file = new File(dir, "shard" + index + ".bin");
+                    scan(index, count, file);
+                    files.add(file);
+                }
+                ShardResults merged = ShardResults.read(ScanFixture.REPO_ROOT, files);
+                ScanFixture.assertSameResults(ScanFixture.REPO_ROOT, all, merged.getModules(),
+                        merged.createBaseline(ScanFixture.REPO_ROOT));
+            }
+        } finally {
+            ScanFixture.delete(dir);
+        }
+    }
+
+    @Test
+    public void testMissingShard() throws IOException {
+        File dir = ScanFixture.createTempDir("i18nshards");
+        try {
+            File file = new File(dir, "shard0.bin");
+            scan(0, 2, file);
+            try {
+                ShardResults.read(ScanFixture.REPO_ROOT, Collections.singletonList(file));
+                fail("Shard 1 is missing");
+            } catch (IOException ex) {
+                assertEquals("Missing results of shard 1 of 2", ex.getMessage());
+            }
+        } finally {
+            ScanFixture.delete(dir);
+        }
+    }
+
+    /** Scan the playground shard and store its results if the file is not null */
+    private static List<ModuleScanner> scan(int index, int count, File result) throws IOException {
+        ModuleScheduler scheduler = new ModuleScheduler(1);
+        scheduler.setShard(index, count);
+        List<ModuleScanner> scanners = ScanFixture.scan(scheduler);
+        if (result != null) {
+            ShardResults.write(result, ScanFixture.REPO_ROOT, scheduler.getShardPlan(), scanners);
+        }
+        return scanners;
+    }
+}
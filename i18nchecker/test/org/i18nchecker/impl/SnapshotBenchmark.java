@@ -0,0 +1,98 @@
+/**
+*   Copyright 2010-2011 Petr Hamernik
+*
+*   Licensed under the Apache License, Version 2.0 (the "License");
+*   you may not use this file except in compliance with the License.
+*   You may obtain a copy of the License at
+*
+*       http://www.apache.org/licenses/LICENSE-2.0
+*
+*   Unless required by applicable law or agreed to in writing, software
+*   distributed under the License is distributed on an "AS IS" BASIS,
+*   WITHOUT WARRANTIES OR CONDITIONS OF ANY KIND, either express or implied.
+*   See the License for the specific language governing permissions and
+*   limitations under the License.
+*/
+package org.i18nchecker.impl;
+
+import java.io.File;
+import java.util.ArrayList;
+import java.util.Collections;
+import java.util.List;
+import java.util.concurrent.Callable;
+
+/**
+ * Export of all bundles by a scan compared with export off a fresh snapshot,
+ * and heap retained by scanned modules compared with an open snapshot.
+ *
+ * @author agent
+ */
+public final class SnapshotBenchmark {
+
+    private SnapshotBenchmark() {
+    }
+
+    public static void main(String[] args) throws Exception {
+        final File root = ScanFixture.createTempDir("i18nbench");
+        try {
+            final List<String> topDirs = Collections.singletonList(ScanFixture.createRepository(root, 20, 20, 10, 10));
+            ScanFixture.setLastModified(root, System.currentTimeMillis() - 60000);
+            final File file = new File(root, "snapshot.bin");
+            ModuleScheduler scheduler = newScheduler();
+            List<ModuleScanner> scanned = scan(scheduler, root, topDirs);
+            RepositorySnapshot.write(file, root, topDirs, null, false, scheduler, scanned);
+            scanned = null;
+            System.out.println(String.format("Snapshot: %.1f MB", file.length() / 1048576.0));
+
+            BenchmarkHarness.measure("scan and export", 2, 5, new Callable<Object>() {
+                public Object call() throws Exception {
+                    List<String> lines = new ArrayList<String>();
+                    for (ModuleScanner scanner : scan(newScheduler(), root, topDirs)) {
+                        scanner.bundle2csv("ja", lines, scanner.getRoot().getName());
+                    }
+                    return lines;
+                }
+            });
+            BenchmarkHarness.measure("check snapshot and export", 2, 5, new Callable<Object>() {
+                public Object call() throws Exception {
+                    RepositorySnapshot snapshot = RepositorySnapshot.open(file);
+                    if (!snapshot.isFresh(root, topDirs, null, false)) {
+                        throw new IllegalStateException("Snapshot is out of date");
+                    }
+                    List<String> lines = new ArrayList<String>();
+                    for (RepositorySnapshot.Module module : snapshot.getModules()) {
+                        module.bundle2csv("ja", lines, module.getRoot().getName());
+                    }
+                    return lines;
+                }
+            });
+
+            long before = BenchmarkHarness.usedHeap();
+            scanned = scan(newScheduler(), root, topDirs);
+            long scanHeap = BenchmarkHarness.usedHeap() - before;
+            System.out.println(String.format("Heap of %d scanned modules: %.1f MB", scanned.size(), scanHeap / 1048576.0));
+            scanned = null;
+            before = BenchmarkHarness.usedHeap();
+            RepositorySnapshot snapshot = RepositorySnapshot.open(file);
+            long snapshotHeap = BenchmarkHarness.usedHeap() - before;
+            System.out.println(String.format("Heap of open snapshot of %d modules: %.3f MB",
+                    snapshot.getModules().size(), snapshotHeap / 1048576.0));
+        } finally {
+            ScanFixture.delete(root);
+        }
+    }
+
+    private static ModuleScheduler newScheduler() {
+        ModuleScheduler scheduler = new ModuleScheduler(4);
+        scheduler.setRecordStamps(true);
+        return scheduler;
+    }
+
+    private static List<ModuleScanner> scan(ModuleScheduler scheduler, File root, List<String> topDirs) throws Exception {
+        try {
+            return scheduler.scan(root, topDirs, null, new CatalogEntityResolver(false));
+        } finally {
+            scheduler.shutdown();
+        }
+    }
+}
@@ -0,0 +1,81 @@
+/**
+*   Copyright 2010-2011 Petr Hamernik
+*
+*   Licensed under the Apache License, Version 2.0 (the "License");
+*   you may not use this file except in compliance with the License.
+*   You may obtain a copy of the License at
+*
+*       http://www.apache.org/licenses/LICENSE-2.0
+*
+*   Unless required by applicable law or agreed to in writing, software
+*   distributed under the License is distributed on an "AS IS" BASIS,
+*   WITHOUT WARRANTIES OR CONDITIONS OF ANY KIND, either express or implied.
+*   See the License for the specific language governing permissions and
+*   limitations under the License.
+*/
+package org.i18nchecker.impl;
+
+import java.io.File;
+import java.io.IOException;
+import java.nio.file.Files;
+import java.util.Collections;
+import java.util.List;
+import org.junit.Test;
+import static org.junit.Assert.*;
+
+/**
+ *
+ * @author agent
+ */
+public class SourceTreeFilterTest {
+
+    private static final String BAD = "package p;\n\nclass Bad {\n    String s = \"Hello\";\n}\n";
+
+    @Test
+    public void testDefaultExcludes() {
+        for (String name : new String[] { ".svn", "CVS", ".git", ".hg", "Bad.java~", "._Bad.java", ".#Bad.java", "#Bad.java#" }) {
+            assertTrue(name, SourceTreeFilter.isExcluded(name));
+        }
+        for (String name : new String[] { "Bad.java", "svn", "Bundle.properties", "git" }) {
+            assertFalse(name, SourceTreeFilter.isExcluded(name));
+        }
+    }
+
+    @Test
+    public void testExcludedFilesAndLinksOutOfTreeAreNotScanned() throws IOException {
+        File root = ScanFixture.createTempDir("i18nfilter");
+        try {
+            List<String> topDirs = Collections.singletonList(ScanFixture.createRepository(root, 1, 1, 1, 1));
+            File pkg = new File(root, "modules/module0/src/org/bench/m0/p0");
+            assertEquals(0, problems(root, topDirs));
+
+            writeBad(new File(pkg, ".svn/Bad.java"));
+            writeBad(new File(pkg, "CVS/Bad.java"));
+            writeBad(new File(pkg, "._Bad.java"));
+            File outside = new File(root, "outside");
+            writeBad(new File(outside, "Bad.java"));
+            Files.createSymbolicLink(new File(pkg, "linked").toPath(), outside.toPath());
+            assertEquals(0, problems(root, topDirs));
+
+            // links inside of the tree are followed
+            writeBad(new File(root, "modules/module0/src/other/Bad.java"));
+            Files.createSymbolicLink(new File(pkg, "inside").toPath(), new File(root, "modules/module0/src/other").toPath());
+            assertEquals(2, problems(root, topDirs));
+        } finally {
+            ScanFixture.delete(root);
+        }
+    }
+
+    private static void writeBad(File file) throws IOException {
+        assertTrue(file.getParentFile().isDirectory() || file.getParentFile().mkdirs());
+        ScanFixture.write(file, BAD);
+    }
+
+    private static int problems(File root, List<String> topDirs) throws IOException {
+        int problems = 0;
+        for (ModuleScanner scanner : ScanFixture.scan(new ModuleScheduler(2), root, topDirs)) {
+            problems += scanner.getProblemsCount();
+        }
+        return problems;
+    }
+}
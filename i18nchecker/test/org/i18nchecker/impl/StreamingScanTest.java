@@ -0,0 +1,88 @@
+/**
+*   Copyright 2010-2011 Petr Hamernik
+*
+*   Licensed under the Apache License, Version 2.0 (the "License");
+*   you may not use this file except in compliance with the License.
+*   You may obtain a copy of the License at
+*
+*       http://www.apache.org/licenses/LICENSE-2.0
+*
+*   Unless required by applicable law or agreed to in writing, software
+*   distributed under the License is distributed on an "AS IS" BASIS,
+*   WITHOUT WARRANTIES OR CONDITIONS OF ANY KIND, either express or implied.
+*   See the License for the specific language governing permissions and
+*   limitations under the License.
+*/
+package org.i18nchecker.impl;
+
+import java.io.File;
+import java.io.IOException;
+import java.util.ArrayList;
+import java.util.Collections;
+import java.util.List;
+import org.junit.Test;
+import static org.junit.Assert.*;
+
+/**
+ *
+ * @author agent
+ */
+public class StreamingScanTest {
+
+    @Test
+    public void testResultsEqualFullScan() throws IOException {
+        List<ModuleScanner> all = ScanFixture.scan(new ModuleScheduler(2));
+        final List<File> consumed = new ArrayList<File>();
+        List<ModuleScanner> streamed = scanStreaming(ScanFixture.REPO_ROOT, ScanFixture.TOP_DIRS, new ModuleScheduler.ModuleConsumer() {
+            public void moduleScanned(ModuleScanner scanner) {
+                consumed.add(scanner.getRoot());
+            }
+        });
+        ScanFixture.assertSameResults(ScanFixture.REPO_ROOT, all, streamed);
+        assertEquals(all.size(), consumed.size());
+        for (int i = 0; i < all.size(); i++) {
+            assertEquals(all.get(i).getRoot(), consumed.get(i));
+        }
+    }
+
+    @Test
+    public void testModelsReleasedAfterConsumer() throws Exception {
+        File root = ScanFixture.createTempDir("i18nstreaming");
+        ModuleScheduler scheduler = new ModuleScheduler(2);
+        try {
+            String topDir = ScanFixture.createRepository(root, 6, 3, 4, 5);
+            final List<ModuleScanner> consumed = new ArrayList<ModuleScanner>();
+            List<ModuleScanner> scanners = scheduler.scanStreaming(root, Collections.singletonList(topDir), null,
+                    new CatalogEntityResolver(false), new ModuleScheduler.ModuleConsumer() {
+                        public void moduleScanned(ModuleScanner scanner) {
+                            assertEquals(3, scanner.getPackages().size());
+                            for (ModuleScanner previous : consumed) {
+                                assertTrue("Models of consumed modules are released", previous.getPackages().isEmpty());
+                            }
+                            consumed.add(scanner);
+                        }
+                    });
+            assertEquals(6, scanners.size());
+            assertEquals(scanners, consumed);
+            assertEquals("Only modules of the scanning threads are in memory", 2,
+                    scheduler.getMetrics().getPeakRetainedModules());
+            for (ModuleScanner scanner : scanners) {
+                assertTrue(scanner.getPackages().isEmpty());
+                assertEquals(0, scanner.getProblemsCount());
+            }
+        } finally {
+            scheduler.shutdown();
+            ScanFixture.delete(root);
+        }
+    }
+
+    private static List<ModuleScanner> scanStreaming(File repoRoot, List<String> topDirs,
+            ModuleScheduler.ModuleConsumer consumer) throws IOException {
+        ModuleScheduler scheduler = new ModuleScheduler(2);
+        try {
+            return scheduler.scanStreaming(repoRoot, topDirs, null, new CatalogEntityResolver(false), consumer);
+        } finally {
+            scheduler.shutdown();
+        }
+    }
+}
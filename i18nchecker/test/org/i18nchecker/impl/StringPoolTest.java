@@ -0,0 +1,111 @@
+/**
+*   Copyright 2010-2011 Petr Hamernik
+*
+*   Licensed under the Apache License, Version 2.0 (the "License");
+*   you may not use this file except in compliance with the License.
+*   You may obtain a copy of the License at
+*
+*       http://www.apache.org/licenses/LICENSE-2.0
+*
+*   Unless required by applicable law or agreed to in writing, software
+*   distributed under the License is distributed on an "AS IS" BASIS,
+*   WITHOUT WARRANTIES OR CONDITIONS OF ANY KIND, either express or implied.
+*   See the License for the specific language governing permissions and
+*   limitations under the License.
+*/
+package org.i18nchecker.impl;
+
+import java.util.ArrayList;
+import java.util.List;
+import java.util.concurrent.Callable;
+import java.util.concurrent.ExecutorService;
+import java.util.concurrent.Executors;
+import java.util.concurrent.Future;
+import org.junit.Test;
+import static org.junit.Assert.*;
+
+/**
+ *
+ * @author agent
+ */
+public class StringPoolTest {
+
+    @Test
+    public void testIdentity() {
+        StringPool pool = new StringPool();
+        String ok = new String("OK");
+        assertSame(ok, pool.intern(ok));
+        assertSame(ok, pool.intern(new String("OK")));
+        assertSame(ok, pool.intern("\"OK\"", 1, 3));
+        assertSame(ok, pool.intern("x OK x".toCharArray(), 2, 4));
+        assertEquals(1, pool.size());
+
+        String cancel = pool.intern("(Cancel)".toCharArray(), 1, 7);
+        assertEquals("Cancel", cancel);
+        assertSame(cancel, pool.intern("Cancel"));
+        assertSame("Empty range", pool.intern(""), pool.intern("abc", 1, 1));
+        assertEquals(3, pool.size());
+
+        pool.clear();
+        assertEquals(0, pool.size());
+        assertNotSame(ok, pool.intern(new String("OK")));
+    }
+
+    @Test
+    public void testCollisionsAndResize() {
+        StringPool pool = new StringPool();
+        // same String.hashCode()
+        assertEquals("Aa".hashCode(), "BB".hashCode());
+        String aa = pool.intern("Aa");
+        String bb = pool.intern("BB".toCharArray(), 0, 2);
+        assertEquals("BB", bb);
+        assertSame(aa, pool.intern(new String("Aa")));
+        assertSame(bb, pool.intern(new String("BB")));
+
+        List<String> pooled = new ArrayList<String>();
+        for (int i = 0; i < 10000; i++) {
+            pooled.add(pool.intern("KEY_" + i));
+        }
+        assertEquals(10002, pool.size());
+        for (int i = 0; i < pooled.size(); i++) {
+            String key = "KEY_" + i;
+            assertSame(key, pooled.get(i), pool.intern(new String(key)));
+            assertSame(key, pooled.get(i), pool.intern(key.toCharArray(), 0, key.length()));
+        }
+        assertSame(aa, pool.intern("Aa"));
+        assertSame(bb, pool.intern("BB"));
+    }
+
+    @Test
+    public void testConcurrentIntern() throws Exception {
+        final StringPool pool = new StringPool();
+        ExecutorService executor = Executors.newFixedThreadPool(4);
+        try {
+            List<Future<List<String>>> results = new ArrayList<Future<List<String>>>();
+            for (int t = 0; t < 4; t++) {
+                final boolean chars = t % 2 == 0;
+                results.add(executor.submit(new Callable<List<String>>() {
+                    public List<String> call() {
+                        List<String> pooled = new ArrayList<String>();
+                        for (int i = 0; i < 5000; i++) {
+                            String str = "text " + i;
+                            pooled.add(chars ? pool.intern(str.toCharArray(), 0, str.length()) : pool.intern(str));
+                        }
+                        return pooled;
+                    }
+                }));
+            }
+            List<String> first = results.get(0).get();
+            for (Future<List<String>> result : results) {
+                List<String> pooled = result.get();
+                for (int i = 0; i < first.size(); i++) {
+                    assertEquals("text " + i, pooled.get(i));
+                    assertSame(first.get(i), pooled.get(i));
+                }
+            }
+            assertEquals(5000, pool.size());
+        } finally {
+            executor.shutdownNow();
+        }
+    }
+}
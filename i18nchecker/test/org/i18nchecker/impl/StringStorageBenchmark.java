@@ -0,0 +1,77 @@
+/**
+*   Copyright 2010-2011 Petr Hamernik
+*
+*   Licensed under the Apache License, Version 2.0 (the "License");
+*   you may not use this file except in compliance with the License.
+*   You may obtain a copy of the License at
+*
+*       http://www.apache.org/licenses/LICENSE-2.0
+*
+*   Unless required by applicable law or agreed to in writing, software
+*   distributed under the License is distributed on an "AS IS" BASIS,
+*   WITHOUT WARRANTIES OR CONDITIONS OF ANY KIND, either express or implied.
+*   See the License for the specific language governing permissions and
+*   limitations under the License.
+*/
+package org.i18nchecker.impl;
+
+import java.io.File;
+import java.util.ArrayList;
+import java.util.List;
+
+/**
+ * Heap retained by parsed Java sources, per string literal.
+ *
+ * @author agent
+ */
+public final class StringStorageBenchmark {
+
+    private static final int FILES = 2000;
+    private static final int KEYS_PER_FILE = 50;
+    /** Every key is used by one literal and there is one NOI18N literal for every key */
+    private static final int LITERALS = FILES * KEYS_PER_FILE * 2;
+
+    private StringStorageBenchmark() {
+    }
+
+    public static void main(String[] args) throws Exception {
+        File root = ScanFixture.createTempDir("i18nbench");
+        try {
+            String topDir = ScanFixture.createRepository(root, 1, FILES / 10, 10, KEYS_PER_FILE);
+            List<File> sources = new ArrayList<File>();
+            collectSources(new File(root, topDir), sources);
+            ScanContext context =
+                    new ScanContext(null, FileSource.DEFAULT, ScanContext.DIRECT, 1, new ScanMetrics());
+
+            // load classes and warm up before measuring
+            for (File source : sources.subList(0, 100)) {
+                new JavaSourceModel(source.getPath()).parse(context);
+            }
+            long before = BenchmarkHarness.usedHeap();
+            List<JavaSourceModel> models = new ArrayList<JavaSourceModel>(sources.size());
+            for (File source : sources) {
+                JavaSourceModel model = new JavaSourceModel(source.getPath());
+                model.parse(context);
+                models.add(model);
+            }
+            long used = BenchmarkHarness.usedHeap() - before;
+            System.out.println(String.format("%d literals in %d files: %.1f MB, %.1f bytes per literal",
+                    LITERALS, models.size(), used / 1048576.0, (double) used / LITERALS));
+        } finally {
+            ScanFixture.delete(root);
+        }
+    }
+
+    private static void collectSources(File dir, List<File> sources) {
+        File[] children = dir.listFiles();
+        if (children != null) {
+            for (File child : children) {
+                if (child.getName().endsWith(".java")) {
+                    sources.add(child);
+                } else {
+                    collectSources(child, sources);
+                }
+            }
+        }
+    }
+}
@@ -0,0 +1,75 @@
+/**
+*   Copyright 2010-2011 Petr Hamernik
+*
+*   Licensed under the Apache License, Version 2.0 (the "License");
+*   you may not use this file except in compliance with the License.
+*   You may obtain a copy of the License at
+*
+*       http://www.apache.org/licenses/LICENSE-2.0
+*
+*   Unless required by applicable law or agreed to in writing, software
+*   distributed under the License is distributed on an "AS IS" BASIS,
+*   WITHOUT WARRANTIES OR CONDITIONS OF ANY KIND, either express or implied.
+*   See the License for the specific language governing permissions and
+*   limitations under the License.
+*/
+package org.i18nchecker.impl;
+
+import java.io.File;
+import java.io.IOException;
+import java.util.ArrayList;
+import java.util.Arrays;
+import java.util.List;
+import java.util.Map;
+import org.junit.Test;
+import static org.junit.Assert.*;
+
+/**
+ *
+ * @author agent
+ */
+public class TranslatedResourceBundleModelTest {
+
+    @Test
+    public void testVerifyIsRepeatable() throws IOException {
+        File root = ScanFixture.createTempDir("i18ntranslated");
+        try {
+            String topDir = ScanFixture.createRepository(root, 1, 1, 1, 2);
+            File dir = new File(root, "modules/module0/src/org/bench/m0/p0");
+            ScanFixture.write(new File(dir, "Bundle_ja.properties"),
+                    "KEY_0_0=\\u30c6\\u30ad\\u30b9\\u30c8 {0}\n"
+                    + "KEY_0_1=\\u30c6\\u30ad\\u30b9\\u30c8 {1}\n"
+                    + "EXTRA=\\u30c6\\u30ad\\u30b9\\u30c8\n");
+
+            ModuleScheduler scheduler = new ModuleScheduler(2);
+            scheduler.setCheckTranslations(true);
+            List<ModuleScanner> scanners = ScanFixture.scan(scheduler, root, Arrays.asList(topDir));
+            assertEquals(1, scanners.size());
+            List<String> expected = Arrays.asList("EXTRA", "KEY_0_1: {1} instead of {0}");
+            assertEquals(expected, translationProblems(scanners.get(0).getFindings()));
+
+            PackageScanner pkg = scanners.get(0).getPackages().iterator().next();
+            TranslatedResourceBundleModel translated = pkg.getTranslatedBundles().iterator().next();
+            translated.verify(pkg.getPrimaryBundle());
+            ScanResults results = new ScanResults("again");
+            translated.reportResults(results);
+            assertEquals(expected, translationProblems(results.getFindings()));
+        } finally {
+            ScanFixture.delete(root);
+        }
+    }
+
+    private static List<String> translationProblems(Map<ScanResults.Type, List<Finding>> findings) {
+        List<String> messages = new ArrayList<String>();
+        for (ScanResults.Type type : Arrays.asList(ScanResults.Type.TRANSLATED_KEY_NOT_IN_BUNDLE,
+                ScanResults.Type.TRANSLATED_PLACEHOLDERS_MISMATCH)) {
+            List<Finding> ofType = findings.get(type);
+            if (ofType != null) {
+                for (Finding finding : ofType) {
+                    messages.add(finding.getMessage());
+                }
+            }
+        }
+        return messages;
+    }
+}
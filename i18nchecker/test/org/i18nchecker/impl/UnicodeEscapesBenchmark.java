@@ -0,0 +1,140 @@
+/**
+*   Copyright 2010-2011 Petr Hamernik
+*
+*   Licensed under the Apache License, Version 2.0 (the "License");
+*   you may not use this file except in compliance with the License.
+*   You may obtain a copy of the License at
+*
+*       http://www.apache.org/licenses/LICENSE-2.0
+*
+*   Unless required by applicable law or agreed to in writing, software
+*   distributed under the License is distributed on an "AS IS" BASIS,
+*   WITHOUT WARRANTIES OR CONDITIONS OF ANY KIND, either express or implied.
+*   See the License for the specific language governing permissions and
+*   limitations under the License.
+*/
+package org.i18nchecker.impl;
+
+import java.util.Random;
+import java.util.concurrent.Callable;
+
+/**
+ * Escaping and unescaping of CJK-heavy bundle values compared with the previous
+ * implementation (hex strings per character, regex split and parseInt).
+ *
+ * @author agent
+ */
+public final class UnicodeEscapesBenchmark {
+
+    private static final int VALUES = 10000;
+
+    private UnicodeEscapesBenchmark() {
+    }
+
+    public static void main(String[] args) throws Exception {
+        Random random = new Random(42);
+        final String[] values = new String[VALUES];
+        final String[] escaped = new String[VALUES];
+        for (int i = 0; i < VALUES; i++) {
+            StringBuilder sb = new StringBuilder();
+            for (int j = 0; j < 30; j++) {
+                // mostly CJK ideographs and kana, some ASCII like mnemonics and arguments
+                int r = random.nextInt(10);
+                if (r < 6) {
+                    sb.append((char) (0x4e00 + random.nextInt(0x5000)));
+                } else if (r < 8) {
+                    sb.append((char) (0x3040 + random.nextInt(0xc0)));
+                } else {
+                    sb.append((char) ('a' + random.nextInt(26)));
+                }
+            }
+            values[i] = sb.append(" {0} (&O)").toString();
+            escaped[i] = UnicodeEscapes.escape(values[i]);
+        }
+
+        long legacyEscape = BenchmarkHarness.measure("escape, previous", 5, 20, new Callable<Integer>() {
+            public Integer call() {
+                int length = 0;
+                for (String s : values) {
+                    length += legacyEscape(s).length();
+                }
+                return length;
+            }
+        });
+        long escape = BenchmarkHarness.measure("escape", 5, 20, new Callable<Integer>() {
+            public Integer call() {
+                int length = 0;
+                for (String s : values) {
+                    length += UnicodeEscapes.escape(s).length();
+                }
+                return length;
+            }
+        });
+        final StringBuilder buffer = new StringBuilder();
+        long escapeInto = BenchmarkHarness.measure("escape into buffer", 5, 20, new Callable<Integer>() {
+            public Integer call() {
+                int length = 0;
+                for (String s : values) {
+                    buffer.setLength(0);
+                    UnicodeEscapes.escape(s, buffer);
+                    length += buffer.length();
+                }
+                return length;
+            }
+        });
+        long legacyUnescape = BenchmarkHarness.measure("unescape, previous", 5, 20, new Callable<Integer>() {
+            public Integer call() {
+                int length = 0;
+                for (String s : escaped) {
+                    length += legacyUnescape(s).length();
+                }
+                return length;
+            }
+        });
+        long unescape = BenchmarkHarness.measure("unescape", 5, 20, new Callable<Integer>() {
+            public Integer call() {
+                int length = 0;
+                for (String s : escaped) {
+                    length += UnicodeEscapes.unescape(s).length();
+                }
+                return length;
+            }
+        });
+        System.out.println(String.format("    escape %.1fx (%.1fx into buffer), unescape %.1fx faster than previous",
+                (double) legacyEscape / escape, (double) legacyEscape / escapeInto,
+                (double) legacyUnescape / unescape));
+    }
+
+    private static String legacyEscape(String s) {
+        StringBuilder b = new StringBuilder(s.length());
+        for (int i = 0; i < s.length(); i++) {
+            char ch = s.charAt(i);
+            if (ch < 128) {
+                b.append(ch);
+            } else {
+                b.append("\\u").append(byteToHex((byte) (ch >>> 8)) + byteToHex((byte) (ch & 0xff)));
+            }
+        }
+        return b.toString();
+    }
+
+    private static String byteToHex(byte b) {
+        char hexDigit[] = {
+            '0', '1', '2', '3', '4', '5', '6', '7',
+            '8', '9', 'a', 'b', 'c', 'd', 'e', 'f'
+        };
+        char[] array = {hexDigit[(b >> 4) & 0x0f], hexDigit[b & 0x0f]};
+        return new String(array);
+    }
+
+    private static String legacyUnescape(String s) {
+        StringBuilder b = new StringBuilder();
+        String[] split = s.split("\\\\u");
+        b.append(split[0]);
+        for (int i = 1; i < split.length; i++) {
+            b.append((char) Integer.parseInt(split[i].substring(0, 4), 16));
+            b.append(split[i].subSequence(4, split[i].length()));
+        }
+        return b.toString();
+    }
+}
@@ -0,0 +1,72 @@
+/**
+*   Copyright 2010-2011 Petr Hamernik
+*
+*   Licensed under the Apache License, Version 2.0 (the "License");
+*   you may not use this file except in compliance with the License.
+*   You may obtain a copy of the License at
+*
+*       http://www.apache.org/licenses/LICENSE-2.0
+*
+*   Unless required by applicable law or agreed to in writing, software
+*   distributed under the License is distributed on an "AS IS" BASIS,
+*   WITHOUT WARRANTIES OR CONDITIONS OF ANY KIND, either express or implied.
+*   See the License for the specific language governing permissions and
+*   limitations under the License.
+*/
+package org.i18nchecker.impl;
+
+import org.junit.Test;
+import static org.junit.Assert.*;
+
+/**
+ *
+ * @author agent
+ */
+public class UnicodeEscapesTest {
+
+    @Test
+    public void testAsciiIsNotCopied() {
+        String s = "Open (&O)";
+        assertSame(s, UnicodeEscapes.escape(s));
+        assertSame(s, UnicodeEscapes.unescape(s));
+    }
+
+    @Test
+    public void testEscape() {
+        assertEquals("\\u958b\\u304f (&O)", UnicodeEscapes.escape("\u958b\u304f (&O)"));
+        assertEquals("caf\\u00e9", UnicodeEscapes.escape("caf\u00e9"));
+    }
+
+    @Test
+    public void testEscapeSurrogatePair() {
+        assertEquals("\\ud842\\udfb7", UnicodeEscapes.escape(new String(Character.toChars(0x20bb7))));
+    }
+
+    @Test
+    public void testUnescape() {
+        assertEquals("\u958b\u304f (&O)", UnicodeEscapes.unescape("\\u958b\\u304F (&O)"));
+        assertEquals(new String(Character.toChars(0x20bb7)), UnicodeEscapes.unescape("\\ud842\\udfb7"));
+    }
+
+    @Test
+    public void testUnescapeKeepsMalformed() {
+        assertEquals("\\u12", UnicodeEscapes.unescape("\\u12"));
+        assertEquals("\\u12x4 A", UnicodeEscapes.unescape("\\u12x4 \\u0041"));
+        assertEquals("end\\", UnicodeEscapes.unescape("end\\"));
+        assertEquals("\\\\u0041", UnicodeEscapes.unescape("\\\\u0041"));
+    }
+
+    @Test
+    public void testAppend() {
+        StringBuilder sb = new StringBuilder("key=");
+        UnicodeEscapes.escape("\u00e9", sb);
+        UnicodeEscapes.unescape("\\u00e9", sb);
+        assertEquals("key=\\u00e9\u00e9", sb.toString());
+    }
+
+    @Test
+    public void testRoundTrip() {
+        String s = "\u30d5\u30a1\u30a4\u30eb {0} \u3092\u958b\u304f\u3053\u3068\u304c\u3067\u304d\u307e\u305b\u3093";
+        assertEquals(s, UnicodeEscapes.unescape(UnicodeEscapes.escape(s)));
+    }
+}